@@ -22,6 +22,7 @@ import com.streamsets.pipeline.api.GenerateResourceBundle;
 public enum Errors implements ErrorCode {
   IPC_ORIG_W_BUFFER_00("Error while polling fragment queue: {}"),
   IPC_ORIG_W_BUFFER_01("Error while parsing fragment: {}"),
+  IPC_ORIG_W_BUFFER_02("Error while committing fragment queue: {}"),
 
   ;
 
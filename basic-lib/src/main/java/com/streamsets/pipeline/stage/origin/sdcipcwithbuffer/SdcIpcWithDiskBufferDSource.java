@@ -27,10 +27,11 @@ import com.streamsets.pipeline.configurablestage.DSourceOffsetCommitter;
 import com.streamsets.pipeline.stage.origin.sdcipc.Configs;
 
 @StageDef(
-    version = 3,
+    version = 4,
     label = "Dev SDC RPC with Buffering",
     description = "Receives records via SDC RPC from a Data Collector pipeline that uses an SDC RPC destination. " +
-        "It buffers records in memory/disk. In case of failure/stop records may be lost.",
+        "It buffers records in memory/disk. Unless the disk buffer is persisted, records may be lost in case of " +
+        "failure/stop.",
     execution = ExecutionMode.STANDALONE,
     icon = "dev.png",
     onlineHelpRefUrl = "index.html#Pipeline_Design/DevStages.html",
@@ -82,8 +83,48 @@ public class SdcIpcWithDiskBufferDSource extends DSourceOffsetCommitter {
       max = 10000)
   public long waitTimeForEmptyBatches;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Persist Disk Buffer",
+      description = "Keeps the disk buffer in the data directory, so buffered records are not lost on stop/restart",
+      displayPosition = 130,
+      group = "ADVANCED")
+  public boolean persistDiskBuffer;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "0",
+      label = "Sync Disk Buffer Every N Fragments",
+      description = "Flushes the disk buffer to disk after the given number of fragments, 0 to disable",
+      displayPosition = 140,
+      group = "ADVANCED",
+      min = 0)
+  public int syncEveryFragments;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1000",
+      label = "Sync Disk Buffer Interval (millisecs)",
+      description = "Max time between flushes of the disk buffer to disk, 0 to disable",
+      displayPosition = 150,
+      group = "ADVANCED",
+      min = 0)
+  public long syncIntervalMillis;
+
   @Override
   protected Source createSource() {
-    return new SdcIpcWithDiskBufferSource(configs, maxFragmentsInMemory, maxDiskBufferMB, waitTimeForEmptyBatches);
+    return new SdcIpcWithDiskBufferSource(
+        configs,
+        maxFragmentsInMemory,
+        maxDiskBufferMB,
+        waitTimeForEmptyBatches,
+        persistDiskBuffer,
+        syncEveryFragments,
+        syncIntervalMillis
+    );
   }
 }
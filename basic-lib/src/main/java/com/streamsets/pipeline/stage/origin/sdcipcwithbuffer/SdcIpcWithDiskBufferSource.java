@@ -21,22 +21,26 @@ import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.base.OnRecordErrorException;
 import com.streamsets.pipeline.api.ext.ContextExtensions;
 import com.streamsets.pipeline.api.ext.RecordReader;
-import com.streamsets.pipeline.lib.fragmentqueue.FileFragmentQueue;
 import com.streamsets.pipeline.lib.fragmentqueue.FragmentQueue;
 import com.streamsets.pipeline.lib.fragmentqueue.MemoryBufferFragmentQueue;
+import com.streamsets.pipeline.lib.fragmentqueue.SegmentedFileFragmentQueue;
 import com.streamsets.pipeline.lib.http.HttpConfigs;
 import com.streamsets.pipeline.lib.http.HttpReceiverWithFragmenterWriter;
 import com.streamsets.pipeline.lib.httpsource.AbstractHttpServerSource;
 import com.streamsets.pipeline.lib.sdcipc.SdcIpcRequestFragmenter;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
 public class SdcIpcWithDiskBufferSource extends AbstractHttpServerSource<HttpReceiverWithFragmenterWriter> {
 
   public static final String IPC_PATH = "/ipc/v1";
+  // Data Collector data directory, given by the runtime through the stage configs
+  private static final String DATA_DIR_CONFIG = "sdc.data.dir";
 
+  private final SegmentedFileFragmentQueue diskQueue;
   private final FragmentQueue queue;
   private final long waitTimeForEmptyBatches;
   private ContextExtensions contextExtensions;
@@ -45,13 +49,31 @@ public class SdcIpcWithDiskBufferSource extends AbstractHttpServerSource<HttpRec
       HttpConfigs httpConfigs,
       int maxFragmentsInMemory,
       int maxDiskSpaceMB,
-      long waitTimeForEmptyBatches
+      long waitTimeForEmptyBatches,
+      boolean persistDiskBuffer,
+      int syncEveryFragments,
+      long syncIntervalMillis
+  ) {
+    this(
+        httpConfigs,
+        maxFragmentsInMemory,
+        waitTimeForEmptyBatches,
+        new SegmentedFileFragmentQueue(maxDiskSpaceMB, persistDiskBuffer, syncEveryFragments, syncIntervalMillis)
+    );
+  }
+
+  private SdcIpcWithDiskBufferSource(
+      HttpConfigs httpConfigs,
+      int maxFragmentsInMemory,
+      long waitTimeForEmptyBatches,
+      SegmentedFileFragmentQueue diskQueue
   ) {
     super(httpConfigs, new HttpReceiverWithFragmenterWriter(IPC_PATH,
         httpConfigs,
         new SdcIpcRequestFragmenter(),
-        new MemoryBufferFragmentQueue(maxFragmentsInMemory, new FileFragmentQueue(maxDiskSpaceMB))
+        new MemoryBufferFragmentQueue(maxFragmentsInMemory, diskQueue)
     ));
+    this.diskQueue = diskQueue;
     queue = (FragmentQueue) getReceiver().getWriter();
     this.waitTimeForEmptyBatches = waitTimeForEmptyBatches;
   }
@@ -59,6 +81,10 @@ public class SdcIpcWithDiskBufferSource extends AbstractHttpServerSource<HttpRec
   @Override
   protected List<ConfigIssue> init() {
     contextExtensions = (ContextExtensions) getContext();
+    String dataDir = getContext().getConfig(DATA_DIR_CONFIG);
+    if (dataDir != null) {
+      diskQueue.setDataDirectory(new File(dataDir));
+    }
     List<ConfigIssue> issues = getReceiver().init(getContext());
     issues.addAll(getReceiver().getWriter().init(getContext()));
     if (issues.isEmpty()) {
@@ -107,4 +133,14 @@ public class SdcIpcWithDiskBufferSource extends AbstractHttpServerSource<HttpRec
     }
     return super.produce(lastSourceOffset, maxBatchSize, batchMaker);
   }
+
+  @Override
+  public void commit(String offset) throws StageException {
+    // the fragments of the batch are consumed only once it has been processed
+    try {
+      queue.commit();
+    } catch (IOException ex) {
+      throw new StageException(Errors.IPC_ORIG_W_BUFFER_02, ex.toString(), ex);
+    }
+  }
 }
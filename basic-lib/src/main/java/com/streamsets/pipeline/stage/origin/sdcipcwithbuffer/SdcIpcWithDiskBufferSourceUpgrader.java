@@ -39,6 +39,9 @@ public class SdcIpcWithDiskBufferSourceUpgrader implements StageUpgrader {
             "sslEnabled",
             "tlsEnabled"
         );
+        // fall through
+      case 3:
+        upgradeV3ToV4(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -46,4 +49,10 @@ public class SdcIpcWithDiskBufferSourceUpgrader implements StageUpgrader {
     return configs;
   }
 
+  private static void upgradeV3ToV4(List<Config> configs) {
+    configs.add(new Config("persistDiskBuffer", false));
+    configs.add(new Config("syncEveryFragments", 0));
+    configs.add(new Config("syncIntervalMillis", 1000));
+  }
+
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.spooldir;
+
+import com.streamsets.pipeline.api.StageException;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte range of a file read on its own by one of the origin threads.
+ * <p/>
+ * Ranges start at the beginning of a line, so line oriented parsers can read them independently. Their offset is
+ * the parser offset within the range and is tracked with its own offset key, that key carries the range bounds so
+ * ranges resume as they were split even if the number of threads changes.
+ */
+class FileRange {
+  private static final String RANGE_KEY_SEPARATOR = "::range::";
+  private static final String BOUNDS_SEPARATOR = "-";
+  private static final String ZERO = "0";
+  private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+  private final String file;
+  private final long start;
+  private final long end;
+  private String offset;
+
+  FileRange(String file, long start, long end, String offset) {
+    this.file = file;
+    this.start = start;
+    this.end = end;
+    this.offset = offset;
+  }
+
+  static boolean isRangeKey(String key) {
+    return key != null && key.contains(RANGE_KEY_SEPARATOR);
+  }
+
+  /**
+   * Returns the range of the given offset key and committed offset.
+   */
+  static FileRange fromOffset(String key, String offset) throws StageException {
+    int separator = key.lastIndexOf(RANGE_KEY_SEPARATOR);
+    String file = key.substring(0, separator);
+    String[] bounds = key.substring(separator + RANGE_KEY_SEPARATOR.length()).split(BOUNDS_SEPARATOR);
+    if (bounds.length != 2) {
+      throw new IllegalArgumentException("Invalid range offset key: " + key);
+    }
+    return new FileRange(
+        file,
+        Long.parseLong(bounds[0]),
+        Long.parseLong(bounds[1]),
+        new Offset(Offset.VERSION_TWO, key, offset).getOffset()
+    );
+  }
+
+  /**
+   * Splits the file in up to the given number of ranges of similar size, each one starting after a line feed.
+   */
+  static List<FileRange> split(File file, String fileKey, int count) throws IOException {
+    List<FileRange> ranges = new ArrayList<>(count);
+    long size = file.length();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long start = 0;
+      for (int i = 1; i <= count && start < size; i++) {
+        long end = (i == count) ? size : nextLineStart(channel, size * i / count, size);
+        if (end > start) {
+          ranges.add(new FileRange(fileKey, start, end, ZERO));
+          start = end;
+        }
+      }
+    }
+    return ranges;
+  }
+
+  // position right after the first line feed at or after position - 1, so position itself is returned if a line
+  // starts there
+  private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+    if (position == 0) {
+      return 0;
+    }
+    InputStream is = new BufferedInputStream(Channels.newInputStream(channel.position(position - 1)), SCAN_BUFFER_SIZE);
+    long current = position - 1;
+    int b;
+    while ((b = is.read()) != -1) {
+      current++;
+      if (b == '\n') {
+        return current;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns a stream over the bytes of the range.
+   */
+  InputStream open(File file) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    channel.position(start);
+    return new BoundedInputStream(Channels.newInputStream(channel), end - start);
+  }
+
+  String getFile() {
+    return file;
+  }
+
+  long getStart() {
+    return start;
+  }
+
+  long getEnd() {
+    return end;
+  }
+
+  String getOffset() {
+    return offset;
+  }
+
+  void setOffset(String offset) {
+    this.offset = offset;
+  }
+
+  boolean isFinished() {
+    return Offset.MINUS_ONE.equals(offset);
+  }
+
+  String getOffsetKey() {
+    return file + RANGE_KEY_SEPARATOR + start + BOUNDS_SEPARATOR + end;
+  }
+
+  @Override
+  public String toString() {
+    return "FileRange[file='" + file + "' start=" + start + " end=" + end + " offset=" + offset + "]";
+  }
+}
@@ -136,6 +136,22 @@ public class SpoolDirConfigBean {
   )
   public int batchSize;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      label = "Number of Threads",
+      defaultValue = "1",
+      description = "Number of threads reading byte ranges of large files in parallel. Only used with uncompressed " +
+          "text, JSON objects and delimited data without header, when no record spans multiple lines",
+      displayPosition = 44,
+      group = "FILES",
+      dependsOn = "dataFormat",
+      triggeredByValue = { "TEXT", "JSON", "DELIMITED"},
+      min = 1,
+      max = Integer.MAX_VALUE
+  )
+  public int numberOfThreads = 1;
+
   @ConfigDef(
       required = false,
       type = ConfigDef.Type.NUMBER,
@@ -16,6 +16,7 @@
 package com.streamsets.pipeline.stage.origin.spooldir;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.streamsets.pipeline.api.BatchContext;
 import com.streamsets.pipeline.api.BatchMaker;
 import com.streamsets.pipeline.api.FileRef;
@@ -33,6 +34,9 @@ import com.streamsets.pipeline.api.lineage.EndPointType;
 import com.streamsets.pipeline.api.lineage.LineageEvent;
 import com.streamsets.pipeline.api.lineage.LineageEventType;
 import com.streamsets.pipeline.api.lineage.LineageSpecificAttribute;
+import com.streamsets.pipeline.config.Compression;
+import com.streamsets.pipeline.config.CsvHeader;
+import com.streamsets.pipeline.config.JsonMode;
 import com.streamsets.pipeline.config.PostProcessingOptions;
 import com.streamsets.pipeline.lib.dirspooler.DirectorySpooler;
 import com.streamsets.pipeline.lib.io.fileref.FileRefUtil;
@@ -52,16 +56,23 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.PathMatcher;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class SpoolDirSource extends BasePushSource {
@@ -78,6 +89,7 @@ public class SpoolDirSource extends BasePushSource {
   private static final String BASE_DIR = "baseDir";
 
   private static final int MIN_OVERRUN_LIMIT = 64 * 1024;
+  private static final long MIN_RANGE_SIZE = 16 * 1024 * 1024;
   public static final String SPOOLDIR_CONFIG_BEAN_PREFIX = "conf.";
   public static final String SPOOLDIR_DATAFORMAT_CONFIG_PREFIX = SPOOLDIR_CONFIG_BEAN_PREFIX + "dataFormatConfig.";
   private boolean useLastModified;
@@ -105,13 +117,25 @@ public class SpoolDirSource extends BasePushSource {
 
   private HashMap<String, Offset> allOffsets;
 
+  // files are split in ranges no smaller than this
+  @VisibleForTesting
+  long minRangeSize = MIN_RANGE_SIZE;
+  private boolean rangesSupported;
+  private boolean splitFiles;
+  private ExecutorService rangeExecutor;
+  // ranges of the current file, null if the file is read sequentially
+  private List<FileRange> currentRanges;
+  // ranges found in the last offset, they belong to the file being read when the pipeline stopped
+  private List<FileRange> restoredRanges;
+  private BadSpoolFileException rangeFailure;
+
   public SpoolDirSource(SpoolDirConfigBean conf) {
     this.conf = conf;
   }
 
   @Override
   public int getNumberOfThreads() {
-    return ONE;
+    return splitFiles ? conf.numberOfThreads : ONE;
   }
 
   @Override
@@ -251,6 +275,15 @@ public class SpoolDirSource extends BasePushSource {
       spooler.init(conf.initialFileToProcess);
       rateLimitElEval = FileRefUtil.createElEvalForRateLimit(getContext());;
       rateLimitElVars = getContext().createELVars();
+
+      rangesSupported = areRangesSupported();
+      splitFiles = rangesSupported && conf.numberOfThreads > 1;
+      if (splitFiles) {
+        rangeExecutor = Executors.newFixedThreadPool(
+            conf.numberOfThreads,
+            new ThreadFactoryBuilder().setNameFormat("Directory Range Reader-%d").setDaemon(true).build()
+        );
+      }
     }
 
     shouldSendNoMoreDataEvent = false;
@@ -264,10 +297,38 @@ public class SpoolDirSource extends BasePushSource {
     totalFiles = 0;
 
     allOffsets = new HashMap<>();
+    restoredRanges = new ArrayList<>();
 
     return issues;
   }
 
+  /**
+   * Files can be read in ranges only if records are single lines of a charset where the line
+   * feed byte is not part of any other character.
+   */
+  private boolean areRangesSupported() {
+    if (getContext().isPreview() || conf.dataFormatConfig.compression != Compression.NONE) {
+      return false;
+    }
+    boolean lineOriented;
+    switch (conf.dataFormat) {
+      case TEXT:
+        lineOriented = !conf.dataFormatConfig.useCustomDelimiter;
+        break;
+      case JSON:
+        lineOriented = conf.dataFormatConfig.jsonContent == JsonMode.MULTIPLE_OBJECTS;
+        break;
+      case DELIMITED:
+        lineOriented = conf.dataFormatConfig.csvHeader == CsvHeader.NO_HEADER &&
+            conf.dataFormatConfig.csvSkipStartLines == 0;
+        break;
+      default:
+        lineOriented = false;
+    }
+    return lineOriented &&
+        Arrays.equals("\n".getBytes(Charset.forName(conf.dataFormatConfig.charset)), new byte[] {'\n'});
+  }
+
   private boolean validateDir(
       String dir,
       String group,
@@ -355,6 +416,9 @@ public class SpoolDirSource extends BasePushSource {
   @Override
   public void destroy() {
     IOUtils.closeQuietly(parser);
+    if (rangeExecutor != null) {
+      rangeExecutor.shutdownNow();
+    }
     if (spooler != null) {
       spooler.destroy();
     }
@@ -434,6 +498,7 @@ public class SpoolDirSource extends BasePushSource {
         String version = lastSourceOffset.get(OFFSET_VERSION);
         // remove the offset key from the list
         lastSourceOffset.remove(OFFSET_VERSION);
+        restoreRanges(lastSourceOffset);
         Set<String> key = lastSourceOffset.keySet();
         Iterator iterator = key.iterator();
 
@@ -446,9 +511,38 @@ public class SpoolDirSource extends BasePushSource {
     } else {
       offset = new Offset(Offset.VERSION_ONE, null);
     }
+    // ranges are only resumed for the file of the offset, and only if it was not fully read
+    Iterator<FileRange> ranges = restoredRanges.iterator();
+    while (ranges.hasNext()) {
+      FileRange range = ranges.next();
+      if (!range.getFile().equals(offset.getFile()) || MINUS_ONE.equals(offset.getOffset())) {
+        getContext().commitOffset(range.getOffsetKey(), null);
+        ranges.remove();
+      }
+    }
+    if (!rangesSupported && !restoredRanges.isEmpty()) {
+      // the configuration changed since the ranges were written, the file is read again sequentially
+      LOG.warn("Discarding {} ranges of file '{}', the file cannot be read in ranges anymore",
+          restoredRanges.size(), offset.getFile());
+      for (FileRange range : restoredRanges) {
+        getContext().commitOffset(range.getOffsetKey(), null);
+      }
+      restoredRanges.clear();
+    }
     return offset;
   }
 
+  private void restoreRanges(Map<String, String> lastSourceOffset) throws StageException {
+    Iterator<Map.Entry<String, String>> iterator = lastSourceOffset.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, String> entry = iterator.next();
+      if (FileRange.isRangeKey(entry.getKey())) {
+        restoredRanges.add(FileRange.fromOffset(entry.getKey(), entry.getValue()));
+        iterator.remove();
+      }
+    }
+  }
+
   @Override
   public void produce(Map<String, String> lastSourceOffset, int maxBatchSize) throws StageException {
     int batchSize = Math.min(conf.batchSize, maxBatchSize);
@@ -456,6 +550,9 @@ public class SpoolDirSource extends BasePushSource {
     Offset newSourceOffset = handleLastSourceOffset(lastSourceOffset);
 
     while (!getContext().isStopped()) {
+      if (currentRanges != null) {
+        readRanges(batchSize);
+      }
       BatchContext batchContext = getContext().startBatch();
       BatchMaker batchMaker = batchContext.getBatchMaker();
       errorRecordHandler = new DefaultErrorRecordHandler(getContext(), batchContext);
@@ -542,8 +639,18 @@ public class SpoolDirSource extends BasePushSource {
     if (currentFile != null) {
       // we have a file to process (from before or new from spooler)
       try {
-        // we ask for a batch from the currentFile starting at offset
-        offset = produce(currentFile, offset, batchSize, batchMaker);
+        boolean rangesRead = currentRanges != null;
+        if (!rangesRead && (splitFiles || !restoredRanges.isEmpty()) && ZERO.equals(offset)) {
+          // the ranges are read once this batch is processed, so the new file event goes out before their records,
+          // ranges restored from the last offset are completed even if the pipeline now runs a single thread
+          currentRanges = getRanges(currentFile, file);
+        }
+        if (rangesRead) {
+          offset = getRangesOffset();
+        } else if (currentRanges == null) {
+          // we ask for a batch from the currentFile starting at offset
+          offset = produce(currentFile, offset, batchSize, batchMaker);
+        }
 
         if (MINUS_ONE.equals(offset)) {
           SpoolDirEvents.FINISHED_FILE.create(getContext(), batchContext)
@@ -592,6 +699,12 @@ public class SpoolDirSource extends BasePushSource {
       noMoreDataFileCount = 0;
     }
 
+    List<FileRange> finishedRanges = null;
+    if (currentRanges != null && MINUS_ONE.equals(offset)) {
+      finishedRanges = currentRanges;
+      currentRanges = null;
+    }
+
     Offset newOffset = new Offset(Offset.VERSION_TWO, file, offset);
 
     // reset the offset
@@ -602,9 +715,235 @@ public class SpoolDirSource extends BasePushSource {
     // Process And Commit offsets
     getContext().processBatch(batchContext, newOffset.getFile(), newOffset.getOffsetString());
 
+    if (finishedRanges != null) {
+      // the file offset is -1 now, the range offsets are not needed anymore
+      for (FileRange range : finishedRanges) {
+        getContext().commitOffset(range.getOffsetKey(), null);
+      }
+    }
+
     return newOffset;
   }
 
+  /**
+   * Returns the ranges to read the given file with, the ones restored from the last offset if any, null if the file
+   * is too small to be split.
+   */
+  private List<FileRange> getRanges(File file, String fileKey) {
+    List<FileRange> ranges = new ArrayList<>();
+    for (FileRange range : restoredRanges) {
+      if (range.getFile().equals(fileKey)) {
+        ranges.add(range);
+      }
+    }
+    restoredRanges.clear();
+    if (!ranges.isEmpty()) {
+      LOG.info("Resuming reading of file '{}' in {} ranges", file, ranges.size());
+      return ranges;
+    }
+
+    int count = (int) Math.min(conf.numberOfThreads, file.length() / minRangeSize);
+    if (count < 2) {
+      return null;
+    }
+    try {
+      ranges = FileRange.split(file, fileKey, count);
+    } catch (IOException ex) {
+      LOG.warn("Could not split file '{}' in ranges, reading it sequentially: {}", file, ex.toString(), ex);
+      return null;
+    }
+    if (ranges.size() < 2) {
+      return null;
+    }
+    LOG.info("Reading file '{}' in {} ranges", file, ranges.size());
+    return ranges;
+  }
+
+  /**
+   * Reads the unfinished ranges of the current file in parallel, each range in batches of its own, until all of them
+   * are finished or the pipeline is stopped. It runs while this thread holds no batch, so the range readers can use
+   * all the pipeline runners. Without range reader threads the ranges are read one after the other by this thread.
+   */
+  private void readRanges(int batchSize) throws StageException {
+    List<RangeReader> readers = new ArrayList<>();
+    for (FileRange range : currentRanges) {
+      if (!range.isFinished()) {
+        readers.add(new RangeReader(currentFile, range, batchSize));
+      }
+    }
+    Throwable failure = null;
+    try {
+      if (rangeExecutor == null) {
+        for (RangeReader reader : readers) {
+          try {
+            reader.call();
+          } catch (Exception ex) {
+            failure = (failure == null) ? ex : failure;
+          }
+        }
+      } else {
+        for (Future<Void> future : rangeExecutor.invokeAll(readers)) {
+          try {
+            future.get();
+          } catch (ExecutionException ex) {
+            failure = (failure == null) ? ex.getCause() : failure;
+          }
+        }
+      }
+    } catch (InterruptedException ex) {
+      LOG.warn("Interrupted while reading ranges of file '{}'", currentFile);
+      Thread.currentThread().interrupt();
+    } finally {
+      for (RangeReader reader : readers) {
+        perFileRecordCount += reader.recordCount;
+        noMoreDataRecordCount += reader.recordCount;
+        perFileErrorCount += reader.errorCount;
+        noMoreDataErrorCount += reader.errorCount;
+      }
+    }
+
+    if (failure instanceof BadSpoolFileException) {
+      // handled with the next batch, as if the file was read sequentially
+      rangeFailure = (BadSpoolFileException) failure;
+    } else if (failure instanceof StageException) {
+      throw (StageException) failure;
+    } else if (failure != null) {
+      throw new StageException(Errors.SPOOLDIR_35, currentFile.getName(), failure.toString(), failure);
+    }
+  }
+
+  /**
+   * Returns -1 if all the ranges of the current file are finished, 0 otherwise.
+   */
+  private String getRangesOffset() throws BadSpoolFileException {
+    if (rangeFailure != null) {
+      BadSpoolFileException failure = rangeFailure;
+      rangeFailure = null;
+      throw failure;
+    }
+    for (FileRange range : currentRanges) {
+      if (!range.isFinished()) {
+        return ZERO;
+      }
+    }
+    return MINUS_ONE;
+  }
+
+  /**
+   * Reads a range of the current file, committing its own offset with every batch.
+   */
+  private class RangeReader implements Callable<Void> {
+    private final File file;
+    private final FileRange range;
+    private final int batchSize;
+    private DataParser rangeParser;
+    private long recordCount;
+    private long errorCount;
+
+    RangeReader(File file, FileRange range, int batchSize) {
+      this.file = file;
+      this.range = range;
+      this.batchSize = batchSize;
+    }
+
+    @Override
+    public Void call() throws StageException, BadSpoolFileException {
+      try {
+        while (!getContext().isStopped() && !range.isFinished()) {
+          BatchContext batchContext = getContext().startBatch();
+          ErrorRecordHandler rangeErrorRecordHandler = new DefaultErrorRecordHandler(getContext(), batchContext);
+          try {
+            range.setOffset(read(batchContext.getBatchMaker(), rangeErrorRecordHandler));
+          } catch (BadSpoolFileException ex) {
+            // the whole file goes to error, the records read so far are processed as in sequential reading
+            range.setOffset(MINUS_ONE);
+            processBatch(batchContext);
+            throw ex;
+          }
+          processBatch(batchContext);
+        }
+      } finally {
+        IOUtils.closeQuietly(rangeParser);
+      }
+      return null;
+    }
+
+    private void processBatch(BatchContext batchContext) throws StageException {
+      Offset offset = new Offset(Offset.VERSION_TWO, range.getOffsetKey(), range.getOffset());
+      getContext().processBatch(batchContext, range.getOffsetKey(), offset.getOffsetString());
+    }
+
+    // same as produce(File, String, int, BatchMaker) but over the range, offsets are relative to the range start
+    // except the ones in record headers and errors, which are relative to the file start as in sequential reading
+    private String read(BatchMaker batchMaker, ErrorRecordHandler rangeErrorRecordHandler) throws StageException,
+        BadSpoolFileException {
+      String offset = range.getOffset();
+      try {
+        if (rangeParser == null) {
+          rangeParser = parserFactory.getParser(file.getName(), range.open(file), offset);
+        }
+        for (int i = 0; i < batchSize; i++) {
+          Record record;
+          try {
+            record = rangeParser.parse();
+          } catch (RecoverableDataParserException ex) {
+            record = ex.getUnparsedRecord();
+            setHeaders(record, file, getFileOffset(offset));
+            rangeErrorRecordHandler.onError(new OnRecordErrorException(record, ex.getErrorCode(), ex.getParams()));
+            errorCount++;
+            continue;
+          } catch (ObjectLengthException ex) {
+            rangeErrorRecordHandler.onError(Errors.SPOOLDIR_02, file.getName(), getFileOffset(offset), ex);
+            errorCount++;
+            offset = MINUS_ONE;
+            break;
+          }
+          if (record == null) {
+            offset = MINUS_ONE;
+            break;
+          }
+          setHeaders(record, file, getFileOffset(offset));
+          batchMaker.addRecord(record);
+          offset = rangeParser.getOffset();
+          recordCount++;
+        }
+      } catch (IOException | DataParserException ex) {
+        if (ex instanceof ClosedByInterruptException || ex.getCause() instanceof ClosedByInterruptException) {
+          // the pipeline is being stopped, the range is resumed from the last offset
+          return offset;
+        }
+        String exOffset = (ex instanceof OverrunException) ?
+            String.valueOf(range.getStart() + ((OverrunException) ex).getStreamOffset()) : getFileOffset(offset);
+        offset = MINUS_ONE;
+        switch (getContext().getOnErrorRecord()) {
+          case DISCARD:
+            break;
+          case TO_ERROR:
+            throw new BadSpoolFileException(file.getAbsolutePath(), exOffset, ex);
+          case STOP_PIPELINE:
+            getContext().reportError(Errors.SPOOLDIR_04, file.getName(), exOffset, ex.toString(), ex);
+            throw new StageException(Errors.SPOOLDIR_04, file.getName(), exOffset, ex.toString());
+          default:
+            throw new IllegalStateException(Utils.format("Unknown OnError value '{}'",
+                getContext().getOnErrorRecord(), ex));
+        }
+      } finally {
+        if (MINUS_ONE.equals(offset)) {
+          IOUtils.closeQuietly(rangeParser);
+          rangeParser = null;
+        }
+      }
+      return offset;
+    }
+
+    private String getFileOffset(String rangeOffset) {
+      if (MINUS_ONE.equals(rangeOffset)) {
+        return rangeOffset;
+      }
+      return String.valueOf(range.getStart() + (rangeOffset == null ? 0 : Long.parseLong(rangeOffset)));
+    }
+  }
+
   /**
    * Processes a batch from the specified file and offset up to a maximum batch size. If the file is fully processed
    * it must return -1, otherwise it must return the offset to continue from next invocation.
@@ -29,12 +29,13 @@ import com.streamsets.pipeline.configurablestage.DProcessor;
 import java.util.List;
 
 @StageDef(
-    version = 1,
+    version = 2,
     label = "Record Deduplicator",
     description = "Separates unique and duplicate records based on field comparison",
     icon="dedup.png",
     outputStreams = OutputStreams.class,
     execution = ExecutionMode.STANDALONE,
+    upgrader = DeDupProcessorUpgrader.class,
     onlineHelpRefUrl = "index.html#Processors/RDeduplicator.html#task_ikr_c2f_zq"
 )
 @ConfigGroups(Groups.class)
@@ -90,9 +91,21 @@ public class DeDupDProcessor extends DProcessor {
   @FieldSelectorModel
   public List<String> fieldsToCompare;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Persist Window",
+      description = "Keeps the window in the Data Collector data directory so that duplicates are detected " +
+          "across pipeline restarts",
+      displayPosition = 50,
+      group = "DE_DUP"
+  )
+  public boolean persistWindow;
+
   @Override
   protected Processor createProcessor() {
-    return new DeDupProcessor(recordCountWindow, timeWindowSecs, compareFields, fieldsToCompare);
+    return new DeDupProcessor(recordCountWindow, timeWindowSecs, compareFields, fieldsToCompare, persistWindow);
   }
 
 }
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.dedup;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Window of 128 bit record hashes used by the {@link DeDupProcessor}, kept outside of the java heap in a memory
+ * mapped file.
+ * <p/>
+ * Hashes are stored in a ring buffer in insertion order, so the oldest one is evicted when the record count window
+ * is full or when its time window has passed. The ring is indexed by an open addressing hash table with linear
+ * probing that is never more than half full, a hash takes between 32 and 40 bytes of (page cache) memory.
+ * <p/>
+ * File layout: header, ring of (hash high bits, hash low bits, insertion time) longs, table of (ring slot + 1) ints.
+ * The file is sparse, pages get touched only as the window fills up. A persistent index keeps its file on close and
+ * reuses it on next open, so the window survives pipeline restarts. If the index was not closed properly, the hash
+ * table is rebuilt from the ring on open.
+ * <p/>
+ * All operations are synchronized, a single instance is shared by all runners of a pipeline.
+ */
+public class DeDupIndex implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(DeDupIndex.class);
+
+  // "SDCDEDUP"
+  private static final long MAGIC = 0x5344434445445550L;
+  private static final int VERSION = 1;
+
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 8;
+  private static final int WINDOW_OFFSET = 12;
+  private static final int TABLE_SIZE_OFFSET = 16;
+  private static final int HEAD_OFFSET = 24;
+  private static final int TAIL_OFFSET = 32;
+  private static final int CLEAN_OFFSET = 40;
+  private static final int HEADER_SIZE = 64;
+
+  private static final int ENTRY_SIZE = 24;
+  private static final int TABLE_ENTRY_SIZE = 4;
+
+  // a single mapping can't exceed 2GB
+  private static final int CHUNK_BITS = 30;
+  private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+  private final File file;
+  private final boolean persistent;
+  private final int window;
+  private final long timeWindowMillis;
+  private final long tableSize;
+  private final long tableMask;
+  private final long tableOffset;
+  private final RandomAccessFile randomAccessFile;
+  private final MappedByteBuffer[] chunks;
+  private long head;
+  private long tail;
+  private int references;
+
+  /**
+   * Opens the index in the given file.
+   *
+   * @param file file backing the index
+   * @param persistent if the file should be reused if it exists and kept on close
+   * @param window max number of hashes in the index
+   * @param timeWindowSecs max age of the hashes in the index, 0 for no limit
+   */
+  public DeDupIndex(File file, boolean persistent, int window, int timeWindowSecs) throws IOException {
+    this.file = file;
+    this.persistent = persistent;
+    this.window = window;
+    this.timeWindowMillis = timeWindowSecs * 1000L;
+    tableSize = nextPowerOfTwo(window * 2L);
+    tableMask = tableSize - 1;
+    tableOffset = HEADER_SIZE + (long) window * ENTRY_SIZE;
+    long length = tableOffset + tableSize * TABLE_ENTRY_SIZE;
+
+    boolean reuse = persistent && isCompatible(file, length);
+    if (!reuse && file.exists()) {
+      LOG.info("Discarding deduplication window '{}' that does not match the current configuration", file);
+      if (!file.delete()) {
+        throw new IOException("Could not delete " + file);
+      }
+    }
+
+    randomAccessFile = new RandomAccessFile(file, "rw");
+    randomAccessFile.setLength(length);
+    FileChannel channel = randomAccessFile.getChannel();
+    chunks = new MappedByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_BITS)];
+    for (int i = 0; i < chunks.length; i++) {
+      long position = (long) i << CHUNK_BITS;
+      chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(CHUNK_MASK + 1, length - position));
+    }
+
+    if (reuse) {
+      head = getLong(HEAD_OFFSET);
+      tail = getLong(TAIL_OFFSET);
+      if (getInt(CLEAN_OFFSET) == 0) {
+        LOG.warn("Deduplication window '{}' was not closed properly, rebuilding it", file);
+        rebuildTable();
+      }
+      LOG.info("Reusing deduplication window '{}' with '{}' hashes", file, tail - head);
+    } else {
+      putLong(MAGIC_OFFSET, MAGIC);
+      putInt(VERSION_OFFSET, VERSION);
+      putInt(WINDOW_OFFSET, window);
+      putLong(TABLE_SIZE_OFFSET, tableSize);
+      putLong(HEAD_OFFSET, 0);
+      putLong(TAIL_OFFSET, 0);
+    }
+    putInt(CLEAN_OFFSET, 0);
+  }
+
+  private boolean isCompatible(File file, long length) throws IOException {
+    if (!file.exists() || file.length() != length) {
+      return false;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      return raf.readLong() == MAGIC
+          && raf.readInt() == VERSION
+          && raf.readInt() == window
+          && raf.readLong() == tableSize;
+    }
+  }
+
+  private static long nextPowerOfTwo(long value) {
+    return (value <= 1) ? 1 : Long.highestOneBit(value - 1) << 1;
+  }
+
+  public synchronized DeDupIndex retain() {
+    references++;
+    return this;
+  }
+
+  /**
+   * Closes the index once released by all the users that retained it.
+   */
+  public synchronized void release() throws IOException {
+    if (--references == 0) {
+      close();
+    }
+  }
+
+  /**
+   * Adds the hash to the index.
+   *
+   * @return true if the hash was added, false if it was already in the index
+   */
+  public synchronized boolean add(long high, long low) {
+    long now = System.currentTimeMillis();
+    evictExpired(now);
+    long index = find(high, low);
+    if (getTableEntry(index) != 0) {
+      return false;
+    }
+    if (tail - head == window) {
+      evictOldest();
+      // eviction may have moved entries around
+      index = find(high, low);
+    }
+    int slot = (int) (tail % window);
+    long entry = entryOffset(slot);
+    putLong(entry, high);
+    putLong(entry + 8, low);
+    putLong(entry + 16, now);
+    putTableEntry(index, slot + 1);
+    tail++;
+    putLong(TAIL_OFFSET, tail);
+    return true;
+  }
+
+  /**
+   * Evicts hashes older than the time window.
+   */
+  public synchronized void evictExpired() {
+    evictExpired(System.currentTimeMillis());
+  }
+
+  public synchronized long size() {
+    return tail - head;
+  }
+
+  @VisibleForTesting
+  File getFile() {
+    return file;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (persistent) {
+      putInt(CLEAN_OFFSET, 1);
+      for (MappedByteBuffer chunk : chunks) {
+        chunk.force();
+      }
+    }
+    // the mapping itself is released once the buffers are garbage collected
+    randomAccessFile.close();
+    if (!persistent && !file.delete()) {
+      LOG.warn("Could not delete deduplication window '{}'", file);
+    }
+  }
+
+  /**
+   * Returns the table index holding the hash, or the empty table index where the hash belongs.
+   */
+  private long find(long high, long low) {
+    long index = high & tableMask;
+    int value;
+    while ((value = getTableEntry(index)) != 0) {
+      long entry = entryOffset(value - 1);
+      if (getLong(entry) == high && getLong(entry + 8) == low) {
+        break;
+      }
+      index = (index + 1) & tableMask;
+    }
+    return index;
+  }
+
+  private void evictExpired(long now) {
+    if (timeWindowMillis > 0) {
+      while (head < tail && getLong(entryOffset((int) (head % window)) + 16) <= now - timeWindowMillis) {
+        evictOldest();
+      }
+    }
+  }
+
+  private void evictOldest() {
+    int slot = (int) (head % window);
+    long index = getLong(entryOffset(slot)) & tableMask;
+    while (getTableEntry(index) != slot + 1) {
+      index = (index + 1) & tableMask;
+    }
+
+    // Backward shift deletion, entries after the hole that can't be reached anymore are moved into it
+    long hole = index;
+    long next = index;
+    while (true) {
+      next = (next + 1) & tableMask;
+      int value = getTableEntry(next);
+      if (value == 0) {
+        break;
+      }
+      long home = getLong(entryOffset(value - 1)) & tableMask;
+      if (((next - home) & tableMask) >= ((next - hole) & tableMask)) {
+        putTableEntry(hole, value);
+        hole = next;
+      }
+    }
+    putTableEntry(hole, 0);
+
+    head++;
+    putLong(HEAD_OFFSET, head);
+  }
+
+  private void rebuildTable() {
+    for (long index = 0; index < tableSize; index++) {
+      putTableEntry(index, 0);
+    }
+    for (long sequence = head; sequence < tail; sequence++) {
+      int slot = (int) (sequence % window);
+      long entry = entryOffset(slot);
+      putTableEntry(find(getLong(entry), getLong(entry + 8)), slot + 1);
+    }
+  }
+
+  private long entryOffset(int slot) {
+    return HEADER_SIZE + (long) slot * ENTRY_SIZE;
+  }
+
+  private int getTableEntry(long index) {
+    return getInt(tableOffset + index * TABLE_ENTRY_SIZE);
+  }
+
+  private void putTableEntry(long index, int value) {
+    putInt(tableOffset + index * TABLE_ENTRY_SIZE, value);
+  }
+
+  // values are aligned to their size, so they never cross chunk boundaries
+
+  private long getLong(long position) {
+    return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & CHUNK_MASK));
+  }
+
+  private void putLong(long position, long value) {
+    chunks[(int) (position >>> CHUNK_BITS)].putLong((int) (position & CHUNK_MASK), value);
+  }
+
+  private int getInt(long position) {
+    return chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & CHUNK_MASK));
+  }
+
+  private void putInt(long position, int value) {
+    chunks[(int) (position >>> CHUNK_BITS)].putInt((int) (position & CHUNK_MASK), value);
+  }
+
+}
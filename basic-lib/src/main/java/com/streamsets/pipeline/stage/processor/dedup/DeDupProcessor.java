@@ -15,53 +15,55 @@
  */
 package com.streamsets.pipeline.stage.processor.dedup;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
+import com.google.common.primitives.Longs;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.BatchMaker;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.base.OnRecordErrorException;
 import com.streamsets.pipeline.api.base.RecordProcessor;
-import com.streamsets.pipeline.lib.cache.CacheCleaner;
 import com.streamsets.pipeline.lib.hashing.HashingUtil;
-import com.streamsets.pipeline.lib.queue.XEvictingQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 public class DeDupProcessor extends RecordProcessor {
-  private static final long MEMORY_USAGE_PER_HASH = 85;
-  private static final String CACHE_KEY = "cache";
+  private static final String INDEX_KEY = "index";
+  private static final String WINDOW_DIR = "dedup";
+  // Data Collector data directory, given by the runtime through the stage configs
+  private static final String DATA_DIR_CONFIG = "sdc.data.dir";
   private static final Logger LOG = LoggerFactory.getLogger(DeDupProcessor.class);
 
   private final  int recordCountWindow;
   private final  int timeWindowSecs;
   private final  SelectFields compareFields;
   private final  List<String> fieldsToCompare;
-  private CacheCleaner cacheCleaner;
+  private final  boolean persistWindow;
 
   public DeDupProcessor(int recordCountWindow, int timeWindowSecs,
       SelectFields compareFields, List<String> fieldsToCompare) {
+    this(recordCountWindow, timeWindowSecs, compareFields, fieldsToCompare, false);
+  }
+
+  public DeDupProcessor(int recordCountWindow, int timeWindowSecs,
+      SelectFields compareFields, List<String> fieldsToCompare, boolean persistWindow) {
     this.recordCountWindow = recordCountWindow;
     this.timeWindowSecs = timeWindowSecs;
     this.compareFields = compareFields;
     this.fieldsToCompare = fieldsToCompare;
+    this.persistWindow = persistWindow;
   }
 
-  private static final Object VOID = new Object();
-
   private HashFunction hasher;
   private HashingUtil.RecordFunnel funnel;
-  private Cache<HashCode, HashCode> hashCache;
-  private XEvictingQueue<HashCode> hashBuffer;
+  private DeDupIndex index;
   private String uniqueLane;
   private String duplicateLane;
 
@@ -82,40 +84,32 @@ public class DeDupProcessor extends RecordProcessor {
     if (compareFields == SelectFields.SPECIFIED_FIELDS && fieldsToCompare.isEmpty()) {
       issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "compareFields", Errors.DEDUP_02));
     }
-
-    long estimatedMemory = MEMORY_USAGE_PER_HASH * recordCountWindow;
-    long maxPipelineMemoryBytes = getContext().getPipelineMaxMemory() * 1000 * 1000;
-    if (estimatedMemory > maxPipelineMemoryBytes) {
-      issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "recordCountWindow", Errors.DEDUP_03,
-        recordCountWindow, estimatedMemory / (1000 * 1000), getContext().getPipelineMaxMemory()));
-        //MiB to bytes conversion, use  1000 * 1000 instead of 1024 * 1024
+    if (isPersistent() && getContext().getConfig(DATA_DIR_CONFIG) == null) {
+      issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "persistWindow", Errors.DEDUP_05));
     }
+
     if (issues.isEmpty()) {
       hasher = HashingUtil.getHasher(HashingUtil.HashType.MURMUR3_128);
 
       funnel = (compareFields == SelectFields.ALL_FIELDS) ? HashingUtil.getRecordFunnel(Collections.EMPTY_LIST, false, true) :
           HashingUtil.getRecordFunnel(fieldsToCompare, false, true);
 
-      Map<String, Object> runnerSharedMap = getContext().getStageRunnerSharedMap();
-      synchronized (runnerSharedMap) {
-        if(!runnerSharedMap.containsKey(CACHE_KEY)) {
-          CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-          if (timeWindowSecs > 0) {
-            cacheBuilder.expireAfterWrite(timeWindowSecs, TimeUnit.SECONDS);
+      // All runners share the same window, the shared map is concurrent so creation happens only once
+      try {
+        index = ((DeDupIndex) getContext().getStageRunnerSharedMap().computeIfAbsent(INDEX_KEY, key -> {
+          try {
+            return createIndex();
+          } catch (IOException e) {
+            throw new IllegalStateException(e);
           }
-          if(LOG.isDebugEnabled()) {
-            cacheBuilder.recordStats();
-          }
-          hashCache = cacheBuilder.build();
-
-          runnerSharedMap.put(CACHE_KEY, hashCache);
-        } else {
-          hashCache = (Cache<HashCode, HashCode>) runnerSharedMap.get(CACHE_KEY);
-        }
+        })).retain();
+      } catch (IllegalStateException e) {
+        LOG.error("Can't open deduplication window", e);
+        issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "recordCountWindow", Errors.DEDUP_06,
+          e.getCause() == null ? e.toString() : e.getCause().toString()));
+        return issues;
       }
-      cacheCleaner = new CacheCleaner(hashCache, "DeDupProcessor", 10 * 60 * 1000);
 
-      hashBuffer = XEvictingQueue.create(recordCountWindow);
       hashAttrName = getInfo() + ".hash";
       uniqueLane = getContext().getOutputLanes().get(OutputStreams.UNIQUE.ordinal());
       duplicateLane = getContext().getOutputLanes().get(OutputStreams.DUPLICATE.ordinal());
@@ -123,31 +117,62 @@ public class DeDupProcessor extends RecordProcessor {
     return issues;
   }
 
-  boolean duplicateCheck(Record record) throws ExecutionException {
-    HashCode hash = hasher.hashObject(record, funnel);
-    record.getHeader().setAttribute(hashAttrName, hash.toString());
+  // Preview must not change the window a running pipeline will use, it gets a temporary one
+  private boolean isPersistent() {
+    return persistWindow && !getContext().isPreview();
+  }
 
-    HashCode hashInstance = hashCache.get(hash, () -> hash);
-    // We are riding on the fact that if the instance is the same we just added and it is not a dup
-    boolean dup = hashInstance != hash;
+  private DeDupIndex createIndex() throws IOException {
+    File file;
+    boolean persistent = isPersistent();
+    if (persistent) {
+      File dir = new File(
+        new File(getContext().getConfig(DATA_DIR_CONFIG), WINDOW_DIR),
+        getContext().getPipelineId()
+      );
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Could not create directory " + dir);
+      }
+      file = new File(dir, getInfo().getInstanceName() + ".window");
+    } else {
+      file = File.createTempFile("sdc-dedup-", ".window");
+    }
+    return new DeDupIndex(file, persistent, recordCountWindow, timeWindowSecs);
+  }
 
-    // Eviction is done in async manner - e.g. around the eviction time, we can possibly not issue a record because
-    // we still think that it's a duplicate when in facts it's not.
-    if (!dup) {
-      HashCode evicted = hashBuffer.addAndGetEvicted(hash);
-      if (evicted != null) {
-        hashCache.invalidate(evicted);
+  @Override
+  public void destroy() {
+    if (index != null) {
+      try {
+        index.release();
+      } catch (IOException e) {
+        LOG.warn("Error closing deduplication window", e);
       }
+      index = null;
     }
+    super.destroy();
+  }
+
+  @VisibleForTesting
+  DeDupIndex getIndex() {
+    return index;
+  }
+
+  boolean duplicateCheck(Record record) {
+    HashCode hash = hasher.hashObject(record, funnel);
+    record.getHeader().setAttribute(hashAttrName, hash.toString());
 
-    return dup;
+    byte[] bytes = hash.asBytes();
+    long high = Longs.fromBytes(bytes[0], bytes[1], bytes[2], bytes[3], bytes[4], bytes[5], bytes[6], bytes[7]);
+    long low = Longs.fromBytes(bytes[8], bytes[9], bytes[10], bytes[11], bytes[12], bytes[13], bytes[14], bytes[15]);
+    return !index.add(high, low);
   }
 
   @Override
   public void process(Batch batch, BatchMaker batchMaker) throws StageException {
     if (!batch.getRecords().hasNext()) {
-      // No records - take the opportunity to clean up the cache so that we don't hold on to memory indefinitely
-      cacheCleaner.periodicCleanUp();
+      // No records - take the opportunity to evict hashes out of the time window
+      index.evictExpired();
     }
     super.process(batch, batchMaker);
   }
@@ -160,7 +185,7 @@ public class DeDupProcessor extends RecordProcessor {
       } else {
         batchMaker.addRecord(record, uniqueLane);
       }
-    } catch (IllegalArgumentException|ExecutionException e) {
+    } catch (IllegalArgumentException e) {
       LOG.error("Error processing Record", e);
       throw new OnRecordErrorException(Errors.DEDUP_04, e.toString());
     }
@@ -31,6 +31,8 @@ public enum Errors implements ErrorCode {
   DEDUP_03("The estimated required memory for '{}' records is '{}'. The current maximum heap is '{}'. The " +
            "required memory must not exceed the maximum heap."),
   DEDUP_04("Error processing record. Reason: {}"),
+  DEDUP_05("Persisting the window requires the Data Collector data directory, it is not available"),
+  DEDUP_06("Can't open the deduplication window: {}"),
   ;
 
 
@@ -23,13 +23,13 @@ import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.base.OnRecordErrorException;
-import com.streamsets.pipeline.api.base.SingleLaneRecordProcessor;
 import com.streamsets.pipeline.api.el.ELEval;
 import com.streamsets.pipeline.api.el.ELVars;
 import com.streamsets.pipeline.config.OnStagePreConditionFailure;
 import com.streamsets.pipeline.lib.hashing.HashingUtil;
 import com.streamsets.pipeline.lib.util.FieldPathExpressionUtil;
 import com.streamsets.pipeline.lib.util.FieldRegexUtil;
+import com.streamsets.pipeline.stage.processor.parallel.ParallelSingleLaneRecordProcessor;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -37,7 +37,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-public class FieldHasherProcessor extends SingleLaneRecordProcessor {
+public class FieldHasherProcessor extends ParallelSingleLaneRecordProcessor {
   private final HasherConfig hasherConfig;
   private final OnStagePreConditionFailure onStagePreConditionFailure;
   private static final Joiner JOINER = Joiner.on(".");
@@ -48,7 +48,8 @@ public class FieldHasherProcessor extends SingleLaneRecordProcessor {
   );
 
   private ELEval fieldPathEval;
-  private ELVars fieldPathVars;
+  // records are processed in parallel, each thread needs its own variables
+  private ThreadLocal<ELVars> fieldPathVars;
 
   public FieldHasherProcessor(
       HasherConfig hasherConfig,
@@ -150,7 +151,7 @@ public class FieldHasherProcessor extends SingleLaneRecordProcessor {
     }
 
     fieldPathEval = getContext().createELEval("sourceFieldsToHash");
-    fieldPathVars = getContext().createELVars();
+    fieldPathVars = ThreadLocal.withInitial(() -> getContext().createELVars());
 
     return configIssues;
   }
@@ -254,7 +255,7 @@ public class FieldHasherProcessor extends SingleLaneRecordProcessor {
         List<String> matchingFieldsPath = FieldPathExpressionUtil.evaluateMatchingFieldPaths(
             fieldToHash,
             fieldPathEval,
-            fieldPathVars,
+            fieldPathVars.get(),
             record
         );
         matchingFieldsForTheConfig.addAll(matchingFieldsPath);
@@ -19,13 +19,13 @@ import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.base.OnRecordErrorException;
-import com.streamsets.pipeline.api.base.SingleLaneRecordProcessor;
 import com.streamsets.pipeline.api.el.ELEval;
 import com.streamsets.pipeline.api.el.ELVars;
 import com.streamsets.pipeline.api.impl.Utils;
 import com.streamsets.pipeline.config.DecimalScaleRoundingStrategy;
 import com.streamsets.pipeline.lib.util.FieldPathExpressionUtil;
 import com.streamsets.pipeline.stage.common.HeaderAttributeConstants;
+import com.streamsets.pipeline.stage.processor.parallel.ParallelSingleLaneRecordProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,14 +45,15 @@ import java.util.Optional;
 
 import static com.streamsets.pipeline.stage.processor.fieldtypeconverter.Errors.CONVERTER_03;
 
-public class FieldTypeConverterProcessor extends SingleLaneRecordProcessor {
+public class FieldTypeConverterProcessor extends ParallelSingleLaneRecordProcessor {
   private static final Logger LOG = LoggerFactory.getLogger(FieldTypeConverterProcessor.class);
 
   private final ConvertBy convertBy;
   private final List<FieldTypeConverterConfig> fieldTypeConverterConfigs;
   private final List<WholeTypeConverterConfig> wholeTypeConverterConfigs;
   private ELEval fieldPathEval;
-  private ELVars fieldPathVars;
+  // records are processed in parallel, each thread needs its own variables
+  private ThreadLocal<ELVars> fieldPathVars;
 
   public FieldTypeConverterProcessor(
       ConvertBy convertBy,
@@ -71,7 +72,7 @@ public class FieldTypeConverterProcessor extends SingleLaneRecordProcessor {
     wholeTypeConverterConfigs.forEach(config -> validate(config).ifPresent(issues::add));
 
     fieldPathEval = getContext().createELEval("fields");
-    fieldPathVars = getContext().createELVars();
+    fieldPathVars = ThreadLocal.withInitial(() -> getContext().createELVars());
 
     return issues;
   }
@@ -140,7 +141,7 @@ public class FieldTypeConverterProcessor extends SingleLaneRecordProcessor {
         final List<String> matchingFieldPaths = new LinkedList<>(FieldPathExpressionUtil.evaluateMatchingFieldPaths(
             fieldToConvert,
             fieldPathEval,
-            fieldPathVars,
+            fieldPathVars.get(),
             record
         ));
         if (matchingFieldPaths.isEmpty()) {
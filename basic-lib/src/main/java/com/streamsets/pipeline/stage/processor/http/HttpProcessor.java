@@ -15,6 +15,8 @@
  */
 package com.streamsets.pipeline.stage.processor.http;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.RateLimiter;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.Field;
@@ -42,7 +44,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.client.AsyncInvoker;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
@@ -52,8 +56,10 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -71,16 +77,20 @@ public class HttpProcessor extends SingleLaneProcessor {
   private DataParserFactory parserFactory;
   private ErrorRecordHandler errorRecordHandler;
   private RateLimiter rateLimiter;
+  private Semaphore requestPermits;
+  private boolean coalesceRequests;
+  private Cache<RequestKey, ResponseData> responseCache;
 
   private ELVars bodyVars;
   private ELEval bodyEval;
 
-  private class HeadersAndBody {
+  private static class HeadersAndBody {
     final MultivaluedMap<String, Object> resolvedHeaders;
     final String requestBody;
     final String contentType;
     final HttpMethod method;
     final WebTarget target;
+    final RequestKey key;
 
     HeadersAndBody(
         MultivaluedMap<String, Object> headers,
@@ -94,6 +104,103 @@ public class HttpProcessor extends SingleLaneProcessor {
       this.contentType = contentType;
       this.method = method;
       this.target = target;
+      this.key = new RequestKey(method, target.getUri().toString(), headers, requestBody, contentType);
+    }
+  }
+
+  /**
+   * Identifies a resolved request, records resolving to equal keys share the same response when requests are
+   * coalesced or cached.
+   */
+  private static class RequestKey {
+    private final HttpMethod method;
+    private final String url;
+    private final Map<String, List<Object>> headers;
+    private final String requestBody;
+    private final String contentType;
+
+    RequestKey(
+        HttpMethod method,
+        String url,
+        MultivaluedMap<String, Object> headers,
+        String requestBody,
+        String contentType
+    ) {
+      this.method = method;
+      this.url = url;
+      this.headers = new HashMap<>(headers);
+      this.requestBody = requestBody;
+      this.contentType = contentType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof RequestKey)) {
+        return false;
+      }
+      RequestKey other = (RequestKey) o;
+      return method == other.method &&
+          url.equals(other.url) &&
+          headers.equals(other.headers) &&
+          Objects.equals(requestBody, other.requestBody) &&
+          Objects.equals(contentType, other.contentType);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(method, url, headers, requestBody, contentType);
+    }
+  }
+
+  /**
+   * Status, headers and entity of a response, read once and kept so it can be shared and cached.
+   */
+  private static class ResponseData {
+    final int status;
+    final String reasonPhrase;
+    final String body;
+    final MultivaluedMap<String, String> headers;
+
+    ResponseData(Response response) {
+      this.status = response.getStatus();
+      this.reasonPhrase = response.getStatusInfo().getReasonPhrase();
+      this.body = response.hasEntity() ? response.readEntity(String.class) : "";
+      this.headers = new MultivaluedHashMap<>(response.getStringHeaders());
+      response.close();
+    }
+  }
+
+  /**
+   * Response of a request sent for (or found in the cache for) a record, shared with the other records of the batch
+   * resolving to the same request when requests are coalesced.
+   */
+  private static class SharedResponse {
+    final RequestKey key;
+    private final Future<Response> future;
+    private ResponseData data;
+    private boolean cached;
+    private boolean tokenRefreshed;
+
+    SharedResponse(RequestKey key, Future<Response> future) {
+      this.key = key;
+      this.future = future;
+    }
+
+    SharedResponse(RequestKey key, ResponseData data) {
+      this(key, (Future<Response>) null);
+      this.data = data;
+      this.cached = true;
+    }
+
+    ResponseData get(long maxRequestCompletionSecs) throws InterruptedException, ExecutionException,
+        TimeoutException {
+      if (data == null) {
+        data = new ResponseData(future.get(maxRequestCompletionSecs, TimeUnit.SECONDS));
+      }
+      return data;
     }
   }
 
@@ -117,6 +224,17 @@ public class HttpProcessor extends SingleLaneProcessor {
 
     double rateLimit = conf.rateLimit > 0 ? (1000.0 / conf.rateLimit) : Double.MAX_VALUE;
     rateLimiter = RateLimiter.create(rateLimit);
+    requestPermits = conf.maxConcurrentRequests > 0 ? new Semaphore(conf.maxConcurrentRequests) : null;
+
+    // only requests without side effects are shared, each record still sends its own write request
+    boolean readOnlyMethod = conf.httpMethod == HttpMethod.GET || conf.httpMethod == HttpMethod.HEAD;
+    coalesceRequests = conf.coalesceRequests && readOnlyMethod;
+    if (conf.cache.enabled && readOnlyMethod) {
+      responseCache = CacheBuilder.newBuilder()
+          .maximumSize(conf.cache.maxSize == -1 ? Long.MAX_VALUE : conf.cache.maxSize)
+          .expireAfterWrite(conf.cache.expirationTimeSecs, TimeUnit.SECONDS)
+          .build();
+    }
 
     httpClientCommon.init(issues, getContext());
 
@@ -148,7 +266,8 @@ public class HttpProcessor extends SingleLaneProcessor {
   /** {@inheritDoc} */
   @Override
   public void process(Batch batch, SingleLaneBatchMaker batchMaker) throws StageException {
-    List<Future<Response>> responses = new ArrayList<>();
+    List<SharedResponse> responses = new ArrayList<>();
+    Map<RequestKey, SharedResponse> requests = new HashMap<>();
     resolvedRecords.clear();
 
     Iterator<Record> records = batch.getRecords();
@@ -169,23 +288,27 @@ public class HttpProcessor extends SingleLaneProcessor {
 
       String contentType = HttpStageUtil.getContentTypeWithDefault(resolvedHeaders, conf.defaultRequestContentType);
 
-      final AsyncInvoker asyncInvoker = target.request()
-          .property(OAuth1ClientSupport.OAUTH_PROPERTY_ACCESS_TOKEN, httpClientCommon.getAuthToken())
-          .headers(resolvedHeaders)
-          .async();
-
       HttpMethod method = httpClientCommon.getHttpMethod(conf.httpMethod, conf.methodExpression, record);
 
-      rateLimiter.acquire();
+      HeadersAndBody headersAndBody;
       if (conf.requestBody != null && !conf.requestBody.isEmpty() && method != HttpMethod.GET) {
         RecordEL.setRecordInContext(bodyVars, record);
         final String requestBody = bodyEval.eval(bodyVars, conf.requestBody, String.class);
-        resolvedRecords.put(record, new HeadersAndBody(resolvedHeaders, requestBody, contentType, method, target));
-        responses.add(asyncInvoker.method(method.getLabel(), Entity.entity(requestBody, contentType)));
+        headersAndBody = new HeadersAndBody(resolvedHeaders, requestBody, contentType, method, target);
       } else {
-        resolvedRecords.put(record, new HeadersAndBody(resolvedHeaders, null, null, method, target));
-        responses.add(asyncInvoker.method(method.getLabel()));
+        headersAndBody = new HeadersAndBody(resolvedHeaders, null, null, method, target);
+      }
+      resolvedRecords.put(record, headersAndBody);
+
+      SharedResponse response = coalesceRequests ? requests.get(headersAndBody.key) : null;
+      if (response == null) {
+        ResponseData cached = (responseCache != null) ? responseCache.getIfPresent(headersAndBody.key) : null;
+        response = (cached != null) ? new SharedResponse(headersAndBody.key, cached) : sendRequest(headersAndBody);
+        if (coalesceRequests) {
+          requests.put(headersAndBody.key, response);
+        }
       }
+      responses.add(response);
     }
 
     records = batch.getRecords();
@@ -197,6 +320,8 @@ public class HttpProcessor extends SingleLaneProcessor {
           batchMaker.addRecord(record);
         }
       } catch (OnRecordErrorException e) {
+        // only the records rejected with a 403 are sent again once the OAuth2 token is renewed
+        resolvedRecords.remove(e.getRecord());
         errorRecordHandler.onError(e);
       } finally {
         ++recordNum;
@@ -207,21 +332,67 @@ public class HttpProcessor extends SingleLaneProcessor {
     }
   }
 
-  private void reprocessIfRequired(SingleLaneBatchMaker batchMaker) throws StageException {
-    Map<Record, Future<Response>> responses = new HashMap<>(resolvedRecords.size());
-    for(Map.Entry<Record, HeadersAndBody> entry : resolvedRecords.entrySet()) {
-      HeadersAndBody hb = entry.getValue();
-      Future<Response> responseFuture;
-      final AsyncInvoker asyncInvoker = hb.target.request()
-          .headers(hb.resolvedHeaders).async();
+  /**
+   * Sends the request asynchronously, waiting first for a free permit if the number of concurrent requests is
+   * limited.
+   */
+  private SharedResponse sendRequest(HeadersAndBody hb) {
+    final AsyncInvoker asyncInvoker = hb.target.request()
+        .property(OAuth1ClientSupport.OAUTH_PROPERTY_ACCESS_TOKEN, httpClientCommon.getAuthToken())
+        .headers(hb.resolvedHeaders)
+        .async();
+
+    Future<Response> responseFuture;
+    if (requestPermits != null) {
+      requestPermits.acquireUninterruptibly();
+      rateLimiter.acquire();
+      InvocationCallback<Response> releasePermit = new InvocationCallback<Response>() {
+        @Override
+        public void completed(Response response) {
+          requestPermits.release();
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+          requestPermits.release();
+        }
+      };
+      if (hb.requestBody != null) {
+        responseFuture = asyncInvoker.method(
+            hb.method.getLabel(),
+            Entity.entity(hb.requestBody, hb.contentType),
+            releasePermit
+        );
+      } else {
+        responseFuture = asyncInvoker.method(hb.method.getLabel(), releasePermit);
+      }
+    } else {
+      rateLimiter.acquire();
       if (hb.requestBody != null) {
         responseFuture = asyncInvoker.method(hb.method.getLabel(), Entity.entity(hb.requestBody, hb.contentType));
       } else {
         responseFuture = asyncInvoker.method(hb.method.getLabel());
       }
-      responses.put(entry.getKey(), responseFuture);
     }
-    for (Map.Entry<Record, Future<Response>> entry : responses.entrySet()) {
+    return new SharedResponse(hb.key, responseFuture);
+  }
+
+  private void reprocessIfRequired(SingleLaneBatchMaker batchMaker) throws StageException {
+    Map<RequestKey, SharedResponse> requests = new HashMap<>();
+    Map<Record, SharedResponse> responses = new HashMap<>(resolvedRecords.size());
+    for(Map.Entry<Record, HeadersAndBody> entry : resolvedRecords.entrySet()) {
+      HeadersAndBody hb = entry.getValue();
+      SharedResponse response = coalesceRequests ? requests.get(hb.key) : null;
+      if (response == null) {
+        // retries are limited by the rate limit and the concurrent requests limit like the first requests
+        response = sendRequest(hb);
+        if (coalesceRequests) {
+          requests.put(hb.key, response);
+        }
+      }
+      responses.put(entry.getKey(), response);
+    }
+    for (Map.Entry<Record, SharedResponse> entry : responses.entrySet()) {
       Record output = processResponse(entry.getKey(), entry.getValue(), conf.maxRequestCompletionSecs, true);
       if (output != null) {
         batchMaker.addRecord(output);
@@ -235,42 +406,45 @@ public class HttpProcessor extends SingleLaneProcessor {
    * and continues to parse the response if it is deemed ok.
    *
    * @param record the current record to set in context for any expression evaluation
-   * @param responseFuture the async HTTP request future
+   * @param sharedResponse the response of the record request, shared with the records resolving to the same request
    * @param maxRequestCompletionSecs maximum time to wait for request completion (start to finish)
    * @return parsed record from the request
    * @throws StageException if the request fails, times out, or cannot be parsed
    */
   private Record processResponse(
       Record record,
-      Future<Response> responseFuture,
+      SharedResponse sharedResponse,
       long maxRequestCompletionSecs,
       boolean failOn403
   ) throws StageException {
 
-    Response response;
+    ResponseData response;
     try {
-      response = responseFuture.get(maxRequestCompletionSecs, TimeUnit.SECONDS);
-      String responseBody = "";
-      if (response.hasEntity()) {
-        responseBody = response.readEntity(String.class);
-      }
-      response.close();
-      if (conf.client.useOAuth2 && response.getStatus() == 403 && !failOn403) {
-        HttpStageUtil.getNewOAuth2Token(conf.client.oauth2, httpClientCommon.getClient());
+      response = sharedResponse.get(maxRequestCompletionSecs);
+      if (conf.client.useOAuth2 && response.status == 403 && !failOn403) {
+        // the token is renewed once for all the records sharing the response
+        if (!sharedResponse.tokenRefreshed) {
+          HttpStageUtil.getNewOAuth2Token(conf.client.oauth2, httpClientCommon.getClient());
+          sharedResponse.tokenRefreshed = true;
+        }
         return null;
-      } else if (response.getStatus() < 200 || response.getStatus() >= 300) {
+      } else if (response.status < 200 || response.status >= 300) {
         throw new OnRecordErrorException(
             record,
             Errors.HTTP_01,
-            response.getStatus(),
-            response.getStatusInfo().getReasonPhrase() + " " + responseBody
+            response.status,
+            response.reasonPhrase + " " + response.body
         );
       }
+      if (responseCache != null && !sharedResponse.cached) {
+        responseCache.put(sharedResponse.key, response);
+        sharedResponse.cached = true;
+      }
       resolvedRecords.remove(record);
-      Record parsedResponse = parseResponse(responseBody);
+      Record parsedResponse = parseResponse(response.body);
       if (parsedResponse != null) {
         record.set(conf.outputField, parsedResponse.get());
-        addResponseHeaders(record, response);
+        addResponseHeaders(record, response.headers);
       }
       return record;
     } catch (InterruptedException | ExecutionException e) {
@@ -309,10 +483,11 @@ public class HttpProcessor extends SingleLaneProcessor {
    * Populates HTTP response headers to the configured location
    *
    * @param record current record to populate
-   * @param response HTTP response
+   * @param responseHeaders HTTP response headers
    * @throws StageException when writing headers to a field path that already exists
    */
-  private void addResponseHeaders(Record record, Response response) throws StageException {
+  private void addResponseHeaders(Record record, MultivaluedMap<String, String> responseHeaders)
+      throws StageException {
     if (conf.headerOutputLocation == HeaderOutputLocation.NONE) {
       return;
     }
@@ -320,9 +495,9 @@ public class HttpProcessor extends SingleLaneProcessor {
     Record.Header header = record.getHeader();
 
     if (conf.headerOutputLocation == HeaderOutputLocation.FIELD) {
-      writeResponseHeaderToField(record, response);
+      writeResponseHeaderToField(record, responseHeaders);
     } else if (conf.headerOutputLocation == HeaderOutputLocation.HEADER) {
-      writeResponseHeaderToRecordHeader(response, header);
+      writeResponseHeaderToRecordHeader(responseHeaders, header);
     }
   }
 
@@ -330,16 +505,17 @@ public class HttpProcessor extends SingleLaneProcessor {
    * Writes HTTP response headers to the SDC Record at the configured field path.
    *
    * @param record Record to populate with response headers.
-   * @param response HTTP response
+   * @param responseHeaders HTTP response headers
    * @throws StageException if the field path already exists
    */
-  private void writeResponseHeaderToField(Record record, Response response) throws StageException {
+  private void writeResponseHeaderToField(Record record, MultivaluedMap<String, String> responseHeaders)
+      throws StageException {
     if (record.has(conf.headerOutputField)) {
       throw new StageException(Errors.HTTP_11, conf.headerOutputField);
     }
-    Map<String, Field> headers = new HashMap<>(response.getStringHeaders().size());
+    Map<String, Field> headers = new HashMap<>(responseHeaders.size());
 
-    for (Map.Entry<String, List<String>> entry : response.getStringHeaders().entrySet()) {
+    for (Map.Entry<String, List<String>> entry : responseHeaders.entrySet()) {
       if (!entry.getValue().isEmpty()) {
         String firstValue = entry.getValue().get(0);
         headers.put(entry.getKey(), Field.create(firstValue));
@@ -352,11 +528,11 @@ public class HttpProcessor extends SingleLaneProcessor {
   /**
    * Writes HTTP response headers to the SDC Record header with the configured optional prefix.
    *
-   * @param response HTTP response
+   * @param responseHeaders HTTP response headers
    * @param header SDC Record header
    */
-  private void writeResponseHeaderToRecordHeader(Response response, Record.Header header) {
-    for (Map.Entry<String, List<String>> entry : response.getStringHeaders().entrySet()) {
+  private void writeResponseHeaderToRecordHeader(MultivaluedMap<String, String> responseHeaders, Record.Header header) {
+    for (Map.Entry<String, List<String>> entry : responseHeaders.entrySet()) {
       if (!entry.getValue().isEmpty()) {
         String firstValue = entry.getValue().get(0);
         header.setAttribute(conf.headerAttributePrefix + entry.getKey(), firstValue);
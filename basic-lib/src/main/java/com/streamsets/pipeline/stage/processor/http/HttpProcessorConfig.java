@@ -196,6 +196,35 @@ public class HttpProcessorConfig {
   )
   public int rateLimit;
 
+  @ConfigDef(
+      required = false,
+      type = ConfigDef.Type.NUMBER,
+      label = "Maximum Concurrent Requests",
+      defaultValue = "0",
+      min = 0,
+      description = "Maximum number of requests in flight at any time (0 for unlimited).",
+      displayPosition = 170,
+      group = "HTTP"
+  )
+  public int maxConcurrentRequests;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      label = "Coalesce Identical Requests",
+      description = "Select to send a single request for the records of a batch resolving to the same URL and " +
+          "headers. Applies to the GET and HEAD methods only",
+      defaultValue = "false",
+      displayPosition = 175,
+      dependsOn = "httpMethod",
+      triggeredByValue = { "GET", "HEAD" },
+      group = "HTTP"
+  )
+  public boolean coalesceRequests = false;
+
+  @ConfigDefBean(groups = "HTTP")
+  public ResponseCacheConfig cache = new ResponseCacheConfig();
+
   @ConfigDef(
       required = true,
       type = ConfigDef.Type.NUMBER,
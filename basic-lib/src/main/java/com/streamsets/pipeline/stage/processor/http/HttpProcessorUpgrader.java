@@ -88,6 +88,12 @@ public class HttpProcessorUpgrader implements StageUpgrader {
         // fall through
       case 9:
         upgradeV9ToV10(configs);
+        if (toVersion == 10) {
+          break;
+        }
+        // fall through
+      case 10:
+        upgradeV10ToV11(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -156,4 +162,12 @@ public class HttpProcessorUpgrader implements StageUpgrader {
     configs.removeAll(configsToRemove);
     configs.addAll(configsToAdd);
   }
+
+  private void upgradeV10ToV11(List<Config> configs) {
+    configs.add(new Config(joiner.join(CONF, "maxConcurrentRequests"), 0));
+    configs.add(new Config(joiner.join(CONF, "coalesceRequests"), false));
+    configs.add(new Config(joiner.join(CONF, "cache", "enabled"), false));
+    configs.add(new Config(joiner.join(CONF, "cache", "maxSize"), -1));
+    configs.add(new Config(joiner.join(CONF, "cache", "expirationTimeSecs"), 60));
+  }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.http;
+
+import com.streamsets.pipeline.api.ConfigDef;
+
+/**
+ * Bean specifying the local cache of successful responses of an HttpProcessor instance.
+ */
+public class ResponseCacheConfig {
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      label = "Enable Response Caching",
+      description = "Select to reuse the response of a request for the records resolving to the same URL and " +
+          "headers. Applies to the GET and HEAD methods only. Use it only when responses rarely change",
+      defaultValue = "false",
+      displayPosition = 180,
+      group = "#0"
+  )
+  public boolean enabled = false;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      label = "Maximum Responses to Cache",
+      min = -1,
+      defaultValue = "-1",
+      description = "Maximum number of responses to cache. If exceeded, oldest responses are evicted to make room. " +
+          "Default value is -1 which is unlimited",
+      dependsOn = "enabled",
+      triggeredByValue = "true",
+      displayPosition = 190,
+      group = "#0"
+  )
+  public long maxSize = -1;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      label = "Expiration Time (sec)",
+      min = 1,
+      defaultValue = "60",
+      description = "Time after which a cached response is requested again",
+      dependsOn = "enabled",
+      triggeredByValue = "true",
+      displayPosition = 200,
+      group = "#0"
+  )
+  public long expirationTimeSecs = 60;
+}
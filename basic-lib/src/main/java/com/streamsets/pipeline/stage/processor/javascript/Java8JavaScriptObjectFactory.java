@@ -60,7 +60,9 @@ public class Java8JavaScriptObjectFactory extends ScriptObjectFactory {
   protected Field scriptToField(Object scriptObject, Record record, String path) {
     Field field;
     if (scriptObject != null) {
-      if (SCRIPT_OBJECT_MIRROR_CLASS.isInstance(scriptObject)) {
+      if (scriptObject instanceof ScriptView) {
+        field = ((ScriptView) scriptObject).toField(record, path);
+      } else if (SCRIPT_OBJECT_MIRROR_CLASS.isInstance(scriptObject)) {
         try {
           Set set = (Set) ENTRY_SET_METHOD.invoke(scriptObject);
           if ((boolean) IS_ARRAY_METHOD.invoke(scriptObject)) {
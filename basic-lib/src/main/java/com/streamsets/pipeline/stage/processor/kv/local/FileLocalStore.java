@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.kv.local;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read only store of the values loaded from a static store file.
+ */
+public class FileLocalStore implements LocalLookupStore {
+
+  private volatile OffHeapStringMap values;
+
+  public FileLocalStore(OffHeapStringMap values) {
+    this.values = values;
+  }
+
+  @Override
+  public Optional<String> get(String key) {
+    return Optional.fromNullable(values.get(key));
+  }
+
+  /**
+   * Returns a view of the values of the given keys, values are looked up when read so no map is built per call.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Map<String, Optional<String>> get(Collection<String> keys) {
+    Set<String> keySet = (keys instanceof Set) ? (Set<String>) keys : new LinkedHashSet<>(keys);
+    return Maps.asMap(keySet, key -> get(key));
+  }
+
+  /**
+   * Replaces the values with a newer load of the file.
+   */
+  public void replace(OffHeapStringMap newValues) {
+    OffHeapStringMap previous = values;
+    values = newValues;
+    previous.close();
+  }
+
+  @Override
+  public void close() {
+    values.close();
+  }
+}
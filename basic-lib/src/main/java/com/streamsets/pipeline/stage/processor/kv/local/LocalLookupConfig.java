@@ -28,15 +28,94 @@ import java.util.List;
 import java.util.Map;
 
 public class LocalLookupConfig {
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.MODEL,
+      label = "Values Source",
+      description = "Take the values from the pipeline configuration or load them from a local file",
+      defaultValue = "CONFIGURATION",
+      displayPosition = 10,
+      group = "LOCAL"
+  )
+  @ValueChooserModel(LocalStoreSourceChooserValues.class)
+  public LocalStoreSource source = LocalStoreSource.CONFIGURATION;
+
   @ConfigDef(
       required = false,
       type = ConfigDef.Type.MAP,
       label = "Values",
       displayPosition = 20,
-      group = "LOCAL"
+      group = "LOCAL",
+      dependsOn = "source",
+      triggeredByValue = "CONFIGURATION"
   )
   public Map<String, String> values = new HashMap<>();
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.STRING,
+      label = "File Path",
+      description = "Absolute path of the file with the values, it is loaded out of the Java heap",
+      displayPosition = 30,
+      group = "LOCAL",
+      dependsOn = "source",
+      triggeredByValue = "FILE"
+  )
+  public String filePath = "";
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.MODEL,
+      label = "File Format",
+      defaultValue = "DELIMITED",
+      displayPosition = 40,
+      group = "LOCAL",
+      dependsOn = "source",
+      triggeredByValue = "FILE"
+  )
+  @ValueChooserModel(LocalStoreFileFormatChooserValues.class)
+  public LocalStoreFileFormat fileFormat = LocalStoreFileFormat.DELIMITED;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.STRING,
+      label = "Key Field",
+      description = "Column name for delimited files, property name for JSON files or field path for SDC records",
+      defaultValue = "key",
+      displayPosition = 50,
+      group = "LOCAL",
+      dependsOn = "source",
+      triggeredByValue = "FILE"
+  )
+  public String keyField = "key";
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.STRING,
+      label = "Value Field",
+      description = "Column name for delimited files, property name for JSON files or field path for SDC records",
+      defaultValue = "value",
+      displayPosition = 60,
+      group = "LOCAL",
+      dependsOn = "source",
+      triggeredByValue = "FILE"
+  )
+  public String valueField = "value";
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      label = "Reload Interval (secs)",
+      description = "How often to check if the file changed and reload it, 0 to load it only on pipeline start",
+      defaultValue = "0",
+      min = 0,
+      displayPosition = 70,
+      group = "LOCAL",
+      dependsOn = "source",
+      triggeredByValue = "FILE"
+  )
+  public int reloadIntervalSecs = 0;
+
   @ConfigDef(
       required = true,
       type = ConfigDef.Type.MODEL,
@@ -63,4 +142,8 @@ public class LocalLookupConfig {
   public LocalStore createStore() {
     return new LocalStore(this);
   }
+
+  public FileLocalStore createStore(OffHeapStringMap fileValues) {
+    return new FileLocalStore(fileValues);
+  }
 }
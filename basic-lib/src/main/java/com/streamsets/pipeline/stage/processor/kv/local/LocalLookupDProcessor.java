@@ -23,10 +23,11 @@ import com.streamsets.pipeline.api.StageDef;
 import com.streamsets.pipeline.configurablestage.DProcessor;
 
 @StageDef(
-    version = 1,
+    version = 2,
     label = "Static Lookup",
     description = "Performs key-value lookups in static table.",
     icon = "dedup.png",
+    upgrader = LocalLookupProcessorUpgrader.class,
     onlineHelpRefUrl = "index.html#Processors/StaticLookup.html#task_xk1_z4r_pv"
 )
 @ConfigGroups(Groups.class)
@@ -15,7 +15,9 @@
  */
 package com.streamsets.pipeline.stage.processor.kv.local;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.BatchMaker;
 import com.streamsets.pipeline.api.Field;
@@ -35,6 +37,8 @@ import com.streamsets.pipeline.stage.processor.kv.LookupParameterConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.HashMap;
@@ -42,6 +46,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static com.streamsets.pipeline.stage.processor.kv.LookupMode.BATCH;
 import static com.streamsets.pipeline.stage.processor.kv.LookupMode.RECORD;
@@ -54,7 +61,13 @@ public class LocalLookupProcessor extends BaseProcessor {
   private ErrorRecordHandler error;
   private ELEval keyExprEval;
 
-  protected LocalStore store;
+  protected LocalLookupStore store;
+  // same instance as store when the values come from a file, reloads replace its values
+  private FileLocalStore fileStore;
+
+  private LocalStoreLoader loader;
+  private long lastModified;
+  private ScheduledExecutorService reloadExecutor;
 
   public LocalLookupProcessor(LocalLookupConfig conf) {
     this.conf = conf;
@@ -64,7 +77,28 @@ public class LocalLookupProcessor extends BaseProcessor {
   protected List<ConfigIssue> init() {
     List<ConfigIssue> issues = super.init();
 
-    if(this.conf.values.isEmpty()) {
+    OffHeapStringMap fileValues = null;
+    if (conf.source == LocalStoreSource.FILE) {
+      loader = new LocalStoreLoader(conf, getContext());
+      File file = loader.getFile();
+      if (!file.isFile() || !file.canRead()) {
+        issues.add(getContext().createConfigIssue(Groups.LOCAL.name(), "conf.filePath", Errors.LOOKUP_04, file));
+      } else {
+        try {
+          lastModified = file.lastModified();
+          fileValues = loader.load();
+        } catch (IOException e) {
+          LOG.error(Errors.LOOKUP_05.getMessage(), file, e.toString(), e);
+          issues.add(getContext().createConfigIssue(
+              Groups.LOCAL.name(),
+              "conf.filePath",
+              Errors.LOOKUP_05,
+              file,
+              e.toString()
+          ));
+        }
+      }
+    } else if(this.conf.values.isEmpty()) {
       issues.add(getContext().createConfigIssue(
           Groups.LOCAL.name(),
           this.conf.values.toString(),
@@ -75,12 +109,49 @@ public class LocalLookupProcessor extends BaseProcessor {
     if (issues.isEmpty()) {
       error = new DefaultErrorRecordHandler(getContext());
       keyExprEval = getContext().createELEval("keyExpr");
-      store = conf.createStore();
+      if (fileValues != null) {
+        fileStore = conf.createStore(fileValues);
+        store = fileStore;
+        if (conf.reloadIntervalSecs > 0) {
+          reloadExecutor = Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Static Lookup Reload-%d").build()
+          );
+          reloadExecutor.scheduleWithFixedDelay(
+              this::reloadIfModified,
+              conf.reloadIntervalSecs,
+              conf.reloadIntervalSecs,
+              TimeUnit.SECONDS
+          );
+        }
+      } else {
+        store = conf.createStore();
+      }
+    } else if (fileValues != null) {
+      fileValues.close();
     }
 
     return issues;
   }
 
+  /**
+   * Reloads the static store file if it was modified since the last load, the new values replace the current ones
+   * only when the whole file has been loaded. On failure the current values are kept.
+   */
+  @VisibleForTesting
+  void reloadIfModified() {
+    File file = loader.getFile();
+    long modified = file.lastModified();
+    if (modified == 0 || modified == lastModified) {
+      return;
+    }
+    try {
+      fileStore.replace(loader.load());
+      lastModified = modified;
+    } catch (Exception e) {
+      LOG.error(Errors.LOOKUP_05.getMessage(), file, e.toString(), e);
+    }
+  }
+
   @Override
   public void process(Batch batch, BatchMaker batchMaker) throws StageException {
     if (!batch.getRecords().hasNext()) {
@@ -201,6 +272,14 @@ public class LocalLookupProcessor extends BaseProcessor {
   @Override
   public void destroy() {
     super.destroy();
+    if (reloadExecutor != null) {
+      reloadExecutor.shutdownNow();
+      try {
+        reloadExecutor.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
     if (store != null) {
       try {
         store.close();
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.kv.local;
+
+import com.google.common.base.Optional;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Values the Static Lookup processor looks keys up in.
+ */
+public interface LocalLookupStore extends AutoCloseable {
+
+  Optional<String> get(String key);
+
+  Map<String, Optional<String>> get(Collection<String> keys);
+
+}
@@ -16,12 +16,14 @@
 package com.streamsets.pipeline.stage.processor.kv.local;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
-public class LocalStore {
+public class LocalStore implements LocalLookupStore {
 
   private final LocalLookupConfig conf;
 
@@ -29,16 +31,19 @@ public class LocalStore {
     this.conf = conf;
   }
 
+  @Override
   public Optional<String> get(String key) {
     return Optional.fromNullable(conf.values.get(key));
   }
 
+  /**
+   * Returns a view of the values of the given keys, values are looked up when read so no map is built per call.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
   public Map<String, Optional<String>> get(Collection<String> keys) {
-    Map<String, Optional<String>> values = new HashMap<>();
-    for (String key : keys) {
-      values.put(key, Optional.fromNullable(conf.values.get(key)));
-    }
-    return values;
+    Set<String> keySet = (keys instanceof Set) ? (Set<String>) keys : new LinkedHashSet<>(keys);
+    return Maps.asMap(keySet, key -> get(key));
   }
 
   public void put(String key, String value) {
@@ -49,6 +54,7 @@ public class LocalStore {
     conf.values.putAll(entries);
   }
 
+  @Override
   public void close() throws Exception {
     // no-op
   }
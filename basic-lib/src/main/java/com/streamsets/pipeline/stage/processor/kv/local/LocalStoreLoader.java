@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.kv.local;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.Stage;
+import com.streamsets.pipeline.api.ext.ContextExtensions;
+import com.streamsets.pipeline.api.ext.RecordReader;
+import com.streamsets.pipeline.api.impl.Utils;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Loads the key/value pairs of a static store file into an {@link OffHeapStringMap}.
+ * <p/>
+ * The key and value fields are column names of the header line for delimited files, property names of the root
+ * objects for JSON files (multiple objects or an array of objects) and field paths for SDC record files. Entries
+ * without key or value are skipped.
+ */
+public class LocalStoreLoader {
+  private static final Logger LOG = LoggerFactory.getLogger(LocalStoreLoader.class);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final LocalLookupConfig conf;
+  private final Stage.Context context;
+
+  public LocalStoreLoader(LocalLookupConfig conf, Stage.Context context) {
+    this.conf = conf;
+    this.context = context;
+  }
+
+  public File getFile() {
+    return new File(conf.filePath);
+  }
+
+  public OffHeapStringMap load() throws IOException {
+    long start = System.currentTimeMillis();
+    OffHeapStringMap.Builder builder = new OffHeapStringMap.Builder(null);
+    try (InputStream is = new BufferedInputStream(new FileInputStream(getFile()))) {
+      switch (conf.fileFormat) {
+        case DELIMITED:
+          loadDelimited(is, builder);
+          break;
+        case JSON:
+          loadJson(is, builder);
+          break;
+        case SDC_RECORD:
+          loadRecords(is, builder);
+          break;
+        default:
+          throw new IllegalArgumentException(Utils.format("Unrecognized file format: '{}'", conf.fileFormat));
+      }
+    } catch (IOException | RuntimeException ex) {
+      builder.discard();
+      throw ex;
+    }
+    OffHeapStringMap values = builder.build();
+    LOG.info(
+        "Loaded '{}' keys from static store file '{}' in '{}' ms",
+        values.size(),
+        conf.filePath,
+        System.currentTimeMillis() - start
+    );
+    return values;
+  }
+
+  private void loadDelimited(InputStream is, OffHeapStringMap.Builder builder) throws IOException {
+    Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+    try (CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+      if (!parser.getHeaderMap().containsKey(conf.keyField) || !parser.getHeaderMap().containsKey(conf.valueField)) {
+        throw new IOException(Utils.format(
+            "Header line does not have the key column '{}' and the value column '{}'",
+            conf.keyField,
+            conf.valueField
+        ));
+      }
+      for (CSVRecord csvRecord : parser) {
+        if (csvRecord.isSet(conf.keyField) && csvRecord.isSet(conf.valueField)) {
+          builder.put(csvRecord.get(conf.keyField), csvRecord.get(conf.valueField));
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void loadJson(InputStream is, OffHeapStringMap.Builder builder) throws IOException {
+    try (MappingIterator<Map<String, Object>> iterator = OBJECT_MAPPER.readerFor(Map.class).readValues(is)) {
+      while (iterator.hasNext()) {
+        Map<String, Object> object = iterator.next();
+        Object key = object.get(conf.keyField);
+        Object value = object.get(conf.valueField);
+        if (key != null && value != null) {
+          builder.put(toString(key), toString(value));
+        }
+      }
+    }
+  }
+
+  private static String toString(Object value) throws IOException {
+    // nested objects and arrays are kept as JSON
+    return (value instanceof Map || value instanceof Iterable)
+        ? OBJECT_MAPPER.writeValueAsString(value)
+        : value.toString();
+  }
+
+  private void loadRecords(InputStream is, OffHeapStringMap.Builder builder) throws IOException {
+    RecordReader reader = ((ContextExtensions) context).createRecordReader(is, 0, -1);
+    try {
+      Record record;
+      while ((record = reader.readRecord()) != null) {
+        Field key = record.get(conf.keyField);
+        Field value = record.get(conf.valueField);
+        if (key != null && key.getValue() != null && value != null && value.getValue() != null) {
+          builder.put(key.getValueAsString(), value.getValueAsString());
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+}
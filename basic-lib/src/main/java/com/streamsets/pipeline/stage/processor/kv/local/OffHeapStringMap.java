@@ -0,0 +1,311 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.kv.local;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read only String to String map kept out of the Java heap, for large static lookup tables.
+ * <p/>
+ * Entries are stored UTF-8 encoded as {@code <key length><value length><key><value>} in a memory mapped temporary
+ * file, with an open addressing hash table of entry offsets (in another mapped file) to find them. A lookup costs
+ * the encoding of the key and a few probes, the heap usage does not depend on the number of entries.
+ * <p/>
+ * Instances are created with a {@link Builder}, entries are appended first and the hash table is built at the end
+ * when the number of entries is known. Built maps are safe for concurrent reads.
+ */
+public class OffHeapStringMap implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapStringMap.class);
+
+  static final int CHUNK_BITS = 28;
+  static final int CHUNK_SIZE = 1 << CHUNK_BITS; // 256MB
+  private static final int ENTRY_HEADER_SIZE = 8;
+
+  private final Region data;
+  private final Region table;
+  private final long tableMask;
+  private final long size;
+
+  private OffHeapStringMap(Region data, Region table, long tableMask, long size) {
+    this.data = data;
+    this.table = table;
+    this.tableMask = tableMask;
+    this.size = size;
+  }
+
+  /**
+   * Returns the number of distinct keys.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the value of the given key, or NULL if the key is not in the map.
+   */
+  public String get(String key) {
+    if (key == null) {
+      return null;
+    }
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    long offset = find(data, table, tableMask, keyBytes);
+    if (offset < 0) {
+      return null;
+    }
+    int keyLength = data.getInt(offset);
+    int valueLength = data.getInt(offset + 4);
+    return new String(data.getBytes(offset + ENTRY_HEADER_SIZE + keyLength, valueLength), StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() {
+    data.close();
+    table.close();
+  }
+
+  /**
+   * Returns the data offset of the entry with the given key, or -1 - the free table slot for it if not found.
+   */
+  private static long find(Region data, Region table, long tableMask, byte[] key) {
+    long slot = hash(key) & tableMask;
+    while (true) {
+      long offset = table.getLong(slot << 3) - 1;
+      if (offset < 0) {
+        return -1 - slot;
+      }
+      if (data.keyEquals(offset, key)) {
+        return offset;
+      }
+      slot = (slot + 1) & tableMask;
+    }
+  }
+
+  private static long hash(byte[] bytes) {
+    // FNV-1a with a final mix, so the low bits used for the table slot depend on all the bytes
+    long h = 0xcbf29ce484222325L;
+    for (byte b : bytes) {
+      h ^= b;
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  public static class Builder {
+    private final File dir;
+    private Region data;
+    private long count;
+
+    /**
+     * @param dir directory for the temporary files, NULL for the default temporary directory.
+     */
+    public Builder(File dir) throws IOException {
+      this.dir = dir;
+      data = new Region(dir, "sdc-static-store-data");
+    }
+
+    /**
+     * Adds an entry, if a key is added more than once the last value wins.
+     */
+    public Builder put(String key, String value) throws IOException {
+      Preconditions.checkState(data != null, "Builder already used");
+      Preconditions.checkNotNull(key, "key cannot be null");
+      Preconditions.checkNotNull(value, "value cannot be null");
+      data.append(key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+      count++;
+      return this;
+    }
+
+    public OffHeapStringMap build() throws IOException {
+      Preconditions.checkState(data != null, "Builder already used");
+      Region entries = data;
+      data = null;
+      long capacity = Long.highestOneBit(Math.max(16, count + count / 2)) << 1;
+      Region table = new Region(dir, "sdc-static-store-table");
+      try {
+        table.reserve(capacity << 3);
+        long tableMask = capacity - 1;
+        long size = 0;
+        long offset = 0;
+        long end = entries.getEnd();
+        while (offset < end) {
+          int keyLength = (CHUNK_SIZE - Region.position(offset) < ENTRY_HEADER_SIZE) ? -1 : entries.getInt(offset);
+          if (keyLength < 0) {
+            // rest of the chunk is not used
+            offset = ((offset >> CHUNK_BITS) + 1) << CHUNK_BITS;
+            continue;
+          }
+          byte[] key = entries.getBytes(offset + ENTRY_HEADER_SIZE, keyLength);
+          long found = find(entries, table, tableMask, key);
+          long slot = (found < 0) ? -1 - found : slotOf(table, tableMask, key, found);
+          if (found < 0) {
+            size++;
+          }
+          table.putLong(slot << 3, offset + 1);
+          offset += ENTRY_HEADER_SIZE + keyLength + entries.getInt(offset + 4);
+        }
+        LOG.debug("Built static store with '{}' keys, '{}' data bytes", size, end);
+        return new OffHeapStringMap(entries, table, tableMask, size);
+      } catch (IOException | RuntimeException ex) {
+        entries.close();
+        table.close();
+        throw ex;
+      }
+    }
+
+    private static long slotOf(Region table, long tableMask, byte[] key, long offset) {
+      long slot = hash(key) & tableMask;
+      while (table.getLong(slot << 3) - 1 != offset) {
+        slot = (slot + 1) & tableMask;
+      }
+      return slot;
+    }
+
+    /**
+     * Discards the entries added so far, when the build is not going to happen.
+     */
+    public void discard() {
+      if (data != null) {
+        data.close();
+        data = null;
+      }
+    }
+  }
+
+  /**
+   * Growable memory mapped temporary file, mapped in chunks. Offsets are global, values never span two chunks.
+   */
+  private static class Region {
+    private final File file;
+    private final RandomAccessFile raf;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private long end;
+
+    Region(File dir, String prefix) throws IOException {
+      file = File.createTempFile(prefix, ".bin", dir);
+      file.deleteOnExit();
+      raf = new RandomAccessFile(file, "rw");
+    }
+
+    long getEnd() {
+      return end;
+    }
+
+    private ByteBuffer chunk(long offset) {
+      return chunks.get((int) (offset >>> CHUNK_BITS));
+    }
+
+    private static int position(long offset) {
+      return (int) (offset & (CHUNK_SIZE - 1));
+    }
+
+    private void map(int chunkCount) throws IOException {
+      while (chunks.size() < chunkCount) {
+        // mapping beyond the end of the file grows it, sparse and zero filled
+        chunks.add(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * CHUNK_SIZE, CHUNK_SIZE));
+      }
+    }
+
+    void reserve(long size) throws IOException {
+      map((int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS));
+      end = size;
+    }
+
+    void append(byte[] key, byte[] value) throws IOException {
+      long length = ENTRY_HEADER_SIZE + (long) key.length + value.length;
+      if (length > CHUNK_SIZE) {
+        throw new IOException("Entry with key '" + new String(key, 0, Math.min(key.length, 100), StandardCharsets.UTF_8)
+            + "' is larger than " + CHUNK_SIZE + " bytes");
+      }
+      if (position(end) + length > CHUNK_SIZE && position(end) != 0) {
+        // does not fit in the current chunk, mark the rest as unused and go to the next one
+        if (CHUNK_SIZE - position(end) >= 4) {
+          chunk(end).putInt(position(end), -1);
+        }
+        end = ((end >> CHUNK_BITS) + 1) << CHUNK_BITS;
+      }
+      map((int) ((end + length + CHUNK_SIZE - 1) >>> CHUNK_BITS));
+      ByteBuffer buffer = chunk(end).duplicate();
+      buffer.position(position(end));
+      buffer.putInt(key.length).putInt(value.length).put(key).put(value);
+      end += length;
+    }
+
+    int getInt(long offset) {
+      return chunk(offset).getInt(position(offset));
+    }
+
+    long getLong(long offset) {
+      return chunk(offset).getLong(position(offset));
+    }
+
+    void putLong(long offset, long value) {
+      chunk(offset).putLong(position(offset), value);
+    }
+
+    byte[] getBytes(long offset, int length) {
+      byte[] bytes = new byte[length];
+      ByteBuffer buffer = chunk(offset).duplicate();
+      buffer.position(position(offset));
+      buffer.get(bytes);
+      return bytes;
+    }
+
+    boolean keyEquals(long offset, byte[] key) {
+      ByteBuffer buffer = chunk(offset);
+      int position = position(offset);
+      if (buffer.getInt(position) != key.length) {
+        return false;
+      }
+      position += ENTRY_HEADER_SIZE;
+      for (int i = 0; i < key.length; i++) {
+        if (buffer.get(position + i) != key[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void close() {
+      // the chunks are not cleared, concurrent readers of a replaced map can finish their lookups, the mapped memory
+      // is released when the buffers are garbage collected
+      try {
+        raf.close();
+      } catch (IOException ex) {
+        LOG.warn("Could not close '{}': {}", file, ex.toString(), ex);
+      }
+      if (!file.delete()) {
+        LOG.warn("Could not delete '{}'", file);
+      }
+    }
+  }
+
+}
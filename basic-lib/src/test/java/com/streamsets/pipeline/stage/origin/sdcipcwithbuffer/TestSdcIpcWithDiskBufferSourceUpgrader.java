@@ -16,9 +16,16 @@
 package com.streamsets.pipeline.stage.origin.sdcipcwithbuffer;
 
 import com.streamsets.pipeline.stage.origin.sdcipcwithbuffer.SdcIpcWithDiskBufferSourceUpgrader;
+import com.streamsets.pipeline.api.Config;
 import com.streamsets.pipeline.stage.util.tls.TlsConfigBeanUpgraderTestUtil;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class TestSdcIpcWithDiskBufferSourceUpgrader {
 
   @Test
@@ -29,4 +36,19 @@ public class TestSdcIpcWithDiskBufferSourceUpgrader {
         3
     );
   }
+
+  @Test
+  public void testV3ToV4() throws Exception {
+    List<Config> configs = new ArrayList<>();
+    new SdcIpcWithDiskBufferSourceUpgrader().upgrade("", "", "", 3, 4, configs);
+
+    Map<String, Object> values = new HashMap<>();
+    for (Config config : configs) {
+      values.put(config.getName(), config.getValue());
+    }
+    Assert.assertEquals(3, values.size());
+    Assert.assertEquals(false, values.get("persistDiskBuffer"));
+    Assert.assertEquals(0, values.get("syncEveryFragments"));
+    Assert.assertEquals(1000, values.get("syncIntervalMillis"));
+  }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.spooldir;
+
+import com.google.common.base.Joiner;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class TestFileRange {
+
+  private File createFile(List<String> lines) throws Exception {
+    File dir = new File("target", UUID.randomUUID().toString());
+    Assert.assertTrue(dir.mkdirs());
+    File file = new File(dir, "file.txt");
+    Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  @Test
+  public void testSplitAtLineStarts() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      lines.add("line-" + i);
+    }
+    File file = createFile(lines);
+
+    List<FileRange> ranges = FileRange.split(file, "file.txt", 4);
+    Assert.assertEquals(4, ranges.size());
+    Assert.assertEquals(0, ranges.get(0).getStart());
+    Assert.assertEquals(file.length(), ranges.get(3).getEnd());
+
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < ranges.size(); i++) {
+      FileRange range = ranges.get(i);
+      if (i > 0) {
+        Assert.assertEquals(ranges.get(i - 1).getEnd(), range.getStart());
+      }
+      Assert.assertEquals("0", range.getOffset());
+      Assert.assertFalse(range.isFinished());
+      try (InputStream is = range.open(file)) {
+        String text = IOUtils.toString(is, StandardCharsets.UTF_8);
+        Assert.assertTrue(text.startsWith("line-"));
+        Assert.assertTrue(text.endsWith("\n"));
+        content.append(text);
+      }
+    }
+    Assert.assertEquals(Joiner.on("\n").join(lines) + "\n", content.toString());
+  }
+
+  @Test
+  public void testSplitLongLine() throws Exception {
+    StringBuilder longLine = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      longLine.append("x");
+    }
+    List<String> lines = new ArrayList<>();
+    lines.add(longLine.toString());
+    lines.add("short");
+    File file = createFile(lines);
+
+    // the boundaries within the long line move to its end
+    List<FileRange> ranges = FileRange.split(file, "file.txt", 4);
+    Assert.assertEquals(2, ranges.size());
+    Assert.assertEquals(1001, ranges.get(0).getEnd());
+    Assert.assertEquals(1001, ranges.get(1).getStart());
+    Assert.assertEquals(file.length(), ranges.get(1).getEnd());
+  }
+
+  @Test
+  public void testOffsetKey() throws Exception {
+    FileRange range = new FileRange("dir/file.txt", 100, 200, "0");
+    String key = range.getOffsetKey();
+    Assert.assertTrue(FileRange.isRangeKey(key));
+    Assert.assertFalse(FileRange.isRangeKey("dir/file.txt"));
+
+    range.setOffset("42");
+    FileRange restored = FileRange.fromOffset(
+        key,
+        new Offset(Offset.VERSION_TWO, key, range.getOffset()).getOffsetString()
+    );
+    Assert.assertEquals("dir/file.txt", restored.getFile());
+    Assert.assertEquals(100, restored.getStart());
+    Assert.assertEquals(200, restored.getEnd());
+    Assert.assertEquals("42", restored.getOffset());
+    Assert.assertEquals(key, restored.getOffsetKey());
+
+    restored.setOffset(Offset.MINUS_ONE);
+    Assert.assertTrue(restored.isFinished());
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.spooldir;
+
+import com.streamsets.pipeline.api.EventRecord;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.config.Compression;
+import com.streamsets.pipeline.config.DataFormat;
+import com.streamsets.pipeline.config.OnParseError;
+import com.streamsets.pipeline.config.PostProcessingOptions;
+import com.streamsets.pipeline.lib.dirspooler.PathMatcherMode;
+import com.streamsets.pipeline.sdk.PushSourceRunner;
+import com.streamsets.pipeline.stage.common.HeaderAttributeConstants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestSpoolDirSourceRanges {
+  private static final String FILE = "file-0.log";
+  // every line is LINE_LENGTH bytes long including the line feed
+  private static final int LINE_LENGTH = 11;
+
+  private String createTestDir() {
+    File f = new File("target", UUID.randomUUID().toString());
+    Assert.assertTrue(f.mkdirs());
+    return f.getAbsolutePath();
+  }
+
+  private File createFile(String dir, int lines) throws Exception {
+    List<String> content = new ArrayList<>(lines);
+    for (int i = 0; i < lines; i++) {
+      content.add(String.format("line-%05d", i));
+    }
+    File file = new File(dir, FILE);
+    Files.write(file.toPath(), content, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  private SpoolDirSource createSource(String dir, int threads) {
+    SpoolDirConfigBean conf = new SpoolDirConfigBean();
+    conf.dataFormat = DataFormat.TEXT;
+    conf.dataFormatConfig.charset = "UTF-8";
+    conf.dataFormatConfig.removeCtrlChars = false;
+    conf.overrunLimit = 100;
+    conf.spoolDir = dir;
+    conf.batchSize = 10;
+    conf.poolingTimeoutSecs = 1;
+    conf.filePattern = "file-[0-9].log";
+    conf.pathMatcherMode = PathMatcherMode.GLOB;
+    conf.maxSpoolFiles = 10;
+    conf.initialFileToProcess = null;
+    conf.dataFormatConfig.compression = Compression.NONE;
+    conf.dataFormatConfig.filePatternInArchive = "*";
+    conf.errorArchiveDir = null;
+    conf.postProcessing = PostProcessingOptions.NONE;
+    conf.retentionTimeMins = 10;
+    conf.dataFormatConfig.textMaxLineLen = 100;
+    conf.dataFormatConfig.onParseError = OnParseError.ERROR;
+    conf.dataFormatConfig.maxStackTraceLines = 0;
+    conf.numberOfThreads = threads;
+
+    SpoolDirSource source = new SpoolDirSource(conf);
+    source.minRangeSize = 1024;
+    return source;
+  }
+
+  private static String offset(String key, String offset) throws Exception {
+    return new Offset(Offset.VERSION_TWO, key, offset).getOffsetString();
+  }
+
+  /**
+   * Runs the source until the file is finished and the source has polled the spool directory once more, returns the
+   * records read per line number.
+   */
+  private Map<Integer, Integer> produce(PushSourceRunner runner, Map<String, String> lastOffsets) throws Exception {
+    List<Record> records = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger finishedBatches = new AtomicInteger();
+    runner.runInit();
+    try {
+      runner.runProduce(lastOffsets, 10, output -> {
+        records.addAll(output.getRecords().get("lane"));
+        try {
+          if (FILE.equals(output.getOffsetEntity()) &&
+              "-1".equals(new Offset(Offset.VERSION_TWO, FILE, output.getNewOffset()).getOffset()) &&
+              finishedBatches.incrementAndGet() == 2) {
+            runner.setStop();
+          }
+        } catch (Exception ex) {
+          throw new RuntimeException(ex);
+        }
+      });
+      runner.waitOnProduce();
+
+      Assert.assertEquals(offset(FILE, "-1"), runner.getOffsets().get(FILE));
+      for (String key : runner.getOffsets().keySet()) {
+        Assert.assertFalse(key, FileRange.isRangeKey(key));
+      }
+
+      int finishedFiles = 0;
+      for (Record event : runner.getEventRecords()) {
+        if ("finished-file".equals(event.getHeader().getAttribute(EventRecord.TYPE))) {
+          finishedFiles++;
+        }
+      }
+      Assert.assertEquals(1, finishedFiles);
+    } finally {
+      runner.runDestroy();
+    }
+
+    Map<Integer, Integer> lines = new HashMap<>();
+    for (Record record : records) {
+      int line = Integer.parseInt(record.get("/text").getValueAsString().substring("line-".length()));
+      Assert.assertEquals(
+          String.valueOf(line * LINE_LENGTH),
+          record.getHeader().getAttribute(HeaderAttributeConstants.OFFSET)
+      );
+      Integer count = lines.get(line);
+      lines.put(line, (count == null) ? 1 : count + 1);
+    }
+    return lines;
+  }
+
+  @Test
+  public void testRangesReadEveryRecordOnce() throws Exception {
+    String dir = createTestDir();
+    createFile(dir, 10000);
+    SpoolDirSource source = createSource(dir, 4);
+    PushSourceRunner runner = new PushSourceRunner.Builder(SpoolDirDSource.class, source).addOutputLane("lane").build();
+
+    Map<Integer, Integer> lines = produce(runner, new HashMap<>());
+    Assert.assertEquals(10000, lines.size());
+    for (int i = 0; i < 10000; i++) {
+      Assert.assertEquals(Integer.valueOf(1), lines.get(i));
+    }
+  }
+
+  private void testRestartResumesRanges(int threads) throws Exception {
+    String dir = createTestDir();
+    File file = createFile(dir, 1000);
+    List<FileRange> ranges = FileRange.split(file, FILE, 2);
+    Assert.assertEquals(2, ranges.size());
+    int secondRangeLine = (int) (ranges.get(1).getStart() / LINE_LENGTH);
+
+    // the pipeline stopped with 5 lines of the first range and 10 lines of the second one read
+    Map<String, String> lastOffsets = new HashMap<>();
+    lastOffsets.put(SpoolDirSource.OFFSET_VERSION, Offset.VERSION_TWO);
+    lastOffsets.put(FILE, offset(FILE, "0"));
+    lastOffsets.put(ranges.get(0).getOffsetKey(), offset(ranges.get(0).getOffsetKey(), "55"));
+    lastOffsets.put(ranges.get(1).getOffsetKey(), offset(ranges.get(1).getOffsetKey(), "110"));
+
+    SpoolDirSource source = createSource(dir, threads);
+    PushSourceRunner runner = new PushSourceRunner.Builder(SpoolDirDSource.class, source).addOutputLane("lane").build();
+
+    Map<Integer, Integer> lines = produce(runner, lastOffsets);
+    Assert.assertEquals(1000 - 5 - 10, lines.size());
+    for (int i = 0; i < 1000; i++) {
+      boolean read = (i >= 5 && i < secondRangeLine) || i >= secondRangeLine + 10;
+      Assert.assertEquals(String.valueOf(i), read ? Integer.valueOf(1) : null, lines.get(i));
+    }
+  }
+
+  @Test
+  public void testRestartResumesRanges() throws Exception {
+    testRestartResumesRanges(2);
+  }
+
+  @Test
+  public void testRestartWithOneThreadResumesRanges() throws Exception {
+    testRestartResumesRanges(1);
+  }
+
+}
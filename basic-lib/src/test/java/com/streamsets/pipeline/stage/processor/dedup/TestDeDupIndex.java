@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.dedup;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+
+public class TestDeDupIndex {
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("sdc-dedup-test", ".window");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void testAddAndCountEviction() throws Exception {
+    try (DeDupIndex index = new DeDupIndex(file, false, 2, 0)) {
+      Assert.assertTrue(index.add(1, 1));
+      Assert.assertTrue(index.add(2, 2));
+      Assert.assertFalse(index.add(1, 1));
+      Assert.assertEquals(2, index.size());
+
+      // evicts (1, 1)
+      Assert.assertTrue(index.add(3, 3));
+      Assert.assertTrue(index.add(1, 1));
+      Assert.assertFalse(index.add(3, 3));
+    }
+    Assert.assertFalse(file.exists());
+  }
+
+  @Test
+  public void testTimeEviction() throws Exception {
+    try (DeDupIndex index = new DeDupIndex(file, false, 10, 1)) {
+      Assert.assertTrue(index.add(1, 1));
+      Thread.sleep(1001);
+      index.evictExpired();
+      Assert.assertEquals(0, index.size());
+      Assert.assertTrue(index.add(1, 1));
+    }
+  }
+
+  @Test
+  public void testMatchesFifoWindowWithCollisions() throws Exception {
+    Random random = new Random(0);
+    Queue<Long> window = new ArrayDeque<>();
+    Set<Long> hashes = new HashSet<>();
+    try (DeDupIndex index = new DeDupIndex(file, false, 100, 0)) {
+      for (int i = 0; i < 100000; i++) {
+        long low = random.nextInt(300);
+        // few distinct high bits to force long probe sequences
+        boolean unique = !hashes.contains(low);
+        if (unique) {
+          if (window.size() == 100) {
+            hashes.remove(window.poll());
+          }
+          window.add(low);
+          hashes.add(low);
+        }
+        Assert.assertEquals(unique, index.add(low & 0x7, low));
+      }
+    }
+  }
+
+  @Test
+  public void testPersistence() throws Exception {
+    try (DeDupIndex index = new DeDupIndex(file, true, 10, 0)) {
+      Assert.assertTrue(index.add(1, 1));
+      Assert.assertTrue(index.add(2, 2));
+    }
+    try (DeDupIndex index = new DeDupIndex(file, true, 10, 0)) {
+      Assert.assertEquals(2, index.size());
+      Assert.assertFalse(index.add(1, 1));
+      Assert.assertTrue(index.add(3, 3));
+    }
+    // different window size discards the previous window
+    try (DeDupIndex index = new DeDupIndex(file, true, 20, 0)) {
+      Assert.assertEquals(0, index.size());
+    }
+  }
+
+  @Test
+  public void testRecoveryWithoutClose() throws Exception {
+    DeDupIndex index = new DeDupIndex(file, true, 10, 0);
+    Assert.assertTrue(index.add(1, 1));
+    Assert.assertTrue(index.add(2, 2));
+
+    // table is rebuilt from the ring
+    try (DeDupIndex reopened = new DeDupIndex(file, true, 10, 0)) {
+      Assert.assertEquals(2, reopened.size());
+      Assert.assertFalse(reopened.add(2, 2));
+    }
+  }
+
+  @Test
+  public void testRetainRelease() throws Exception {
+    DeDupIndex index = new DeDupIndex(file, false, 10, 0).retain().retain();
+    index.release();
+    Assert.assertTrue(file.exists());
+    index.release();
+    Assert.assertFalse(file.exists());
+  }
+
+}
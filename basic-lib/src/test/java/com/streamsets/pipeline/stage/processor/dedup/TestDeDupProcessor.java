@@ -24,15 +24,18 @@ import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.sdk.ProcessorRunner;
 import com.streamsets.pipeline.sdk.RecordCreator;
 import com.streamsets.pipeline.sdk.StageRunner;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public class TestDeDupProcessor {
 
@@ -85,22 +88,88 @@ public class TestDeDupProcessor {
     runner.runInit();
   }
 
-  @Test(expected = StageException.class)
-  public void testValidateConfigs5() throws Exception {
-    Processor processor = new DeDupProcessor((int) ( getDefaultMemoryLimitMiB() * 1000 * 1000 / 85 + 1), 0,
+  @Test
+  public void testWindowNotLimitedByHeap() throws Exception {
+    // The window lives outside of the heap, so it can be larger than the pipeline max memory allows
+    Processor processor = new DeDupProcessor((int) (getDefaultMemoryLimitMiB() * 1000 * 1000 / 85 + 1), 0,
         SelectFields.ALL_FIELDS, Collections.EMPTY_LIST);
     ProcessorRunner runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
         .addOutputLane("unique")
         .addOutputLane("duplicate")
         .build();
     runner.runInit();
+    runner.runDestroy();
   }
 
   @Test
-  public void testValidateConfigs6() throws Exception {
+  public void testPersistentWindow() throws Exception {
+    File dataDir = new File("target", UUID.randomUUID().toString());
+    try {
+      Processor processor = new DeDupProcessor(4, 0, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST, true);
+      ProcessorRunner runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
+          .addOutputLane("unique")
+          .addOutputLane("duplicate")
+          .addStageSdcConfiguration("sdc.data.dir", dataDir.getAbsolutePath())
+          .build();
+      runner.runInit();
+      File window = ((DeDupProcessor) runner.getStage()).getIndex().getFile();
+      try {
+        StageRunner.Output output = runner.runProcess(ImmutableList.of(createRecordWithValue("a")));
+        Assert.assertEquals(1, output.getRecords().get("unique").size());
+      } finally {
+        runner.runDestroy();
+      }
+      Assert.assertTrue(window.exists());
+
+      // Window survives the restart
+      processor = new DeDupProcessor(4, 0, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST, true);
+      runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
+          .addOutputLane("unique")
+          .addOutputLane("duplicate")
+          .addStageSdcConfiguration("sdc.data.dir", dataDir.getAbsolutePath())
+          .build();
+      runner.runInit();
+      try {
+        StageRunner.Output output = runner.runProcess(ImmutableList.of(createRecordWithValue("a")));
+        Assert.assertEquals(0, output.getRecords().get("unique").size());
+        Assert.assertEquals(1, output.getRecords().get("duplicate").size());
+      } finally {
+        runner.runDestroy();
+      }
+    } finally {
+      FileUtils.deleteQuietly(dataDir);
+    }
+  }
 
-    Processor processor = new DeDupProcessor((int) (getDefaultMemoryLimitMiB() * 1000 * 1000 / 85 - 1), 0,
-        SelectFields.ALL_FIELDS, Collections.EMPTY_LIST);
+  @Test
+  public void testPreviewDoesNotPersistWindow() throws Exception {
+    File dataDir = new File("target", UUID.randomUUID().toString());
+    try {
+      Processor processor = new DeDupProcessor(4, 0, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST, true);
+      ProcessorRunner runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
+          .addOutputLane("unique")
+          .addOutputLane("duplicate")
+          .addStageSdcConfiguration("sdc.data.dir", dataDir.getAbsolutePath())
+          .setPreview(true)
+          .build();
+      runner.runInit();
+      File window = ((DeDupProcessor) runner.getStage()).getIndex().getFile();
+      try {
+        StageRunner.Output output = runner.runProcess(ImmutableList.of(createRecordWithValue("a")));
+        Assert.assertEquals(1, output.getRecords().get("unique").size());
+      } finally {
+        runner.runDestroy();
+      }
+      Assert.assertFalse(window.exists());
+      Assert.assertFalse(dataDir.exists());
+    } finally {
+      FileUtils.deleteQuietly(dataDir);
+    }
+  }
+
+  @Test(expected = StageException.class)
+  public void testPersistentWindowWithoutDataDir() throws Exception {
+    Processor processor = new DeDupProcessor(4, 0, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST, true);
     ProcessorRunner runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
         .addOutputLane("unique")
         .addOutputLane("duplicate")
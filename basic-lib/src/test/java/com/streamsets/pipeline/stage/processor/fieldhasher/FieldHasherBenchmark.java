@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.fieldhasher;
+
+import com.google.common.collect.ImmutableList;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.config.OnStagePreConditionFailure;
+import com.streamsets.pipeline.sdk.ProcessorRunner;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import com.streamsets.pipeline.sdk.StageRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Field Hasher processing a 50,000 records batch serially and in parallel.
+ *
+ * Not run as part of the unit tests, run it with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FieldHasherBenchmark {
+
+  private static final int BATCH_SIZE = 50000;
+
+  @Param({"false", "true"})
+  public boolean parallel;
+
+  private ProcessorRunner runner;
+  private List<Record> records;
+
+  @Setup
+  public void setup() throws StageException {
+    TargetFieldHasherConfig targetConfig = new TargetFieldHasherConfig();
+    targetConfig.sourceFieldsToHash = ImmutableList.of("/name", "/address", "/ssn");
+    targetConfig.hashType = HashType.SHA2;
+    targetConfig.targetField = "/hash";
+    targetConfig.headerAttribute = "";
+
+    HasherConfig hasherConfig = new HasherConfig();
+    hasherConfig.recordHasherConfig = new RecordHasherConfig();
+    hasherConfig.recordHasherConfig.hashEntireRecord = false;
+    hasherConfig.recordHasherConfig.headerAttribute = "";
+    hasherConfig.recordHasherConfig.targetField = "";
+    hasherConfig.recordHasherConfig.hashType = HashType.MD5;
+    hasherConfig.recordHasherConfig.useSeparator = true;
+    hasherConfig.inPlaceFieldHasherConfigs = Collections.emptyList();
+    hasherConfig.targetFieldHasherConfigs = ImmutableList.of(targetConfig);
+
+    final boolean parallelEnabled = parallel;
+    FieldHasherProcessor processor = new FieldHasherProcessor(hasherConfig, OnStagePreConditionFailure.CONTINUE) {
+      @Override
+      protected boolean isParallelProcessingEnabled() {
+        return parallelEnabled;
+      }
+    };
+    runner = new ProcessorRunner.Builder(FieldHasherDProcessor.class, processor).addOutputLane("a").build();
+    runner.runInit();
+
+    records = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      Map<String, Field> map = new LinkedHashMap<>();
+      map.put("name", Field.create("name" + i));
+      map.put("address", Field.create(i + " Main Street, San Francisco, CA"));
+      map.put("ssn", Field.create(String.format("%09d", i)));
+      Record record = RecordCreator.create("s", "s:" + i);
+      record.set(Field.create(map));
+      records.add(record);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws StageException {
+    runner.runDestroy();
+  }
+
+  @Benchmark
+  public StageRunner.Output hashBatch() throws StageException {
+    // the target field is overwritten on every run, the records can be reused
+    return runner.runProcess(records);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(FieldHasherBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
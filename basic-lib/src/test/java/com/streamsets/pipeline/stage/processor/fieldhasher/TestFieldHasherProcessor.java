@@ -441,6 +441,57 @@ public class TestFieldHasherProcessor {
     }
   }
 
+  @Test
+  public void testLargeBatch() throws StageException {
+    // big enough to be processed in parallel
+    HasherConfig hasherConfig = createInPlaceHasherProcessor(ImmutableList.of("/name"), HashType.SHA2);
+    FieldHasherProcessor processor = new FieldHasherProcessor(hasherConfig, OnStagePreConditionFailure.TO_ERROR);
+
+    ProcessorRunner runner = new ProcessorRunner.Builder(FieldHasherDProcessor.class, processor)
+        .setOnRecordError(OnRecordError.TO_ERROR)
+        .addOutputLane("a").build();
+    runner.runInit();
+
+    try {
+      List<Record> records = new ArrayList<>();
+      for (int i = 0; i < 5000; i++) {
+        Map<String, Field> map = new LinkedHashMap<>();
+        // every 100th record misses the field to hash
+        if (i % 100 != 0) {
+          map.put("name", Field.create("streamsets" + i));
+        }
+        Record record = RecordCreator.create("s", "s:" + i);
+        record.set(Field.create(map));
+        records.add(record);
+      }
+
+      StageRunner.Output output = runner.runProcess(records);
+
+      List<Record> errorRecords = runner.getErrorRecords();
+      Assert.assertEquals(50, errorRecords.size());
+      for (int i = 0; i < errorRecords.size(); i++) {
+        Assert.assertEquals("s:" + (i * 100), errorRecords.get(i).getHeader().getSourceId());
+        Assert.assertEquals(Errors.HASH_01.toString(), errorRecords.get(i).getHeader().getErrorCode());
+      }
+
+      List<Record> outputRecords = output.getRecords().get("a");
+      Assert.assertEquals(4950, outputRecords.size());
+      int index = 0;
+      for (int i = 0; i < 5000; i++) {
+        if (i % 100 != 0) {
+          Record outputRecord = outputRecords.get(index++);
+          Assert.assertEquals("s:" + i, outputRecord.getHeader().getSourceId());
+          Assert.assertEquals(
+              computeHash(Field.Type.STRING, "streamsets" + i, HashType.SHA2),
+              outputRecord.get("/name").getValueAsString()
+          );
+        }
+      }
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
   @Test
   public void testDecimalField() throws StageException {
     HasherConfig hasherConfig = createInPlaceHasherProcessor(ImmutableList.of("/age"), HashType.SHA2);
@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import com.google.common.io.Resources;
 import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.OnRecordError;
 import com.streamsets.pipeline.api.Processor;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.config.DataFormat;
@@ -50,6 +51,7 @@ import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.Context;
@@ -61,14 +63,18 @@ import java.net.URLDecoder;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.Signature;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.streamsets.pipeline.lib.http.oauth2.OAuth2GrantTypes.CLIENT_CREDENTIALS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 @Category(SingleForkNoReuseTest.class)
@@ -92,6 +98,11 @@ public class HttpProcessorIT extends JerseyTest {
 
   private static KeyPair keyPair;
 
+  private static final long REQUEST_TIME_MS = 100;
+  private static final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+  private static final AtomicInteger requestsInFlight = new AtomicInteger();
+  private static final AtomicInteger maxRequestsInFlight = new AtomicInteger();
+
   private static String getBody(String path) {
     try {
       return Resources.toString(Resources.getResource(path), Charsets.UTF_8);
@@ -313,6 +324,36 @@ public class HttpProcessorIT extends JerseyTest {
     }
   }
 
+  @Path("/test/requests/{id}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public static class RequestCountingResource {
+    @GET
+    public Response get(@PathParam("id") String id) throws InterruptedException {
+      return count(id);
+    }
+
+    @POST
+    public Response post(@PathParam("id") String id, String body) throws InterruptedException {
+      return count(id);
+    }
+
+    private Response count(String id) throws InterruptedException {
+      int inFlight = requestsInFlight.incrementAndGet();
+      maxRequestsInFlight.accumulateAndGet(inFlight, Math::max);
+      try {
+        requestCounts.putIfAbsent(id, new AtomicInteger());
+        int count = requestCounts.get(id).incrementAndGet();
+        Thread.sleep(REQUEST_TIME_MS);
+        if (id.startsWith("error")) {
+          return Response.serverError().entity("failed").build();
+        }
+        return Response.ok("{\"id\":\"" + id + "\",\"request\":" + count + "}").build();
+      } finally {
+        requestsInFlight.decrementAndGet();
+      }
+    }
+  }
+
   @Override
   protected Application configure() {
     forceSet(TestProperties.CONTAINER_PORT, "0");
@@ -326,7 +367,8 @@ public class HttpProcessorIT extends JerseyTest {
             Auth2Resource.class,
             Auth2ResourceOwnerWithIdResource.class,
             Auth2BasicResource.class,
-            Auth2JWTResource.class
+            Auth2JWTResource.class,
+            RequestCountingResource.class
         )
     );
   }
@@ -965,4 +1007,192 @@ public class HttpProcessorIT extends JerseyTest {
       tokenGetCount = 0;
     }
   }
+
+  private static List<Record> createIdRecords(String... ids) {
+    List<Record> records = new ArrayList<>(ids.length);
+    for (String id : ids) {
+      Record record = RecordCreator.create();
+      Map<String, Field> fields = new HashMap<>();
+      fields.put("id", Field.create(id));
+      record.set(Field.create(fields));
+      records.add(record);
+    }
+    return records;
+  }
+
+  private HttpProcessorConfig createRequestCountingConfig() {
+    requestCounts.clear();
+    requestsInFlight.set(0);
+    maxRequestsInFlight.set(0);
+
+    HttpProcessorConfig conf = new HttpProcessorConfig();
+    conf.httpMethod = HttpMethod.GET;
+    conf.outputField = "/output";
+    conf.dataFormat = DataFormat.JSON;
+    conf.resourceUrl = getBaseUri() + "test/requests/${record:value('/id')}";
+    return conf;
+  }
+
+  private static int getRequestCount(String id) {
+    AtomicInteger count = requestCounts.get(id);
+    return count == null ? 0 : count.get();
+  }
+
+  @Test
+  public void testIdenticalRequestsNotCoalescedByDefault() throws Exception {
+    HttpProcessorConfig conf = createRequestCountingConfig();
+
+    Processor processor = new HttpProcessor(conf);
+    ProcessorRunner runner = new ProcessorRunner.Builder(HttpDProcessor.class, processor)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+    try {
+      StageRunner.Output output = runner.runProcess(createIdRecords("a", "a"));
+      assertTrue(runner.getErrorRecords().isEmpty());
+      assertEquals(2, output.getRecords().get("lane").size());
+      assertEquals(2, getRequestCount("a"));
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testIdenticalPostRequestsNotCoalesced() throws Exception {
+    HttpProcessorConfig conf = createRequestCountingConfig();
+    conf.httpMethod = HttpMethod.POST;
+    conf.requestBody = "{\"id\":\"${record:value('/id')}\"}";
+    conf.coalesceRequests = true;
+    conf.cache.enabled = true;
+
+    Processor processor = new HttpProcessor(conf);
+    ProcessorRunner runner = new ProcessorRunner.Builder(HttpDProcessor.class, processor)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+    try {
+      // every write reaches the server, neither coalesced nor answered from the cache
+      for (int i = 1; i <= 2; i++) {
+        StageRunner.Output output = runner.runProcess(createIdRecords("a", "a"));
+        assertTrue(runner.getErrorRecords().isEmpty());
+        assertEquals(2, output.getRecords().get("lane").size());
+        assertEquals(2 * i, getRequestCount("a"));
+      }
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testIdenticalRequestsCoalesced() throws Exception {
+    HttpProcessorConfig conf = createRequestCountingConfig();
+    conf.coalesceRequests = true;
+
+    Processor processor = new HttpProcessor(conf);
+    ProcessorRunner runner = new ProcessorRunner.Builder(HttpDProcessor.class, processor)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+    try {
+      StageRunner.Output output = runner.runProcess(createIdRecords("a", "b", "a", "a", "b"));
+      List<Record> outputRecords = output.getRecords().get("lane");
+      assertTrue(runner.getErrorRecords().isEmpty());
+      assertEquals(5, outputRecords.size());
+      for (Record record : outputRecords) {
+        assertEquals(record.get("/id").getValueAsString(), record.get("/output/id").getValueAsString());
+        assertEquals(1, record.get("/output/request").getValueAsInteger());
+      }
+      assertEquals(1, getRequestCount("a"));
+      assertEquals(1, getRequestCount("b"));
+
+      // without caching every batch sends its own requests
+      runner.runProcess(createIdRecords("a", "a"));
+      assertEquals(2, getRequestCount("a"));
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testOnlySuccessfulResponsesCached() throws Exception {
+    HttpProcessorConfig conf = createRequestCountingConfig();
+    conf.coalesceRequests = true;
+    conf.cache.enabled = true;
+    conf.cache.expirationTimeSecs = 60;
+
+    Processor processor = new HttpProcessor(conf);
+    ProcessorRunner runner = new ProcessorRunner.Builder(HttpDProcessor.class, processor)
+        .addOutputLane("lane")
+        .setOnRecordError(OnRecordError.TO_ERROR)
+        .build();
+    runner.runInit();
+    try {
+      for (int i = 0; i < 2; i++) {
+        StageRunner.Output output = runner.runProcess(createIdRecords("a", "error1", "a"));
+        List<Record> outputRecords = output.getRecords().get("lane");
+        assertEquals(2, outputRecords.size());
+        for (Record record : outputRecords) {
+          // the second batch gets the response of the first request from the cache
+          assertEquals(1, record.get("/output/request").getValueAsInteger());
+        }
+        assertEquals(1, runner.getErrorRecords().size());
+        assertNull(runner.getErrorRecords().get(0).get("/output"));
+        runner.clearErrors();
+      }
+      assertEquals(1, getRequestCount("a"));
+      assertEquals(2, getRequestCount("error1"));
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testCachedResponsesExpire() throws Exception {
+    HttpProcessorConfig conf = createRequestCountingConfig();
+    conf.cache.enabled = true;
+    conf.cache.expirationTimeSecs = 1;
+
+    Processor processor = new HttpProcessor(conf);
+    ProcessorRunner runner = new ProcessorRunner.Builder(HttpDProcessor.class, processor)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+    try {
+      runner.runProcess(createIdRecords("a"));
+      StageRunner.Output output = runner.runProcess(createIdRecords("a"));
+      assertEquals(1, output.getRecords().get("lane").get(0).get("/output/request").getValueAsInteger());
+      assertEquals(1, getRequestCount("a"));
+
+      Thread.sleep(1500);
+
+      output = runner.runProcess(createIdRecords("a"));
+      assertTrue(runner.getErrorRecords().isEmpty());
+      assertEquals(2, output.getRecords().get("lane").get(0).get("/output/request").getValueAsInteger());
+      assertEquals(2, getRequestCount("a"));
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testMaxConcurrentRequests() throws Exception {
+    HttpProcessorConfig conf = createRequestCountingConfig();
+    conf.maxConcurrentRequests = 2;
+
+    Processor processor = new HttpProcessor(conf);
+    ProcessorRunner runner = new ProcessorRunner.Builder(HttpDProcessor.class, processor)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+    try {
+      StageRunner.Output output = runner.runProcess(createIdRecords("a", "b", "c", "d", "e", "f", "g", "h"));
+      assertTrue(runner.getErrorRecords().isEmpty());
+      assertEquals(8, output.getRecords().get("lane").size());
+      assertEquals(8, requestCounts.size());
+      assertTrue(maxRequestsInFlight.get() >= 1);
+      assertTrue(maxRequestsInFlight.get() <= 2);
+    } finally {
+      runner.runDestroy();
+    }
+  }
 }
@@ -139,4 +139,20 @@ public class TestHttpProcessorUpgrader {
         9
     );
   }
+
+  @Test
+  public void testV10ToV11() throws Exception {
+    List<Config> configs = new ArrayList<>();
+
+    HttpProcessorUpgrader upgrader = new HttpProcessorUpgrader();
+
+    upgrader.upgrade("a", "b", "c", 10, 11, configs);
+    Map<String, Object> configValues = getConfigsAsMap(configs);
+
+    assertEquals(0, configValues.get("conf.maxConcurrentRequests"));
+    assertEquals(false, configValues.get("conf.coalesceRequests"));
+    assertEquals(false, configValues.get("conf.cache.enabled"));
+    assertEquals(-1, configValues.get("conf.cache.maxSize"));
+    assertEquals(60, configValues.get("conf.cache.expirationTimeSecs"));
+  }
 }
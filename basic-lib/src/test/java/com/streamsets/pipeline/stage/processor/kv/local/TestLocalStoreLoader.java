@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.kv.local;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+public class TestLocalStoreLoader {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private LocalLookupConfig createConfig(LocalStoreFileFormat format, String content) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    LocalLookupConfig conf = new LocalLookupConfig();
+    conf.source = LocalStoreSource.FILE;
+    conf.filePath = file.getAbsolutePath();
+    conf.fileFormat = format;
+    return conf;
+  }
+
+  @Test
+  public void testLoadDelimited() throws Exception {
+    LocalLookupConfig conf = createConfig(
+        LocalStoreFileFormat.DELIMITED,
+        "id,key,value\n1,key1,value1\n2,key2,\"value,2\"\n3,key3\n"
+    );
+    try (OffHeapStringMap values = new LocalStoreLoader(conf, null).load()) {
+      Assert.assertEquals(2, values.size());
+      Assert.assertEquals("value1", values.get("key1"));
+      Assert.assertEquals("value,2", values.get("key2"));
+      Assert.assertNull(values.get("key3"));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testLoadDelimitedMissingColumn() throws Exception {
+    LocalLookupConfig conf = createConfig(LocalStoreFileFormat.DELIMITED, "id,value\n1,value1\n");
+    new LocalStoreLoader(conf, null).load();
+  }
+
+  @Test
+  public void testLoadJson() throws Exception {
+    LocalLookupConfig conf = createConfig(
+        LocalStoreFileFormat.JSON,
+        "{\"key\":\"key1\",\"value\":\"value1\"}\n{\"key\":2,\"value\":{\"a\":1}}\n{\"key\":\"key3\"}\n"
+    );
+    conf.keyField = "key";
+    conf.valueField = "value";
+    try (OffHeapStringMap values = new LocalStoreLoader(conf, null).load()) {
+      Assert.assertEquals(2, values.size());
+      Assert.assertEquals("value1", values.get("key1"));
+      Assert.assertEquals("{\"a\":1}", values.get("2"));
+    }
+  }
+
+  @Test
+  public void testFileBackedStore() throws Exception {
+    LocalLookupConfig conf = createConfig(LocalStoreFileFormat.DELIMITED, "key,value\nkey1,value1\nkey2,value2\n");
+    FileLocalStore store = conf.createStore(new LocalStoreLoader(conf, null).load());
+    Assert.assertEquals("value1", store.get("key1").get());
+    Assert.assertFalse(store.get("key3").isPresent());
+
+    Map<String, Optional<String>> values = store.get(ImmutableList.of("key2", "key3"));
+    Assert.assertEquals(2, values.size());
+    Assert.assertEquals("value2", values.get("key2").get());
+    Assert.assertFalse(values.get("key3").isPresent());
+
+    Files.write(new File(conf.filePath).toPath(), "key,value\nkey1,other\n".getBytes(StandardCharsets.UTF_8));
+    store.replace(new LocalStoreLoader(conf, null).load());
+    Assert.assertEquals("other", store.get("key1").get());
+    Assert.assertFalse(store.get("key2").isPresent());
+    store.close();
+  }
+
+}
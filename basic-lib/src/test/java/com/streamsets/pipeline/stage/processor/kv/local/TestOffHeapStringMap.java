@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.kv.local;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class TestOffHeapStringMap {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testGet() throws Exception {
+    File dir = tempFolder.newFolder();
+    OffHeapStringMap.Builder builder = new OffHeapStringMap.Builder(dir);
+    for (int i = 0; i < 10000; i++) {
+      builder.put("key" + i, "value" + i);
+    }
+    builder.put("", "empty");
+    builder.put("välue", "");
+    try (OffHeapStringMap map = builder.build()) {
+      Assert.assertEquals(10002, map.size());
+      for (int i = 0; i < 10000; i++) {
+        Assert.assertEquals("value" + i, map.get("key" + i));
+      }
+      Assert.assertEquals("empty", map.get(""));
+      Assert.assertEquals("", map.get("välue"));
+      Assert.assertNull(map.get("key10000"));
+      Assert.assertNull(map.get(null));
+    }
+    Assert.assertEquals(0, dir.list().length);
+  }
+
+  @Test
+  public void testDuplicateKeys() throws Exception {
+    OffHeapStringMap.Builder builder = new OffHeapStringMap.Builder(tempFolder.newFolder());
+    builder.put("key", "value1");
+    builder.put("key", "value2");
+    try (OffHeapStringMap map = builder.build()) {
+      Assert.assertEquals(1, map.size());
+      Assert.assertEquals("value2", map.get("key"));
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    try (OffHeapStringMap map = new OffHeapStringMap.Builder(tempFolder.newFolder()).build()) {
+      Assert.assertEquals(0, map.size());
+      Assert.assertNull(map.get("key"));
+    }
+  }
+
+  @Test
+  public void testDiscard() throws Exception {
+    File dir = tempFolder.newFolder();
+    OffHeapStringMap.Builder builder = new OffHeapStringMap.Builder(dir);
+    builder.put("key", "value");
+    builder.discard();
+    Assert.assertEquals(0, dir.list().length);
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled (already parsed) single quote escaped field path.
+ *
+ * Instances are immutable and interned through a bounded concurrent cache, so callers resolving the same literal
+ * path over and over (stages, EL functions) pay the parsing cost only once.
+ */
+public final class FieldPath {
+
+  static final int MAX_CACHED_PATHS = 10000;
+
+  private static final Cache<String, FieldPath> CACHE = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_PATHS)
+      .build();
+
+  private final String path;
+  private final PathElement[] elements;
+  private final List<PathElement> elementList;
+
+  private FieldPath(String path, List<PathElement> elements) {
+    this.path = path;
+    this.elements = elements.toArray(new PathElement[elements.size()]);
+    this.elementList = Collections.unmodifiableList(elements);
+  }
+
+  /**
+   * Returns the compiled form of the given single quote escaped field path, parsing it only if it is not cached.
+   *
+   * @throws IllegalArgumentException if the field path is not valid
+   */
+  public static FieldPath compile(String fieldPath) {
+    Preconditions.checkNotNull(fieldPath, "fieldPath cannot be null");
+    FieldPath compiled = CACHE.getIfPresent(fieldPath);
+    if (compiled == null) {
+      // invalid paths throw here and are never cached
+      compiled = new FieldPath(fieldPath, PathElement.parse(fieldPath, true));
+      CACHE.put(fieldPath, compiled);
+    }
+    return compiled;
+  }
+
+  static long getCacheSize() {
+    return CACHE.size();
+  }
+
+  static void invalidateCache() {
+    CACHE.invalidateAll();
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the number of path elements, including the implicit root element.
+   */
+  public int size() {
+    return elements.length;
+  }
+
+  public PathElement getElement(int index) {
+    return elements[index];
+  }
+
+  /**
+   * Returns an unmodifiable view of the path elements, including the implicit root element.
+   */
+  public List<PathElement> getElements() {
+    return elementList;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return this == obj || (obj instanceof FieldPath && path.equals(((FieldPath) obj).path));
+  }
+
+  @Override
+  public int hashCode() {
+    return path.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "FieldPath[" + path + "]";
+  }
+
+}
@@ -52,7 +52,8 @@ public class JsonCharDataParser extends AbstractDataParser {
         readerOffset,
         maxObjectLen,
         mode,
-        Object.class
+        // fields are built straight from the JSON tokens
+        Field.class
     );
   }
 
@@ -92,7 +93,9 @@ public class JsonCharDataParser extends AbstractDataParser {
   @SuppressWarnings("unchecked")
   protected Field jsonToField(Object json, long offset) throws DataParserException {
     Field field;
-    if (json == null) {
+    if (json instanceof Field) {
+      field = (Field) json;
+    } else if (json == null) {
       field = Field.create(Field.Type.STRING, null);
     } else if (json instanceof List) {
       List jsonList = (List) json;
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.parallel;
+
+import com.google.common.base.Throwables;
+import com.streamsets.pipeline.api.BatchMaker;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.Stage;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.base.OnRecordErrorException;
+import com.streamsets.pipeline.api.impl.Utils;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Splits the records of a batch in tasks processed by the common fork/join pool and by the calling thread.
+ * <p/>
+ * Tasks do not touch the batch maker or the stage context, the records they output and the record errors they
+ * throw are collected and replayed by the calling thread in record order once all tasks are done, so the output
+ * lanes get the records in the same order as with serial processing. The first failure other than a record error
+ * is thrown after replaying the output of the records processed before it.
+ */
+final class ParallelRecordProcessing {
+
+  /**
+   * Minimum number of records per task, smaller batches are processed serially.
+   */
+  static final int MIN_RECORDS_PER_TASK = 1000;
+
+  @FunctionalInterface
+  interface RecordTask {
+    void process(Record record, BatchMaker batchMaker) throws StageException;
+  }
+
+  @FunctionalInterface
+  interface RecordSink {
+    void addRecord(Record record, String[] lanes);
+  }
+
+  private ParallelRecordProcessing() {
+  }
+
+  /**
+   * Returns the number of threads that can process records, the common pool threads plus the calling thread.
+   */
+  static int getParallelism() {
+    return ForkJoinPool.getCommonPoolParallelism() + 1;
+  }
+
+  /**
+   * Returns if the given number of records is worth splitting in tasks.
+   */
+  static boolean shouldSplit(int records, int minRecordsPerTask) {
+    return getParallelism() > 1 && records >= 2 * minRecordsPerTask;
+  }
+
+  static void process(
+      Stage.Context context,
+      List<Record> records,
+      List<String> lanes,
+      int minRecordsPerTask,
+      RecordTask task,
+      RecordSink sink
+  ) throws StageException {
+    int tasks = Math.max(1, Math.min(getParallelism(), records.size() / minRecordsPerTask));
+    int recordsPerTask = (records.size() + tasks - 1) / tasks;
+
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+    List<Chunk> chunks = new ArrayList<>(tasks);
+    List<ForkJoinTask<?>> futures = new ArrayList<>(tasks);
+    for (int from = 0; from < records.size(); from += recordsPerTask) {
+      Chunk chunk = new Chunk(records.subList(from, Math.min(records.size(), from + recordsPerTask)), lanes);
+      chunks.add(chunk);
+      if (from > 0) {
+        futures.add(ForkJoinPool.commonPool().submit(() -> chunk.run(task, classLoader, mdcContext)));
+      }
+    }
+
+    // the calling thread takes the first chunk, then waits for the rest, tasks never throw
+    chunks.get(0).run(task, null, null);
+    for (ForkJoinTask<?> future : futures) {
+      future.join();
+    }
+
+    for (Chunk chunk : chunks) {
+      for (Output output : chunk.outputs) {
+        if (output.error != null) {
+          handleError(context, output.record, output.error);
+        } else {
+          sink.addRecord(output.record, output.lanes);
+        }
+      }
+      if (chunk.failure != null) {
+        Throwables.propagateIfInstanceOf(chunk.failure, StageException.class);
+        throw Throwables.propagate(chunk.failure);
+      }
+    }
+  }
+
+  /**
+   * Handles a record error as record processors do, following the On Record Error configuration of the stage.
+   */
+  static void handleError(Stage.Context context, Record record, OnRecordErrorException error) throws StageException {
+    switch (context.getOnErrorRecord()) {
+      case DISCARD:
+        break;
+      case TO_ERROR:
+        context.toError(record, error);
+        break;
+      case STOP_PIPELINE:
+        throw error;
+      default:
+        throw new IllegalStateException(Utils.format("Unknown OnRecordError option '{}'", context.getOnErrorRecord()));
+    }
+  }
+
+  private static class Output {
+    private final Record record;
+    private final String[] lanes;
+    private final OnRecordErrorException error;
+
+    Output(Record record, String[] lanes, OnRecordErrorException error) {
+      this.record = record;
+      this.lanes = lanes;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Records of one task, it collects the records added to it as a batch maker.
+   */
+  private static class Chunk implements BatchMaker {
+    private final List<Record> records;
+    private final List<String> lanes;
+    private final List<Output> outputs;
+    private Throwable failure;
+
+    Chunk(List<Record> records, List<String> lanes) {
+      this.records = records;
+      this.lanes = lanes;
+      this.outputs = new ArrayList<>(records.size());
+    }
+
+    @Override
+    public List<String> getLanes() {
+      return lanes;
+    }
+
+    @Override
+    public void addRecord(Record record, String... lanes) {
+      outputs.add(new Output(record, lanes, null));
+    }
+
+    void run(RecordTask task, ClassLoader classLoader, Map<String, String> mdcContext) {
+      Thread thread = Thread.currentThread();
+      ClassLoader previousClassLoader = thread.getContextClassLoader();
+      if (classLoader != null) {
+        // pool threads run stage code, they need the stage class loader and the logging context of the pipeline
+        thread.setContextClassLoader(classLoader);
+        if (mdcContext != null) {
+          MDC.setContextMap(mdcContext);
+        }
+      }
+      try {
+        for (Record record : records) {
+          try {
+            task.process(record, this);
+          } catch (OnRecordErrorException ex) {
+            outputs.add(new Output(record, null, ex));
+          }
+        }
+      } catch (Throwable ex) {
+        // the remaining records are not processed, the failure is thrown by the calling thread
+        failure = ex;
+      } finally {
+        if (classLoader != null) {
+          thread.setContextClassLoader(previousClassLoader);
+          MDC.clear();
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.parallel;
+
+import com.google.common.collect.Lists;
+import com.streamsets.pipeline.api.Batch;
+import com.streamsets.pipeline.api.BatchMaker;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.base.RecordProcessor;
+
+import java.util.List;
+
+/**
+ * {@link RecordProcessor} that processes the records of large batches in parallel.
+ * <p/>
+ * Extending this class declares that {@link #process(Record, BatchMaker)} is thread safe: it can be called
+ * concurrently for different records of the same batch. Records with errors must be reported by throwing
+ * {@link com.streamsets.pipeline.api.base.OnRecordErrorException}, the stage context must not be used to send records
+ * to error. Each output lane gets the records in the order of the input records.
+ */
+public abstract class ParallelRecordProcessor extends RecordProcessor {
+
+  @Override
+  public void process(Batch batch, BatchMaker batchMaker) throws StageException {
+    if (!isParallelProcessingEnabled()) {
+      super.process(batch, batchMaker);
+      return;
+    }
+    List<Record> records = Lists.newArrayList(batch.getRecords());
+    if (!ParallelRecordProcessing.shouldSplit(records.size(), getMinRecordsPerTask())) {
+      super.process(batch, batchMaker);
+      return;
+    }
+    ParallelRecordProcessing.process(
+        getContext(),
+        records,
+        batchMaker.getLanes(),
+        getMinRecordsPerTask(),
+        this::process,
+        batchMaker::addRecord
+    );
+  }
+
+  /**
+   * Returns if the records can be processed in parallel, subclasses can disable it based on their configuration.
+   */
+  protected boolean isParallelProcessingEnabled() {
+    return true;
+  }
+
+  /**
+   * Returns the minimum number of records processed by a task, batches with less than twice this number of records
+   * are processed serially.
+   */
+  protected int getMinRecordsPerTask() {
+    return ParallelRecordProcessing.MIN_RECORDS_PER_TASK;
+  }
+
+}
@@ -24,11 +24,17 @@ import javax.script.ScriptEngine;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -70,6 +76,18 @@ public class ScriptObjectFactory {
     public InputStream getInputStream() throws IOException;
   }
 
+  /**
+   * Map or list given to scripts as a view over the fields of a record.
+   */
+  public interface ScriptView {
+
+    /**
+     * Returns the field with the current content of the view, the original one if the script did not change it.
+     */
+    public Field toField(Record record, String path);
+
+  }
+
   private class ScriptFileRefImpl implements ScriptFileRef {
     private final FileRef fileRef;
     private final Stage.Context context;
@@ -112,6 +130,14 @@ public class ScriptObjectFactory {
     return elements;
   }
 
+  /**
+   * Returns if scripts get maps and lists as lazy views over the record fields. Factories creating their own script
+   * maps and lists (see createMap() and createArray()) must return false, so the field tree is converted eagerly.
+   */
+  protected boolean useScriptViews() {
+    return true;
+  }
+
   @SuppressWarnings("unchecked")
   protected Object fieldToScript(Field field) {
     Object scriptObject = null;
@@ -121,6 +147,10 @@ public class ScriptObjectFactory {
         switch (field.getType()) {
           case MAP:
           case LIST_MAP:
+            if (useScriptViews()) {
+              scriptObject = new ScriptMapView(field);
+              break;
+            }
             Map<String, Field> fieldMap = (Map<String, Field>) scriptObject;
             Object scriptMap = createMap(field.getType() == Field.Type.LIST_MAP);
             for (Map.Entry<String, Field> entry : fieldMap.entrySet()) {
@@ -129,6 +159,10 @@ public class ScriptObjectFactory {
             scriptObject = scriptMap;
             break;
           case LIST:
+            if (useScriptViews()) {
+              scriptObject = new ScriptListView(field);
+              break;
+            }
             List<Field> fieldArray = (List<Field>) scriptObject;
             List scripArrayElements = new ArrayList();
             for (Field aFieldArray : fieldArray) {
@@ -181,7 +215,9 @@ public class ScriptObjectFactory {
   protected Field scriptToField(Object scriptObject, Record record, String path) {
     Field field;
     if (scriptObject != null) {
-      if (scriptObject instanceof Map) {
+      if (scriptObject instanceof ScriptView) {
+        field = ((ScriptView) scriptObject).toField(record, path);
+      } else if (scriptObject instanceof Map) {
         Map<String, Object> scriptMap = (Map<String, Object>) scriptObject;
         LinkedHashMap<String, Field> fieldMap = new LinkedHashMap<>();
         for (Map.Entry<String, Object> entry : scriptMap.entrySet()) {
@@ -252,4 +288,297 @@ public class ScriptObjectFactory {
   protected FileRef getFileRefFromScriptFileRef(ScriptFileRef scriptObject) {
     return ((ScriptFileRefImpl)scriptObject).fileRef;
   }
+
+  private interface TrackedScriptView extends ScriptView {
+
+    // if the script changed the view or any of the nested views it read
+    boolean isChanged();
+
+    // the field of the view is now part of a record, next time the view has to return a copy
+    void markEmitted();
+
+  }
+
+  // values of script views are the original fields until the script reads them, nested maps and lists are then
+  // replaced by their own views, so the changes done through them are tracked
+  private Object toScriptValue(Object value) {
+    return (value instanceof Field) ? fieldToScript((Field) value) : value;
+  }
+
+  private static boolean anyChanged(Iterable<Object> values) {
+    for (Object value : values) {
+      if (value instanceof TrackedScriptView && ((TrackedScriptView) value).isChanged()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void markAllEmitted(Iterable<Object> values) {
+    for (Object value : values) {
+      if (value instanceof TrackedScriptView) {
+        ((TrackedScriptView) value).markEmitted();
+      }
+    }
+  }
+
+  /**
+   * Lazy view of a MAP or LIST_MAP field, the field is only rebuilt if the script changed the map or the maps and
+   * lists read from it.
+   */
+  private class ScriptMapView extends AbstractMap<String, Object> implements MapInfo, TrackedScriptView {
+    private final Field field;
+    private final Map<String, Object> values;
+    private boolean changed;
+    private boolean emitted;
+
+    @SuppressWarnings("unchecked")
+    ScriptMapView(Field field) {
+      this.field = field;
+      this.values = new LinkedHashMap<>((Map<String, Field>) field.getValue());
+    }
+
+    @Override
+    public boolean isListMap() {
+      return field.getType() == Field.Type.LIST_MAP;
+    }
+
+    @Override
+    public int size() {
+      return values.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return values.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+      Object value = values.get(key);
+      if (value instanceof Field) {
+        value = fieldToScript((Field) value);
+        if (value instanceof ScriptView) {
+          values.put((String) key, value);
+        }
+      }
+      return value;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+      changed = true;
+      return toScriptValue(values.put(key, value));
+    }
+
+    @Override
+    public Object remove(Object key) {
+      if (!values.containsKey(key)) {
+        return null;
+      }
+      changed = true;
+      return toScriptValue(values.remove(key));
+    }
+
+    @Override
+    public void clear() {
+      changed = true;
+      values.clear();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public int size() {
+          return values.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          final Iterator<String> keys = values.keySet().iterator();
+          return new Iterator<Entry<String, Object>>() {
+            @Override
+            public boolean hasNext() {
+              return keys.hasNext();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              return new ViewEntry(keys.next());
+            }
+
+            @Override
+            public void remove() {
+              changed = true;
+              keys.remove();
+            }
+          };
+        }
+      };
+    }
+
+    @Override
+    public boolean isChanged() {
+      return changed || anyChanged(values.values());
+    }
+
+    @Override
+    public void markEmitted() {
+      emitted = true;
+      markAllEmitted(values.values());
+    }
+
+    @Override
+    public Field toField(Record record, String path) {
+      boolean copy = emitted;
+      Field result;
+      if (isChanged()) {
+        LinkedHashMap<String, Field> fieldMap = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+          Object value = entry.getValue();
+          fieldMap.put(
+              entry.getKey(),
+              (value instanceof Field) ? (Field) value :
+                  scriptToField(value, record, composeMapPath(path, entry.getKey()))
+          );
+        }
+        result = (isListMap()) ? Field.createListMap(fieldMap) : Field.create(fieldMap);
+        emitted = true;
+      } else {
+        result = field;
+        markEmitted();
+      }
+      return (copy) ? result.clone() : result;
+    }
+
+    // entry converting its value only when read
+    private class ViewEntry implements Entry<String, Object> {
+      private final String key;
+
+      ViewEntry(String key) {
+        this.key = key;
+      }
+
+      @Override
+      public String getKey() {
+        return key;
+      }
+
+      @Override
+      public Object getValue() {
+        return get(key);
+      }
+
+      @Override
+      public Object setValue(Object value) {
+        return put(key, value);
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+        if (!(obj instanceof Entry)) {
+          return false;
+        }
+        Entry other = (Entry) obj;
+        return key.equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+      }
+
+      @Override
+      public int hashCode() {
+        return key.hashCode() ^ Objects.hashCode(getValue());
+      }
+
+      @Override
+      public String toString() {
+        return key + "=" + getValue();
+      }
+    }
+  }
+
+  /**
+   * Lazy view of a LIST field, the field is only rebuilt if the script changed the list or the maps and lists read
+   * from it.
+   */
+  private class ScriptListView extends AbstractList<Object> implements TrackedScriptView {
+    private final Field field;
+    private final List<Object> values;
+    private boolean changed;
+    private boolean emitted;
+
+    @SuppressWarnings("unchecked")
+    ScriptListView(Field field) {
+      this.field = field;
+      this.values = new ArrayList<>((List<Field>) field.getValue());
+    }
+
+    @Override
+    public int size() {
+      return values.size();
+    }
+
+    @Override
+    public Object get(int index) {
+      Object value = values.get(index);
+      if (value instanceof Field) {
+        value = fieldToScript((Field) value);
+        if (value instanceof ScriptView) {
+          values.set(index, value);
+        }
+      }
+      return value;
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+      changed = true;
+      return toScriptValue(values.set(index, element));
+    }
+
+    @Override
+    public void add(int index, Object element) {
+      changed = true;
+      modCount++;
+      values.add(index, element);
+    }
+
+    @Override
+    public Object remove(int index) {
+      changed = true;
+      modCount++;
+      return toScriptValue(values.remove(index));
+    }
+
+    @Override
+    public boolean isChanged() {
+      return changed || anyChanged(values);
+    }
+
+    @Override
+    public void markEmitted() {
+      emitted = true;
+      markAllEmitted(values);
+    }
+
+    @Override
+    public Field toField(Record record, String path) {
+      boolean copy = emitted;
+      Field result;
+      if (isChanged()) {
+        List<Field> fieldList = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+          Object value = values.get(i);
+          fieldList.add(
+              (value instanceof Field) ? (Field) value : scriptToField(value, record, composeArrayPath(path, i))
+          );
+        }
+        result = Field.create(fieldList);
+        emitted = true;
+      } else {
+        result = field;
+        markEmitted();
+      }
+      return (copy) ? result.clone() : result;
+    }
+  }
 }
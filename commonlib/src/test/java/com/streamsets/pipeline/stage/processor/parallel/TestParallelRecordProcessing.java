@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.parallel;
+
+import com.google.common.collect.ImmutableList;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Processor;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.base.OnRecordErrorException;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import com.streamsets.pipeline.stage.origin.lib.BasicErrors;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestParallelRecordProcessing {
+
+  private static List<Record> createRecords(int count) {
+    List<Record> records = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Record record = RecordCreator.create();
+      record.set(Field.create(i));
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static List<Integer> values(List<Record> records) {
+    List<Integer> values = new ArrayList<>(records.size());
+    for (Record record : records) {
+      values.add(record.get().getValueAsInteger());
+    }
+    return values;
+  }
+
+  @Test
+  public void testOrderPerLane() throws Exception {
+    List<Record> records = createRecords(10000);
+    Processor.Context context = Mockito.mock(Processor.Context.class);
+    List<Record> even = new ArrayList<>();
+    List<Record> odd = new ArrayList<>();
+
+    ParallelRecordProcessing.process(
+        context,
+        records,
+        ImmutableList.of("even", "odd"),
+        100,
+        (record, batchMaker) -> batchMaker.addRecord(record, (record.get().getValueAsInteger() % 2 == 0) ? "even" : "odd"),
+        (record, lanes) -> (lanes[0].equals("even") ? even : odd).add(record)
+    );
+
+    Assert.assertEquals(5000, even.size());
+    Assert.assertEquals(5000, odd.size());
+    List<Integer> evenValues = values(even);
+    List<Integer> oddValues = values(odd);
+    for (int i = 0; i < 5000; i++) {
+      Assert.assertEquals(2 * i, (int) evenValues.get(i));
+      Assert.assertEquals(2 * i + 1, (int) oddValues.get(i));
+    }
+  }
+
+  @Test
+  public void testRecordErrors() throws Exception {
+    List<Record> records = createRecords(10000);
+    Processor.Context context = Mockito.mock(Processor.Context.class);
+    Mockito.when(context.getOnErrorRecord()).thenReturn(OnRecordError.TO_ERROR);
+    List<Integer> errors = Collections.synchronizedList(new ArrayList<>());
+    Mockito.doAnswer(invocation -> {
+      errors.add(((Record) invocation.getArguments()[0]).get().getValueAsInteger());
+      return null;
+    }).when(context).toError(Mockito.any(Record.class), Mockito.any(Exception.class));
+    List<Record> output = new ArrayList<>();
+
+    ParallelRecordProcessing.process(
+        context,
+        records,
+        ImmutableList.of("a"),
+        100,
+        (record, batchMaker) -> {
+          if (record.get().getValueAsInteger() % 1000 == 0) {
+            throw new OnRecordErrorException(record, BasicErrors.BASIC_01, "test");
+          }
+          batchMaker.addRecord(record, "a");
+        },
+        (record, lanes) -> output.add(record)
+    );
+
+    Assert.assertEquals(9990, output.size());
+    List<Integer> expectedErrors = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      expectedErrors.add(i * 1000);
+    }
+    Assert.assertEquals(expectedErrors, errors);
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    List<Record> records = createRecords(10000);
+    Processor.Context context = Mockito.mock(Processor.Context.class);
+    List<Record> output = new ArrayList<>();
+
+    try {
+      ParallelRecordProcessing.process(
+          context,
+          records,
+          ImmutableList.of("a"),
+          100,
+          (record, batchMaker) -> {
+            if (record.get().getValueAsInteger() == 9000) {
+              throw new StageException(BasicErrors.BASIC_01, "test");
+            }
+            batchMaker.addRecord(record, "a");
+          },
+          (record, lanes) -> output.add(record)
+      );
+      Assert.fail("Expected StageException");
+    } catch (StageException ex) {
+      Assert.assertEquals(BasicErrors.BASIC_01, ex.getErrorCode());
+    }
+    // records before the failed one were output in order
+    Assert.assertTrue(output.size() >= 9000);
+    Assert.assertEquals(values(records.subList(0, 9000)), values(output.subList(0, 9000)));
+  }
+
+}
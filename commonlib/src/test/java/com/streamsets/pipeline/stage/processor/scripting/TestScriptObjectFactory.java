@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.scripting;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestScriptObjectFactory {
+  private ScriptObjectFactory factory;
+  private Record record;
+  private Field root;
+
+  @Before
+  public void setUp() {
+    factory = new ScriptObjectFactory(null, null);
+
+    LinkedHashMap<String, Field> nested = new LinkedHashMap<>();
+    nested.put("x", Field.create(1));
+    nested.put("d", Field.createDate(new Date(0)));
+    List<Field> list = new ArrayList<>();
+    list.add(Field.create(1L));
+    list.add(Field.create(Field.Type.INTEGER, null));
+    LinkedHashMap<String, Field> map = new LinkedHashMap<>();
+    map.put("a", Field.create("A"));
+    map.put("n", Field.createListMap(nested));
+    map.put("l", Field.create(list));
+
+    record = RecordCreator.create();
+    record.set(Field.create(map));
+    root = record.get();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> getValue(ScriptRecord scriptRecord) {
+    return (Map<String, Object>) scriptRecord.value;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testReadOnlyScriptKeepsFields() {
+    ScriptRecord scriptRecord = factory.createScriptRecord(record);
+    Map<String, Object> value = getValue(scriptRecord);
+    Assert.assertEquals("A", value.get("a"));
+    Assert.assertEquals(1, ((Map<String, Object>) value.get("n")).get("x"));
+    Assert.assertTrue(((ScriptObjectFactory.MapInfo) value.get("n")).isListMap());
+    Assert.assertEquals(2, ((List<Object>) value.get("l")).size());
+
+    Assert.assertSame(root, factory.getRecord(scriptRecord).get());
+
+    // a record written twice does not share its fields
+    Field second = factory.getRecord(scriptRecord).get();
+    Assert.assertNotSame(root, second);
+    Assert.assertEquals(root, second);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testOnlyChangedSubtreesRebuilt() {
+    Map<String, Field> original = root.getValueAsMap();
+    ScriptRecord scriptRecord = factory.createScriptRecord(record);
+    ((Map<String, Object>) getValue(scriptRecord).get("n")).put("y", "new");
+
+    Map<String, Field> map = factory.getRecord(scriptRecord).get().getValueAsMap();
+    Assert.assertSame(original.get("a"), map.get("a"));
+    Assert.assertSame(original.get("l"), map.get("l"));
+
+    Field nested = map.get("n");
+    Assert.assertEquals(Field.Type.LIST_MAP, nested.getType());
+    Assert.assertEquals(3, nested.getValueAsListMap().size());
+    // fields not touched by the script keep their type
+    Assert.assertEquals(Field.Type.DATE, nested.getValueAsListMap().get("d").getType());
+    Assert.assertEquals("new", nested.getValueAsListMap().get("y").getValueAsString());
+    Assert.assertEquals(2, original.get("n").getValueAsListMap().size());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testListChanges() {
+    ScriptRecord scriptRecord = factory.createScriptRecord(record);
+    List<Object> list = (List<Object>) getValue(scriptRecord).get("l");
+    Assert.assertNull(list.get(1));
+    list.add("z");
+
+    List<Field> fields = factory.getRecord(scriptRecord).get().getValueAsMap().get("l").getValueAsList();
+    Assert.assertEquals(3, fields.size());
+    Assert.assertEquals(Field.Type.INTEGER, fields.get(1).getType());
+    Assert.assertEquals("z", fields.get(2).getValueAsString());
+  }
+
+  @Test
+  public void testEntrySetChanges() {
+    ScriptRecord scriptRecord = factory.createScriptRecord(record);
+    Iterator<Map.Entry<String, Object>> iterator = getValue(scriptRecord).entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Object> entry = iterator.next();
+      if (entry.getKey().equals("a")) {
+        entry.setValue("B");
+      } else if (entry.getKey().equals("l")) {
+        iterator.remove();
+      }
+    }
+
+    Map<String, Field> map = factory.getRecord(scriptRecord).get().getValueAsMap();
+    Assert.assertEquals(2, map.size());
+    Assert.assertEquals("B", map.get("a").getValueAsString());
+    Assert.assertSame(root.getValueAsMap().get("n"), map.get("n"));
+  }
+
+  @Test
+  public void testSameViewInTwoPlaces() {
+    ScriptRecord scriptRecord = factory.createScriptRecord(record);
+    Map<String, Object> value = getValue(scriptRecord);
+    value.put("copy", value.get("n"));
+
+    Map<String, Field> map = factory.getRecord(scriptRecord).get().getValueAsMap();
+    Assert.assertEquals(map.get("n"), map.get("copy"));
+    Assert.assertNotSame(map.get("n"), map.get("copy"));
+  }
+
+}
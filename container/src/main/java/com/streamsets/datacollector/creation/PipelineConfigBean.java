@@ -22,6 +22,8 @@ import com.streamsets.datacollector.config.ErrorRecordPolicyChooserValues;
 import com.streamsets.datacollector.config.ExecutionModeChooserValues;
 import com.streamsets.datacollector.config.MemoryLimitExceeded;
 import com.streamsets.datacollector.config.MemoryLimitExceededChooserValues;
+import com.streamsets.datacollector.config.OffsetStorageMode;
+import com.streamsets.datacollector.config.OffsetStorageModeChooserValues;
 import com.streamsets.datacollector.config.PipelineGroups;
 import com.streamsets.datacollector.config.PipelineLifecycleStageChooserValues;
 import com.streamsets.datacollector.config.PipelineState;
@@ -56,7 +58,7 @@ import java.util.Map;
 @ConfigGroups(PipelineGroups.class)
 public class PipelineConfigBean implements Stage {
 
-  public static final int VERSION = 7;
+  public static final int VERSION = 9;
 
   @ConfigDef(
       required = true,
@@ -312,6 +314,33 @@ public class PipelineConfigBean implements Stage {
   )
   public int maxRunners = 0;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1",
+      label = "Max Batches In Flight",
+      description = "For single-threaded origins, number of batches that can be processed at the same time. With " +
+          "more than 1, the origin and the processors before the first destination or executor work on the next " +
+          "batch while the rest of the pipeline finishes the current one. Offsets are still committed in order.",
+      min = 1,
+      max = 16,
+      displayPosition = 192
+  )
+  public int maxBatchesInFlight = 1;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.MODEL,
+      defaultValue = "FULL_REWRITE",
+      label = "Offset Storage",
+      description = "How committed offsets are persisted. Write-ahead log appends only the changed offset on each " +
+          "commit and periodically compacts the log into the offset file, which is cheaper for origins tracking " +
+          "many offsets.",
+      displayPosition = 195
+  )
+  @ValueChooserModel(OffsetStorageModeChooserValues.class)
+  public OffsetStorageMode offsetStorageMode = OffsetStorageMode.FULL_REWRITE;
+
   @ConfigDef(
     required = true,
     type = ConfigDef.Type.BOOLEAN,
@@ -16,6 +16,7 @@
 package com.streamsets.datacollector.creation;
 
 import com.google.common.collect.ImmutableList;
+import com.streamsets.datacollector.config.OffsetStorageMode;
 import com.streamsets.datacollector.config.PipelineState;
 import com.streamsets.pipeline.api.Config;
 import com.streamsets.pipeline.api.ExecutionMode;
@@ -50,6 +51,12 @@ public class PipelineConfigUpgrader implements StageUpgrader {
         // fall through
       case 6:
         upgradeV6ToV7(configs);
+        // fall through
+      case 7:
+        upgradeV7ToV8(configs);
+        // fall through
+      case 8:
+        upgradeV8ToV9(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -112,4 +119,12 @@ public class PipelineConfigUpgrader implements StageUpgrader {
   private void upgradeV6ToV7(List<Config> configs) {
     configs.add(new Config("workerCount", 0));
   }
+
+  private void upgradeV7ToV8(List<Config> configs) {
+    configs.add(new Config("offsetStorageMode", OffsetStorageMode.FULL_REWRITE));
+  }
+
+  private void upgradeV8ToV9(List<Config> configs) {
+    configs.add(new Config("maxBatchesInFlight", 1));
+  }
 }
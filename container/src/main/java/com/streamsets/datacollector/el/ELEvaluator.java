@@ -21,6 +21,8 @@ import com.streamsets.pipeline.api.el.ELEvalException;
 import com.streamsets.pipeline.api.el.ELVars;
 import com.streamsets.pipeline.api.impl.Utils;
 import com.streamsets.pipeline.lib.util.CommonError;
+import org.apache.commons.el.CompiledExpression;
+import org.apache.commons.el.ExpressionCompiler;
 import org.apache.commons.el.LruExpressionEvaluatorImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,15 +35,26 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ELEvaluator extends ELEval {
   private static final Logger LOG = LoggerFactory.getLogger(ELEvaluator.class);
+
+  public static final String COMPILED_EL_KEY = "el.compiled.enabled";
+  public static final boolean COMPILED_EL_DEFAULT = false;
+
+  // expressions are config values, this is only a safety net for stages evaluating generated expressions
+  private static final int MAX_COMPILED_EXPRESSIONS = 1000;
+
   private final String configName;
   private final Map<String, Object> constants;
   private final Map<String, Map<String,Method>> functionsByNamespace;
   private final FunctionMapperImpl functionMapper;
   private final List<ElFunctionDefinition> elFunctionDefinitions;
   private final List<ElConstantDefinition> elConstantDefinitions;
+  private final ExpressionCompiler compiler;
+  private final ConcurrentMap<String, CompiledExpression> compiledExpressions;
 
   // ExpressionEvaluatorImpl can be used as a singleton
   private static final LruExpressionEvaluatorImpl EVALUATOR = new LruExpressionEvaluatorImpl();
@@ -51,6 +64,21 @@ public class ELEvaluator extends ELEval {
   }
 
   public ELEvaluator(String configName, boolean explicit, Map<String, Object> constants, Class<?>... elFuncConstDefClasses) {
+    this(configName, explicit, false, constants, elFuncConstDefClasses);
+  }
+
+  /**
+   * If 'compiled' is true expressions are compiled on their first evaluation (functions resolved and constant
+   * sub-expressions folded) and the compiled form is reused by later evaluations. EL constants are resolved at
+   * compile time, so in compiled mode they cannot be shadowed by variables with the same name.
+   */
+  public ELEvaluator(
+      String configName,
+      boolean explicit,
+      boolean compiled,
+      Map<String, Object> constants,
+      Class<?>... elFuncConstDefClasses
+  ) {
     this.configName = configName;
     this.constants = new HashMap<>(constants);
     functionsByNamespace = new HashMap<>();
@@ -58,6 +86,13 @@ public class ELEvaluator extends ELEval {
     elConstantDefinitions = new ArrayList<>();
     populateConstantsAndFunctions(explicit, elFuncConstDefClasses);
     this.functionMapper = new FunctionMapperImpl();
+    if (compiled) {
+      compiler = new ExpressionCompiler(EVALUATOR, functionMapper, this.constants);
+      compiledExpressions = new ConcurrentHashMap<>();
+    } else {
+      compiler = null;
+      compiledExpressions = null;
+    }
   }
 
   public ELEvaluator(String configName, Class<?>... elFuncConstDefClasses) {
@@ -142,6 +177,9 @@ public class ELEvaluator extends ELEval {
       }
     };
     try {
+      if (compiler != null) {
+        return (T) getCompiledExpression(expression).evaluate(variableResolver, returnType);
+      }
       return (T) EVALUATOR.evaluate(expression, returnType, variableResolver, functionMapper);
     } catch (ELException e) {
       // Apache evaluator is not using the getCause exception chaining that is available in Java but rather a custom
@@ -159,6 +197,21 @@ public class ELEvaluator extends ELEval {
     }
   }
 
+  private CompiledExpression getCompiledExpression(String expression) throws ELException {
+    CompiledExpression compiled = compiledExpressions.get(expression);
+    if (compiled == null) {
+      compiled = compiler.compile(expression);
+      if (compiledExpressions.size() < MAX_COMPILED_EXPRESSIONS) {
+        compiledExpressions.putIfAbsent(expression, compiled);
+      }
+    }
+    return compiled;
+  }
+
+  public boolean isCompiled() {
+    return compiler != null;
+  }
+
   private class FunctionMapperImpl implements FunctionMapper {
 
     @Override
@@ -63,7 +63,6 @@ public class DataRuleEvaluator {
   public static final String PIPELINE_CONTEXT = "PIPELINE";
   public static final String RULE_ID_CONTEXT = "RULE_ID";
 
-
   private static List<String> createElFunctionIdx(String setName) {
     List<ElFunctionDefinition> defs = ELDefinitionExtractor.get().extractFunctions(
         RuleELRegistry.getRuleELs(setName),
@@ -88,6 +87,25 @@ public class DataRuleEvaluator {
     return idx;
   }
 
+  private static ELEvaluator createEvaluator(String configName, String family) {
+    return new ELEvaluator(configName, false, true, new HashMap<String, Object>(), RuleELRegistry.getRuleELs(family));
+  }
+
+  /**
+   * Creates an evaluator for the conditions of the rules of the given family. Evaluators are thread safe and keep
+   * the expressions they compile, they can be shared by the evaluations of the same rules.
+   */
+  public static ELEvaluator createConditionEvaluator(String family) {
+    return createEvaluator("el", family);
+  }
+
+  /**
+   * Creates an evaluator for rule alert texts, see {@link #createConditionEvaluator(String)}.
+   */
+  public static ELEvaluator createAlertTextEvaluator() {
+    return createEvaluator("alertInfo", RuleELRegistry.ALERT);
+  }
+
   private static Map<String,Map<String, List<String>>> createDataRulesElDefs() {
     Map<String,Map<String, List<String>>> defs = new HashMap<>();
     for (String setName : RuleELRegistry.getFamilies()) {
@@ -109,6 +127,8 @@ public class DataRuleEvaluator {
   private final String rev;
   private final MetricRegistryJson metricRegistryJson;
   private final BlockingQueue<Record> statsQueue;
+  private final ELEvaluator conditionEvaluator;
+  private final ELEvaluator alertTextEvaluator;
 
   public DataRuleEvaluator(
       String name,
@@ -121,6 +141,36 @@ public class DataRuleEvaluator {
       Configuration configuration,
       MetricRegistryJson metricRegistryJson,
       BlockingQueue<Record> statsQueue
+  ) {
+    this(
+        name,
+        rev,
+        metrics,
+        alertManager,
+        ruleDefinitionsConfigBean,
+        pipelineELContext,
+        dataRuleDefinition,
+        configuration,
+        metricRegistryJson,
+        statsQueue,
+        createConditionEvaluator(dataRuleDefinition.getFamily()),
+        createAlertTextEvaluator()
+    );
+  }
+
+  public DataRuleEvaluator(
+      String name,
+      String rev,
+      MetricRegistry metrics,
+      AlertManager alertManager,
+      RuleDefinitionsConfigBean ruleDefinitionsConfigBean,
+      Map<String, Object> pipelineELContext,
+      DataRuleDefinition dataRuleDefinition,
+      Configuration configuration,
+      MetricRegistryJson metricRegistryJson,
+      BlockingQueue<Record> statsQueue,
+      ELEvaluator conditionEvaluator,
+      ELEvaluator alertTextEvaluator
   ) {
     this.name = name;
     this.rev = rev;
@@ -132,6 +182,8 @@ public class DataRuleEvaluator {
     this.alertManager = alertManager;
     this.metricRegistryJson = metricRegistryJson;
     this.statsQueue = statsQueue;
+    this.conditionEvaluator = conditionEvaluator;
+    this.alertTextEvaluator = alertTextEvaluator;
   }
 
   public void evaluateRule(List<Record> sampleRecords, String lane,
@@ -300,7 +352,7 @@ public class DataRuleEvaluator {
         record,
         el,
         elVars,
-        new ELEvaluator("el",false, RuleELRegistry.getRuleELs(dataRuleDefinition.getFamily()))
+        conditionEvaluator
       );
     } catch (ObserverException e) {
       //A faulty condition should not take down rest of the alerts with it.
@@ -322,10 +374,9 @@ public class DataRuleEvaluator {
         alertText = "";
       }
 
-      ELEvaluator elEval = new ELEvaluator("alertInfo",false, RuleELRegistry.getRuleELs(RuleELRegistry.ALERT));
       RecordEL.setRecordInContext(elVars, record);
 
-      return elEval.eval(elVars, alertText, String.class);
+      return alertTextEvaluator.eval(elVars, alertText, String.class);
 
     } catch (ELEvalException e) {
       //A faulty el alerttext should not take down rest of the alerts with it.
@@ -97,6 +97,7 @@ public class DataObserverRunnable implements Runnable {
         }
       }
     } finally {
+      dataObserverRunner.destroy();
       Thread.currentThread().setName(originalName);
     }
   }
@@ -16,12 +16,15 @@
 package com.streamsets.datacollector.execution.runner.common;
 
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.EvictingQueue;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.streamsets.datacollector.config.DataRuleDefinition;
 import com.streamsets.datacollector.creation.PipelineBeanCreator;
 import com.streamsets.datacollector.creation.RuleDefinitionsConfigBean;
 import com.streamsets.datacollector.execution.alerts.AlertManager;
+import com.streamsets.datacollector.el.ELEvaluator;
 import com.streamsets.datacollector.execution.alerts.DataRuleEvaluator;
 import com.streamsets.datacollector.metrics.MetricsConfigurator;
 import com.streamsets.datacollector.restapi.bean.MetricRegistryJson;
@@ -35,20 +38,41 @@ import com.streamsets.pipeline.api.Record;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Evaluates data and drift rules over the records sampled by the {@link ProductionObserver}.
+ * <p/>
+ * With more than one evaluation thread the sampled records of each stream are evaluated by one of several single
+ * threaded executors, chosen by the stream name. All the rules of a stream (and their counters, meters, alerts and
+ * sampled records) are always handled by the same thread, in the order the requests were received.
+ */
 public class DataObserverRunner {
 
   private static final Logger LOG = LoggerFactory.getLogger(DataObserverRunner.class);
   private static final String USER_PREFIX = "user.";
+  static final String EVALUATION_TIMER = "observer.dataRulesEvaluation";
+
+  // evaluations queued per thread before the observer thread waits, requests must pile up in the observer queue
+  // where they are bounded and dropped, not in the executors
+  private static final int MAX_PENDING_EVALUATIONS_PER_THREAD = 2;
 
-  private RulesConfigurationChangeRequest rulesConfigurationChangeRequest;
+  private volatile RulesConfigurationChangeRequest rulesConfigurationChangeRequest;
+  private volatile RuleDefinitionsConfigBean ruleDefinitionsConfigBean;
   private final Map<String, EvictingQueue<SampledRecord>> ruleToSampledRecordsMap;
   private final MetricRegistry metrics;
   private final AlertManager alertManager;
@@ -59,6 +83,13 @@ public class DataObserverRunner {
   private final Map<String, Object> pipelineELContext;
   private BlockingQueue<Record> startsAggregatorQueue;
   private Map<String, Object> resolvedParameters;
+  private final Timer evaluationTimer;
+  private final ExecutorService[] evaluationExecutors;
+  private final Deque<Future<?>> pendingEvaluations;
+  private final int maxPendingEvaluations;
+  // evaluators keep the expressions they compile, they are shared by the evaluations of the current rules only
+  private final ConcurrentMap<String, ELEvaluator> conditionEvaluators;
+  private volatile ELEvaluator alertTextEvaluator;
 
   DataObserverRunner(
       String name,
@@ -69,13 +100,41 @@ public class DataObserverRunner {
       Map<String, Object> resolvedParameters
   ) {
     this.metrics = metrics;
-    this.ruleToSampledRecordsMap = new HashMap<>();
+    this.ruleToSampledRecordsMap = new ConcurrentHashMap<>();
     this.configuration = configuration;
     this.alertManager = alertManager;
     this.name = name;
     this.rev = rev;
-    this.pipelineELContext = new HashMap<>();
+    // drift rules of different streams share the pipeline context
+    this.pipelineELContext = Collections.synchronizedMap(new HashMap<String, Object>());
     this.resolvedParameters = resolvedParameters;
+    Timer timer = MetricsConfigurator.getTimer(metrics, EVALUATION_TIMER);
+    if (timer == null) {
+      timer = MetricsConfigurator.createTimer(metrics, EVALUATION_TIMER, name, rev);
+    }
+    this.evaluationTimer = timer;
+
+    int threads = configuration.get(
+        Constants.OBSERVER_EVALUATION_THREADS_KEY,
+        Constants.OBSERVER_EVALUATION_THREADS_DEFAULT
+    );
+    if (threads > 1) {
+      evaluationExecutors = new ExecutorService[threads];
+      for (int i = 0; i < threads; i++) {
+        evaluationExecutors[i] = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("DataRulesEvaluation-" + name + "-" + i)
+                .setDaemon(true)
+                .build()
+        );
+      }
+    } else {
+      evaluationExecutors = null;
+    }
+    this.pendingEvaluations = new ArrayDeque<>();
+    this.maxPendingEvaluations = threads * MAX_PENDING_EVALUATIONS_PER_THREAD;
+    this.conditionEvaluators = new ConcurrentHashMap<>();
+    this.alertTextEvaluator = DataRuleEvaluator.createAlertTextEvaluator();
   }
 
   void setStatsQueue(BlockingQueue<Record> startsAggregatorQueue) {
@@ -87,33 +146,55 @@ public class DataObserverRunner {
     //This is the map of ruleId vs sampled records
     Map<String, Map<String, List<Record>>> snapshot = dataRulesEvaluationRequest.getSnapshot();
     for(Map.Entry<String, Map<String, List<Record>>> e : snapshot.entrySet()) {
-      String lane = e.getKey();
-      Map<String, List<Record>> ruleIdToSampledRecords = e.getValue();
-      List<DataRuleDefinition> dataRuleDefinitions = rulesConfigurationChangeRequest.getLaneToDataRuleMap().get(lane);
+      final String lane = e.getKey();
+      final Map<String, List<Record>> ruleIdToSampledRecords = e.getValue();
+      if (evaluationExecutors == null) {
+        evaluateLane(lane, ruleIdToSampledRecords);
+      } else {
+        removeCompletedEvaluations();
+        while (pendingEvaluations.size() >= maxPendingEvaluations) {
+          if (!awaitEvaluation(pendingEvaluations.poll())) {
+            return;
+          }
+        }
+        int shard = (lane.hashCode() & Integer.MAX_VALUE) % evaluationExecutors.length;
+        pendingEvaluations.add(evaluationExecutors[shard].submit(new Runnable() {
+          @Override
+          public void run() {
+            evaluateLane(lane, ruleIdToSampledRecords);
+          }
+        }));
+      }
+    }
+  }
+
+  private void evaluateLane(String lane, Map<String, List<Record>> ruleIdToSampledRecords) {
+    List<DataRuleDefinition> dataRuleDefinitions = rulesConfigurationChangeRequest.getLaneToDataRuleMap().get(lane);
 
-      if (dataRuleDefinitions != null) {
+    if (dataRuleDefinitions != null) {
+      Timer.Context timerContext = evaluationTimer.time();
+      try {
         for (DataRuleDefinition dataRuleDefinition : dataRuleDefinitions) {
           //sampled records for that rule
           List<Record> sampledRecords = ruleIdToSampledRecords.get(dataRuleDefinition.getId());
           if(dataRuleDefinition.isEnabled()  && sampledRecords != null && sampledRecords.size() > 0) {
             //evaluate rule only if it is enabled and there are sampled records.
-            RuleDefinitionsConfigBean ruleDefinitionsConfigBean = PipelineBeanCreator.get()
-                .createRuleDefinitionsConfigBean(
-                    rulesConfigurationChangeRequest.getRuleDefinitions(),
-                    new ArrayList<Issue>(),
-                    resolvedParameters
-                );
             DataRuleEvaluator dataRuleEvaluator = new DataRuleEvaluator(
                 name,
                 rev,
                 metrics,
                 alertManager,
-                ruleDefinitionsConfigBean,
+                getRuleDefinitionsConfigBean(),
                 pipelineELContext,
                 dataRuleDefinition,
                 configuration,
                 metricRegistryJson,
-                startsAggregatorQueue
+                startsAggregatorQueue,
+                conditionEvaluators.computeIfAbsent(
+                    dataRuleDefinition.getFamily(),
+                    DataRuleEvaluator::createConditionEvaluator
+                ),
+                alertTextEvaluator
             );
             dataRuleEvaluator.evaluateRule(sampledRecords, lane, ruleToSampledRecordsMap);
           } else if (!dataRuleDefinition.isEnabled()) {
@@ -124,13 +205,75 @@ public class DataObserverRunner {
             }
           }
         }
+      } finally {
+        timerContext.stop();
+      }
+    }
+  }
+
+  private RuleDefinitionsConfigBean getRuleDefinitionsConfigBean() {
+    // the bean only depends on the rule definitions, it is created once per configuration change
+    RuleDefinitionsConfigBean configBean = ruleDefinitionsConfigBean;
+    if (configBean == null) {
+      configBean = PipelineBeanCreator.get().createRuleDefinitionsConfigBean(
+          rulesConfigurationChangeRequest.getRuleDefinitions(),
+          new ArrayList<Issue>(),
+          resolvedParameters
+      );
+      ruleDefinitionsConfigBean = configBean;
+    }
+    return configBean;
+  }
+
+  private void removeCompletedEvaluations() {
+    while (!pendingEvaluations.isEmpty() && pendingEvaluations.peek().isDone()) {
+      awaitEvaluation(pendingEvaluations.poll());
+    }
+  }
+
+  private boolean awaitEvaluation(Future<?> evaluation) {
+    try {
+      evaluation.get();
+    } catch (ExecutionException e) {
+      //A failing evaluation should not stop the evaluation of other streams.
+      LOG.error("Error evaluating data rules: {}", e.getCause().toString(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Waits for the evaluation of all the requests handled so far.
+   */
+  void awaitPendingEvaluations() {
+    while (!pendingEvaluations.isEmpty()) {
+      if (!awaitEvaluation(pendingEvaluations.poll())) {
+        return;
+      }
+    }
+  }
+
+  void destroy() {
+    if (evaluationExecutors != null) {
+      for (ExecutorService executor : evaluationExecutors) {
+        executor.shutdownNow();
       }
     }
+    conditionEvaluators.clear();
   }
 
   public void handleConfigurationChangeRequest(RulesConfigurationChangeRequest rulesConfigurationChangeRequest) {
+    //requests received before the change are evaluated with the previous rules
+    awaitPendingEvaluations();
+
     //update config changes
     this.rulesConfigurationChangeRequest = rulesConfigurationChangeRequest;
+    this.ruleDefinitionsConfigBean = null;
+    //drop the expressions compiled for the previous rules
+    conditionEvaluators.clear();
+    alertTextEvaluator = DataRuleEvaluator.createAlertTextEvaluator();
 
     //remove metrics for changed / deleted rules
     for(String ruleId : rulesConfigurationChangeRequest.getRulesToRemove().keySet()) {
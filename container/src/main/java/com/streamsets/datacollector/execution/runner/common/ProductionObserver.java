@@ -15,8 +15,12 @@
  */
 package com.streamsets.datacollector.execution.runner.common;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.streamsets.datacollector.config.DataRuleDefinition;
+import com.streamsets.datacollector.metrics.MetricsConfigurator;
 import com.streamsets.datacollector.record.RecordImpl;
 import com.streamsets.datacollector.runner.Observer;
 import com.streamsets.datacollector.runner.Pipe;
@@ -29,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -44,10 +49,16 @@ import java.util.concurrent.TimeUnit;
 public class ProductionObserver implements Observer {
 
   private static final Logger LOG = LoggerFactory.getLogger(ProductionObserver.class);
+  static final String QUEUE_SIZE_GAUGE = "observer.queueSize";
+  static final String DROPPED_REQUESTS_COUNTER = "observer.droppedRequests";
 
   private final com.streamsets.datacollector.util.Configuration configuration;
   private BlockingQueue<Object> observeRequests;
   private final MetricsObserverRunner metricsObserverRunner;
+  private final MetricRegistry metrics;
+  private final String name;
+  private final String rev;
+  private final Counter droppedRequestsCounter;
 
   private volatile RulesConfigurationChangeRequest currentConfig;
   private volatile RulesConfigurationChangeRequest newConfig;
@@ -69,9 +80,23 @@ public class ProductionObserver implements Observer {
   private final List<Integer> randomNumberSampleSpace;
 
   @Inject
-  public ProductionObserver(Configuration configuration, MetricsObserverRunner metricsObserverRunner) {
+  public ProductionObserver(
+      @Named("name") String name,
+      @Named("rev") String rev,
+      Configuration configuration,
+      MetricsObserverRunner metricsObserverRunner,
+      MetricRegistry metrics
+  ) {
+    this.name = name;
+    this.rev = rev;
     this.configuration = configuration;
     this.metricsObserverRunner = metricsObserverRunner;
+    this.metrics = metrics;
+    Counter counter = MetricsConfigurator.getCounter(metrics, DROPPED_REQUESTS_COUNTER);
+    if (counter == null) {
+      counter = MetricsConfigurator.createCounter(metrics, DROPPED_REQUESTS_COUNTER, name, rev);
+    }
+    this.droppedRequestsCounter = counter;
     this.laneToMaxRecordIndexMap = new HashMap<>();
     this.ruleIdToRecordIndexMap = new HashMap<>();
     this.laneToRecordCounterMap = new HashMap<>();
@@ -81,8 +106,15 @@ public class ProductionObserver implements Observer {
     }
   }
 
-  public void setObserveRequests(BlockingQueue<Object> observeRequests) {
+  public void setObserveRequests(final BlockingQueue<Object> observeRequests) {
     this.observeRequests = observeRequests;
+    MetricsConfigurator.removeGauge(metrics, QUEUE_SIZE_GAUGE, name, rev);
+    MetricsConfigurator.createGauge(metrics, QUEUE_SIZE_GAUGE, new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return observeRequests.size();
+      }
+    }, name, rev);
   }
 
   @Override
@@ -141,6 +173,7 @@ public class ProductionObserver implements Observer {
       offered = false;
     }
     if(!offered) {
+      droppedRequestsCounter.inc();
       LOG.error("Dropping DataRules Evaluation Request as observer queue is full. " +
         "Please resize the observer queue or decrease the sampling percentage.");
       //reconfigure queue size or tune sampling %
@@ -15,6 +15,7 @@
  */
 package com.streamsets.datacollector.execution.runner.common;
 
+import com.streamsets.datacollector.config.OffsetStorageMode;
 import com.streamsets.datacollector.config.PipelineConfiguration;
 import com.streamsets.datacollector.lineage.LineagePublisherTask;
 import com.streamsets.datacollector.main.RuntimeInfo;
@@ -23,8 +24,11 @@ import com.streamsets.datacollector.runner.Pipeline;
 import com.streamsets.datacollector.runner.PipelineRuntimeException;
 import com.streamsets.datacollector.runner.SourceOffsetTracker;
 import com.streamsets.datacollector.runner.UserContext;
+import com.streamsets.datacollector.runner.production.FileOffsetStore;
+import com.streamsets.datacollector.runner.production.OffsetStore;
 import com.streamsets.datacollector.runner.production.ProductionSourceOffsetCommitterOffsetTracker;
 import com.streamsets.datacollector.runner.production.ProductionSourceOffsetTracker;
+import com.streamsets.datacollector.runner.production.WriteAheadLogOffsetStore;
 import com.streamsets.datacollector.stagelibrary.StageLibraryTask;
 import com.streamsets.datacollector.util.Configuration;
 import com.streamsets.datacollector.util.ContainerError;
@@ -109,7 +113,12 @@ public class ProductionPipelineBuilder {
       sourceOffsetTracker = new ProductionSourceOffsetCommitterOffsetTracker(name, rev, runtimeInfo,
         (OffsetCommitter) pipeline.getSource());
     } else {
-      sourceOffsetTracker = new ProductionSourceOffsetTracker(name, rev, runtimeInfo);
+      sourceOffsetTracker = new ProductionSourceOffsetTracker(
+          name,
+          rev,
+          runtimeInfo,
+          createOffsetStore(pipeline.getPipelineConfig().offsetStorageMode)
+      );
     }
     runner.setOffsetTracker(sourceOffsetTracker);
     return new ProductionPipeline(
@@ -122,4 +131,20 @@ public class ProductionPipelineBuilder {
     );
   }
 
+  private OffsetStore createOffsetStore(OffsetStorageMode offsetStorageMode) {
+    if (offsetStorageMode == OffsetStorageMode.WRITE_AHEAD_LOG) {
+      return new WriteAheadLogOffsetStore(
+          runtimeInfo,
+          name,
+          rev,
+          configuration.get(WriteAheadLogOffsetStore.SYNC_KEY, WriteAheadLogOffsetStore.SYNC_DEFAULT),
+          configuration.get(
+              WriteAheadLogOffsetStore.COMPACTION_THRESHOLD_KEY,
+              WriteAheadLogOffsetStore.COMPACTION_THRESHOLD_DEFAULT
+          )
+      );
+    }
+    return new FileOffsetStore(runtimeInfo, name, rev);
+  }
+
 }
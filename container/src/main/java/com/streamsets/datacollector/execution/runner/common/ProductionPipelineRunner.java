@@ -28,6 +28,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.streamsets.datacollector.config.MemoryLimitConfiguration;
 import com.streamsets.datacollector.config.MemoryLimitExceeded;
 import com.streamsets.datacollector.config.PipelineConfiguration;
@@ -48,6 +49,7 @@ import com.streamsets.datacollector.runner.ErrorSink;
 import com.streamsets.datacollector.runner.EventSink;
 import com.streamsets.datacollector.runner.FullPipeBatch;
 import com.streamsets.datacollector.runner.Observer;
+import com.streamsets.datacollector.runner.ObserverPipe;
 import com.streamsets.datacollector.runner.Pipe;
 import com.streamsets.datacollector.runner.PipeBatch;
 import com.streamsets.datacollector.runner.PipeContext;
@@ -64,6 +66,7 @@ import com.streamsets.datacollector.runner.StagePipe;
 import com.streamsets.datacollector.runner.StageRuntime;
 import com.streamsets.datacollector.runner.production.BadRecordsHandler;
 import com.streamsets.datacollector.runner.production.PipelineErrorNotificationRequest;
+import com.streamsets.datacollector.runner.production.ProductionSourceOffsetTracker;
 import com.streamsets.datacollector.runner.production.ReportErrorDelegate;
 import com.streamsets.datacollector.runner.production.StatsAggregationHandler;
 import com.streamsets.datacollector.util.AggregatorUtil;
@@ -75,6 +78,7 @@ import com.streamsets.pipeline.api.BatchContext;
 import com.streamsets.pipeline.api.DeliveryGuarantee;
 import com.streamsets.pipeline.api.ErrorListener;
 import com.streamsets.pipeline.api.OffsetCommitTrigger;
+import com.streamsets.pipeline.api.OffsetCommitter;
 import com.streamsets.pipeline.api.PushSource;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.Source;
@@ -84,12 +88,15 @@ import com.streamsets.pipeline.api.impl.ErrorMessage;
 import com.streamsets.pipeline.api.impl.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -97,6 +104,10 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -123,6 +134,7 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
   private StatsAggregationHandler statsAggregationHandler;
 
   private final Timer batchProcessingTimer;
+  private final Timer offsetCommitTimer;
   private final Meter batchCountMeter;
   private final Counter batchCountCounter;
   private final Histogram batchInputRecordsHistogram;
@@ -156,6 +168,9 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
   private volatile int snapshotBatchSize;
   // Exception thrown while executing the pipeline
   private volatile Throwable exceptionFromExecution = null;
+
+  // Batch that failed in pipelined execution, batches produced after it must not be committed
+  private volatile Throwable pipelinedBatchFailure = null;
   /*Cache last N error records per stage in memory*/
   private final Map<String, EvictingQueue<Record>> stageToErrorRecordsMap;
   /*Cache last N error messages in memory*/
@@ -163,6 +178,8 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
   /**/
   private BlockingQueue<Object> observeRequests;
   private Observer observer;
+  // Serializes the observer between the threads of pipelined execution
+  private final Object observerLock = new Object();
   private BlockingQueue<Record> statsAggregatorRequests;
   private final List<BatchListener> batchListenerList = new CopyOnWriteArrayList<>();
   private MemoryLimitConfiguration memoryLimitConfiguration;
@@ -196,6 +213,7 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
 
     MetricsConfigurator.registerPipeline(pipelineName, revision);
     batchProcessingTimer = MetricsConfigurator.createTimer(metrics, "pipeline.batchProcessing", pipelineName, revision);
+    offsetCommitTimer = MetricsConfigurator.createTimer(metrics, "pipeline.offsetCommit", pipelineName, revision);
     batchCountMeter = MetricsConfigurator.createMeter(metrics, "pipeline.batchCount", pipelineName, revision);
     batchCountCounter = MetricsConfigurator.createCounter(metrics, "pipeline.batchCount", pipelineName, revision);
     batchInputRecordsHistogram = MetricsConfigurator.createHistogram5Min(metrics, "pipeline.inputRecordsPerBatch",
@@ -496,7 +514,12 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
 
   @Override
   public void commitOffset(String entity, String offset) {
-    offsetTracker.commitOffset(entity, offset);
+    Timer.Context context = offsetCommitTimer.time();
+    try {
+      offsetTracker.commitOffset(entity, offset);
+    } finally {
+      context.stop();
+    }
   }
 
   @Override
@@ -512,6 +535,12 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
   }
 
   public void runPollSource() throws StageException, PipelineException {
+    int maxBatchesInFlight = (pipelineConfigBean == null) ? 1 : pipelineConfigBean.maxBatchesInFlight;
+    if (maxBatchesInFlight > 1 && canPipelineBatches()) {
+      runPipelinedPollSource(maxBatchesInFlight);
+      return;
+    }
+
     while (!offsetTracker.isFinished() && !stop && !finished) {
       if (threadHealthReporter != null) {
         threadHealthReporter.reportHealth(ProductionPipelineRunnable.RUNNABLE_NAME, -1, System.currentTimeMillis());
@@ -570,6 +599,216 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
     }
   }
 
+  /**
+   * Batches can be pipelined only if the origin does not commit offsets itself and no destination controls when
+   * offsets are committed, as both rely on the origin seeing the offsets committed in order.
+   */
+  private boolean canPipelineBatches() {
+    if (originPipe.getStage().getStage() instanceof OffsetCommitter) {
+      LOG.info("Origin commits its own offsets, batches won't be pipelined");
+      return false;
+    }
+    if (pipes.get(0).getOffsetCommitTrigger() != null) {
+      LOG.info("Pipeline has an offset commit trigger, batches won't be pipelined");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the first pipe of a destination or executor, pipes before it can work on the next batch
+   * while the pipes after it finish the current one.
+   */
+  private static int getPipelinedSplit(PipeRunner pipeRunner) {
+    for (int i = 0; i < pipeRunner.size(); i++) {
+      StageType type = pipeRunner.get(i).getStage().getDefinition().getType();
+      if (type == StageType.TARGET || type == StageType.EXECUTOR) {
+        return i;
+      }
+    }
+    return pipeRunner.size();
+  }
+
+  /**
+   * Pipelined variant of {@link #runPollSource()}, the origin and the processors before the first destination run in
+   * this thread and produce the next batch while a second thread runs the rest of the pipeline on the previous ones.
+   * <p/>
+   * Each stage still sees the batches one at a time and in order. The pipes before the split have their own head
+   * runner, so the two threads never share a runner. The second thread completes the batches in the order they were
+   * produced, so offsets are committed in order. The origin gets the offset returned for the previous batch, even if
+   * that batch has not been committed yet. At most maxBatchesInFlight batches are produced but not yet completed.
+   * Once a batch fails, the batches produced after it are discarded without committing their offsets.
+   * <p/>
+   * Batch listeners are called from this thread only, postBatch when this thread sees the batch completed. So preBatch
+   * for the next batches can be called before postBatch for the previous one.
+   */
+  private void runPipelinedPollSource(int maxBatchesInFlight) throws StageException, PipelineException {
+    PipeRunner pipeRunner = runnerPool.getRunner();
+    int split = getPipelinedSplit(pipeRunner);
+    PipeRunner headRunner = pipeRunner.createHeadRunner(pipelineName, revision, metrics, split);
+    LOG.info("Running with up to '{}' batches in flight, pipeline split before pipe '{}'", maxBatchesInFlight, split);
+
+    Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+    ExecutorService completionExecutor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat(Thread.currentThread().getName() + "-batch-completion")
+            .setDaemon(true)
+            .build()
+    );
+    Deque<Future<?>> inFlight = new ArrayDeque<>();
+    pipelinedBatchFailure = null;
+    String lastOffset = offsetTracker.getOffsets().get(Source.POLL_SOURCE_OFFSET_KEY);
+    boolean sourceFinished = offsetTracker.isFinished();
+    try {
+      while (!sourceFinished && !stop && !finished && pipelinedBatchFailure == null) {
+        if (threadHealthReporter != null) {
+          threadHealthReporter.reportHealth(ProductionPipelineRunnable.RUNNABLE_NAME, -1, System.currentTimeMillis());
+        }
+
+        // Bound the batches in flight, this also surfaces failures of completed batches
+        while (!inFlight.isEmpty() && (inFlight.size() >= maxBatchesInFlight - 1 || inFlight.peek().isDone())) {
+          waitForPipelinedBatch(inFlight.poll());
+        }
+
+        for (BatchListener batchListener : batchListenerList) {
+          batchListener.preBatch();
+        }
+
+        if(observer != null) {
+          synchronized (observerLock) {
+            observer.reconfigure();
+          }
+        }
+
+        // Start of the batch execution
+        long start = System.currentTimeMillis();
+        FullPipeBatch pipeBatch = createFullPipeBatch(Source.POLL_SOURCE_OFFSET_KEY, lastOffset);
+
+        // Run origin
+        Map<String, Long> memoryConsumedByStage = new HashMap<>();
+        Map<String, Object> stageBatchMetrics = new HashMap<>();
+        processPipe(
+          originPipe,
+          pipeBatch,
+          false,
+          null,
+          null,
+          memoryConsumedByStage,
+          stageBatchMetrics
+        );
+        String newOffset = pipeBatch.getNewOffset();
+
+        try {
+          // Run the pipes before the first destination, there is nothing to commit in them
+          headRunner.executeBatch(Source.POLL_SOURCE_OFFSET_KEY, newOffset, start, pipe ->
+            processPipe(pipe, pipeBatch, false, Source.POLL_SOURCE_OFFSET_KEY, newOffset, memoryConsumedByStage, stageBatchMetrics)
+          );
+        } catch (Throwable t) {
+          createFailureBatch(pipeBatch);
+
+          Throwables.propagateIfInstanceOf(t, StageException.class);
+          Throwables.propagateIfInstanceOf(t, PipelineRuntimeException.class);
+          Throwables.propagate(t);
+        }
+
+        // Rest of the pipeline runs in the completion thread
+        inFlight.add(completionExecutor.submit(() -> {
+          completePipelinedBatch(
+            pipeRunner,
+            split,
+            start,
+            pipeBatch,
+            newOffset,
+            memoryConsumedByStage,
+            stageBatchMetrics,
+            mdcContext
+          );
+          return null;
+        }));
+
+        lastOffset = newOffset;
+        sourceFinished = newOffset == null;
+      }
+
+      while (!inFlight.isEmpty()) {
+        waitForPipelinedBatch(inFlight.poll());
+      }
+    } finally {
+      // On failure the batches still in flight complete (or are discarded after a failed batch) before returning
+      for (Future<?> batch : inFlight) {
+        try {
+          batch.get();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          break;
+        } catch (ExecutionException ex) {
+          LOG.debug("Batch in flight failed: {}", ex.getCause().toString(), ex.getCause());
+        }
+      }
+      completionExecutor.shutdownNow();
+      runnerPool.returnRunner(pipeRunner);
+    }
+  }
+
+  private void completePipelinedBatch(
+    PipeRunner pipeRunner,
+    int split,
+    long start,
+    FullPipeBatch pipeBatch,
+    String newOffset,
+    Map<String, Long> memoryConsumedByStage,
+    Map<String, Object> stageBatchMetrics,
+    Map<String, String> mdcContext
+  ) throws Exception {
+    if (pipelinedBatchFailure != null) {
+      LOG.debug("Discarding batch with offset '{}' produced after a failed batch", newOffset);
+      return;
+    }
+    if (mdcContext != null) {
+      MDC.setContextMap(mdcContext);
+    }
+    PipelineEL.setConstantsInContext(pipelineConfiguration, originPipe.getStage().getContext().getUserContext());
+    try {
+      runSourceLessBatch(
+        pipeRunner,
+        split,
+        start,
+        pipeBatch,
+        Source.POLL_SOURCE_OFFSET_KEY,
+        newOffset,
+        memoryConsumedByStage,
+        stageBatchMetrics
+      );
+    } catch (Throwable t) {
+      pipelinedBatchFailure = t;
+
+      // We try to create partial batch on processing failure
+      createFailureBatch(pipeBatch);
+
+      Throwables.propagateIfPossible(t, Exception.class);
+      throw new RuntimeException(t);
+    } finally {
+      PipelineEL.unsetConstantsInContext();
+    }
+  }
+
+  private void waitForPipelinedBatch(Future<?> batch) throws StageException, PipelineException {
+    try {
+      batch.get();
+      for (BatchListener batchListener : batchListenerList) {
+        batchListener.postBatch();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      Throwables.propagate(ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      Throwables.propagateIfInstanceOf(cause, StageException.class);
+      Throwables.propagateIfInstanceOf(cause, PipelineException.class);
+      Throwables.propagate(cause);
+    }
+  }
+
   @Override
   public void errorNotification(SourcePipe originPipe, List<PipeRunner> pipes, Throwable throwable) {
     Set<ErrorListener> listeners = Sets.newIdentityHashSet();
@@ -685,6 +924,11 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
       // Next iteration should have new and empty PipeBatch
       pipeBatch = new FullPipeBatch(null,null, batchSize, false);
     }
+
+    // No more offsets will be committed, flush them to the offset file
+    if (offsetTracker instanceof ProductionSourceOffsetTracker) {
+      ((ProductionSourceOffsetTracker) offsetTracker).close();
+    }
   }
 
   @Override
@@ -745,10 +989,16 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
         && !committed
       ) {
       // target cannot control offset commit in AT_MOST_ONCE mode
-      offsetTracker.commitOffset(entityName, newOffset);
+      commitOffset(entityName, newOffset);
       committed = true;
     }
-    pipe.process(pipeBatch);
+    if (pipe instanceof ObserverPipe) {
+      synchronized (observerLock) {
+        pipe.process(pipeBatch);
+      }
+    } else {
+      pipe.process(pipeBatch);
+    }
     if (pipe instanceof StagePipe) {
       memoryConsumedByStage.put(pipe.getStage().getInfo().getInstanceName(), ((StagePipe)pipe).getMemoryConsumed());
       if (isStatsAggregationEnabled()) {
@@ -766,16 +1016,35 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
     String newOffset,
     Map<String, Long> memoryConsumedByStage,
     Map<String, Object> stageBatchMetrics
+  ) throws PipelineException, StageException {
+    runSourceLessBatch(null, 0, start, pipeBatch, entityName, newOffset, memoryConsumedByStage, stageBatchMetrics);
+  }
+
+  /**
+   * Runs the pipes of the given runner starting at the given pipe, if the runner is null one is taken from the pool
+   * and all its pipes are run.
+   */
+  private void runSourceLessBatch(
+    PipeRunner runner,
+    int fromPipe,
+    long start,
+    FullPipeBatch pipeBatch,
+    String entityName,
+    String newOffset,
+    Map<String, Long> memoryConsumedByStage,
+    Map<String, Object> stageBatchMetrics
   ) throws PipelineException, StageException {
     final AtomicBoolean committed = new AtomicBoolean(false);
     String previousOffset = pipeBatch.getPreviousOffset();
 
-    PipeRunner pipeRunner = null;
+    PipeRunner pipeRunner = runner;
     try {
-      pipeRunner = runnerPool.getRunner();
+      if (pipeRunner == null) {
+        pipeRunner = runnerPool.getRunner();
+      }
       OffsetCommitTrigger offsetCommitTrigger = pipeRunner.getOffsetCommitTrigger();
 
-      pipeRunner.executeBatch(entityName, newOffset, start, pipe -> {
+      pipeRunner.executeBatch(entityName, newOffset, start, fromPipe, pipeRunner.size(), pipe -> {
         committed.set(processPipe(pipe, pipeBatch, committed.get(), entityName, newOffset, memoryConsumedByStage, stageBatchMetrics));
 
       });
@@ -787,11 +1056,11 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
         // 1. There is no offset commit trigger for this pipeline or
         // 2. there is a commit trigger and it is on
         if (offsetCommitTrigger == null || offsetCommitTrigger.commit()) {
-          offsetTracker.commitOffset(entityName, newOffset);
+          commitOffset(entityName, newOffset);
         }
       }
     } finally {
-      if(pipeRunner != null) {
+      if(runner == null && pipeRunner != null) {
         runnerPool.returnRunner(pipeRunner);
       }
     }
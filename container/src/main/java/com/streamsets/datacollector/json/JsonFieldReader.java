@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.json;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.impl.Utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds {@link Field}s straight from the tokens of a {@link JsonParser}, without materializing the JSON value as
+ * Java maps, lists and boxed values first.
+ * <p/>
+ * The produced fields are the same the JSON data parsers produce from the Java objects: objects are
+ * <code>MAP</code>, arrays are <code>LIST</code>, integers are <code>INTEGER</code>, <code>LONG</code> or
+ * <code>DECIMAL</code> depending on their magnitude, floating point numbers are <code>DOUBLE</code> and
+ * <code>null</code> is a <code>STRING</code> field with a <code>null</code> value.
+ */
+class JsonFieldReader {
+  private final JsonParser parser;
+
+  JsonFieldReader(JsonParser parser) {
+    this.parser = parser;
+  }
+
+  /**
+   * Reads the value starting at the current token of the parser, leaving the parser on the last token of the value.
+   */
+  Field read() throws IOException {
+    return readValue(parser.getCurrentToken());
+  }
+
+  /**
+   * Invoked after every entry of an object and element of an array is read, it does nothing by default.
+   */
+  protected void afterElement() {
+  }
+
+  private Field readValue(JsonToken token) throws IOException {
+    if (token == null) {
+      throw new JsonParseException("Unexpected end of input", parser.getCurrentLocation());
+    }
+    Field field;
+    switch (token) {
+      case START_OBJECT:
+        field = Field.create(readMap());
+        break;
+      case START_ARRAY:
+        field = Field.create(readList());
+        break;
+      case VALUE_STRING:
+        field = Field.create(parser.getText());
+        break;
+      case VALUE_NUMBER_INT:
+        field = readInteger();
+        break;
+      case VALUE_NUMBER_FLOAT:
+        field = Field.create(parser.getDoubleValue());
+        break;
+      case VALUE_TRUE:
+        field = Field.create(true);
+        break;
+      case VALUE_FALSE:
+        field = Field.create(false);
+        break;
+      case VALUE_NULL:
+        field = Field.create(Field.Type.STRING, null);
+        break;
+      default:
+        throw new JsonParseException(Utils.format("Unexpected token '{}'", token), parser.getTokenLocation());
+    }
+    return field;
+  }
+
+  private Map<String, Field> readMap() throws IOException {
+    Map<String, Field> map = new LinkedHashMap<>();
+    JsonToken token = parser.nextToken();
+    while (token == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      map.put(name, readValue(parser.nextToken()));
+      afterElement();
+      token = parser.nextToken();
+    }
+    if (token != JsonToken.END_OBJECT) {
+      throw new JsonParseException(Utils.format("Unexpected token '{}' in object", token), parser.getTokenLocation());
+    }
+    return map;
+  }
+
+  private List<Field> readList() throws IOException {
+    List<Field> list = new ArrayList<>();
+    JsonToken token = parser.nextToken();
+    while (token != JsonToken.END_ARRAY) {
+      list.add(readValue(token));
+      afterElement();
+      token = parser.nextToken();
+    }
+    return list;
+  }
+
+  private Field readInteger() throws IOException {
+    Field field;
+    switch (parser.getNumberType()) {
+      case INT:
+        field = Field.create(parser.getIntValue());
+        break;
+      case LONG:
+        field = Field.create(parser.getLongValue());
+        break;
+      default:
+        field = Field.create(new BigDecimal(parser.getBigIntegerValue()));
+    }
+    return field;
+  }
+
+}
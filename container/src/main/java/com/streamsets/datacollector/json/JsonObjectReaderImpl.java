@@ -22,6 +22,7 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import com.google.common.base.Preconditions;
+import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.ext.JsonObjectReader;
 import com.streamsets.pipeline.api.ext.json.Mode;
 import com.streamsets.pipeline.api.impl.Utils;
@@ -52,6 +53,7 @@ public class JsonObjectReaderImpl implements JsonObjectReader {
   private boolean closed;
   private Byte firstNonSpaceChar;
   private JsonToken nextToken;
+  private JsonFieldReader fieldReader;
 
   public JsonObjectReaderImpl(Reader reader, Mode mode) throws IOException {
     this(reader, 0, mode);
@@ -178,7 +180,7 @@ public class JsonObjectReaderImpl implements JsonObjectReader {
     }
     JsonToken token = jsonParser.nextToken();
     if (token != null && token != JsonToken.END_ARRAY) {
-      value = jsonParser.readValueAs(Object.class);
+      value = readValue(Object.class);
     }
     return value;
   }
@@ -196,7 +198,7 @@ public class JsonObjectReaderImpl implements JsonObjectReader {
       nextToken = jsonParser.nextToken();
     }
     if (nextToken != null) {
-      value = jsonParser.readValueAs(getExpectedClass());
+      value = readValue(getExpectedClass());
       nextToken = jsonParser.nextToken();
       if (nextToken == null) {
         // if we reached the EOF Jackson JSON parser keeps the as getTokenLocation() the location of the last token,
@@ -207,6 +209,22 @@ public class JsonObjectReaderImpl implements JsonObjectReader {
     return value;
   }
 
+  // fields are built straight from the parser tokens, other classes go through the object mapper
+  private Object readValue(Class<?> valueClass) throws IOException {
+    if (objectClass == Field.class) {
+      if (fieldReader == null) {
+        fieldReader = createFieldReader();
+      }
+      // a root null is read as null, as the object mapper does
+      return (jsonParser.getCurrentToken() == JsonToken.VALUE_NULL) ? null : fieldReader.read();
+    }
+    return jsonParser.readValueAs(valueClass);
+  }
+
+  protected JsonFieldReader createFieldReader() {
+    return new JsonFieldReader(jsonParser);
+  }
+
   protected void fastForwardToNextRootObject() throws IOException {
     Preconditions.checkState(mode == Mode.MULTIPLE_OBJECTS, "Parser must be in MULTIPLE_OBJECT mode");
     JsonToken token = jsonParser.getCurrentToken();
@@ -212,6 +212,16 @@ public class OverrunJsonObjectReaderImpl extends JsonObjectReaderImpl {
     }
   }
 
+  @Override
+  protected JsonFieldReader createFieldReader() {
+    return new JsonFieldReader(getJsonParser()) {
+      @Override
+      protected void afterElement() {
+        checkIfLengthExceededForObjectRead(null);
+      }
+    };
+  }
+
   private static void checkIfLengthExceededForObjectRead(Object json) {
     OverrunJsonObjectReaderImpl enforcer = TL.get();
     if (checkNotNull(enforcer, "Enforcer was null").maxObjectLen > -1) {
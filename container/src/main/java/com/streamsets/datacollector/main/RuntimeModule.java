@@ -24,6 +24,7 @@ import com.streamsets.datacollector.util.Configuration;
 import com.streamsets.pipeline.api.impl.Utils;
 import dagger.Module;
 import dagger.Provides;
+import org.apache.commons.el.LruExpressionEvaluatorImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +59,7 @@ public class RuntimeModule {
   public RuntimeInfo provideRuntimeInfo(MetricRegistry metrics) {
     RuntimeInfo info = new StandaloneRuntimeInfo(SDC_PROPERTY_PREFIX, metrics, stageLibraryClassLoaders);
     info.init();
+    LruExpressionEvaluatorImpl.registerCacheMetrics(metrics);
     return info;
   }
 
@@ -27,6 +27,7 @@ import com.streamsets.lib.security.http.RemoteSSOService;
 import com.streamsets.pipeline.api.impl.Utils;
 import dagger.Module;
 import dagger.Provides;
+import org.apache.commons.el.LruExpressionEvaluatorImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +63,7 @@ public class SlaveRuntimeModule {
   public RuntimeInfo provideRuntimeInfo(MetricRegistry metrics) {
     RuntimeInfo info = new SlaveRuntimeInfo(SDC_PROPERTY_PREFIX, metrics, stageLibraryClassLoaders);
     info.init();
+    LruExpressionEvaluatorImpl.registerCacheMetrics(metrics);
     return info;
   }
 
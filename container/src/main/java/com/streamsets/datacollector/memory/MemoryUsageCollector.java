@@ -95,6 +95,10 @@ public class MemoryUsageCollector {
     MemoryUsageCollector.sharedInstrumentation = sharedInstrumentation;
   }
 
+  synchronized static Instrumentation getInstrumentation() {
+    return sharedInstrumentation;
+  }
+
   public static class Builder {
     private StageRuntime stageRuntime;
     private boolean traverseClassLoaderClasses = true;
@@ -304,7 +308,7 @@ public class MemoryUsageCollector {
     return total;
   }
 
-  private Field[] getFields(final Class clz) {
+  static Field[] getFields(final Class clz) {
     Field[] result = classToFieldCache.get(clz);
     if (result != null) {
       return result;
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.memory;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cheap estimate of the heap used by records, computed from the field tree instead of walking the objects.
+ * <p/>
+ * Sizes assume a 64-bit JVM with compressed references. They are not exact, they only need to be in the right
+ * ballpark to account the records a stage keeps in flight.
+ */
+public final class RecordSizeEstimator {
+
+  /**
+   * Max number of records measured per list, the size of larger lists is extrapolated from evenly spaced samples.
+   */
+  public static final int MAX_SAMPLED_RECORDS = 16;
+
+  // RecordImpl, HeaderImpl and their maps
+  private static final long RECORD_OVERHEAD = 256;
+  private static final long FIELD_OVERHEAD = 32;
+  private static final long BOXED_VALUE = 16;
+  private static final long BOXED_WIDE_VALUE = 24;
+  private static final long DATE_VALUE = 24;
+  private static final long DECIMAL_VALUE = 64;
+  private static final long ARRAY_OVERHEAD = 16;
+  private static final long LIST_OVERHEAD = 40;
+  private static final long REFERENCE = 4;
+  private static final long MAP_OVERHEAD = 64;
+  private static final long MAP_ENTRY = 40;
+  private static final long STRING_OVERHEAD = 40;
+  private static final long FILE_REF_VALUE = 64;
+
+  private RecordSizeEstimator() {
+  }
+
+  /**
+   * Returns the estimated heap used by the given records, measuring at most {@link #MAX_SAMPLED_RECORDS} of them.
+   */
+  public static long estimate(List<Record> records) {
+    if (records == null || records.isEmpty()) {
+      return 0;
+    }
+    int size = records.size();
+    if (size <= MAX_SAMPLED_RECORDS) {
+      long total = 0;
+      for (Record record : records) {
+        total += estimate(record);
+      }
+      return total;
+    }
+    double step = (double) size / MAX_SAMPLED_RECORDS;
+    long sampled = 0;
+    for (int i = 0; i < MAX_SAMPLED_RECORDS; i++) {
+      sampled += estimate(records.get((int) (i * step)));
+    }
+    return (long) (sampled * step);
+  }
+
+  /**
+   * Returns the estimated heap used by the given record, header included.
+   */
+  public static long estimate(Record record) {
+    Record.Header header = record.getHeader();
+    long size = RECORD_OVERHEAD
+        + estimate(header.getSourceId())
+        + estimate(header.getStagesPath())
+        + estimate(header.getTrackingId());
+    byte[] raw = header.getRaw();
+    if (raw != null) {
+      size += ARRAY_OVERHEAD + raw.length;
+    }
+    for (String name : header.getAttributeNames()) {
+      size += MAP_ENTRY + estimate(name) + estimate(header.getAttribute(name));
+    }
+    return size + estimate(record.get());
+  }
+
+  @SuppressWarnings("unchecked")
+  static long estimate(Field field) {
+    if (field == null) {
+      return 0;
+    }
+    long size = FIELD_OVERHEAD;
+    Map<String, String> attributes = field.getAttributes();
+    if (attributes != null) {
+      size += MAP_OVERHEAD;
+      for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+        size += MAP_ENTRY + estimate(attribute.getKey()) + estimate(attribute.getValue());
+      }
+    }
+    Object value = field.getValue();
+    if (value == null) {
+      return size;
+    }
+    switch (field.getType()) {
+      case BOOLEAN:
+      case CHAR:
+      case BYTE:
+      case SHORT:
+      case INTEGER:
+      case FLOAT:
+        return size + BOXED_VALUE;
+      case LONG:
+      case DOUBLE:
+        return size + BOXED_WIDE_VALUE;
+      case DATE:
+      case DATETIME:
+      case TIME:
+        return size + DATE_VALUE;
+      case DECIMAL:
+        return size + DECIMAL_VALUE;
+      case STRING:
+        return size + estimate((String) value);
+      case BYTE_ARRAY:
+        return size + ARRAY_OVERHEAD + ((byte[]) value).length;
+      case LIST:
+        List<Field> list = (List<Field>) value;
+        size += LIST_OVERHEAD + list.size() * REFERENCE;
+        for (Field element : list) {
+          size += estimate(element);
+        }
+        return size;
+      case MAP:
+      case LIST_MAP:
+        Map<String, Field> map = (Map<String, Field>) value;
+        size += MAP_OVERHEAD;
+        for (Map.Entry<String, Field> entry : map.entrySet()) {
+          size += MAP_ENTRY + estimate(entry.getKey()) + estimate(entry.getValue());
+        }
+        return size;
+      case FILE_REF:
+        return size + FILE_REF_VALUE;
+      default:
+        return size + BOXED_WIDE_VALUE;
+    }
+  }
+
+  private static long estimate(String value) {
+    return (value == null) ? 0 : STRING_OVERHEAD + 2L * value.length();
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.memory;
+
+import com.codahale.metrics.Counter;
+import com.streamsets.pipeline.api.impl.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Low overhead alternative to {@link MemoryMonitor}, updated by the pipeline thread after every batch of the stage.
+ * <p/>
+ * The memory consumed by the stage is the estimate of the last completed {@link SampledMemoryUsageCollector} walk
+ * plus the estimated size of the records the stage produced in the batch. Every update walks the object graph of the
+ * stage for at most the configured budget.
+ */
+public class SampledMemoryMonitor {
+  private static final Logger LOG = LoggerFactory.getLogger(SampledMemoryMonitor.class);
+
+  private final String stageName;
+  private final Counter memoryConsumed;
+  private final SampledMemoryUsageCollector collector;
+  private final long budgetNanos;
+
+  public SampledMemoryMonitor(
+      String stageName,
+      Counter memoryConsumed,
+      SampledMemoryUsageCollector collector,
+      long budgetNanos
+  ) {
+    Utils.checkArgument(budgetNanos > 0, "Budget must be greater than zero");
+    this.stageName = stageName;
+    this.memoryConsumed = memoryConsumed;
+    this.collector = collector;
+    this.budgetNanos = budgetNanos;
+  }
+
+  /**
+   * Continues the walk of the stage object graph and updates the memory consumed metric (in MB, as
+   * {@link MemoryMonitor} does).
+   *
+   * @param recordBytes estimated size of the records produced by the stage in the last batch.
+   */
+  public void update(long recordBytes) {
+    if (collector.collect(budgetNanos) && LOG.isDebugEnabled()) {
+      LOG.debug(
+          "Stage {} walk {} estimated {} retained ({}ms)",
+          stageName,
+          collector.getCompletedWalks(),
+          Utils.humanReadableInt(collector.getMemoryConsumed()),
+          collector.getLastWalkElapsedTime() / 1000000
+      );
+    }
+    long currentValue = memoryConsumed.getCount();
+    memoryConsumed.inc(((collector.getMemoryConsumed() + recordBytes) / 1000000) - currentValue);
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.memory;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.google.common.annotations.VisibleForTesting;
+import com.streamsets.datacollector.runner.StageRuntime;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/**
+ * Estimates the memory retained by a stage with a resumable and sampled walk of its object graph.
+ * <p/>
+ * Unlike {@link MemoryUsageCollector}, which walks the whole graph (and the classes of the stage classloader) in one
+ * go, each call to {@link #collect(long)} only walks for the given time budget and resumes where the previous call
+ * stopped. The estimate is updated every time a walk completes. Arrays with more than {@link #MAX_ARRAY_SAMPLES}
+ * references are sampled: only evenly spaced elements are visited and the memory they retain is extrapolated to
+ * the whole array. Classes of the stage classloader are not traversed, only the static fields of the classes of the
+ * reached objects.
+ * <p/>
+ * Instances are not thread safe, they are meant to be called from the pipeline thread between batches of the stage.
+ */
+public class SampledMemoryUsageCollector {
+  @VisibleForTesting
+  static final int MAX_ARRAY_SAMPLES = 64;
+
+  // clock is checked every that many objects, System.nanoTime() is not free
+  private static final int OBJECTS_PER_CLOCK_CHECK = 64;
+  private static final int INITIAL_CAPACITY = 1000;
+
+  private final Instrumentation instrumentation;
+  private final Object targetObject;
+  private final ClassLoader targetClassloader;
+  private final IntHashSet countedObjectSet = new IntHashSet(INITIAL_CAPACITY);
+  private Object[] stack = new Object[INITIAL_CAPACITY];
+  private double[] weights = new double[INITIAL_CAPACITY];
+  private int stackSize;
+  private boolean walking;
+  private double walkTotal;
+  private long walkElapsedTime;
+  private long estimate;
+  private long lastWalkElapsedTime;
+  private int completedWalks;
+
+  public SampledMemoryUsageCollector(StageRuntime stageRuntime) {
+    this(
+        MemoryUsageCollector.getInstrumentation(),
+        stageRuntime.getStage(),
+        stageRuntime.getDefinition().getStageClassLoader()
+    );
+  }
+
+  @VisibleForTesting
+  SampledMemoryUsageCollector(Instrumentation instrumentation, Object targetObject, ClassLoader targetClassloader) {
+    if (instrumentation == null) {
+      throw new IllegalStateException("MemoryUsageCollector has not been initialized");
+    }
+    this.instrumentation = instrumentation;
+    this.targetObject = targetObject;
+    this.targetClassloader = targetClassloader;
+  }
+
+  /**
+   * Walks the object graph of the stage for up to the given time budget.
+   *
+   * @return true if a walk completed and the estimate was updated.
+   */
+  public boolean collect(long budgetNanos) {
+    long start = System.nanoTime();
+    if (!walking) {
+      stackSize = 0;
+      countedObjectSet.release();
+      walkTotal = 0;
+      walkElapsedTime = 0;
+      push(targetObject, 1);
+      walking = true;
+    }
+    int objects = 0;
+    while (stackSize > 0) {
+      if (++objects % OBJECTS_PER_CLOCK_CHECK == 0 && System.nanoTime() - start >= budgetNanos) {
+        walkElapsedTime += System.nanoTime() - start;
+        return false;
+      }
+      stackSize--;
+      Object obj = stack[stackSize];
+      double weight = weights[stackSize];
+      stack[stackSize] = null;
+      visit(obj, weight);
+    }
+    walkElapsedTime += System.nanoTime() - start;
+    walking = false;
+    estimate = (long) walkTotal;
+    lastWalkElapsedTime = walkElapsedTime;
+    completedWalks++;
+    return true;
+  }
+
+  /**
+   * Returns the memory retained by the stage, in bytes, as of the last completed walk.
+   */
+  public long getMemoryConsumed() {
+    return estimate;
+  }
+
+  /**
+   * Returns the time spent in the last completed walk, in nanoseconds, across all the calls it took.
+   */
+  public long getLastWalkElapsedTime() {
+    return lastWalkElapsedTime;
+  }
+
+  public int getCompletedWalks() {
+    return completedWalks;
+  }
+
+  private void visit(Object obj, double weight) {
+    if (obj instanceof Reference) {
+      return;
+    }
+    boolean isObjectClass = (obj instanceof Class);
+    // if object is a class, we want to inspect the class represented as the object not java.lang.Class
+    Class clz = isObjectClass ? (Class) obj : obj.getClass();
+    if (!countedObjectSet.add(System.identityHashCode(obj))) {
+      return;
+    }
+    walkTotal += instrumentation.getObjectSize(obj) * weight;
+    Class componentType = clz.getComponentType();
+    if (componentType != null && !isObjectClass) {
+      if (!componentType.isPrimitive()) {
+        pushArrayElements((Object[]) obj, weight);
+      }
+      return;
+    }
+    boolean isClassOwnedByClassLoader = clz.getClassLoader() == targetClassloader;
+    // Instrumentation.getObjectSize is shallow and as such we must traverse all fields
+    for (; clz != null; clz = clz.getSuperclass()) {
+      for (Field field : MemoryUsageCollector.getFields(clz)) {
+        // same rules as MemoryUsageCollector: synthetic fields can lead outside of the stage, primitives are
+        // already counted and static fields only belong to the stage if their class was loaded by its classloader
+        if (field.isSynthetic() || field.getType().isPrimitive()) {
+          continue;
+        }
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        if ((isStatic && !isClassOwnedByClassLoader) || (!isStatic && isObjectClass)) {
+          continue;
+        }
+        try {
+          push(field.get(isStatic ? null : obj), weight);
+        } catch (Throwable ignored) {
+          // this can throw all kinds of strange errors
+          if (ignored instanceof OutOfMemoryError) {
+            throw (OutOfMemoryError) ignored;
+          }
+        }
+      }
+    }
+  }
+
+  private void pushArrayElements(Object[] array, double weight) {
+    if (array.length <= MAX_ARRAY_SAMPLES) {
+      for (Object item : array) {
+        push(item, weight);
+      }
+    } else {
+      // visit evenly spaced elements, each one standing for the elements up to the next sample
+      double step = (double) array.length / MAX_ARRAY_SAMPLES;
+      double sampleWeight = weight * step;
+      for (int i = 0; i < MAX_ARRAY_SAMPLES; i++) {
+        push(array[(int) (i * step)], sampleWeight);
+      }
+    }
+  }
+
+  private void push(Object obj, double weight) {
+    if (obj == null) {
+      return;
+    }
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize * 2);
+      weights = Arrays.copyOf(weights, stackSize * 2);
+    }
+    stack[stackSize] = obj;
+    weights[stackSize] = weight;
+    stackSize++;
+  }
+
+}
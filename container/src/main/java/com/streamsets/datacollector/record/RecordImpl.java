@@ -24,6 +24,8 @@ import com.streamsets.pipeline.api.impl.Utils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -37,6 +39,16 @@ public class RecordImpl implements Record, Cloneable {
   //and initialized in a stage and did not pass through any other stage.
   private boolean isInitialRecord = true;
 
+  // Copy-on-write state. Clones share the field tree with the record they were cloned from, both records copy
+  // the fields they give access to before handing them out. Containers in 'shallowOwned' have been copied by this
+  // record but their children may still be shared, fields in 'deepOwned' have been copied along their whole subtree,
+  // both sets are created on the first copy. 'exposed' is set once fields of the tree have been handed out, callers
+  // may still change them through their references so the tree can't be shared by a clone anymore.
+  private transient boolean shared;
+  private transient boolean exposed;
+  private transient Set<Field> shallowOwned;
+  private transient Set<Field> deepOwned;
+
   // need default constructor for deserialization purposes (Kryo)
   private RecordImpl() {
     header = new HeaderImpl();
@@ -74,8 +86,157 @@ public class RecordImpl implements Record, Cloneable {
   protected RecordImpl(RecordImpl record) {
     Preconditions.checkNotNull(record, "record cannot be null");
     header = record.header.clone();
-    value = (record.value != null) ? record.value.clone() : null;
+    value = record.value;
     isInitialRecord = record.isInitialRecord();
+    if (value != null) {
+      if (record.exposed) {
+        value = value.clone();
+      } else {
+        record.markShared();
+        markShared();
+      }
+    }
+  }
+
+  private void markShared() {
+    // fields copied so far are shared with the new clone as well
+    shared = true;
+    shallowOwned = null;
+    deepOwned = null;
+  }
+
+  private void markPrivate() {
+    shared = false;
+    shallowOwned = null;
+    deepOwned = null;
+  }
+
+  boolean isShared() {
+    return shared;
+  }
+
+  private static Set<Field> newFieldSet() {
+    return Collections.newSetFromMap(new IdentityHashMap<Field, Boolean>());
+  }
+
+  private static boolean contains(Set<Field> fields, Field field) {
+    return fields != null && fields.contains(field);
+  }
+
+  private void addShallowOwned(Field field) {
+    if (shallowOwned == null) {
+      shallowOwned = newFieldSet();
+    }
+    shallowOwned.add(field);
+  }
+
+  private void addDeepOwned(Field field) {
+    if (deepOwned == null) {
+      deepOwned = newFieldSet();
+    }
+    deepOwned.add(field);
+  }
+
+  // returns a copy of the field private to this record, only the container itself if 'deep' is false
+  @SuppressWarnings("unchecked")
+  private Field own(Field field, boolean deep) {
+    if (contains(deepOwned, field) || (!deep && contains(shallowOwned, field))) {
+      return field;
+    }
+    Field copy;
+    if (deep || field.getValue() == null) {
+      copy = field.clone();
+      addDeepOwned(copy);
+    } else {
+      switch (field.getType()) {
+        case MAP:
+          copy = Field.create(
+              Field.Type.MAP,
+              new LinkedHashMap<>((Map<String, Field>) field.getValue()),
+              field.getAttributes()
+          );
+          addShallowOwned(copy);
+          break;
+        case LIST_MAP:
+          copy = Field.create(
+              Field.Type.LIST_MAP,
+              new LinkedHashMap<>((Map<String, Field>) field.getValue()),
+              field.getAttributes()
+          );
+          addShallowOwned(copy);
+          break;
+        case LIST:
+          copy = Field.create(
+              Field.Type.LIST,
+              new ArrayList<>((List<Field>) field.getValue()),
+              field.getAttributes()
+          );
+          addShallowOwned(copy);
+          break;
+        default:
+          copy = field.clone();
+          addDeepOwned(copy);
+          break;
+      }
+    }
+    return copy;
+  }
+
+  // makes the first 'length' fields of the path private to this record, returns the last one or null if the path is
+  // not reachable. The last field is copied with its whole subtree if 'deepLast' is true.
+  private Field ownPath(FieldPath fieldPath, int length, boolean deepLast) {
+    if (value == null || length == 0) {
+      return null;
+    }
+    if (deepLast && length == 1) {
+      // the whole tree is going to be handed out, nothing is shared anymore
+      value = value.clone();
+      markPrivate();
+      return value;
+    }
+    value = own(value, false);
+    Field current = value;
+    boolean isPrivate = contains(deepOwned, current);
+    for (int i = 1; current != null && i < length; i++) {
+      PathElement element = fieldPath.getElement(i);
+      Field child = getChild(current, element);
+      if (child != null && !isPrivate) {
+        if (contains(deepOwned, child)) {
+          isPrivate = true;
+        } else {
+          Field owned = own(child, deepLast && i == length - 1);
+          if (owned != child) {
+            replaceChild(current, element, owned);
+          }
+          child = owned;
+        }
+      }
+      current = child;
+    }
+    return current;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void replaceChild(Field parent, PathElement element, Field child) {
+    switch (element.getType()) {
+      case MAP:
+        ((Map<String, Field>) parent.getValue()).put(element.getName(), child);
+        break;
+      case LIST:
+        if (parent.getType() == Field.Type.LIST_MAP) {
+          // list maps are accessed by index through a copy of their values, replace the entry in the map itself
+          Iterator<Map.Entry<String, Field>> it = ((Map<String, Field>) parent.getValue()).entrySet().iterator();
+          for (int i = 0; i < element.getIndex(); i++) {
+            it.next();
+          }
+          it.next().setValue(child);
+        } else {
+          ((List<Field>) parent.getValue()).set(element.getIndex(), child);
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unexpected path element type " + element.getType());
+    }
   }
 
   public void addStageToStagePath(String stage) {
@@ -108,13 +269,21 @@ public class RecordImpl implements Record, Cloneable {
 
   @Override
   public Field get() {
+    if (shared) {
+      value = value.clone();
+      markPrivate();
+    }
+    exposed = true;
     return value;
   }
 
   @Override
   public Field set(Field field) {
-    Field oldData = value;
+    // the replaced tree is handed out, it is copied if clones of this record still share it
+    Field oldData = (shared) ? value.clone() : value;
     value = field;
+    markPrivate();
+    exposed = true;
     return oldData;
   }
 
@@ -267,10 +436,6 @@ public class RecordImpl implements Record, Cloneable {
     return createFieldWithPath("", "", get());
   }
 
-  List<PathElement> parse(String fieldPath) {
-    return PathElement.parse(fieldPath, true);
-  }
-
   private List<Field> get(List<PathElement> elements) {
     List<Field> fields = new ArrayList<>(elements.size());
     if (value != null) {
@@ -319,17 +484,68 @@ public class RecordImpl implements Record, Cloneable {
     return fields;
   }
 
+  // walks the path without collecting intermediate fields, returns null if the path is not reachable
+  private Field resolve(FieldPath fieldPath) {
+    Field current = value;
+    for (int i = 0; current != null && i < fieldPath.size(); i++) {
+      current = getChild(current, fieldPath.getElement(i));
+    }
+    return current;
+  }
+
+  private static Field getChild(Field current, PathElement element) {
+    Field child = null;
+    switch (element.getType()) {
+      case ROOT:
+        child = current;
+        break;
+      case MAP:
+        if (current.getType().isOneOf(Field.Type.MAP, Field.Type.LIST_MAP)) {
+          Map<String, Field> map = current.getValueAsMap();
+          if (map != null) {
+            child = map.get(element.getName());
+          }
+        }
+        break;
+      case LIST:
+        if (current.getType().isOneOf(Field.Type.LIST, Field.Type.LIST_MAP)) {
+          List<Field> list = current.getValueAsList();
+          if (list != null && list.size() > element.getIndex()) {
+            child = list.get(element.getIndex());
+          }
+        }
+        break;
+      case FIELD_EXPRESSION:
+      default:
+        break;
+    }
+    return child;
+  }
+
   @Override
   public Field get(String fieldPath) {
-    List<PathElement> elements = parse(fieldPath);
-    List<Field> fields = get(elements);
-    return (elements.size() == fields.size()) ? fields.get(fields.size() - 1) : null;
+    return get(FieldPath.compile(fieldPath));
   }
 
+  public Field get(FieldPath fieldPath) {
+    Field field = (shared) ? ownPath(fieldPath, fieldPath.size(), true) : resolve(fieldPath);
+    if (field != null) {
+      exposed = true;
+    }
+    return field;
+  }
 
   @Override
   public Field delete(String fieldPath) {
-    List<PathElement> elements = parse(fieldPath);
+    return delete(FieldPath.compile(fieldPath));
+  }
+
+  public Field delete(FieldPath fieldPath) {
+    boolean wasShared = shared;
+    if (shared) {
+      ownPath(fieldPath, fieldPath.size() - 1, false);
+    }
+    List<PathElement> elements = fieldPath.getElements();
     List<Field> fields = get(elements);
     Field deleted = null;
     int fieldPos = fields.size();
@@ -340,6 +556,7 @@ public class RecordImpl implements Record, Cloneable {
         // the field to delete must be a primitive. delete it directly.
         deleted = value;
         value = null;
+        markPrivate();
       } else {
         // the field to delete is a map or list element, so to delete, you must remove it from the parent collection.
         PathElement element = elements.get(fieldPos);
@@ -356,14 +573,20 @@ public class RecordImpl implements Record, Cloneable {
         }
       }
     }
+    // the deleted field may still be referenced by a clone of this record
+    if (wasShared && deleted != null && !contains(deepOwned, deleted)) {
+      deleted = deleted.clone();
+    }
     return deleted;
   }
 
   @Override
   public boolean has(String fieldPath) {
-    List<PathElement> elements = parse(fieldPath);
-    List<Field> fields = get(elements);
-    return (elements.size() == fields.size());
+    return has(FieldPath.compile(fieldPath));
+  }
+
+  public boolean has(FieldPath fieldPath) {
+    return resolve(fieldPath) != null;
   }
 
   @Override
@@ -512,10 +735,17 @@ public class RecordImpl implements Record, Cloneable {
 
   @Override
   public Field set(String fieldPath, Field newField) {
+    return set(FieldPath.compile(fieldPath), newField);
+  }
+
+  public Field set(FieldPath fieldPath, Field newField) {
     //get all the elements present in the fieldPath, including the newest element
     //For example, if the existing record has /a/b/c and the argument fieldPath is /a/b/d the parser returns three
     // elements - a, b and d
-    List<PathElement> elements = parse(fieldPath);
+    if (shared) {
+      ownPath(fieldPath, fieldPath.size() - 1, false);
+    }
+    List<PathElement> elements = fieldPath.getElements();
     //return all *existing* fields form the list of elements
     //In the above case it is going to return only field a and field b. Field d does not exist.
     List<Field> fields = get(elements);
@@ -529,7 +759,14 @@ public class RecordImpl implements Record, Cloneable {
       //The number of elements in the path is on more than the number of fields => add use case
       fieldToReplace = doSet(fieldPos, newField, elements, fields);
     } else {
-      throw new IllegalArgumentException(Utils.format("Field-path '{}' not reachable", fieldPath));
+      throw new IllegalArgumentException(Utils.format("Field-path '{}' not reachable", fieldPath.getPath()));
+    }
+    if (newField != null) {
+      exposed = true;
+      if (shared) {
+        // the new field comes from the caller, it is not shared with any clone
+        addDeepOwned(newField);
+      }
     }
     return fieldToReplace;
   }
@@ -540,6 +777,7 @@ public class RecordImpl implements Record, Cloneable {
       //root element
       fieldToReplace = value;
       value = newField;
+      markPrivate();
     } else {
       //get the type of the element based on the output of the parser.
       //Note that this is not the real type of the field, this is how the parser interpreted the fieldPath argument
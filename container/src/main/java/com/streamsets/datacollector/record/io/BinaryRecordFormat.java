@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record.io;
+
+import com.streamsets.pipeline.api.Field;
+
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Layout of the {@link RecordEncoding#BINARY1} encoding, shared by {@link BinaryRecordWriter} and
+ * {@link BinaryRecordReader}.
+ * <p/>
+ * After the magic number the stream is a sequence of blocks, every block is self contained so a reader can start at
+ * any block:
+ * <pre>
+ *   block  := recordCount(varint) codec(byte) length(varint) storedLength(varint) payload(storedLength bytes)
+ *   record := header field
+ *   header := count(varint) (name(dict) value)*
+ *   value  := NULL | STRING string | LONG varlong | BYTES length(varint) bytes
+ *   field  := typeCode(byte, NULL_FLAG and ATTRIBUTES_FLAG bits) [attributes] [value]
+ *   dict   := 0 string | index + 1 (varint)
+ * </pre>
+ * Field names, header attribute names and field attribute names go through a dictionary that is reset at every
+ * block, a name is written once per block and referenced by its index afterwards. Integer values are zig-zag
+ * varints, the payload is deflated when it is worth it.
+ * <p/>
+ * Zoned datetime values are ISO-8601 strings keeping the zone id. File reference fields point to data outside of the
+ * record and are not supported, writing one fails.
+ */
+final class BinaryRecordFormat {
+
+  // a position is the block offset shifted left these bits plus the index of the record within the block
+  static final int RECORD_INDEX_BITS = 16;
+  static final int MAX_BLOCK_RECORDS = (1 << RECORD_INDEX_BITS) - 1;
+  static final int MAX_BLOCK_SIZE = 1024 * 1024;
+  static final int MIN_COMPRESSION_SIZE = 4 * 1024;
+
+  static final byte CODEC_NONE = 0;
+  static final byte CODEC_DEFLATE = 1;
+
+  static final byte HEADER_NULL = 0;
+  static final byte HEADER_STRING = 1;
+  static final byte HEADER_LONG = 2;
+  static final byte HEADER_BYTES = 3;
+
+  static final int NULL_FLAG = 0x40;
+  static final int ATTRIBUTES_FLAG = 0x80;
+  static final int TYPE_MASK = 0x3f;
+
+  static final DateTimeFormatter ZONED_DATETIME_FORMAT = DateTimeFormatter.ISO_ZONED_DATE_TIME;
+
+  // codes are part of the encoding, new types must be appended
+  private static final Field.Type[] TYPES = {
+      Field.Type.BOOLEAN,
+      Field.Type.CHAR,
+      Field.Type.BYTE,
+      Field.Type.SHORT,
+      Field.Type.INTEGER,
+      Field.Type.LONG,
+      Field.Type.FLOAT,
+      Field.Type.DOUBLE,
+      Field.Type.DATE,
+      Field.Type.DATETIME,
+      Field.Type.TIME,
+      Field.Type.DECIMAL,
+      Field.Type.STRING,
+      Field.Type.BYTE_ARRAY,
+      Field.Type.MAP,
+      Field.Type.LIST,
+      Field.Type.LIST_MAP,
+      Field.Type.ZONED_DATETIME,
+  };
+
+  private static final Map<Field.Type, Integer> TYPE_CODES = new EnumMap<>(Field.Type.class);
+
+  static {
+    for (int i = 0; i < TYPES.length; i++) {
+      TYPE_CODES.put(TYPES[i], i);
+    }
+  }
+
+  private BinaryRecordFormat() {}
+
+  /**
+   * Returns the code of the given type, <code>-1</code> if the type is not supported by the encoding.
+   */
+  static int getTypeCode(Field.Type type) {
+    Integer code = TYPE_CODES.get(type);
+    return (code == null) ? -1 : code;
+  }
+
+  /**
+   * Returns the type of the given code, <code>null</code> if the code is unknown.
+   */
+  static Field.Type getType(int code) {
+    return (code < TYPES.length) ? TYPES[code] : null;
+  }
+
+  static long getPosition(long blockOffset, int recordIndex) {
+    return (blockOffset << RECORD_INDEX_BITS) | recordIndex;
+  }
+
+  static long getBlockOffset(long position) {
+    return position >>> RECORD_INDEX_BITS;
+  }
+
+  static int getRecordIndex(long position) {
+    return (int) (position & MAX_BLOCK_RECORDS);
+  }
+
+}
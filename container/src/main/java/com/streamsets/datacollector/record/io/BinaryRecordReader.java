@@ -0,0 +1,442 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record.io;
+
+import com.streamsets.datacollector.record.HeaderImpl;
+import com.streamsets.datacollector.record.RecordImpl;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.ext.RecordReader;
+import com.streamsets.pipeline.api.impl.Utils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads records written with the {@link RecordEncoding#BINARY1} encoding, see {@link BinaryRecordFormat}.
+ * <p/>
+ * Positions are the offset of the current block shifted left {@link BinaryRecordFormat#RECORD_INDEX_BITS} bits plus
+ * the number of records already read from the block, they always grow and the reader can be created at any of them.
+ * <p/>
+ * The writer ends a block once it reaches {@link BinaryRecordFormat#MAX_BLOCK_SIZE}, so with a max object length a
+ * valid block is never longer than that size plus the max object length, longer blocks are rejected before reading
+ * them.
+ */
+public class BinaryRecordReader implements RecordReader {
+  private final InputStream inputStream;
+  private final int maxBlockLength;
+  private final List<String> dictionary;
+  private Inflater inflater;
+  private long offset;
+  private long blockOffset;
+  private int blockRecords;
+  private int recordIndex;
+  private byte[] block;
+  private int blockLength;
+  private int pos;
+  private boolean closed;
+
+  public BinaryRecordReader(InputStream inputStream, long initialPosition, int maxObjectLen) throws IOException {
+    maxBlockLength = (maxObjectLen > -1)
+        ? (int) Math.min(Integer.MAX_VALUE, (long) BinaryRecordFormat.MAX_BLOCK_SIZE + maxObjectLen)
+        : Integer.MAX_VALUE;
+    long initialBlockOffset = BinaryRecordFormat.getBlockOffset(initialPosition);
+    IOUtils.skipFully(inputStream, initialBlockOffset);
+    this.inputStream = new BufferedInputStream(inputStream);
+    dictionary = new ArrayList<>();
+    block = new byte[0];
+    offset = initialBlockOffset;
+    blockOffset = initialBlockOffset;
+    int skip = BinaryRecordFormat.getRecordIndex(initialPosition);
+    if (skip > 0) {
+      if (!readBlock() || skip > blockRecords) {
+        throw new IOException(Utils.format("Invalid position '{}'", initialPosition));
+      }
+      for (int i = 0; i < skip; i++) {
+        readRecord();
+      }
+    }
+  }
+
+  @Override
+  public String getEncoding() {
+    return RecordEncoding.BINARY1.name();
+  }
+
+  @Override
+  public long getPosition() {
+    return (recordIndex < blockRecords)
+        ? BinaryRecordFormat.getPosition(blockOffset, recordIndex)
+        : BinaryRecordFormat.getPosition(offset, 0);
+  }
+
+  @Override
+  public Record readRecord() throws IOException {
+    if (closed) {
+      throw new IOException("input has been closed");
+    }
+    if (recordIndex == blockRecords && !readBlock()) {
+      return null;
+    }
+    HeaderImpl header = new HeaderImpl();
+    header.setAllAttributes(readHeader());
+    Record record = new RecordImpl(header, readField());
+    recordIndex++;
+    return record;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      if (inflater != null) {
+        inflater.end();
+      }
+      inputStream.close();
+    }
+  }
+
+  // returns false at the end of the stream
+  private boolean readBlock() throws IOException {
+    int first = inputStream.read();
+    if (first == -1) {
+      return false;
+    }
+    blockOffset = offset;
+    offset++;
+    long records = readStreamVarLong(first);
+    if (records < 1 || records > BinaryRecordFormat.MAX_BLOCK_RECORDS) {
+      throw new IOException(Utils.format("Block at offset '{}' has invalid record count '{}'", blockOffset, records));
+    }
+    byte codec = (byte) readStreamByte();
+    int length = checkBlockLength(readStreamVarLong(readStreamByte()));
+    int storedLength = checkBlockLength(readStreamVarLong(readStreamByte()));
+    // the payload is deflated only when it gets smaller
+    if ((codec == BinaryRecordFormat.CODEC_NONE) ? storedLength != length : storedLength > length) {
+      throw new IOException(Utils.format(
+          "Block at offset '{}' has stored length '{}' not matching its length '{}'",
+          blockOffset,
+          storedLength,
+          length
+      ));
+    }
+    byte[] stored = new byte[storedLength];
+    IOUtils.readFully(inputStream, stored);
+    offset += storedLength;
+
+    switch (codec) {
+      case BinaryRecordFormat.CODEC_NONE:
+        block = stored;
+        break;
+      case BinaryRecordFormat.CODEC_DEFLATE:
+        block = inflate(stored, length);
+        break;
+      default:
+        throw new IOException(Utils.format("Unsupported block codec '{}'", codec));
+    }
+    blockLength = length;
+    blockRecords = (int) records;
+    recordIndex = 0;
+    pos = 0;
+    dictionary.clear();
+    return true;
+  }
+
+  private byte[] inflate(byte[] stored, int length) throws IOException {
+    if (inflater == null) {
+      inflater = new Inflater();
+    }
+    inflater.reset();
+    inflater.setInput(stored);
+    byte[] data = new byte[length];
+    try {
+      int read = 0;
+      while (read < length && !inflater.finished()) {
+        int len = inflater.inflate(data, read, length - read);
+        if (len == 0 && inflater.needsInput()) {
+          break;
+        }
+        read += len;
+      }
+      if (read != length) {
+        throw new IOException(Utils.format("Corrupted block, expected '{}' bytes got '{}'", length, read));
+      }
+    } catch (DataFormatException ex) {
+      throw new IOException(Utils.format("Corrupted block: {}", ex.toString()), ex);
+    }
+    return data;
+  }
+
+  private int readStreamByte() throws IOException {
+    int value = inputStream.read();
+    if (value == -1) {
+      throw new EOFException("Unexpected end of stream");
+    }
+    offset++;
+    return value;
+  }
+
+  private long readStreamVarLong(int first) throws IOException {
+    long value = first & 0x7f;
+    int shift = 7;
+    int b = first;
+    while ((b & 0x80) != 0) {
+      if (shift > 63) {
+        throw new IOException("Invalid varint");
+      }
+      b = readStreamByte();
+      value |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    }
+    return value;
+  }
+
+  private int checkBlockLength(long length) throws IOException {
+    if (length < 0 || length > maxBlockLength) {
+      throw new IOException(Utils.format(
+          "Block at offset '{}' has invalid length '{}', max length is '{}'",
+          blockOffset,
+          length,
+          maxBlockLength
+      ));
+    }
+    return (int) length;
+  }
+
+  private static int checkLength(long length) throws IOException {
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new IOException(Utils.format("Invalid length '{}'", length));
+    }
+    return (int) length;
+  }
+
+  private Map<String, Object> readHeader() throws IOException {
+    int count = readLength();
+    Map<String, Object> attributes = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      String name = readName();
+      int type = readByte();
+      Object value;
+      switch (type) {
+        case BinaryRecordFormat.HEADER_NULL:
+          value = null;
+          break;
+        case BinaryRecordFormat.HEADER_STRING:
+          value = readString();
+          break;
+        case BinaryRecordFormat.HEADER_LONG:
+          value = unZigZag(readVarLong());
+          break;
+        case BinaryRecordFormat.HEADER_BYTES:
+          value = readBytes();
+          break;
+        default:
+          throw new IOException(Utils.format("Unsupported header attribute '{}' type '{}'", name, type));
+      }
+      attributes.put(name, value);
+    }
+    return attributes;
+  }
+
+  private Field readField() throws IOException {
+    int code = readByte();
+    Field.Type type = BinaryRecordFormat.getType(code & BinaryRecordFormat.TYPE_MASK);
+    if (type == null) {
+      throw new IOException(Utils.format("Unsupported field type code '{}'", code & BinaryRecordFormat.TYPE_MASK));
+    }
+    Map<String, String> attributes = null;
+    if ((code & BinaryRecordFormat.ATTRIBUTES_FLAG) != 0) {
+      int count = readLength();
+      attributes = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        attributes.put(readName(), readNullableString());
+      }
+    }
+    Object value = null;
+    if ((code & BinaryRecordFormat.NULL_FLAG) == 0) {
+      switch (type) {
+        case BOOLEAN:
+          value = readByte() != 0;
+          break;
+        case CHAR:
+          value = (char) readVarLong();
+          break;
+        case BYTE:
+          value = (byte) readByte();
+          break;
+        case SHORT:
+          value = (short) unZigZag(readVarLong());
+          break;
+        case INTEGER:
+          value = (int) unZigZag(readVarLong());
+          break;
+        case LONG:
+          value = unZigZag(readVarLong());
+          break;
+        case FLOAT:
+          value = Float.intBitsToFloat((int) readFixed(4));
+          break;
+        case DOUBLE:
+          value = Double.longBitsToDouble(readFixed(8));
+          break;
+        case DATE:
+        case DATETIME:
+        case TIME:
+          value = new Date(unZigZag(readVarLong()));
+          break;
+        case ZONED_DATETIME:
+          String zonedDateTime = readString();
+          try {
+            value = ZonedDateTime.parse(zonedDateTime, BinaryRecordFormat.ZONED_DATETIME_FORMAT);
+          } catch (DateTimeParseException ex) {
+            throw new IOException(Utils.format("Invalid zoned datetime '{}': {}", zonedDateTime, ex.toString()), ex);
+          }
+          break;
+        case DECIMAL:
+          int scale = (int) unZigZag(readVarLong());
+          value = new BigDecimal(new BigInteger(readBytes()), scale);
+          break;
+        case STRING:
+          value = readString();
+          break;
+        case BYTE_ARRAY:
+          value = readBytes();
+          break;
+        case MAP:
+        case LIST_MAP:
+          int size = readLength();
+          Map<String, Field> map = (type == Field.Type.MAP) ? new HashMap<>() : new LinkedHashMap<>();
+          for (int i = 0; i < size; i++) {
+            map.put(readName(), readField());
+          }
+          value = map;
+          break;
+        case LIST:
+          int length = readLength();
+          List<Field> list = new ArrayList<>(length);
+          for (int i = 0; i < length; i++) {
+            list.add(readField());
+          }
+          value = list;
+          break;
+        default:
+          throw new IOException(Utils.format("Unsupported field type '{}'", type));
+      }
+    }
+    return Field.create(type, value, attributes);
+  }
+
+  private String readName() throws IOException {
+    int index = readLength();
+    if (index == 0) {
+      String name = readString();
+      dictionary.add(name);
+      return name;
+    }
+    if (index > dictionary.size()) {
+      throw new IOException(Utils.format("Invalid name reference '{}'", index));
+    }
+    return dictionary.get(index - 1);
+  }
+
+  private String readString() throws IOException {
+    int length = readLength();
+    checkAvailable(length);
+    String value = new String(block, pos, length, StandardCharsets.UTF_8);
+    pos += length;
+    return value;
+  }
+
+  private String readNullableString() throws IOException {
+    int length = readLength();
+    if (length == 0) {
+      return null;
+    }
+    checkAvailable(length - 1);
+    String value = new String(block, pos, length - 1, StandardCharsets.UTF_8);
+    pos += length - 1;
+    return value;
+  }
+
+  private byte[] readBytes() throws IOException {
+    int length = readLength();
+    checkAvailable(length);
+    byte[] value = new byte[length];
+    System.arraycopy(block, pos, value, 0, length);
+    pos += length;
+    return value;
+  }
+
+  private int readByte() throws IOException {
+    checkAvailable(1);
+    return block[pos++] & 0xff;
+  }
+
+  private int readLength() throws IOException {
+    return checkLength(readVarLong());
+  }
+
+  private long readVarLong() throws IOException {
+    long value = 0;
+    int shift = 0;
+    int b;
+    do {
+      if (shift > 63) {
+        throw new IOException("Invalid varint");
+      }
+      b = readByte();
+      value |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private long readFixed(int bytes) throws IOException {
+    checkAvailable(bytes);
+    long value = 0;
+    for (int i = 0; i < bytes; i++) {
+      value |= (long) (block[pos++] & 0xff) << (8 * i);
+    }
+    return value;
+  }
+
+  private void checkAvailable(int bytes) throws IOException {
+    if (bytes > blockLength - pos) {
+      throw new EOFException("Unexpected end of block");
+    }
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+}
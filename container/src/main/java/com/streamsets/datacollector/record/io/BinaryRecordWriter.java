@@ -0,0 +1,347 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record.io;
+
+import com.streamsets.datacollector.record.HeaderImpl;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.ext.RecordWriter;
+import com.streamsets.pipeline.api.impl.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes records with the {@link RecordEncoding#BINARY1} encoding, see {@link BinaryRecordFormat}.
+ * <p/>
+ * Records are buffered in a block until the writer is flushed or the block is full.
+ */
+public class BinaryRecordWriter implements RecordWriter {
+  private static final Logger LOG = LoggerFactory.getLogger(BinaryRecordWriter.class);
+  private final OutputStream outputStream;
+  private final boolean compress;
+  private final Buffer block;
+  private final Buffer blockHeader;
+  private final Map<String, Integer> dictionary;
+  private Deflater deflater;
+  private Buffer compressed;
+  private int blockRecords;
+  private boolean closed;
+
+  public BinaryRecordWriter(OutputStream outputStream) {
+    this(outputStream, true);
+  }
+
+  public BinaryRecordWriter(OutputStream outputStream, boolean compress) {
+    this.outputStream = outputStream;
+    this.compress = compress;
+    block = new Buffer(64 * 1024);
+    blockHeader = new Buffer(32);
+    dictionary = new HashMap<>();
+  }
+
+  @Override
+  public String getEncoding() {
+    return RecordEncoding.BINARY1.name();
+  }
+
+  @Override
+  public void write(Record record) throws IOException {
+    if (closed) {
+      throw new IOException("writer has been closed");
+    }
+    Utils.checkNotNull(record, "record");
+    int size = block.size();
+    int names = dictionary.size();
+    try {
+      writeHeader((HeaderImpl) record.getHeader());
+      writeField(record.get());
+    } catch (IOException ex) {
+      // the block must not keep a partially written record nor the names it defined
+      block.truncate(size);
+      dictionary.values().removeIf(index -> index >= names);
+      throw ex;
+    }
+    blockRecords++;
+    if (blockRecords == BinaryRecordFormat.MAX_BLOCK_RECORDS || block.size() >= BinaryRecordFormat.MAX_BLOCK_SIZE) {
+      writeBlock();
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (closed) {
+      throw new IOException("writer has been closed");
+    }
+    writeBlock();
+    outputStream.flush();
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      try {
+        writeBlock();
+        outputStream.close();
+      } catch (IOException ex) {
+        LOG.warn("Error on close: {}", ex, ex);
+      } finally {
+        if (deflater != null) {
+          deflater.end();
+        }
+      }
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if (blockRecords == 0) {
+      return;
+    }
+    Buffer payload = block;
+    byte codec = BinaryRecordFormat.CODEC_NONE;
+    if (compress && block.size() >= BinaryRecordFormat.MIN_COMPRESSION_SIZE) {
+      Buffer deflated = deflate(block);
+      if (deflated.size() < block.size()) {
+        payload = deflated;
+        codec = BinaryRecordFormat.CODEC_DEFLATE;
+      }
+    }
+    blockHeader.reset();
+    blockHeader.writeVarLong(blockRecords);
+    blockHeader.write(codec);
+    blockHeader.writeVarLong(block.size());
+    blockHeader.writeVarLong(payload.size());
+    blockHeader.writeTo(outputStream);
+    payload.writeTo(outputStream);
+
+    block.reset();
+    dictionary.clear();
+    blockRecords = 0;
+  }
+
+  private Buffer deflate(Buffer data) {
+    if (deflater == null) {
+      deflater = new Deflater(Deflater.BEST_SPEED);
+      compressed = new Buffer(data.size());
+    }
+    deflater.reset();
+    compressed.reset();
+    deflater.setInput(data.array(), 0, data.size());
+    deflater.finish();
+    byte[] chunk = new byte[8 * 1024];
+    while (!deflater.finished()) {
+      int len = deflater.deflate(chunk);
+      compressed.write(chunk, 0, len);
+    }
+    return compressed;
+  }
+
+  private void writeHeader(HeaderImpl header) throws IOException {
+    Map<String, Object> attributes = header.getAllAttributes();
+    block.writeVarLong(attributes.size());
+    for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+      writeName(entry.getKey());
+      Object value = entry.getValue();
+      if (value == null || value instanceof Record) {
+        // the source record is never serialized
+        block.write(BinaryRecordFormat.HEADER_NULL);
+      } else if (value instanceof String) {
+        block.write(BinaryRecordFormat.HEADER_STRING);
+        writeString((String) value);
+      } else if (value instanceof Long) {
+        block.write(BinaryRecordFormat.HEADER_LONG);
+        block.writeVarLong(zigZag((Long) value));
+      } else if (value instanceof byte[]) {
+        block.write(BinaryRecordFormat.HEADER_BYTES);
+        writeBytes((byte[]) value);
+      } else {
+        throw new IOException(Utils.format(
+            "Unsupported header attribute '{}' of type '{}'",
+            entry.getKey(),
+            value.getClass().getName()
+        ));
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void writeField(Field field) throws IOException {
+    if (field.getType() == Field.Type.FILE_REF) {
+      throw new IOException("Cannot serialize FileRef fields.");
+    }
+    int code = BinaryRecordFormat.getTypeCode(field.getType());
+    if (code == -1) {
+      throw new IOException(Utils.format("Unsupported field type '{}'", field.getType()));
+    }
+    Object value = field.getValue();
+    Map<String, String> attributes = field.getAttributes();
+    boolean hasAttributes = attributes != null && !attributes.isEmpty();
+    block.write(
+        code | ((value == null) ? BinaryRecordFormat.NULL_FLAG : 0) |
+            (hasAttributes ? BinaryRecordFormat.ATTRIBUTES_FLAG : 0)
+    );
+    if (hasAttributes) {
+      block.writeVarLong(attributes.size());
+      for (Map.Entry<String, String> entry : attributes.entrySet()) {
+        writeName(entry.getKey());
+        writeNullableString(entry.getValue());
+      }
+    }
+    if (value == null) {
+      return;
+    }
+    switch (field.getType()) {
+      case BOOLEAN:
+        block.write(((Boolean) value) ? 1 : 0);
+        break;
+      case CHAR:
+        block.writeVarLong((Character) value);
+        break;
+      case BYTE:
+        block.write((Byte) value);
+        break;
+      case SHORT:
+        block.writeVarLong(zigZag((Short) value));
+        break;
+      case INTEGER:
+        block.writeVarLong(zigZag((Integer) value));
+        break;
+      case LONG:
+        block.writeVarLong(zigZag((Long) value));
+        break;
+      case FLOAT:
+        block.writeFixed(Float.floatToIntBits((Float) value), 4);
+        break;
+      case DOUBLE:
+        block.writeFixed(Double.doubleToLongBits((Double) value), 8);
+        break;
+      case DATE:
+      case DATETIME:
+      case TIME:
+        block.writeVarLong(zigZag(((Date) value).getTime()));
+        break;
+      case ZONED_DATETIME:
+        writeString(((ZonedDateTime) value).format(BinaryRecordFormat.ZONED_DATETIME_FORMAT));
+        break;
+      case DECIMAL:
+        BigDecimal decimal = (BigDecimal) value;
+        block.writeVarLong(zigZag(decimal.scale()));
+        writeBytes(decimal.unscaledValue().toByteArray());
+        break;
+      case STRING:
+        writeString((String) value);
+        break;
+      case BYTE_ARRAY:
+        writeBytes((byte[]) value);
+        break;
+      case MAP:
+      case LIST_MAP:
+        Map<String, Field> map = (Map<String, Field>) value;
+        block.writeVarLong(map.size());
+        for (Map.Entry<String, Field> entry : map.entrySet()) {
+          writeName(entry.getKey());
+          writeField(entry.getValue());
+        }
+        break;
+      case LIST:
+        List<Field> list = (List<Field>) value;
+        block.writeVarLong(list.size());
+        for (Field element : list) {
+          writeField(element);
+        }
+        break;
+      default:
+        throw new IOException(Utils.format("Unsupported field type '{}'", field.getType()));
+    }
+  }
+
+  private void writeName(String name) {
+    Integer index = dictionary.get(name);
+    if (index == null) {
+      block.write(0);
+      writeString(name);
+      dictionary.put(name, dictionary.size());
+    } else {
+      block.writeVarLong(index + 1);
+    }
+  }
+
+  private void writeString(String value) {
+    writeBytes(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void writeNullableString(String value) {
+    if (value == null) {
+      block.write(0);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      block.writeVarLong(bytes.length + 1L);
+      block.write(bytes, 0, bytes.length);
+    }
+  }
+
+  private void writeBytes(byte[] value) {
+    block.writeVarLong(value.length);
+    block.write(value, 0, value.length);
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  // gives access to the buffer without copying it
+  private static class Buffer extends ByteArrayOutputStream {
+
+    Buffer(int size) {
+      super(size);
+    }
+
+    byte[] array() {
+      return buf;
+    }
+
+    void truncate(int size) {
+      count = size;
+    }
+
+    void writeVarLong(long value) {
+      while ((value & ~0x7fL) != 0) {
+        write((int) ((value & 0x7f) | 0x80));
+        value >>>= 7;
+      }
+      write((int) value);
+    }
+
+    void writeFixed(long value, int bytes) {
+      for (int i = 0; i < bytes; i++) {
+        write((int) (value >>> (8 * i)));
+      }
+    }
+  }
+
+}
@@ -73,6 +73,17 @@ public class PipeRunner {
       int runnerId,
       MetricRegistry metricRegistry,
       List<Pipe> pipes
+  ) {
+    this(pipelineName, pipelineRev, runnerId, "runner." + runnerId, metricRegistry, pipes);
+  }
+
+  private PipeRunner(
+      String pipelineName,
+      String pipelineRev,
+      int runnerId,
+      String gaugeName,
+      MetricRegistry metricRegistry,
+      List<Pipe> pipes
   ) {
     this.runnerId = runnerId;
     this.pipes = ImmutableList.copyOf(pipes);
@@ -80,7 +91,7 @@ public class PipeRunner {
     // Create metric gauge for this particular runner
     this.runtimeMetricGauge = MetricsConfigurator.createStageGauge(
       metricRegistry,
-      "runner." + runnerId,
+      gaugeName,
       null,
       pipelineName,
       pipelineRev
@@ -91,6 +102,28 @@ public class PipeRunner {
     resetBatchSpecificMetrics();
   }
 
+  /**
+   * Create runner with its own runtime metric gauge for the pipes of this runner before the given one.
+   *
+   * Used by pipelined execution where those pipes already work on the next batch in another thread while this
+   * runner finishes the current one, so that the two threads never share a runner.
+   */
+  public PipeRunner createHeadRunner(
+      String pipelineName,
+      String pipelineRev,
+      MetricRegistry metricRegistry,
+      int toPipe
+  ) {
+    return new PipeRunner(
+      pipelineName,
+      pipelineRev,
+      runnerId,
+      "runner." + runnerId + ".head",
+      metricRegistry,
+      pipes.subList(0, toPipe)
+    );
+  }
+
   public Pipe get(int i) {
     return pipes.get(i);
   }
@@ -114,6 +147,24 @@ public class PipeRunner {
       long batchStartTime,
       ThrowingConsumer<Pipe> consumer
   ) throws PipelineRuntimeException, StageException {
+    executeBatch(offsetKey, offsetValue, batchStartTime, 0, pipes.size(), consumer);
+  }
+
+  /**
+   * Run batch with given consumer for each pipe in the given range (from inclusive, to exclusive).
+   *
+   * Used by pipelined execution where the pipes before the range are run by the head runner. The batch is counted as
+   * finished only by the range ending with the last pipe.
+   */
+  public void executeBatch(
+      String offsetKey,
+      String offsetValue,
+      long batchStartTime,
+      int fromPipe,
+      int toPipe,
+      ThrowingConsumer<Pipe> consumer
+  ) throws PipelineRuntimeException, StageException {
+    boolean lastRange = toPipe == pipes.size();
     MDC.put(LogConstants.RUNNER, String.valueOf(runnerId));
     // Persist static information for the batch (this won't change as the batch progresses)
     this.runtimeMetricGauge.put(METRIC_BATCH_START_TIME, batchStartTime);
@@ -122,7 +173,7 @@ public class PipeRunner {
     this.runtimeMetricGauge.put(METRIC_STAGE_START_TIME, System.currentTimeMillis());
     try {
       // Run one pipe at a time
-      for(Pipe p : pipes) {
+      for(Pipe p : pipes.subList(fromPipe, toPipe)) {
         this.runtimeMetricGauge.put(METRIC_CURRENT_STAGE, p.getStage().getInfo().getInstanceName());
         if(p instanceof StagePipe) {
           this.runtimeMetricGauge.put(METRIC_STAGE_START_TIME, System.currentTimeMillis());
@@ -133,9 +184,13 @@ public class PipeRunner {
       }
 
       // We've successfully finished batch
-      this.runtimeMetricGauge.computeIfPresent(METRIC_BATCH_COUNT, (key, value) -> ((long)value) + 1);
+      if (lastRange) {
+        this.runtimeMetricGauge.computeIfPresent(METRIC_BATCH_COUNT, (key, value) -> ((long)value) + 1);
+      }
     } finally {
-      resetBatchSpecificMetrics();
+      if (lastRange) {
+        resetBatchSpecificMetrics();
+      }
       MDC.put(LogConstants.RUNNER, "");
     }
   }
@@ -98,6 +98,12 @@ public class StageContext implements Source.Context, PushSource.Context, Target.
   private static final String SDC_RECORD_SAMPLING_POPULATION_SIZE = "sdc.record.sampling.population.size";
   private static final String SDC_RECORD_SAMPLING_SAMPLE_SIZE = "sdc.record.sampling.sample.size";
 
+  /**
+   * {@link #getConfig(String)} name of the Data Collector data directory, where stages keep the state they persist
+   * across pipeline runs. A 'stage.conf_sdc.data.dir' property overrides it.
+   */
+  public static final String DATA_DIR_CONFIG = "sdc.data.dir";
+
   private final Configuration configuration;
   private final int runnerId;
   private final List<Stage.Info> pipelineInfo;
@@ -113,10 +119,12 @@ public class StageContext implements Source.Context, PushSource.Context, Target.
   private long lastBatchTime;
   private final Map<String, Class<?>[]> configToElDefMap;
   private final Map<String, Object> constants;
+  private final boolean compiledEl;
   private final long pipelineMaxMemory;
   private final ExecutionMode executionMode;
   private final DeliveryGuarantee deliveryGuarantee;
   private final String resourcesDir;
+  private final String dataDir;
   private final String sdcId;
   private final String pipelineId;
   private final String pipelineTitle;
@@ -191,6 +199,7 @@ public class StageContext implements Source.Context, PushSource.Context, Target.
     this.executionMode = executionMode;
     this.deliveryGuarantee = deliveryGuarantee;
     this.resourcesDir = resourcesDir;
+    this.dataDir = null;
     this.emailSender = emailSender;
     reportErrorDelegate = errorSink;
     this.sharedRunnerMap = new ConcurrentHashMap<>();
@@ -198,6 +207,7 @@ public class StageContext implements Source.Context, PushSource.Context, Target.
 
     // sample all records while testing
     this.configuration = configuration.getSubSetConfiguration(STAGE_CONF_PREFIX);
+    this.compiledEl = configuration.get(ELEvaluator.COMPILED_EL_KEY, ELEvaluator.COMPILED_EL_DEFAULT);
     this.sampler = new RecordSampler(this, stageType == StageType.SOURCE, 0, 0);
     this.startTime = System.currentTimeMillis();
     this.lineagePublisherDelegator = lineagePublisherDelegator;
@@ -247,9 +257,11 @@ public class StageContext implements Source.Context, PushSource.Context, Target.
     this.deliveryGuarantee = deliveryGuarantee;
     this.runtimeInfo = runtimeInfo;
     this.resourcesDir = runtimeInfo.getResourcesDir();
+    this.dataDir = runtimeInfo.getDataDir();
     this.sdcId = runtimeInfo.getId();
     this.emailSender = emailSender;
     this.configuration = configuration.getSubSetConfiguration(STAGE_CONF_PREFIX);
+    this.compiledEl = configuration.get(ELEvaluator.COMPILED_EL_KEY, ELEvaluator.COMPILED_EL_DEFAULT);
     int sampleSize = configuration.get(SDC_RECORD_SAMPLING_SAMPLE_SIZE, 1);
     int populationSize = configuration.get(SDC_RECORD_SAMPLING_POPULATION_SIZE, 10000);
     this.sampler = new RecordSampler(this, stageType == StageType.SOURCE, sampleSize, populationSize);
@@ -391,7 +403,11 @@ public class StageContext implements Source.Context, PushSource.Context, Target.
 
   @Override
   public String getConfig(String configName) {
-    return configuration.get(STAGE_CONF_PREFIX + configName, null);
+    String value = configuration.get(STAGE_CONF_PREFIX + configName, null);
+    if (value == null && DATA_DIR_CONFIG.equals(configName)) {
+      value = dataDir;
+    }
+    return value;
   }
 
   @Override
@@ -769,7 +785,7 @@ public class StageContext implements Source.Context, PushSource.Context, Target.
       Collections.addAll(classes, elDefClasses);
     }
     // assert non of the EL functions is implicit only
-    return new ELEvaluator(configName, true, constants, classes.toArray(new Class[classes.size()]));
+    return new ELEvaluator(configName, true, compiledEl, constants, classes.toArray(new Class[classes.size()]));
   }
 
 }
@@ -27,6 +27,9 @@ import com.streamsets.datacollector.config.StageType;
 import com.streamsets.datacollector.memory.MemoryMonitor;
 import com.streamsets.datacollector.memory.MemoryUsageCollector;
 import com.streamsets.datacollector.memory.MemoryUsageCollectorResourceBundle;
+import com.streamsets.datacollector.memory.RecordSizeEstimator;
+import com.streamsets.datacollector.memory.SampledMemoryMonitor;
+import com.streamsets.datacollector.memory.SampledMemoryUsageCollector;
 import com.streamsets.datacollector.metrics.MetricsConfigurator;
 import com.streamsets.datacollector.restapi.bean.CounterJson;
 import com.streamsets.datacollector.restapi.bean.HistogramJson;
@@ -36,6 +39,7 @@ import com.streamsets.datacollector.util.AggregatorUtil;
 import com.streamsets.datacollector.util.Configuration;
 import com.streamsets.datacollector.validation.Issue;
 import com.streamsets.pipeline.api.Batch;
+import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
 
 import org.slf4j.Logger;
@@ -51,6 +55,15 @@ public class StagePipe extends Pipe<StagePipe.Context> {
   private static final Logger LOG = LoggerFactory.getLogger(StagePipe.class);
   //Runtime stat gauge name
   public static final String RUNTIME_STATS_GAUGE = "RuntimeStatsGauge";
+  // Records per batch CPU time and allocated bytes of each stage, off by default as it has a small cost per batch
+  public static final String MONITOR_STAGE_RESOURCES = "monitor.stage.resources";
+  public static final String MONITOR_MEMORY = "monitor.memory";
+  // 'full' walks the whole stage object graph in a background thread, 'sampled' estimates it in the pipeline thread
+  public static final String MONITOR_MEMORY_MODE = "monitor.memory.mode";
+  public static final String MONITOR_MEMORY_MODE_SAMPLED = "sampled";
+  // Max time spent per stage and batch walking the stage object graph in 'sampled' mode
+  public static final String MONITOR_MEMORY_SAMPLED_BUDGET_MICROS = "monitor.memory.sampled.budget.micros";
+  public static final long MONITOR_MEMORY_SAMPLED_BUDGET_MICROS_DEFAULT = 200;
   private Timer processingTimer;
   private Counter memoryConsumedCounter;
   private Meter inputRecordsMeter;
@@ -67,6 +80,11 @@ public class StagePipe extends Pipe<StagePipe.Context> {
   private Histogram stageErrorsHistogram;
   private Map<String, Counter> outputRecordsPerLaneCounter;
   private Map<String, Meter> outputRecordsPerLaneMeter;
+  private ThreadResourceUsage resourceUsage;
+  private Timer cpuTimer;
+  private Histogram allocatedBytesHistogram;
+  private Counter allocatedBytesCounter;
+  private SampledMemoryMonitor sampledMemoryMonitor;
   private StagePipe.Context context;
   private final ResourceControlledScheduledExecutor scheduledExecutorService;
   private final MemoryUsageCollectorResourceBundle memoryUsageCollectorResourceBundle;
@@ -186,7 +204,18 @@ public class StagePipe extends Pipe<StagePipe.Context> {
         }
       }
       this.context = pipeContext;
-      if (configuration.get("monitor.memory", false)) {
+      if (configuration.get(MONITOR_MEMORY, false) &&
+          MONITOR_MEMORY_MODE_SAMPLED.equals(configuration.get(MONITOR_MEMORY_MODE, ""))) {
+        LOG.info("Starting sampled memory collector for {}", getStage().getInfo().getInstanceName());
+        sampledMemoryMonitor = new SampledMemoryMonitor(
+            getStage().getInfo().getInstanceName(),
+            memoryConsumedCounter,
+            new SampledMemoryUsageCollector(getStage()),
+            TimeUnit.MICROSECONDS.toNanos(
+                configuration.get(MONITOR_MEMORY_SAMPLED_BUDGET_MICROS, MONITOR_MEMORY_SAMPLED_BUDGET_MICROS_DEFAULT)
+            )
+        );
+      } else if (configuration.get(MONITOR_MEMORY, false)) {
         LOG.info("Starting memory collector for {}", getStage().getInfo().getInstanceName());
         scheduledExecutorService.submit(
           new MemoryMonitor(memoryConsumedCounter,
@@ -199,6 +228,9 @@ public class StagePipe extends Pipe<StagePipe.Context> {
               }
             }));
       }
+      if (configuration.get(MONITOR_STAGE_RESOURCES, false)) {
+        createResourceUsageMetrics(metrics, metricsKey);
+      }
       createRuntimeStatsGauge(metrics);
 
       predicates = new FilterRecordBatch.Predicate[2];
@@ -223,7 +255,13 @@ public class StagePipe extends Pipe<StagePipe.Context> {
     Batch batch = new FilterRecordBatch(batchImpl, predicates, getStage().getContext());
 
     long start = System.currentTimeMillis();
+    long startCpuTime = (cpuTimer != null) ? resourceUsage.getCpuTime() : 0;
+    long startAllocatedBytes = (allocatedBytesHistogram != null) ? resourceUsage.getAllocatedBytes() : 0;
     String newOffset = getStage().execute(previousOffset, pipeBatch.getBatchSize(), batch, batchMaker, errorSink, eventSink);
+    updateResourceUsageMetrics(startCpuTime, startAllocatedBytes);
+    if (sampledMemoryMonitor != null) {
+      updateSampledMemoryMonitor(batchMaker);
+    }
     if (isSource()) {
       pipeBatch.setNewOffset(newOffset);
     }
@@ -312,6 +350,52 @@ public class StagePipe extends Pipe<StagePipe.Context> {
     return batchMetrics;
   }
 
+  private void createResourceUsageMetrics(MetricRegistry metrics, String metricsKey) {
+    resourceUsage = new ThreadResourceUsage();
+    if (resourceUsage.isCpuTimeSupported()) {
+      cpuTimer = MetricsConfigurator.createStageTimer(metrics, metricsKey + ".cpuTime", name, rev);
+    } else {
+      LOG.warn("Thread CPU time is not supported by the JVM, not recording it for stage {}",
+          getStage().getInfo().getInstanceName());
+    }
+    if (resourceUsage.isAllocatedBytesSupported()) {
+      allocatedBytesHistogram =
+          MetricsConfigurator.createStageHistogram5Min(metrics, metricsKey + ".allocatedBytes", name, rev);
+      allocatedBytesCounter = MetricsConfigurator.createStageCounter(metrics, metricsKey + ".allocatedBytes", name, rev);
+      if (metricRegistryJson != null) {
+        CounterJson allocatedBytesCounterJson =
+          metricRegistryJson.getCounters().get(metricsKey + ".allocatedBytes" + MetricsConfigurator.COUNTER_SUFFIX);
+        if (allocatedBytesCounterJson != null) {
+          allocatedBytesCounter.inc(allocatedBytesCounterJson.getCount());
+        }
+      }
+    } else {
+      LOG.warn("Thread allocated memory is not supported by the JVM, not recording it for stage {}",
+          getStage().getInfo().getInstanceName());
+    }
+  }
+
+  private void updateResourceUsageMetrics(long startCpuTime, long startAllocatedBytes) {
+    // the stage runs in the calling thread, the difference of the thread counters is what the stage consumed
+    if (cpuTimer != null) {
+      cpuTimer.update(resourceUsage.getCpuTime() - startCpuTime, TimeUnit.NANOSECONDS);
+    }
+    if (allocatedBytesHistogram != null) {
+      long allocatedBytes = resourceUsage.getAllocatedBytes() - startAllocatedBytes;
+      allocatedBytesHistogram.update(allocatedBytes);
+      allocatedBytesCounter.inc(allocatedBytes);
+    }
+  }
+
+  private void updateSampledMemoryMonitor(BatchMakerImpl batchMaker) {
+    // the records produced by the stage stay in memory until the downstream stages are done with them
+    long recordBytes = 0;
+    for (List<Record> records : batchMaker.getStageOutput().values()) {
+      recordBytes += RecordSizeEstimator.estimate(records);
+    }
+    sampledMemoryMonitor.update(recordBytes);
+  }
+
   protected void increaseStageErrorMetrics(int count) {
     stageErrorCounter.inc(count);
     stageErrorMeter.mark(count);
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.runner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the CPU time and the allocated bytes of the current thread from the JVM thread MX bean.
+ * <p/>
+ * Both counters are cumulative, callers take a reading before and after the work to measure.
+ * A negative value means the JVM does not support (or has disabled) the counter.
+ */
+public class ThreadResourceUsage {
+  private final ThreadMXBean threadMXBean;
+  private final boolean cpuTimeSupported;
+  private final boolean allocatedBytesSupported;
+
+  public ThreadResourceUsage() {
+    this(ManagementFactory.getThreadMXBean());
+  }
+
+  ThreadResourceUsage(ThreadMXBean threadMXBean) {
+    this.threadMXBean = threadMXBean;
+    cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+    allocatedBytesSupported = threadMXBean instanceof com.sun.management.ThreadMXBean &&
+        ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported() &&
+        ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+  }
+
+  public boolean isCpuTimeSupported() {
+    return cpuTimeSupported;
+  }
+
+  public boolean isAllocatedBytesSupported() {
+    return allocatedBytesSupported;
+  }
+
+  /**
+   * Returns the CPU time (user and system) consumed by the current thread, in nanoseconds.
+   */
+  public long getCpuTime() {
+    return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : -1;
+  }
+
+  /**
+   * Returns the bytes allocated in the heap by the current thread.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytesSupported
+        ? ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId())
+        : -1;
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.runner.production;
+
+import com.streamsets.datacollector.main.RuntimeInfo;
+
+import java.util.Map;
+
+/**
+ * Offset store that rewrites the whole offset file on each commit.
+ */
+public class FileOffsetStore implements OffsetStore {
+  private final RuntimeInfo runtimeInfo;
+  private final String pipelineName;
+  private final String rev;
+
+  public FileOffsetStore(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
+    this.runtimeInfo = runtimeInfo;
+    this.pipelineName = pipelineName;
+    this.rev = rev;
+  }
+
+  @Override
+  public void commit(Map<String, String> offsets, String entity, String newOffset) {
+    OffsetFileUtil.saveOffsets(runtimeInfo, pipelineName, rev, offsets);
+  }
+
+  @Override
+  public void close(Map<String, String> offsets) {
+    // Offset file is always up to date
+  }
+
+}
@@ -26,17 +26,25 @@ import com.streamsets.pipeline.api.impl.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class OffsetFileUtil {
   private static final Logger LOG = LoggerFactory.getLogger(ProductionSourceOffsetTracker.class);
 
   private static final String OFFSET_FILE = "offset.json";
+  private static final String OFFSET_LOG_FILE = "offset.log";
+  private static final String LOG_ENTITY = "entity";
+  private static final String LOG_OFFSET = "offset";
   private static final Map<String, String> DEFAULT_OFFSET = Collections.emptyMap();
   private static final int MAX_RETRIES = 5;
 
@@ -46,12 +54,31 @@ public class OffsetFileUtil {
     return new File(PipelineDirectoryUtil.getPipelineDir(runtimeInfo, pipelineName, rev), OFFSET_FILE);
   }
 
+  /**
+   * Offset write-ahead log of the pipeline, it holds the offset changes committed since the offset file was last
+   * written.
+   */
+  public static File getPipelineOffsetLogFile(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
+    return new File(PipelineDirectoryUtil.getPipelineDir(runtimeInfo, pipelineName, rev), OFFSET_LOG_FILE);
+  }
+
   public static Map<String, String> saveIfEmpty(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
     File pipelineOffsetFile =  getPipelineOffsetFile(runtimeInfo, pipelineName, rev);
+    File pipelineOffsetLogFile = getPipelineOffsetLogFile(runtimeInfo, pipelineName, rev);
     SourceOffset sourceOffset;
     DataStore ds = new DataStore(pipelineOffsetFile);
     try {
-      if (ds.exists()) {
+      if (pipelineOffsetLogFile.exists()) {
+        // Recover offsets committed to the write-ahead log before the last shutdown and compact them
+        Map<String, String> offsets = new HashMap<>();
+        if (ds.exists()) {
+          offsets.putAll(readSourceOffsetFromDataStore(ds).getOffsets());
+        }
+        replayLog(pipelineOffsetLogFile, offsets);
+        saveOffsets(runtimeInfo, pipelineName, rev, offsets);
+        deleteLog(pipelineOffsetLogFile);
+        return offsets;
+      } else if (ds.exists()) {
         return readSourceOffsetFromDataStore(ds).getOffsets();
       } else {
         sourceOffset = new SourceOffset(SourceOffset.CURRENT_VERSION, DEFAULT_OFFSET);
@@ -89,6 +116,7 @@ public class OffsetFileUtil {
     try (OutputStream os = dataStore.getOutputStream()) {
       ObjectMapperFactory.get().writeValue(os, offset);
       dataStore.commit(os);
+      deleteLog(getPipelineOffsetLogFile(runtimeInfo, pipelineName, rev));
     } catch (IOException e) {
       LOG.error("Failed to save offset={}. Reason {}", offset, e.toString(), e);
       throw new IllegalStateException(e);
@@ -99,6 +127,11 @@ public class OffsetFileUtil {
 
   public static void resetOffsets(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
     saveOffsets(runtimeInfo, pipelineName, rev, DEFAULT_OFFSET);
+    try {
+      deleteLog(getPipelineOffsetLogFile(runtimeInfo, pipelineName, rev));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
   }
 
   public static Map<String, String> getOffsets(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
@@ -120,14 +153,25 @@ public class OffsetFileUtil {
     while (retries < MAX_RETRIES) {
       try {
         File pipelineOffsetFile = getPipelineOffsetFile(runtimeInfo, pipelineName, rev);
+        File pipelineOffsetLogFile = getPipelineOffsetLogFile(runtimeInfo, pipelineName, rev);
+        SourceOffset sourceOffset = null;
         if (pipelineOffsetFile.exists()) {
           DataStore ds = new DataStore(pipelineOffsetFile);
           if (ds.exists()) {
-            return readSourceOffsetFromDataStore(ds);
+            sourceOffset = readSourceOffsetFromDataStore(ds);
           }
         }
+        if (pipelineOffsetLogFile.exists()) {
+          // Running pipeline using write-ahead log, offsets in the log are newer than the ones in the offset file
+          Map<String, String> offsets = new HashMap<>();
+          if (sourceOffset != null) {
+            offsets.putAll(sourceOffset.getOffsets());
+          }
+          replayLog(pipelineOffsetLogFile, offsets);
+          sourceOffset = new SourceOffset(SourceOffset.CURRENT_VERSION, offsets);
+        }
 
-        return null;
+        return sourceOffset;
       } catch (IOException e) {
         // this could fail if offset file is also being written to the same time
         LOG.warn(Utils.format("Retrieving offset failed with attempt {} due to {}", retries, e), e);
@@ -137,6 +181,50 @@ public class OffsetFileUtil {
     throw new IllegalStateException(Utils.format("Retrieving offset failed for last attempt {}", retries));
   }
 
+  /**
+   * Serializes a single offset change as a write-ahead log line, a null offset records removal of the entity.
+   */
+  static byte[] toLogEntry(String entity, String offset) throws IOException {
+    Map<String, String> entry = new LinkedHashMap<>();
+    entry.put(LOG_ENTITY, entity);
+    entry.put(LOG_OFFSET, offset);
+    return (ObjectMapperFactory.getOneLine().writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Applies the offset changes recorded in the write-ahead log to the given offsets. Entries are idempotent, so
+   * replaying a log that has already been compacted into the offset file is harmless.
+   */
+  static void replayLog(File logFile, Map<String, String> offsets) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        Map<String, String> entry;
+        try {
+          entry = ObjectMapperFactory.get().readValue(line, Map.class);
+        } catch (JsonProcessingException e) {
+          // only the last entry can be incomplete, it was not acknowledged as committed
+          LOG.warn("Ignoring incomplete offset log entry '{}' in '{}': {}", line, logFile, e.toString());
+          break;
+        }
+        String entity = entry.get(LOG_ENTITY);
+        String offset = entry.get(LOG_OFFSET);
+        if (offset == null) {
+          offsets.remove(entity);
+        } else {
+          offsets.put(entity, offset);
+        }
+      }
+    }
+  }
+
+  private static void deleteLog(File logFile) throws IOException {
+    Files.deleteIfExists(logFile.toPath());
+  }
+
   private static SourceOffset readSourceOffsetFromDataStore(DataStore ds) throws IOException {
     try (InputStream is = ds.getInputStream()) {
       SourceOffsetJson sourceOffsetJson = ObjectMapperFactory.get().readValue(is, SourceOffsetJson.class);
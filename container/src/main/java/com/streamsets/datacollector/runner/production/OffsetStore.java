@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.runner.production;
+
+import java.util.Map;
+
+/**
+ * Persistent storage of the committed offsets of a pipeline.
+ *
+ * Calls are serialized by the offset tracker, implementations don't need to be thread safe.
+ */
+public interface OffsetStore {
+
+  /**
+   * Persist change of single entity.
+   *
+   * @param offsets All offsets, already containing the change
+   * @param entity Changed entity
+   * @param newOffset New offset of the entity, null if the entity was removed
+   */
+  public void commit(Map<String, String> offsets, String entity, String newOffset);
+
+  /**
+   * Make sure that all committed offsets are in the offset file and release resources held by the store.
+   */
+  public void close(Map<String, String> offsets);
+
+}
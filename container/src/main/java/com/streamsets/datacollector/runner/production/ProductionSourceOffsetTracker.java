@@ -37,16 +37,27 @@ public class ProductionSourceOffsetTracker implements SourceOffsetTracker {
   private final String pipelineName;
   private final String rev;
   private final RuntimeInfo runtimeInfo;
+  private final OffsetStore offsetStore;
 
   @Inject
   public ProductionSourceOffsetTracker(
       @Named("name") String pipelineName,
       @Named("rev") String rev,
       RuntimeInfo runtimeInfo
+  ) {
+    this(pipelineName, rev, runtimeInfo, new FileOffsetStore(runtimeInfo, pipelineName, rev));
+  }
+
+  public ProductionSourceOffsetTracker(
+      String pipelineName,
+      String rev,
+      RuntimeInfo runtimeInfo,
+      OffsetStore offsetStore
   ) {
     this.pipelineName = pipelineName;
     this.rev = rev;
     this.runtimeInfo = runtimeInfo;
+    this.offsetStore = offsetStore;
     this.offsets = new HashMap<>(getSourceOffset(pipelineName, rev));
   }
 
@@ -79,8 +90,17 @@ public class ProductionSourceOffsetTracker implements SourceOffsetTracker {
         offsets.put(entity, newOffset);
       }
 
-      // Finally write new variant of the offset file
-      saveOffset(pipelineName, rev, offsets);
+      // Finally persist the change
+      offsetStore.commit(offsets, entity, newOffset);
+    }
+  }
+
+  /**
+   * Flush all committed offsets to the offset file and release the underlying offset store.
+   */
+  public void close() {
+    synchronized (offsets) {
+      offsetStore.close(offsets);
     }
   }
 
@@ -97,10 +117,6 @@ public class ProductionSourceOffsetTracker implements SourceOffsetTracker {
     OffsetFileUtil.resetOffsets(runtimeInfo, pipelineName, rev);
   }
 
-  private void saveOffset(String pipelineName, String rev, Map<String, String> offset) {
-    OffsetFileUtil.saveOffsets(runtimeInfo, pipelineName, rev, offset);
-  }
-
   @Override
   public long getLastBatchTime() {
     return lastBatchTime;
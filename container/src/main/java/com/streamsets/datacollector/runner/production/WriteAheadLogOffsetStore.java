@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.runner.production;
+
+import com.streamsets.datacollector.main.RuntimeInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * Offset store that appends each offset change to a write-ahead log next to the offset file instead of rewriting
+ * the offset file on every commit.
+ *
+ * Every compaction threshold commits (and on close) the log is compacted - the offsets are written to the offset
+ * file and the log is deleted, the next commit starts a new log. Offsets left in the log by a crash are recovered on the next start by
+ * {@link OffsetFileUtil#saveIfEmpty(RuntimeInfo, String, String)}.
+ */
+public class WriteAheadLogOffsetStore implements OffsetStore {
+  private static final Logger LOG = LoggerFactory.getLogger(WriteAheadLogOffsetStore.class);
+
+  public static final String SYNC_KEY = "offset.wal.sync";
+  public static final boolean SYNC_DEFAULT = false;
+  public static final String COMPACTION_THRESHOLD_KEY = "offset.wal.compaction.threshold";
+  public static final int COMPACTION_THRESHOLD_DEFAULT = 1000;
+
+  private final RuntimeInfo runtimeInfo;
+  private final String pipelineName;
+  private final String rev;
+  private final File logFile;
+  private final boolean sync;
+  private final int compactionThreshold;
+  private FileOutputStream log;
+  private int entries;
+
+  public WriteAheadLogOffsetStore(
+      RuntimeInfo runtimeInfo,
+      String pipelineName,
+      String rev,
+      boolean sync,
+      int compactionThreshold
+  ) {
+    this.runtimeInfo = runtimeInfo;
+    this.pipelineName = pipelineName;
+    this.rev = rev;
+    this.logFile = OffsetFileUtil.getPipelineOffsetLogFile(runtimeInfo, pipelineName, rev);
+    this.sync = sync;
+    this.compactionThreshold = Math.max(1, compactionThreshold);
+  }
+
+  @Override
+  public void commit(Map<String, String> offsets, String entity, String newOffset) {
+    try {
+      if (log == null) {
+        log = new FileOutputStream(logFile, true);
+      }
+      // Whole entry in single write, a crash can leave only the last entry incomplete
+      log.write(OffsetFileUtil.toLogEntry(entity, newOffset));
+      if (sync) {
+        log.getChannel().force(false);
+      }
+      entries++;
+      if (entries >= compactionThreshold) {
+        compact(offsets);
+      }
+    } catch (IOException e) {
+      LOG.error("Failed to save offset for entity={}. Reason {}", entity, e.toString(), e);
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void close(Map<String, String> offsets) {
+    try {
+      // The log may also be left over by a compaction that failed
+      if (log != null || logFile.exists()) {
+        compact(offsets);
+      }
+    } catch (IOException | IllegalStateException e) {
+      // Log will be replayed on next start
+      LOG.warn("Failed to compact offset log '{}': {}", logFile, e.toString(), e);
+    }
+  }
+
+  private void compact(Map<String, String> offsets) throws IOException {
+    LOG.debug("Compacting {} offset log entries for pipeline {}", entries, pipelineName);
+    // The stream is never kept open on a log that is deleted, later entries would be written to an unlinked file
+    if (log != null) {
+      log.close();
+      log = null;
+    }
+    entries = 0;
+    OffsetFileUtil.saveOffsets(runtimeInfo, pipelineName, rev, offsets);
+    // The offset file now contains everything, a crash before the delete only replays entries already saved
+    Files.deleteIfExists(logFile.toPath());
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.el;
+
+import javax.servlet.jsp.el.ELException;
+import javax.servlet.jsp.el.VariableResolver;
+
+/**
+ * EL expression compiled by {@link ExpressionCompiler}, it is immutable and thread safe.
+ * <p/>
+ * Functions are already resolved, so evaluation does not require a function mapper.
+ */
+public class CompiledExpression {
+  private final String expressionString;
+  private final Object compiled;
+  private final boolean constant;
+
+  CompiledExpression(String expressionString, Object compiled, boolean constant) {
+    this.expressionString = expressionString;
+    this.compiled = compiled;
+    this.constant = constant;
+  }
+
+  public String getExpressionString() {
+    return expressionString;
+  }
+
+  /**
+   * Returns if the expression was folded to a constant value at compile time.
+   */
+  public boolean isConstant() {
+    return constant;
+  }
+
+  public Object evaluate(VariableResolver resolver, Class expectedType) throws ELException {
+    Logger logger = ExpressionEvaluatorImpl.sLogger;
+    Object value;
+    if (constant) {
+      value = compiled;
+    } else if (compiled instanceof Expression) {
+      value = ((Expression) compiled).evaluate(resolver, null, logger);
+    } else {
+      value = ((ExpressionString) compiled).evaluate(resolver, null, logger);
+    }
+    return Coercions.coerce(value, expectedType, logger);
+  }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.el;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.servlet.jsp.el.ELException;
+import javax.servlet.jsp.el.FunctionMapper;
+import javax.servlet.jsp.el.VariableResolver;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles parsed EL expressions into reusable {@link CompiledExpression}s.
+ * <p/>
+ * Compilation rewrites the Commons EL tree (the parsed tree kept in the evaluator cache is never modified):
+ * <ul>
+ *   <li>functions are resolved once through the given {@link FunctionMapper},</li>
+ *   <li>names of EL constants are replaced by their values, so at runtime they can't be shadowed by variables,</li>
+ *   <li>literals, operators over constants and calls to pure functions with constant arguments are folded.</li>
+ * </ul>
+ * Only immutable values are folded, as a folded value is shared by every evaluation of the expression.
+ */
+@SuppressWarnings("unchecked")
+public class ExpressionCompiler {
+
+  // functions of these namespaces only depend on their arguments
+  private static final Set<String> PURE_NAMESPACES = ImmutableSet.of("str", "math");
+  // functions that must never be folded, keyed by their registered prefix:name
+  private static final Set<String> IMPURE_FUNCTIONS = ImmutableSet.of("uuid:uuid");
+  private static final Set<Class<?>> IMMUTABLE_TYPES = ImmutableSet.<Class<?>>of(
+      String.class,
+      Boolean.class,
+      Character.class,
+      Byte.class,
+      Short.class,
+      Integer.class,
+      Long.class,
+      Float.class,
+      Double.class,
+      BigInteger.class,
+      BigDecimal.class
+  );
+
+  private final LruExpressionEvaluatorImpl evaluator;
+  private final FunctionMapper functions;
+  private final Map<String, Object> constants;
+
+  public ExpressionCompiler(
+      LruExpressionEvaluatorImpl evaluator,
+      FunctionMapper functions,
+      Map<String, Object> constants
+  ) {
+    this.evaluator = evaluator;
+    this.functions = functions;
+    this.constants = constants;
+  }
+
+  public CompiledExpression compile(String expression) throws ELException {
+    if (expression == null) {
+      throw new ELException(Constants.NULL_EXPRESSION_STRING);
+    }
+    Object parsed = evaluator.parseExpressionString(expression);
+    if (parsed instanceof String) {
+      return new CompiledExpression(expression, parsed, true);
+    } else if (parsed instanceof Expression) {
+      Expression compiled = compile((Expression) parsed);
+      return new CompiledExpression(expression, unwrap(compiled), isConstant(compiled));
+    } else {
+      ExpressionString compiled = compile((ExpressionString) parsed);
+      if (compiled.getElements().length == 1 && compiled.getElements()[0] instanceof String) {
+        return new CompiledExpression(expression, compiled.getElements()[0], true);
+      }
+      return new CompiledExpression(expression, compiled, false);
+    }
+  }
+
+  private ExpressionString compile(ExpressionString expressionString) throws ELException {
+    Object[] elements = expressionString.getElements();
+    List<Object> compiled = new ArrayList<>(elements.length);
+    StringBuilder pending = null;
+    for (Object element : elements) {
+      Object value = element;
+      if (element instanceof Expression) {
+        Expression expression = compile((Expression) element);
+        if (isConstant(expression)) {
+          Object constant = unwrap(expression);
+          value = (constant == null) ? "" : constant.toString();
+        } else {
+          value = expression;
+        }
+      }
+      if (value instanceof String) {
+        // merge adjacent strings
+        pending = (pending == null) ? new StringBuilder() : pending;
+        pending.append((String) value);
+      } else {
+        if (pending != null) {
+          compiled.add(pending.toString());
+          pending = null;
+        }
+        compiled.add(value);
+      }
+    }
+    if (pending != null) {
+      compiled.add(pending.toString());
+    }
+    return new ExpressionString(compiled.toArray());
+  }
+
+  private Expression compile(Expression expression) throws ELException {
+    Expression compiled;
+    if (expression instanceof Literal) {
+      compiled = new Constant(((Literal) expression).getValue(), expression.getExpressionString());
+    } else if (expression instanceof NamedValue) {
+      String name = ((NamedValue) expression).getName();
+      compiled = (constants.containsKey(name)) ? new Constant(constants.get(name), name) : expression;
+    } else if (expression instanceof FunctionInvocation) {
+      compiled = compile((FunctionInvocation) expression);
+    } else if (expression instanceof BinaryOperatorExpression) {
+      BinaryOperatorExpression binary = (BinaryOperatorExpression) expression;
+      List<Expression> operands = compile((List<Expression>) binary.getExpressions());
+      Expression first = compile(binary.getExpression());
+      compiled = fold(
+          new BinaryOperatorExpression(first, binary.getOperators(), operands),
+          isConstant(first) && areConstant(operands)
+      );
+    } else if (expression instanceof UnaryOperatorExpression) {
+      UnaryOperatorExpression unary = (UnaryOperatorExpression) expression;
+      Expression operand = compile(unary.getExpression());
+      compiled = fold(
+          new UnaryOperatorExpression(unary.getOperator(), unary.getOperators(), operand),
+          isConstant(operand)
+      );
+    } else if (expression instanceof ConditionalExpression) {
+      ConditionalExpression conditional = (ConditionalExpression) expression;
+      Expression condition = compile(conditional.getCondition());
+      if (isConstant(condition)) {
+        // only the taken branch is compiled, the other one may fail if it was folded
+        boolean value = Coercions.coerceToBoolean(unwrap(condition), ExpressionEvaluatorImpl.sLogger).booleanValue();
+        compiled = compile((value) ? conditional.getTrueBranch() : conditional.getFalseBranch());
+      } else {
+        compiled = new ConditionalExpression(
+            condition,
+            compile(conditional.getTrueBranch()),
+            compile(conditional.getFalseBranch())
+        );
+      }
+    } else if (expression instanceof ComplexValue) {
+      ComplexValue complex = (ComplexValue) expression;
+      List<ValueSuffix> suffixes = new ArrayList<>();
+      for (ValueSuffix suffix : (List<ValueSuffix>) complex.getSuffixes()) {
+        if (suffix.getClass() == ArraySuffix.class) {
+          suffixes.add(new ArraySuffix(compile(((ArraySuffix) suffix).getIndex())));
+        } else {
+          suffixes.add(suffix);
+        }
+      }
+      compiled = new ComplexValue(compile(complex.getPrefix()), suffixes);
+    } else {
+      compiled = expression;
+    }
+    return compiled;
+  }
+
+  private List<Expression> compile(List<Expression> expressions) throws ELException {
+    List<Expression> compiled = new ArrayList<>(expressions.size());
+    for (Expression expression : expressions) {
+      compiled.add(compile(expression));
+    }
+    return compiled;
+  }
+
+  private Expression compile(FunctionInvocation invocation) throws ELException {
+    String functionName = invocation.getFunctionName();
+    int index = functionName.indexOf(':');
+    String prefix = (index == -1) ? "" : functionName.substring(0, index);
+    String localName = (index == -1) ? functionName : functionName.substring(index + 1);
+
+    Method method = (functions == null) ? null : functions.resolveFunction(prefix, localName);
+    if (method == null) {
+      ExpressionEvaluatorImpl.sLogger.logError(Constants.UNKNOWN_FUNCTION, functionName);
+    }
+    List<Expression> arguments = compile((List<Expression>) invocation.getArgumentList());
+    if (method.getParameterTypes().length != arguments.size()) {
+      ExpressionEvaluatorImpl.sLogger.logError(
+          Constants.INAPPROPRIATE_FUNCTION_ARG_COUNT,
+          functionName,
+          method.getParameterTypes().length,
+          arguments.size()
+      );
+    }
+    boolean pure = PURE_NAMESPACES.contains(prefix) && !IMPURE_FUNCTIONS.contains(prefix + ":" + localName);
+    return fold(new ResolvedFunction(functionName, method, arguments), pure && areConstant(arguments));
+  }
+
+  private static Expression fold(Expression expression, boolean constant) throws ELException {
+    if (constant) {
+      Object value = expression.evaluate(null, null, ExpressionEvaluatorImpl.sLogger);
+      if (isImmutable(value)) {
+        return new Constant(value, expression.getExpressionString());
+      }
+    }
+    return expression;
+  }
+
+  private static boolean isImmutable(Object value) {
+    return value == null || value instanceof Enum || IMMUTABLE_TYPES.contains(value.getClass());
+  }
+
+  private static boolean isConstant(Expression expression) {
+    return expression instanceof Constant;
+  }
+
+  private static boolean areConstant(List<Expression> expressions) {
+    for (Expression expression : expressions) {
+      if (!isConstant(expression)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Object unwrap(Expression expression) {
+    return (expression instanceof Constant) ? ((Constant) expression).value : expression;
+  }
+
+  /**
+   * An expression already reduced to its value.
+   */
+  static class Constant extends Expression {
+    private final Object value;
+    private final String expressionString;
+
+    Constant(Object value, String expressionString) {
+      this.value = value;
+      this.expressionString = expressionString;
+    }
+
+    @Override
+    public String getExpressionString() {
+      return expressionString;
+    }
+
+    @Override
+    public Object evaluate(VariableResolver resolver, FunctionMapper functions, Logger logger) {
+      return value;
+    }
+  }
+
+  /**
+   * A function invocation whose target method has been resolved at compile time.
+   */
+  static class ResolvedFunction extends Expression {
+    private final String functionName;
+    private final Method method;
+    private final Class[] parameterTypes;
+    private final Expression[] arguments;
+
+    ResolvedFunction(String functionName, Method method, List<Expression> arguments) {
+      this.functionName = functionName;
+      this.method = method;
+      this.parameterTypes = method.getParameterTypes();
+      this.arguments = arguments.toArray(new Expression[arguments.size()]);
+    }
+
+    @Override
+    public String getExpressionString() {
+      StringBuilder sb = new StringBuilder(functionName).append("(");
+      for (int i = 0; i < arguments.length; i++) {
+        sb.append((i == 0) ? "" : ", ").append(arguments[i].getExpressionString());
+      }
+      return sb.append(")").toString();
+    }
+
+    @Override
+    public Object evaluate(VariableResolver resolver, FunctionMapper functions, Logger logger) throws ELException {
+      Object[] values = new Object[arguments.length];
+      for (int i = 0; i < arguments.length; i++) {
+        values[i] = Coercions.coerce(arguments[i].evaluate(resolver, functions, logger), parameterTypes[i], logger);
+      }
+      try {
+        return method.invoke(null, values);
+      } catch (InvocationTargetException ex) {
+        logger.logError(Constants.FUNCTION_INVOCATION_ERROR, ex.getTargetException(), functionName);
+        return null;
+      } catch (Exception ex) {
+        logger.logError(Constants.FUNCTION_INVOCATION_ERROR, ex, functionName);
+        return null;
+      }
+    }
+  }
+
+}
@@ -15,49 +15,203 @@
  */
 package org.apache.commons.el;
 
-import java.util.Collections;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.el.parser.ELParser;
+import org.apache.commons.el.parser.ParseException;
+import org.apache.commons.el.parser.TokenMgrError;
 
-import org.apache.commons.collections.map.LRUMap;
-import org.slf4j.LoggerFactory;
+import javax.servlet.jsp.el.ELException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * StreamSets specific subclass of ExpressionEvaluatorImpl that workarounds
- * memory leak in the implementation that is tracked by EL-1. This class will
- * be removed once EL-1 fix is available.
+ * memory leak in the implementation that is tracked by EL-1 and replaces the
+ * globally synchronized static caches with bounded concurrent caches.
+ * <p/>
+ * Parsed expressions and converted literals are kept in Guava caches (segmented,
+ * lock-free reads) with size based eviction, so there is no need for a periodic
+ * global clear. Cache statistics are exposed through {@link #getCacheMetrics()} and
+ * {@link #registerCacheMetrics(MetricRegistry)}.
  */
 @SuppressWarnings("unchecked")
 public class LruExpressionEvaluatorImpl extends ExpressionEvaluatorImpl {
-  private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(LruExpressionEvaluatorImpl.class);
 
   /**
-   * Max LRU size, right now it's a magic constant.
+   * Max number of parsed expressions and of converted literals kept in the caches.
    */
-  private static final int MAX_LRU_SIZE = 5000;
+  static final int MAX_CACHE_SIZE = 5000;
 
   /**
-   * Change the static caches to use LRU map rather then normal map.
+   * Prefix of the cache metrics registered by {@link #registerCacheMetrics(MetricRegistry)}.
+   */
+  public static final String CACHE_METRICS_PREFIX = "el.cache";
+
+  private static final int CONCURRENCY_LEVEL = 32;
+
+  // Guava caches do not support null values, literals converting to null are cached with this marker
+  private static final Object NULL_VALUE = new Object();
+
+  private static final Cache<String, Object> EXPRESSIONS = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHE_SIZE)
+      .concurrencyLevel(CONCURRENCY_LEVEL)
+      .recordStats()
+      .build();
+
+  private static final Cache<TypedLiteral, Object> LITERALS = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHE_SIZE)
+      .concurrencyLevel(CONCURRENCY_LEVEL)
+      .recordStats()
+      .build();
+
+  /**
+   * Change the static caches of the parent class to the bounded concurrent ones, they are only used by code
+   * paths of the parent class not overridden here.
    */
   static {
-    sCachedExpressionStrings = Collections.synchronizedMap(new LRUMap(MAX_LRU_SIZE));
-    sCachedExpectedTypes = new LRUMap(MAX_LRU_SIZE);
-    Thread thread = new Thread("EL-cache-trimmer") {
+    sCachedExpressionStrings = EXPRESSIONS.asMap();
+  }
+
+  @Override
+  public Object parseExpressionString(String pExpressionString) throws ELException {
+    if (pExpressionString.length() == 0) {
+      return "";
+    }
+    Object ret = EXPRESSIONS.getIfPresent(pExpressionString);
+    if (ret == null) {
+      // concurrent misses on the same expression may parse it twice, that is cheaper than locking
+      ELParser parser = new ELParser(new StringReader(pExpressionString));
+      try {
+        ret = parser.ExpressionString();
+        EXPRESSIONS.put(pExpressionString, ret);
+      } catch (ParseException exc) {
+        throw new ELException(formatParseException(pExpressionString, exc));
+      } catch (TokenMgrError exc) {
+        throw new ELException(exc.getMessage());
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  Object convertStaticValueToExpectedType(String pValue, Class pExpectedType, Logger pLogger) throws ELException {
+    if (pExpectedType == String.class || pExpectedType == Object.class) {
+      return pValue;
+    }
+    TypedLiteral key = new TypedLiteral(pExpectedType, pValue);
+    Object ret = LITERALS.getIfPresent(key);
+    if (ret == null) {
+      ret = Coercions.coerce(pValue, pExpectedType, pLogger);
+      LITERALS.put(key, (ret == null) ? NULL_VALUE : ret);
+    } else if (ret == NULL_VALUE) {
+      ret = null;
+    }
+    return ret;
+  }
+
+  /**
+   * Returns gauges with the size, hits, misses and evictions of the parsed expressions and literals caches.
+   */
+  public static MetricSet getCacheMetrics() {
+    return new MetricSet() {
       @Override
-      public void run() {
-        LOG.info(" Starting housekeeper thread for expected types cache (runs every 5mins)");
-        while (true) {
-          try {
-            LOG.debug("Clearing expected types cache");
-            sleep(5 * 60 * 1000);
-            synchronized (sCachedExpectedTypes) {
-              sCachedExpectedTypes.clear();
-            }
-          } catch (InterruptedException ex) {
+      public Map<String, Metric> getMetrics() {
+        return ImmutableMap.<String, Metric>builder()
+            .putAll(createCacheGauges("expressions", EXPRESSIONS))
+            .putAll(createCacheGauges("literals", LITERALS))
+            .build();
+      }
+    };
+  }
+
+  /**
+   * Registers the cache metrics in the given registry under {@link #CACHE_METRICS_PREFIX}, unless they are already
+   * registered. The caches are static, so the same gauges may be registered by several runtime modules.
+   */
+  public static void registerCacheMetrics(MetricRegistry metrics) {
+    synchronized (metrics) {
+      for (Map.Entry<String, Metric> entry : getCacheMetrics().getMetrics().entrySet()) {
+        String name = MetricRegistry.name(CACHE_METRICS_PREFIX, entry.getKey());
+        if (!metrics.getNames().contains(name)) {
+          metrics.register(name, entry.getValue());
+        }
+      }
+    }
+  }
+
+  private static Map<String, Metric> createCacheGauges(String prefix, final Cache<?, ?> cache) {
+    return ImmutableMap.<String, Metric>of(
+        prefix + ".size", new Gauge<Long>() {
+          @Override
+          public Long getValue() {
+            return cache.size();
+          }
+        },
+        prefix + ".hits", new Gauge<Long>() {
+          @Override
+          public Long getValue() {
+            return cache.stats().hitCount();
+          }
+        },
+        prefix + ".misses", new Gauge<Long>() {
+          @Override
+          public Long getValue() {
+            return cache.stats().missCount();
+          }
+        },
+        prefix + ".evictions", new Gauge<Long>() {
+          @Override
+          public Long getValue() {
+            return cache.stats().evictionCount();
           }
         }
+    );
+  }
+
+  @VisibleForTesting
+  static CacheStats getExpressionCacheStats() {
+    return EXPRESSIONS.stats();
+  }
+
+  @VisibleForTesting
+  static long getExpressionCacheSize() {
+    return EXPRESSIONS.size();
+  }
+
+  private static final class TypedLiteral {
+    private final Class type;
+    private final String value;
+
+    TypedLiteral(Class type, String value) {
+      this.type = type;
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
       }
-    };
-    thread.setDaemon(true);
-    thread.start();
+      if (!(o instanceof TypedLiteral)) {
+        return false;
+      }
+      TypedLiteral other = (TypedLiteral) o;
+      return type == other.type && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, value);
+    }
   }
 
 }
@@ -15,6 +15,7 @@
  */
 package com.streamsets.datacollector.creation;
 
+import com.streamsets.datacollector.config.OffsetStorageMode;
 import com.streamsets.pipeline.api.Config;
 import com.streamsets.pipeline.api.ExecutionMode;
 import com.streamsets.pipeline.api.StageException;
@@ -31,7 +32,7 @@ public class TestPipelineConfigUpgrader {
     PipelineConfigUpgrader pipelineConfigUpgrader = new PipelineConfigUpgrader();
 
     List<Config> upgrade = pipelineConfigUpgrader.upgrade("x", "y", "z", 1, 3, new ArrayList<Config>());
-    Assert.assertEquals(8, upgrade.size());
+    Assert.assertEquals(10, upgrade.size());
     Assert.assertEquals("executionMode", upgrade.get(0).getName());
     Assert.assertEquals(ExecutionMode.STANDALONE, upgrade.get(0).getValue());
 
@@ -44,6 +45,10 @@ public class TestPipelineConfigUpgrader {
     Assert.assertNull(upgrade.get(5).getValue());
     Assert.assertEquals("workerCount", upgrade.get(7).getName());
     Assert.assertEquals(0,  upgrade.get(7).getValue());
+    Assert.assertEquals("offsetStorageMode", upgrade.get(8).getName());
+    Assert.assertEquals(OffsetStorageMode.FULL_REWRITE, upgrade.get(8).getValue());
+    Assert.assertEquals("maxBatchesInFlight", upgrade.get(9).getName());
+    Assert.assertEquals(1, upgrade.get(9).getValue());
   }
 
 }
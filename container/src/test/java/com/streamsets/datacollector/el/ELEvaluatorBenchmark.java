@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.el;
+
+import com.streamsets.datacollector.record.RecordImpl;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.el.ELEvalException;
+import com.streamsets.pipeline.api.el.ELVars;
+import com.streamsets.pipeline.lib.el.MathEL;
+import com.streamsets.pipeline.lib.el.RecordEL;
+import com.streamsets.pipeline.lib.el.StringEL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares interpreted and compiled evaluation of the per record expressions typical of the Expression Evaluator
+ * (field expressions) and the Stream Selector (lane predicates).
+ *
+ * Not run as part of the unit tests, run it with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ELEvaluatorBenchmark {
+
+  private static final String EXPRESSION_PROCESSOR_EL =
+      "${str:concat(str:toUpper(record:value('/name')), str:toLower('-SUFFIX'))}";
+  private static final String SELECTOR_PROCESSOR_EL =
+      "${record:value('/count') > math:max(10, 20) && str:startsWith(record:value('/name'), 'stream')}";
+
+  @Param({"false", "true"})
+  public boolean compiled;
+
+  private ELEvaluator elEval;
+  private ELVars vars;
+
+  @Setup
+  public void setup() {
+    Map<String, Field> map = new HashMap<>();
+    map.put("name", Field.create("streamsets"));
+    map.put("count", Field.create(25));
+    Record record = new RecordImpl("stage", "id", null, null);
+    record.set(Field.create(map));
+
+    elEval = new ELEvaluator(
+        "benchmark",
+        true,
+        compiled,
+        new HashMap<String, Object>(),
+        RecordEL.class,
+        StringEL.class,
+        MathEL.class
+    );
+    vars = elEval.createVariables();
+    RecordEL.setRecordInContext(vars, record);
+  }
+
+  @Benchmark
+  public Object expressionProcessor() throws ELEvalException {
+    return elEval.eval(vars, EXPRESSION_PROCESSOR_EL, Object.class);
+  }
+
+  @Benchmark
+  public Object selectorProcessor() throws ELEvalException {
+    return elEval.eval(vars, SELECTOR_PROCESSOR_EL, Boolean.class);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ELEvaluatorBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
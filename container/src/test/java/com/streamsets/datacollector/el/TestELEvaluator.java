@@ -15,16 +15,23 @@
  */
 package com.streamsets.datacollector.el;
 
+import com.streamsets.datacollector.record.RecordImpl;
 import com.streamsets.pipeline.api.ElConstant;
 import com.streamsets.pipeline.api.ElFunction;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.el.ELEval;
 import com.streamsets.pipeline.api.el.ELEvalException;
 import com.streamsets.pipeline.api.el.ELVars;
+import com.streamsets.pipeline.lib.el.RecordEL;
+import com.streamsets.pipeline.lib.el.StringEL;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TestELEvaluator {
 
@@ -125,6 +132,47 @@ public class TestELEvaluator {
     }
   }
 
+  @Test
+  public void testCompiledMatchesInterpreted() throws ELEvalException {
+    Record record = new RecordImpl("stage", "id", null, null);
+    Map<String, Field> map = new HashMap<>();
+    map.put("name", Field.create("streamsets"));
+    map.put("count", Field.create(5));
+    record.set(Field.create(map));
+
+    ELEvaluator interpreted = new ELEvaluator("interpreted", false, false, new HashMap<String, Object>(),
+        ValidTestEl.class, StringEL.class, RecordEL.class);
+    ELEvaluator compiled = new ELEvaluator("compiled", false, true, new HashMap<String, Object>(),
+        ValidTestEl.class, StringEL.class, RecordEL.class);
+    Assert.assertFalse(interpreted.isCompiled());
+    Assert.assertTrue(compiled.isCompiled());
+
+    String[] expressions = {
+        "${str:toUpper(record:value('/name'))}",
+        "${record:value('/count') > 3 && record:value('/name') == 'streamsets'}",
+        "prefix-${record:value('/count') + 1}-${str:toUpper('x')}",
+        "${location:city() eq CITY ? str:concat('a', 'b') : 'c'}",
+        "${str:length(CITY) * 2}",
+        "constant",
+    };
+    for (String expression : expressions) {
+      ELVars interpretedVars = interpreted.createVariables();
+      RecordEL.setRecordInContext(interpretedVars, record);
+      ELVars compiledVars = compiled.createVariables();
+      RecordEL.setRecordInContext(compiledVars, record);
+      Object expected = interpreted.eval(interpretedVars, expression, Object.class);
+      Assert.assertEquals(expression, expected, compiled.eval(compiledVars, expression, Object.class));
+      // second evaluation goes through the compiled expression
+      Assert.assertEquals(expression, expected, compiled.eval(compiledVars, expression, Object.class));
+    }
+  }
+
+  @Test(expected = ELEvalException.class)
+  public void testCompiledUnknownFunction() throws ELEvalException {
+    ELEvaluator compiled = new ELEvaluator("compiled", false, true, new HashMap<String, Object>());
+    compiled.eval(compiled.createVariables(), "${foo:bar()}", String.class);
+  }
+
   public static class ValidTestEl {
 
     @ElConstant(name = "CITY", description = "Declares the CITY constant to be 'San Francisco'")
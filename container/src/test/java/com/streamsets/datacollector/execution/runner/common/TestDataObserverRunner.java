@@ -18,6 +18,7 @@ package com.streamsets.datacollector.execution.runner.common;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.streamsets.datacollector.alerts.AlertsUtil;
 import com.streamsets.datacollector.config.DataRuleDefinition;
 import com.streamsets.datacollector.config.RuleDefinitions;
@@ -35,6 +36,7 @@ import com.streamsets.datacollector.runner.production.DataRulesEvaluationRequest
 import com.streamsets.datacollector.runner.production.RulesConfigurationChangeRequest;
 import com.streamsets.datacollector.store.PipelineStoreTask;
 import com.streamsets.datacollector.util.Configuration;
+import com.streamsets.pipeline.api.Record;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -112,33 +114,78 @@ public class TestDataObserverRunner {
     Assert.assertEquals(3, meter.getCount());
   }
 
+  @Test
+  public void testMultiThreadedEvaluation() {
+    Configuration configuration = new Configuration();
+    configuration.set(Constants.OBSERVER_EVALUATION_THREADS_KEY, 3);
+    MetricRegistry metrics = new MetricRegistry();
+    DataObserverRunner runner = new DataObserverRunner(PIPELINE_NAME, REVISION, metrics,
+      new AlertManager(PIPELINE_NAME, PIPELINE_TITLE, REVISION, null, metrics, runtimeInfo,
+          new EventListenerManager()),
+        configuration, null);
+    try {
+      int lanes = 8;
+      List<DataRuleDefinition> dataRuleDefinitions = new ArrayList<>();
+      Map<String, Map<String, List<Record>>> snapshot = new HashMap<>();
+      for (int i = 0; i < lanes; i++) {
+        dataRuleDefinitions.add(createDataRuleDefinition(ID + i, LANE + i + "::s", false, true));
+        snapshot.put(LANE + i + "::s", TestUtil.createSnapshot(LANE + i, ID + i).get(LANE + i + "::s"));
+      }
+      runner.handleConfigurationChangeRequest(createRulesConfigurationChangeRequest(dataRuleDefinitions));
+      for (int i = 0; i < 10; i++) {
+        runner.handleDataRulesEvaluationRequest(new DataRulesEvaluationRequest(snapshot,
+          new HashMap<String, Integer>()));
+      }
+      runner.awaitPendingEvaluations();
+
+      for (int i = 0; i < lanes; i++) {
+        Meter meter = MetricsConfigurator.getMeter(metrics, AlertsUtil.getUserMetricName(ID + i));
+        Assert.assertNotNull(meter);
+        Assert.assertEquals(30, meter.getCount());
+        Assert.assertEquals(5, runner.getSampledRecords(ID + i, 10).size());
+      }
+      Timer timer = MetricsConfigurator.getTimer(metrics, DataObserverRunner.EVALUATION_TIMER);
+      Assert.assertEquals(10 * lanes, timer.getCount());
+    } finally {
+      runner.destroy();
+    }
+  }
+
   private DataRulesEvaluationRequest createProductionObserverRequest() {
     DataRulesEvaluationRequest request = new DataRulesEvaluationRequest(TestUtil.createSnapshot(LANE, ID),
       TestUtil.createLaneToRecordSizeMap(LANE));
     return request;
   }
 
+  private DataRuleDefinition createDataRuleDefinition(String id, String lane, boolean alert, boolean meter) {
+    return new DataRuleDefinition(
+        id,
+        "myRule",
+        lane,
+        100,
+        5,
+        "${record:value(\"/name\")==null}",
+        alert,
+        "alertText",
+        ThresholdType.COUNT,
+        "2",
+        5,
+        meter,
+        false,
+        true,
+        System.currentTimeMillis()
+    );
+  }
+
   private RulesConfigurationChangeRequest createRulesConfigurationChangeRequest(boolean alert, boolean meter) {
     List<DataRuleDefinition> dataRuleDefinitions = new ArrayList<>();
-    dataRuleDefinitions.add(
-        new DataRuleDefinition(
-            ID,
-            "myRule",
-            LANE + "::s",
-            100,
-            5,
-            "${record:value(\"/name\")==null}",
-            alert,
-            "alertText",
-            ThresholdType.COUNT,
-            "2",
-            5,
-            meter,
-            false,
-            true,
-            System.currentTimeMillis()
-        )
-    );
+    dataRuleDefinitions.add(createDataRuleDefinition(ID, LANE + "::s", alert, meter));
+    return createRulesConfigurationChangeRequest(dataRuleDefinitions);
+  }
+
+  private RulesConfigurationChangeRequest createRulesConfigurationChangeRequest(
+      List<DataRuleDefinition> dataRuleDefinitions
+  ) {
     RuleDefinitions ruleDefinitions = new RuleDefinitions(
         PipelineStoreTask.RULE_DEFINITIONS_SCHEMA_VERSION,
         RuleDefinitionsConfigBean.VERSION,
@@ -151,7 +198,14 @@ public class TestDataObserverRunner {
     );
     Map<String, List<DataRuleDefinition>> laneToRuleDefinition = new HashMap<>();
     Map<String, Integer> ruleIdToSampledRecordsSize = new HashMap<>();
-    laneToRuleDefinition.put(LANE + "::s", dataRuleDefinitions);
+    for (DataRuleDefinition dataRuleDefinition : dataRuleDefinitions) {
+      List<DataRuleDefinition> laneRuleDefinitions = laneToRuleDefinition.get(dataRuleDefinition.getLane());
+      if (laneRuleDefinitions == null) {
+        laneRuleDefinitions = new ArrayList<>();
+        laneToRuleDefinition.put(dataRuleDefinition.getLane(), laneRuleDefinitions);
+      }
+      laneRuleDefinitions.add(dataRuleDefinition);
+    }
     RulesConfigurationChangeRequest rulesConfigurationChangeRequest =
       new RulesConfigurationChangeRequest(ruleDefinitions, new HashMap<String, String>(),
         Collections.<String>emptySet(), laneToRuleDefinition, ruleIdToSampledRecordsSize);
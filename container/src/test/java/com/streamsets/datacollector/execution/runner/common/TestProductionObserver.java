@@ -15,10 +15,14 @@
  */
 package com.streamsets.datacollector.execution.runner.common;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.streamsets.datacollector.config.DataRuleDefinition;
 import com.streamsets.datacollector.config.ThresholdType;
 import com.streamsets.datacollector.execution.alerts.TestUtil;
 import com.streamsets.datacollector.execution.runner.common.ProductionObserver;
+import com.streamsets.datacollector.metrics.MetricsConfigurator;
+import com.streamsets.datacollector.runner.production.RulesConfigurationChangeRequest;
 import com.streamsets.datacollector.util.Configuration;
 import com.streamsets.pipeline.api.Record;
 
@@ -27,15 +31,19 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class TestProductionObserver {
 
   private static final String LANE = "lane";
   private static final String ID = "myId";
+  private static final String PIPELINE_NAME = "myPipeline";
+  private static final String REVISION = "1.0";
   private static final int NUMBER_OF_RECORDS_PER_BATCH = 3;
   private static final int NUMBER_OF_BATCHES = 1000;
 
@@ -43,7 +51,8 @@ public class TestProductionObserver {
 
   @Before
   public void setUp() {
-    productionObserver = new ProductionObserver(new Configuration(), null);
+    productionObserver = new ProductionObserver(PIPELINE_NAME, REVISION, new Configuration(), null,
+      new MetricRegistry());
     productionObserver.setObserveRequests(new ArrayBlockingQueue<>(10));
   }
 
@@ -132,4 +141,37 @@ public class TestProductionObserver {
     System.out.println("Records for rule myID4 : " + ruleIdToSampledRecordsSize.get(ID + 4));
     System.out.println("Records for rule myID5 : " + ruleIdToSampledRecordsSize.get(ID + 5));*/
   }
+
+  @Test
+  public void testDroppedRequestsMetrics() {
+    Configuration configuration = new Configuration();
+    configuration.set(Constants.MAX_OBSERVER_REQUEST_OFFER_WAIT_TIME_MS_KEY, 1);
+    MetricRegistry metrics = new MetricRegistry();
+    ProductionObserver observer = new ProductionObserver(PIPELINE_NAME, REVISION, configuration, null, metrics);
+    BlockingQueue<Object> observeRequests = new ArrayBlockingQueue<>(3);
+    observer.setObserveRequests(observeRequests);
+    observer.setConfiguration(new RulesConfigurationChangeRequest(null, new HashMap<String, String>(),
+      Collections.<String>emptySet(), new HashMap<String, List<DataRuleDefinition>>(), new HashMap<String, Integer>()));
+    observer.reconfigure();
+
+    Map<String, List<Record>> snapshot = new HashMap<>();
+    snapshot.put(LANE, TestUtil.createRecords(1));
+    for (int i = 0; i < 5; i++) {
+      observer.observe(null, snapshot);
+    }
+
+    // the configuration change and two evaluation requests fit in the queue
+    Gauge<Integer> queueSize = MetricsConfigurator.getGauge(metrics, ProductionObserver.QUEUE_SIZE_GAUGE);
+    Assert.assertEquals(3, queueSize.getValue().intValue());
+    Assert.assertEquals(3,
+      MetricsConfigurator.getCounter(metrics, ProductionObserver.DROPPED_REQUESTS_COUNTER).getCount());
+
+    observeRequests.clear();
+    Assert.assertEquals(0, queueSize.getValue().intValue());
+
+    // an observer created again on the same metrics, for instance on pipeline restart, keeps counting
+    new ProductionObserver(PIPELINE_NAME, REVISION, configuration, null, metrics);
+    Assert.assertEquals(3,
+      MetricsConfigurator.getCounter(metrics, ProductionObserver.DROPPED_REQUESTS_COUNTER).getCount());
+  }
 }
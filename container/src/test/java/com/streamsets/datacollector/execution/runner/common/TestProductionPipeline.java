@@ -30,7 +30,9 @@ import com.streamsets.datacollector.main.RuntimeModule;
 import com.streamsets.datacollector.main.StandaloneRuntimeInfo;
 import com.streamsets.datacollector.memory.TestMemoryUsageCollector;
 import com.streamsets.datacollector.metrics.MetricsConfigurator;
+import com.streamsets.datacollector.runner.BatchListener;
 import com.streamsets.datacollector.runner.MockStages;
+import com.streamsets.datacollector.runner.PipeRunner;
 import com.streamsets.datacollector.runner.Pipeline;
 import com.streamsets.datacollector.runner.PipelineRuntimeException;
 import com.streamsets.datacollector.runner.SourceOffsetTracker;
@@ -41,6 +43,7 @@ import com.streamsets.datacollector.validation.Issue;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.BatchContext;
 import com.streamsets.pipeline.api.BatchMaker;
+import com.streamsets.pipeline.api.Config;
 import com.streamsets.pipeline.api.DeliveryGuarantee;
 import com.streamsets.pipeline.api.ErrorCode;
 import com.streamsets.pipeline.api.EventRecord;
@@ -76,7 +79,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Exchanger;
+import java.util.concurrent.TimeUnit;
 
 public class TestProductionPipeline {
 
@@ -386,6 +391,16 @@ public class TestProductionPipeline {
   }
 
   private ProductionPipeline createProductionPipeline(DeliveryGuarantee deliveryGuarantee, boolean captureNextBatch, long rateLimit, PipelineType type) throws Exception {
+    return createProductionPipeline(deliveryGuarantee, captureNextBatch, rateLimit, type, 1);
+  }
+
+  private ProductionPipeline createProductionPipeline(
+      DeliveryGuarantee deliveryGuarantee,
+      boolean captureNextBatch,
+      long rateLimit,
+      PipelineType type,
+      int maxBatchesInFlight
+  ) throws Exception {
     SourceOffsetTracker tracker = new TestUtil.SourceOffsetTrackerImpl(Collections.singletonMap(Source.POLL_SOURCE_OFFSET_KEY, "1"));
     SnapshotStore snapshotStore = Mockito.mock(FileSnapshotStore.class);
 
@@ -419,6 +434,9 @@ public class TestProductionPipeline {
         pConf =  MockStages.createPipelineConfigurationPushSourceTarget();
         break;
     }
+    if (maxBatchesInFlight > 1) {
+      pConf.addConfiguration(new Config("maxBatchesInFlight", maxBatchesInFlight));
+    }
 
     ProductionPipeline pipeline = new ProductionPipelineBuilder(
       PIPELINE_NAME,
@@ -443,6 +461,172 @@ public class TestProductionPipeline {
     return pipeline;
   }
 
+  private static class SequenceSourceCapture extends BaseSource {
+    public final List<String> lastSourceOffsets = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public String produce(String lastSourceOffset, int maxBatchSize, BatchMaker batchMaker) throws StageException {
+      lastSourceOffsets.add(lastSourceOffset);
+      int next = Integer.parseInt(lastSourceOffset) + 1;
+      Record record = getContext().createRecord("s" + next);
+      record.set(Field.create(next));
+      batchMaker.addRecord(record);
+      return (next < 10) ? String.valueOf(next) : null;
+    }
+  }
+
+  private static class PassThroughProcessorCapture extends BaseProcessor {
+    @Override
+    public void process(Batch batch, BatchMaker batchMaker) throws StageException {
+      Iterator<Record> it = batch.getRecords();
+      while (it.hasNext()) {
+        batchMaker.addRecord(it.next());
+      }
+    }
+  }
+
+  private static class SlowTargetCapture extends BaseTarget {
+    public final List<Integer> values = Collections.synchronizedList(new ArrayList<>());
+    public final List<String> committedOffsets = Collections.synchronizedList(new ArrayList<>());
+    public SourceOffsetTracker tracker;
+
+    @Override
+    public void write(Batch batch) throws StageException {
+      // offset of the previous batch must already be committed
+      committedOffsets.add(tracker.getOffsets().get(Source.POLL_SOURCE_OFFSET_KEY));
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      Iterator<Record> it = batch.getRecords();
+      while (it.hasNext()) {
+        values.add(it.next().get().getValueAsInteger());
+      }
+    }
+  }
+
+  @Test
+  public void testPipelinedBatches() throws Exception {
+    SequenceSourceCapture source = new SequenceSourceCapture();
+    SlowTargetCapture target = new SlowTargetCapture();
+    MockStages.setSourceCapture(source);
+    MockStages.setProcessorCapture(new PassThroughProcessorCapture());
+    MockStages.setTargetCapture(target);
+    ProductionPipeline pipeline = createProductionPipeline(
+        DeliveryGuarantee.AT_LEAST_ONCE,
+        false,
+        -1L,
+        PipelineType.DEFAULT,
+        3
+    );
+    target.tracker = ((ProductionPipelineRunner) pipeline.getPipeline().getRunner()).getOffSetTracker();
+    pipeline.registerStatusListener(new MyStateListener());
+    pipeline.run();
+
+    // origin gets the offset of the previous batch even before it is committed
+    Assert.assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9"), source.lastSourceOffsets);
+    // all batches were written in order and committed in order
+    Assert.assertEquals(Arrays.asList(2, 3, 4, 5, 6, 7, 8, 9, 10), target.values);
+    Assert.assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9"), target.committedOffsets);
+    Assert.assertTrue(pipeline.getCommittedOffsets().isEmpty());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPipelinedBatchesDoNotShareRunner() throws Exception {
+    CountDownLatch nextBatchProcessed = new CountDownLatch(1);
+    List<Object> targetCurrentStages = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> listenerThreads = Collections.synchronizedList(new ArrayList<>());
+    MockStages.setSourceCapture(new SequenceSourceCapture());
+    MockStages.setProcessorCapture(new BaseProcessor() {
+      @Override
+      public void process(Batch batch, BatchMaker batchMaker) throws StageException {
+        Record record = batch.getRecords().next();
+        if (record.get().getValueAsInteger() == 3) {
+          nextBatchProcessed.countDown();
+        }
+        batchMaker.addRecord(record);
+      }
+    });
+    MockStages.setTargetCapture(new BaseTarget() {
+      @Override
+      public void write(Batch batch) throws StageException {
+        if (batch.getRecords().next().get().getValueAsInteger() == 2) {
+          // the processor works on the next batch while this one is being written
+          try {
+            Assert.assertTrue(nextBatchProcessed.await(10, TimeUnit.SECONDS));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        Map<String, Object> runnerMetrics = (Map<String, Object>) MetricsConfigurator.getGauge(
+            getContext().getMetrics(),
+            "runner.0"
+        ).getValue();
+        targetCurrentStages.add(runnerMetrics.get(PipeRunner.METRIC_CURRENT_STAGE));
+      }
+    });
+    ProductionPipeline pipeline = createProductionPipeline(
+        DeliveryGuarantee.AT_LEAST_ONCE,
+        false,
+        -1L,
+        PipelineType.DEFAULT,
+        3
+    );
+    pipeline.getPipeline().getRunner().registerListener(new BatchListener() {
+      @Override
+      public void preBatch() {
+        listenerThreads.add(Thread.currentThread());
+      }
+
+      @Override
+      public void postBatch() {
+        listenerThreads.add(Thread.currentThread());
+      }
+    });
+    pipeline.registerStatusListener(new MyStateListener());
+    pipeline.run();
+
+    // the processor running the next batch does not touch the runner of the batch being written
+    Assert.assertEquals(Collections.nCopies(9, "t"), targetCurrentStages);
+    // every batch listener call comes from the pipeline thread
+    Assert.assertEquals(18, listenerThreads.size());
+    Assert.assertEquals(Collections.nCopies(18, Thread.currentThread()), listenerThreads);
+  }
+
+  @Test
+  public void testPipelinedBatchesTargetFailure() throws Exception {
+    SequenceSourceCapture source = new SequenceSourceCapture();
+    MockStages.setSourceCapture(source);
+    MockStages.setProcessorCapture(new PassThroughProcessorCapture());
+    MockStages.setTargetCapture(new BaseTarget() {
+      @Override
+      public void write(Batch batch) throws StageException {
+        if (batch.getRecords().next().get().getValueAsInteger() == 4) {
+          throw new RuntimeException("Write failure");
+        }
+      }
+    });
+    ProductionPipeline pipeline = createProductionPipeline(
+        DeliveryGuarantee.AT_LEAST_ONCE,
+        false,
+        -1L,
+        PipelineType.DEFAULT,
+        3
+    );
+    pipeline.registerStatusListener(new MyStateListener());
+    try {
+      pipeline.run();
+      Assert.fail("Expected the target failure");
+    } catch (Exception e) {
+      // expected
+    }
+
+    // batches produced after the failed one are not committed
+    Assert.assertEquals("3", pipeline.getCommittedOffsets().get(Source.POLL_SOURCE_OFFSET_KEY));
+  }
+
   private static class SourceValidateConfigFailureCapture implements Source {
     public int count;
     public String offset;
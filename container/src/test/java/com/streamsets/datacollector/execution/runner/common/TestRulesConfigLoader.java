@@ -15,6 +15,7 @@
  */
 package com.streamsets.datacollector.execution.runner.common;
 
+import com.codahale.metrics.MetricRegistry;
 import com.streamsets.datacollector.config.DataRuleDefinition;
 import com.streamsets.datacollector.config.DriftRuleDefinition;
 import com.streamsets.datacollector.config.MetricsRuleDefinition;
@@ -72,7 +73,13 @@ public class TestRulesConfigLoader {
   @Before
   public void setUp() {
     productionObserveRequests = new ArrayBlockingQueue<>(10, true /*FIFO*/);
-    observer = new ProductionObserver(new Configuration(), null);
+    observer = new ProductionObserver(
+        TestUtil.MY_PIPELINE,
+        TestUtil.ZERO_REV,
+        new Configuration(),
+        null,
+        new MetricRegistry()
+    );
     observer.setObserveRequests(productionObserveRequests);
   }
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.json;
+
+import com.streamsets.pipeline.api.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading JSON documents as Java objects converted to fields afterwards (the previous behavior of the JSON
+ * data parser) with building the fields straight from the JSON tokens, for 1 KB and 1 MB documents.
+ *
+ * Not run as part of the unit tests, run it with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonFieldReaderBenchmark {
+
+  // the JMH annotations have their own Mode
+  private static final com.streamsets.pipeline.api.ext.json.Mode JSON_MODE =
+      com.streamsets.pipeline.api.ext.json.Mode.MULTIPLE_OBJECTS;
+
+  @Param({"1024", "1048576"})
+  public int documentSize;
+
+  private String json;
+
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; sb.length() < documentSize; i++) {
+      sb.append((i == 0) ? "" : ",")
+          .append("{\"id\":").append(i)
+          .append(",\"name\":\"customer ").append(i)
+          .append("\",\"balance\":").append(i * 1.25)
+          .append(",\"active\":").append(i % 2 == 0)
+          .append(",\"tags\":[\"a\",\"b\",\"c\"],\"address\":{\"city\":\"San Francisco\",\"zip\":\"94105\"}}");
+    }
+    json = sb.append("]").toString();
+  }
+
+  @Benchmark
+  public Field objectsThenFields() throws IOException {
+    JsonObjectReaderImpl reader = new JsonObjectReaderImpl(new StringReader(json), 0, JSON_MODE);
+    return toField(reader.read());
+  }
+
+  @Benchmark
+  public Field fieldsFromTokens() throws IOException {
+    JsonObjectReaderImpl reader = new JsonObjectReaderImpl(new StringReader(json), 0, JSON_MODE, Field.class);
+    return (Field) reader.read();
+  }
+
+  // equivalent of the conversion done by the JSON data parser before fields were built from the tokens
+  @SuppressWarnings("unchecked")
+  private static Field toField(Object json) {
+    Field field;
+    if (json == null) {
+      field = Field.create(Field.Type.STRING, null);
+    } else if (json instanceof List) {
+      List<Field> list = new ArrayList<>();
+      for (Object element : (List) json) {
+        list.add(toField(element));
+      }
+      field = Field.create(list);
+    } else if (json instanceof Map) {
+      Map<String, Field> map = new LinkedHashMap<>();
+      for (Map.Entry<String, Object> entry : ((Map<String, Object>) json).entrySet()) {
+        map.put(entry.getKey(), toField(entry.getValue()));
+      }
+      field = Field.create(map);
+    } else if (json instanceof String) {
+      field = Field.create((String) json);
+    } else if (json instanceof Boolean) {
+      field = Field.create((Boolean) json);
+    } else if (json instanceof Integer) {
+      field = Field.create((Integer) json);
+    } else if (json instanceof Long) {
+      field = Field.create((Long) json);
+    } else if (json instanceof Double) {
+      field = Field.create((Double) json);
+    } else if (json instanceof BigInteger) {
+      field = Field.create(new BigDecimal((BigInteger) json));
+    } else {
+      throw new IllegalArgumentException(json.getClass().getName());
+    }
+    return field;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JsonFieldReaderBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.json;
+
+import com.google.common.base.Strings;
+import com.streamsets.datacollector.record.io.JsonWriterReaderFactory;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.ext.JsonObjectReader;
+import com.streamsets.pipeline.api.ext.io.ObjectLengthException;
+import com.streamsets.pipeline.api.ext.io.OverrunReader;
+import com.streamsets.pipeline.api.ext.json.Mode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+public class TestJsonFieldReader {
+
+  private static JsonObjectReader createReader(String json, Mode mode, int maxObjectLen) throws Exception {
+    return JsonWriterReaderFactory.createObjectReader(new StringReader(json), 0, mode, Field.class, maxObjectLen);
+  }
+
+  @Test
+  public void testFieldTypes() throws Exception {
+    String json = "{\"s\":\"a\",\"i\":1,\"l\":2147483648,\"b\":123456789012345678901234567890,\"d\":1.5," +
+        "\"t\":true,\"n\":null,\"list\":[1,\"x\"],\"map\":{\"k\":\"v\"}}";
+    JsonObjectReader reader = createReader(json, Mode.MULTIPLE_OBJECTS, -1);
+    Field field = (Field) reader.read();
+    Assert.assertNull(reader.read());
+    reader.close();
+
+    Assert.assertEquals(Field.Type.MAP, field.getType());
+    Map<String, Field> map = field.getValueAsMap();
+    Assert.assertArrayEquals(
+        new String[]{"s", "i", "l", "b", "d", "t", "n", "list", "map"},
+        map.keySet().toArray(new String[0])
+    );
+    Assert.assertEquals(Field.create("a"), map.get("s"));
+    Assert.assertEquals(Field.create(1), map.get("i"));
+    Assert.assertEquals(Field.create(2147483648L), map.get("l"));
+    Assert.assertEquals(Field.create(new BigDecimal("123456789012345678901234567890")), map.get("b"));
+    Assert.assertEquals(Field.create(1.5d), map.get("d"));
+    Assert.assertEquals(Field.create(true), map.get("t"));
+    Assert.assertEquals(Field.create(Field.Type.STRING, null), map.get("n"));
+
+    Assert.assertEquals(Field.Type.LIST, map.get("list").getType());
+    List<Field> list = map.get("list").getValueAsList();
+    Assert.assertEquals(2, list.size());
+    Assert.assertEquals(Field.create(1), list.get(0));
+    Assert.assertEquals(Field.create("x"), list.get(1));
+
+    Assert.assertEquals(Field.Type.MAP, map.get("map").getType());
+    Assert.assertEquals(Field.create("v"), map.get("map").getValueAsMap().get("k"));
+  }
+
+  @Test
+  public void testMultipleObjects() throws Exception {
+    JsonObjectReader reader = createReader("{\"a\":1}\n[2]\n\"three\"", Mode.MULTIPLE_OBJECTS, -1);
+    Assert.assertEquals(0, reader.getReaderPosition());
+    Field field = (Field) reader.read();
+    Assert.assertEquals(Field.create(1), field.getValueAsMap().get("a"));
+    Assert.assertEquals(8, reader.getReaderPosition());
+    field = (Field) reader.read();
+    Assert.assertEquals(Field.create(2), field.getValueAsList().get(0));
+    Assert.assertEquals(12, reader.getReaderPosition());
+    Assert.assertEquals(Field.create("three"), reader.read());
+    Assert.assertNull(reader.read());
+    reader.close();
+  }
+
+  @Test
+  public void testArrayOfObjects() throws Exception {
+    JsonObjectReader reader = createReader("[{\"a\":1},[2],null,3]", Mode.ARRAY_OBJECTS, -1);
+    Field field = (Field) reader.read();
+    Assert.assertEquals(Field.create(1), field.getValueAsMap().get("a"));
+    field = (Field) reader.read();
+    Assert.assertEquals(Field.create(2), field.getValueAsList().get(0));
+    // a null element is read as null, as the object mapper does
+    Assert.assertNull(reader.read());
+    Assert.assertEquals(Field.create(3), reader.read());
+    Assert.assertNull(reader.read());
+    reader.close();
+  }
+
+  @Test
+  public void testMaxObjectLength() throws Exception {
+    String json = "[\"a\",\"A\"]\n[\"" + Strings.repeat("x", 10) + "\",\"" + Strings.repeat("y", 100) + "\"]\n" +
+        "[\"b\",\"B\"]";
+    JsonObjectReader reader = createReader(json, Mode.MULTIPLE_OBJECTS, 50);
+    Field field = (Field) reader.read();
+    Assert.assertEquals(Field.create("A"), field.getValueAsList().get(1));
+    try {
+      reader.read();
+      Assert.fail();
+    } catch (ObjectLengthException ex) {
+      //NOP
+    }
+    // the reader skips the object exceeding the max length
+    field = (Field) reader.read();
+    Assert.assertEquals(Field.create("B"), field.getValueAsList().get(1));
+    Assert.assertNull(reader.read());
+    reader.close();
+  }
+
+  @Test
+  public void testMaxObjectLengthArray() throws Exception {
+    String json = "[[\"a\",\"A\"],[\"" + Strings.repeat("x", 10) + "\",\"" + Strings.repeat("y", 100) + "\"]," +
+        "[\"b\",\"B\"]]";
+    JsonObjectReader reader = createReader(json, Mode.ARRAY_OBJECTS, 50);
+    Field field = (Field) reader.read();
+    Assert.assertEquals(Field.create("A"), field.getValueAsList().get(1));
+    try {
+      reader.read();
+      Assert.fail();
+    } catch (ObjectLengthException ex) {
+      //NOP
+    }
+    field = (Field) reader.read();
+    Assert.assertEquals(Field.create("B"), field.getValueAsList().get(1));
+    Assert.assertNull(reader.read());
+    reader.close();
+  }
+
+}
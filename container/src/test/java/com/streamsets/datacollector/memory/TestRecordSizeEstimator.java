@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.memory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.streamsets.datacollector.record.RecordImpl;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestRecordSizeEstimator {
+
+  private static Record createRecord(String value) {
+    Record record = new RecordImpl("stage", "id", null, null);
+    record.set(Field.create(ImmutableMap.of("a", Field.create(value), "b", Field.create(1L))));
+    return record;
+  }
+
+  @Test
+  public void testFields() {
+    Assert.assertEquals(0, RecordSizeEstimator.estimate((Field) null));
+    long emptyString = RecordSizeEstimator.estimate(Field.create(""));
+    Assert.assertEquals(emptyString + 200, RecordSizeEstimator.estimate(Field.create(new String(new char[100]))));
+    Assert.assertEquals(
+        RecordSizeEstimator.estimate(Field.create(new byte[10])) + 90,
+        RecordSizeEstimator.estimate(Field.create(new byte[100]))
+    );
+    long list = RecordSizeEstimator.estimate(Field.create(ImmutableList.of(Field.create(1), Field.create(2))));
+    Assert.assertTrue(list > 2 * RecordSizeEstimator.estimate(Field.create(1)));
+    Assert.assertTrue(
+        RecordSizeEstimator.estimate(Field.create(Field.Type.INTEGER, null)) <
+            RecordSizeEstimator.estimate(Field.create(1))
+    );
+  }
+
+  @Test
+  public void testRecord() {
+    Record small = createRecord("a");
+    Record large = createRecord(new String(new char[1000]));
+    Assert.assertEquals(
+        RecordSizeEstimator.estimate(small) + 2 * 999,
+        RecordSizeEstimator.estimate(large)
+    );
+    long withoutAttributes = RecordSizeEstimator.estimate(small);
+    small.getHeader().setAttribute("attr", "value");
+    Assert.assertTrue(RecordSizeEstimator.estimate(small) > withoutAttributes);
+  }
+
+  @Test
+  public void testSampledList() {
+    Record record = createRecord("value");
+    long single = RecordSizeEstimator.estimate(record);
+
+    Assert.assertEquals(0, RecordSizeEstimator.estimate(Collections.<Record>emptyList()));
+    Assert.assertEquals(0, RecordSizeEstimator.estimate((List<Record>) null));
+    Assert.assertEquals(10 * single, RecordSizeEstimator.estimate(Collections.nCopies(10, record)));
+    Assert.assertEquals(1000 * single, RecordSizeEstimator.estimate(Collections.nCopies(1000, record)));
+
+    // half small and half large records, the samples are evenly spaced
+    List<Record> records = new ArrayList<>();
+    Record large = createRecord(new String(new char[1000]));
+    for (int i = 0; i < 1000; i++) {
+      records.add((i % 2 == 0) ? record : large);
+    }
+    long expected = 500 * single + 500 * RecordSizeEstimator.estimate(large);
+    Assert.assertEquals(expected, RecordSizeEstimator.estimate(records));
+  }
+
+}
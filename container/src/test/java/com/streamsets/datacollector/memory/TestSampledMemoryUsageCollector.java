@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.memory;
+
+import com.streamsets.pipeline.api.impl.Utils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestSampledMemoryUsageCollector {
+
+  @BeforeClass
+  public static void setupClass() throws Exception {
+    TestMemoryUsageCollector.initalizeMemoryUtility();
+  }
+
+  private static SampledMemoryUsageCollector createCollector(Object target) {
+    return new SampledMemoryUsageCollector(
+        MemoryUsageCollector.getInstrumentation(),
+        target,
+        ClassLoader.getSystemClassLoader()
+    );
+  }
+
+  private static Object[] createArray(int size) {
+    Object[] array = new Object[size];
+    for (int i = 0; i < size; i++) {
+      array[i] = new byte[8];
+    }
+    return array;
+  }
+
+  @Test
+  public void testSmallGraphIsExact() throws Exception {
+    Object[] target = createArray(SampledMemoryUsageCollector.MAX_ARRAY_SAMPLES);
+    SampledMemoryUsageCollector collector = createCollector(target);
+    Assert.assertTrue(collector.collect(Long.MAX_VALUE));
+    Assert.assertEquals(MemoryUsageCollector.getMemoryUsageOfForTests(target), collector.getMemoryConsumed());
+  }
+
+  @Test
+  public void testLargeArrayIsSampled() throws Exception {
+    Object[] target = createArray(10000);
+    long expected = MemoryUsageCollector.getMemoryUsageOfForTests(target);
+    SampledMemoryUsageCollector collector = createCollector(target);
+    Assert.assertTrue(collector.collect(Long.MAX_VALUE));
+    long estimate = collector.getMemoryConsumed();
+    Assert.assertTrue(
+        Utils.format("Estimate {} is not close to {}", estimate, expected),
+        Math.abs(estimate - expected) <= expected / 100
+    );
+  }
+
+  @Test
+  public void testWalkResumesAcrossCalls() throws Exception {
+    Object[] target = new Object[SampledMemoryUsageCollector.MAX_ARRAY_SAMPLES];
+    for (int i = 0; i < target.length; i++) {
+      target[i] = createArray(SampledMemoryUsageCollector.MAX_ARRAY_SAMPLES);
+    }
+    SampledMemoryUsageCollector oneShot = createCollector(target);
+    Assert.assertTrue(oneShot.collect(Long.MAX_VALUE));
+
+    // with no budget every call walks a handful of objects and the walk takes many calls
+    SampledMemoryUsageCollector sliced = createCollector(target);
+    int calls = 1;
+    while (!sliced.collect(0)) {
+      Assert.assertEquals(0, sliced.getMemoryConsumed());
+      calls++;
+    }
+    Assert.assertTrue(calls > 10);
+    Assert.assertEquals(1, sliced.getCompletedWalks());
+    Assert.assertEquals(oneShot.getMemoryConsumed(), sliced.getMemoryConsumed());
+
+    // next walk starts from scratch and keeps the previous estimate meanwhile
+    Assert.assertFalse(sliced.collect(0));
+    Assert.assertEquals(oneShot.getMemoryConsumed(), sliced.getMemoryConsumed());
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares field lookups on nested records through string paths parsed per call (the previous behavior),
+ * string paths going through the {@link FieldPath} cache and pre-compiled {@link FieldPath} handles.
+ *
+ * Not run as part of the unit tests, run it with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FieldPathBenchmark {
+
+  private static final String PATH = "/customer/addresses[2]/location/'zip code'";
+
+  private RecordImpl record;
+  private FieldPath compiled;
+
+  @Setup
+  public void setup() {
+    LinkedHashMap<String, Field> location = new LinkedHashMap<>();
+    location.put("zip code", Field.create("94105"));
+    location.put("city", Field.create("San Francisco"));
+
+    List<Field> addresses = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Map<String, Field> address = new LinkedHashMap<>();
+      address.put("location", Field.createListMap(location));
+      addresses.add(Field.create(address));
+    }
+
+    Map<String, Field> customer = new LinkedHashMap<>();
+    for (int i = 0; i < 20; i++) {
+      customer.put("attr" + i, Field.create(i));
+    }
+    customer.put("addresses", Field.create(addresses));
+
+    Map<String, Field> root = new LinkedHashMap<>();
+    root.put("customer", Field.create(customer));
+
+    record = new RecordImpl("stage", "source", null, null);
+    record.set(Field.create(root));
+    compiled = FieldPath.compile(PATH);
+  }
+
+  @Benchmark
+  public Field parsePerCall() {
+    // equivalent of the lookup before compiled paths: parse and collect every field along the path
+    List<PathElement> elements = PathElement.parse(PATH, true);
+    List<Field> fields = new ArrayList<>(elements.size());
+    Field current = record.get();
+    for (int i = 0; current != null && i < elements.size(); i++) {
+      PathElement element = elements.get(i);
+      switch (element.getType()) {
+        case ROOT:
+          break;
+        case MAP:
+          current = current.getValueAsMap().get(element.getName());
+          break;
+        case LIST:
+          current = current.getValueAsList().get(element.getIndex());
+          break;
+        default:
+          current = null;
+      }
+      fields.add(current);
+    }
+    return (fields.size() == elements.size()) ? fields.get(fields.size() - 1) : null;
+  }
+
+  @Benchmark
+  public Field cachedStringPath() {
+    return record.get(PATH);
+  }
+
+  @Benchmark
+  public Field compiledPath() {
+    return record.get(compiled);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(FieldPathBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
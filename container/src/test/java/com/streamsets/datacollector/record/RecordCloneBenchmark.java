@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clones a 500 field record the way snapshots and multiplexed lanes do and modifies a single field, comparing the
+ * deep clone done before copy-on-write records with the current clone.
+ *
+ * Not run as part of the unit tests, run it with the main method from the test classpath, the GC profiler reports
+ * the allocation rate and bytes allocated per operation for both variants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecordCloneBenchmark {
+
+  private static final int FIELDS = 500;
+  private static final int LANES = 3;
+
+  private RecordImpl record;
+
+  @Setup
+  public void setup() {
+    LinkedHashMap<String, Field> root = new LinkedHashMap<>();
+    for (int i = 0; i < FIELDS; i++) {
+      if (i % 10 == 0) {
+        LinkedHashMap<String, Field> nested = new LinkedHashMap<>();
+        nested.put("value", Field.create("value-" + i));
+        nested.put("count", Field.create(i));
+        root.put("field" + i, Field.createListMap(nested));
+      } else {
+        root.put("field" + i, Field.create("value-" + i));
+      }
+    }
+    // as a record read by an origin, none of its fields has been handed out
+    record = new RecordImpl(new HeaderImpl(), Field.createListMap(root));
+  }
+
+  @Benchmark
+  public Object deepClone() {
+    Object last = null;
+    for (int i = 0; i < LANES; i++) {
+      RecordImpl copy = new RecordImpl(record.getHeader().clone(), record.get().clone());
+      copy.set("/field10/count", Field.create(i));
+      last = copy;
+    }
+    return last;
+  }
+
+  @Benchmark
+  public Object copyOnWriteClone() {
+    Object last = null;
+    for (int i = 0; i < LANES; i++) {
+      RecordImpl copy = record.clone();
+      copy.set("/field10/count", Field.create(i));
+      last = copy;
+    }
+    return last;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+        new OptionsBuilder()
+            .include(RecordCloneBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()
+    ).run();
+  }
+
+}
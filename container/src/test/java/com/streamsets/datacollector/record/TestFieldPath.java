@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestFieldPath {
+
+  @Test
+  public void testCompile() {
+    FieldPath path = FieldPath.compile("/a[1]/'b/c'");
+    Assert.assertEquals("/a[1]/'b/c'", path.getPath());
+    Assert.assertEquals(4, path.size());
+    Assert.assertEquals(PathElement.Type.ROOT, path.getElement(0).getType());
+    Assert.assertEquals("a", path.getElement(1).getName());
+    Assert.assertEquals(1, path.getElement(2).getIndex());
+    Assert.assertEquals("b/c", path.getElement(3).getName());
+    Assert.assertEquals(4, path.getElements().size());
+  }
+
+  @Test
+  public void testInterning() {
+    FieldPath.invalidateCache();
+    FieldPath path = FieldPath.compile("/a/b");
+    Assert.assertSame(path, FieldPath.compile("/a/b"));
+    Assert.assertEquals(1, FieldPath.getCacheSize());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testElementsAreImmutable() {
+    FieldPath.compile("/a").getElements().clear();
+  }
+
+  @Test
+  public void testInvalidPathIsNotCached() {
+    FieldPath.invalidateCache();
+    try {
+      FieldPath.compile("a");
+      Assert.fail();
+    } catch (IllegalArgumentException ex) {
+      //expected
+    }
+    Assert.assertEquals(0, FieldPath.getCacheSize());
+  }
+
+  @Test
+  public void testRecordAccess() {
+    RecordImpl record = new RecordImpl("stage", "source", null, null);
+    Map<String, Field> inner = new LinkedHashMap<>();
+    inner.put("x", Field.create(1));
+    List<Field> list = new ArrayList<>();
+    list.add(Field.create(inner));
+    LinkedHashMap<String, Field> root = new LinkedHashMap<>();
+    root.put("list", Field.create(list));
+    record.set(Field.createListMap(root));
+
+    FieldPath x = FieldPath.compile("/list[0]/x");
+    Assert.assertTrue(record.has(x));
+    Assert.assertEquals(1, record.get(x).getValueAsInteger());
+    Assert.assertFalse(record.has(FieldPath.compile("/list[1]/x")));
+    Assert.assertNull(record.get(FieldPath.compile("/list[0]/y")));
+
+    // list map fields are reachable by index too
+    Assert.assertEquals(Field.Type.LIST, record.get(FieldPath.compile("[0]")).getType());
+
+    record.set(FieldPath.compile("/list[0]/y"), Field.create("y"));
+    Assert.assertEquals("y", record.get("/list[0]/y").getValueAsString());
+    Assert.assertEquals("y", record.delete(FieldPath.compile("/list[0]/y")).getValueAsString());
+    Assert.assertFalse(record.has("/list[0]/y"));
+  }
+
+}
@@ -119,6 +119,113 @@ public class TestRecordImpl {
     Assert.assertNotSame(clone, record);
   }
 
+  @Test
+  public void testCloneIsCopyOnWrite() {
+    LinkedHashMap<String, Field> nested = new LinkedHashMap<>();
+    nested.put("x", Field.create(1));
+    List<Field> list = new ArrayList<>();
+    list.add(Field.create("e0"));
+    Map<String, Field> root = new HashMap<>();
+    root.put("a", Field.createListMap(nested));
+    root.put("b", Field.create(list));
+    // a record read from a stream, no field of it has been handed out yet
+    RecordImpl record = new RecordImpl(new HeaderImpl(), Field.create(root));
+
+    RecordImpl clone = record.clone();
+    Assert.assertTrue(record.isShared());
+    Assert.assertTrue(clone.isShared());
+
+    // changes in the clone are not visible in the original
+    clone.set("/a/y", Field.create(2));
+    clone.set("/b[0]", Field.create("c0"));
+    Assert.assertFalse(record.has("/a/y"));
+    Assert.assertEquals("e0", record.get("/b[0]").getValueAsString());
+    Assert.assertEquals("c0", clone.get("/b[0]").getValueAsString());
+
+    // changes in the original are not visible in the clone
+    Assert.assertEquals(1, record.delete("/a/x").getValueAsInteger());
+    Assert.assertFalse(record.has("/a/x"));
+    Assert.assertTrue(clone.has("/a/x"));
+
+    // fields handed out can be modified without affecting the other record
+    record.get("/b").getValueAsList().add(Field.create("e1"));
+    Assert.assertEquals(2, record.get("/b").getValueAsList().size());
+    Assert.assertEquals(1, clone.get("/b").getValueAsList().size());
+    clone.get("/a").getValueAsMap().put("z", Field.create(3));
+    Assert.assertTrue(clone.has("/a/z"));
+    Assert.assertFalse(record.has("/a/z"));
+
+    // getting the root makes the whole record private again
+    clone.get().getValueAsMap().clear();
+    Assert.assertFalse(clone.isShared());
+    Assert.assertTrue(record.has("/a"));
+    Assert.assertFalse(clone.has("/a"));
+  }
+
+  @Test
+  public void testCloneOfCloneIsCopyOnWrite() {
+    RecordImpl record = new RecordImpl("stage", "source", null, null);
+    Map<String, Field> root = new HashMap<>();
+    root.put("a", Field.create("A"));
+    record.set(Field.create(root));
+
+    RecordImpl clone1 = record.clone();
+    clone1.set("/b", Field.create("B"));
+    RecordImpl clone2 = clone1.clone();
+    clone2.set("/b", Field.create("BB"));
+    clone1.set("/a", Field.create("AA"));
+
+    Assert.assertEquals("A", record.get("/a").getValueAsString());
+    Assert.assertFalse(record.has("/b"));
+    Assert.assertEquals("AA", clone1.get("/a").getValueAsString());
+    Assert.assertEquals("B", clone1.get("/b").getValueAsString());
+    Assert.assertEquals("A", clone2.get("/a").getValueAsString());
+    Assert.assertEquals("BB", clone2.get("/b").getValueAsString());
+  }
+
+  @Test
+  public void testCloneDoesNotShareReferencedFields() {
+    RecordImpl record = new RecordImpl("stage", "source", null, null);
+    Map<String, Field> root = new HashMap<>();
+    root.put("a", Field.create(new HashMap<String, Field>()));
+    Field rootField = Field.create(root);
+    record.set(rootField);
+
+    // fields referenced before the clone are changed after it
+    Field a = record.get("/a");
+    RecordImpl clone = record.clone();
+    Assert.assertFalse(clone.isShared());
+    a.getValueAsMap().put("x", Field.create(1));
+    rootField.getValueAsMap().put("y", Field.create(2));
+    Assert.assertTrue(record.has("/a/x"));
+    Assert.assertTrue(record.has("/y"));
+    Assert.assertFalse(clone.has("/a/x"));
+    Assert.assertFalse(clone.has("/y"));
+
+    // the references are still held, later clones keep copying the field tree
+    RecordImpl clone2 = record.clone();
+    Assert.assertFalse(clone2.isShared());
+    a.getValueAsMap().put("z", Field.create(3));
+    Assert.assertTrue(record.has("/a/z"));
+    Assert.assertTrue(clone2.has("/a/x"));
+    Assert.assertFalse(clone2.has("/a/z"));
+  }
+
+  @Test
+  public void testSetReturnsUnsharedField() {
+    Map<String, Field> root = new HashMap<>();
+    root.put("a", Field.create("A"));
+    RecordImpl record = new RecordImpl(new HeaderImpl(), Field.create(root));
+    RecordImpl clone = record.clone();
+    Assert.assertTrue(clone.isShared());
+
+    // changing the replaced root doesn't change the clone sharing it
+    Field replaced = record.set(Field.create("B"));
+    replaced.getValueAsMap().put("a", Field.create("AA"));
+    Assert.assertEquals("A", clone.get("/a").getValueAsString());
+    Assert.assertEquals("B", record.get().getValueAsString());
+  }
+
   // tests for field-path expressions
 
   @Test
@@ -15,12 +15,15 @@
  */
 package com.streamsets.datacollector.record.io;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.streamsets.datacollector.el.ELVariables;
 import com.streamsets.datacollector.record.RecordImpl;
 import com.streamsets.datacollector.record.io.RecordEncoding;
 import com.streamsets.datacollector.record.io.RecordEncodingConstants;
 import com.streamsets.datacollector.record.io.RecordWriterReaderFactory;
 import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.FileRef;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.Stage;
 import com.streamsets.pipeline.api.ext.RecordReader;
@@ -35,11 +38,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public  class TestRecordWriterReaderFactory {
 
@@ -86,6 +95,7 @@ public  class TestRecordWriterReaderFactory {
     testEncodingSelection(null, RecordEncodingConstants.JSON1_MAGIC_NUMBER);
     testEncodingSelection(RecordEncoding.JSON1.name(), RecordEncodingConstants.JSON1_MAGIC_NUMBER);
     testEncodingSelection(RecordEncoding.KRYO1.name(), RecordEncodingConstants.KRYO1_MAGIC_NUMBER);
+    testEncodingSelection(RecordEncoding.BINARY1.name(), RecordEncodingConstants.BINARY1_MAGIC_NUMBER);
   }
 
   private void testRecordWriterReader(RecordEncoding encoding) throws IOException {
@@ -204,6 +214,11 @@ public  class TestRecordWriterReaderFactory {
     testRecordWriterReader(RecordEncoding.KRYO1);
   }
 
+  @Test
+  public void testBinaryRecordWriter() throws IOException {
+    testRecordWriterReader(RecordEncoding.BINARY1);
+  }
+
   @Test
   public void testJsonRecorWithOffset() throws IOException {
     testRecordReaderWithOffset(RecordEncoding.JSON1);
@@ -214,6 +229,82 @@ public  class TestRecordWriterReaderFactory {
     testRecordReaderWithOffset(RecordEncoding.KRYO1);
   }
 
+  @Test
+  public void testBinaryRecordWithOffset() throws IOException {
+    testRecordReaderWithOffset(RecordEncoding.BINARY1);
+  }
+
+  @Test
+  public void testBinaryBlocks() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    RecordWriter writer = RecordWriterReaderFactory.createRecordWriter(RecordEncoding.BINARY1, os);
+    List<Record> records = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      RecordImpl record = new RecordImpl("stage", "source" + i, null, null);
+      record.getHeader().setAttribute("attr", "value" + i);
+      LinkedHashMap<String, Field> listMap = new LinkedHashMap<>();
+      listMap.put("name", Field.create("name" + i));
+      listMap.put("count", Field.create(i));
+      listMap.put("bool", Field.create(i % 2 == 0));
+      listMap.put("char", Field.create('c'));
+      listMap.put("byte", Field.create((byte) i));
+      listMap.put("short", Field.create((short) -i));
+      listMap.put("long", Field.create(Long.MIN_VALUE + i));
+      listMap.put("float", Field.create(i / 3f));
+      listMap.put("double", Field.create(i / 7d));
+      listMap.put("decimal", Field.create(new BigDecimal("-36.7140").add(new BigDecimal(i))));
+      listMap.put("bytes", Field.create(new byte[] { 0, 1, (byte) i}));
+      listMap.put("null", Field.create(Field.Type.INTEGER, null));
+      listMap.put("list", Field.create(ImmutableList.of(Field.create("a"), Field.create(Field.Type.MAP, null))));
+      record.set(Field.createListMap(listMap));
+      writer.write(record);
+      records.add(record);
+      // every flush ends a block, names are defined again in the next one
+      if (i % 30 == 0) {
+        writer.flush();
+      }
+    }
+    writer.close();
+
+    byte[] bytes = os.toByteArray();
+    RecordReader reader = RecordWriterReaderFactory.createRecordReader(new ByteArrayInputStream(bytes), 0, 1000);
+    List<Long> positions = new ArrayList<>();
+    for (Record record : records) {
+      positions.add(reader.getPosition());
+      Assert.assertEquals(record, reader.readRecord());
+    }
+    Assert.assertNull(reader.readRecord());
+    reader.close();
+
+    // the reader can start at any position, within a block or at its start
+    for (int i : new int[] { 0, 1, 30, 31, 50, 99 }) {
+      reader = RecordWriterReaderFactory.createRecordReader(new ByteArrayInputStream(bytes), positions.get(i), 1000);
+      Assert.assertEquals(records.get(i), reader.readRecord());
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testBinaryCompactness() throws IOException {
+    Map<RecordEncoding, Integer> sizes = new HashMap<>();
+    for (RecordEncoding encoding : new RecordEncoding[] { RecordEncoding.JSON1, RecordEncoding.BINARY1 }) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      RecordWriter writer = RecordWriterReaderFactory.createRecordWriter(encoding, os);
+      for (int i = 0; i < 1000; i++) {
+        RecordImpl record = new RecordImpl("stage", "source::" + i, null, null);
+        LinkedHashMap<String, Field> listMap = new LinkedHashMap<>();
+        for (int j = 0; j < 80; j++) {
+          listMap.put("field_name_" + j, Field.create(i * j));
+        }
+        record.set(Field.createListMap(listMap));
+        writer.write(record);
+      }
+      writer.close();
+      sizes.put(encoding, os.size());
+    }
+    Assert.assertTrue(sizes.toString(), sizes.get(RecordEncoding.BINARY1) * 5 < sizes.get(RecordEncoding.JSON1));
+  }
+
   @Test
   public void testDecimal() throws IOException {
     // We've picked this number because if it's casted to double, then it will lead to 36.7147000000000000483...
@@ -270,4 +361,152 @@ public  class TestRecordWriterReaderFactory {
     Assert.assertEquals(Field.Type.DATETIME, record.get("/dt").getType());
     Assert.assertEquals(date, record.get("/dt").getValueAsDatetime());
   }
+
+  @Test
+  public void testBinaryZonedDateTime() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    RecordWriter writer = RecordWriterReaderFactory.createRecordWriter(RecordEncoding.BINARY1, os);
+    RecordImpl record1 = new RecordImpl("stage", "source", null, null);
+    Map<String, Field> map = new HashMap<>();
+    map.put("region", Field.create(
+        Field.Type.ZONED_DATETIME,
+        ZonedDateTime.of(2017, 3, 26, 10, 30, 15, 123456789, ZoneId.of("Europe/Paris"))
+    ));
+    map.put("offset", Field.create(
+        Field.Type.ZONED_DATETIME,
+        ZonedDateTime.of(1969, 12, 31, 23, 59, 59, 0, ZoneOffset.ofHoursMinutes(5, 30))
+    ));
+    map.put("utc", Field.create(Field.Type.ZONED_DATETIME, ZonedDateTime.of(2017, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)));
+    map.put("null", Field.create(Field.Type.ZONED_DATETIME, null));
+    record1.set(Field.create(map));
+    writer.write(record1);
+    writer.close();
+
+    InputStream is = new ByteArrayInputStream(os.toByteArray());
+    RecordReader reader = RecordWriterReaderFactory.createRecordReader(is, 0, 1000);
+    Record record = reader.readRecord();
+    Assert.assertEquals(record1, record);
+    Assert.assertEquals(Field.Type.ZONED_DATETIME, record.get("/region").getType());
+    // the zone id is kept, not only the offset
+    Assert.assertEquals(ZoneId.of("Europe/Paris"), record.get("/region").getValueAsZonedDateTime().getZone());
+    Assert.assertEquals(Field.Type.ZONED_DATETIME, record.get("/null").getType());
+    Assert.assertNull(reader.readRecord());
+    reader.close();
+  }
+
+  @Test
+  public void testBinaryFileRef() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    RecordWriter writer = RecordWriterReaderFactory.createRecordWriter(RecordEncoding.BINARY1, os);
+    RecordImpl record1 = new RecordImpl("stage", "source1", null, null);
+    record1.set(Field.create(Field.Type.FILE_REF, new FileRef(1000) {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T extends AutoCloseable> Set<Class<T>> getSupportedStreamClasses() {
+        return ImmutableSet.of((Class<T>) InputStream.class);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T extends AutoCloseable> T createInputStream(Stage.Context context, Class<T> streamClassType) {
+        return (T) new ByteArrayInputStream("Sample".getBytes());
+      }
+    }));
+    // file references point to data outside of the record, they can't be written
+    try {
+      writer.write(record1);
+      Assert.fail("Expected the FileRef field to be rejected");
+    } catch (IOException ex) {
+      // expected
+    }
+
+    // the rejected record leaves nothing behind in the block
+    RecordImpl record2 = new RecordImpl("stage", "source2", null, null);
+    record2.set(Field.create("Hello"));
+    writer.write(record2);
+    writer.close();
+
+    InputStream is = new ByteArrayInputStream(os.toByteArray());
+    RecordReader reader = RecordWriterReaderFactory.createRecordReader(is, 0, 1000);
+    Assert.assertEquals(record2, reader.readRecord());
+    Assert.assertNull(reader.readRecord());
+    reader.close();
+  }
+
+  private static void writeVarLong(ByteArrayOutputStream os, long value) {
+    while ((value & ~0x7fL) != 0) {
+      os.write((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    os.write((int) value);
+  }
+
+  private static byte[] createBinaryBlock(long records, int codec, long length, long storedLength, int payload) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    os.write(RecordEncodingConstants.BINARY1_MAGIC_NUMBER);
+    writeVarLong(os, records);
+    os.write(codec);
+    writeVarLong(os, length);
+    writeVarLong(os, storedLength);
+    os.write(new byte[payload], 0, payload);
+    return os.toByteArray();
+  }
+
+  private static void assertInvalidBinaryBlock(byte[] bytes, int maxObjectLen) {
+    try {
+      RecordReader reader = RecordWriterReaderFactory.createRecordReader(
+          new ByteArrayInputStream(bytes),
+          0,
+          maxObjectLen
+      );
+      reader.readRecord();
+      Assert.fail("Expected the block to be rejected");
+    } catch (IOException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBinaryInvalidBlockLengths() throws IOException {
+    // negative lengths
+    assertInvalidBinaryBlock(createBinaryBlock(1, 0, -1, 10, 10), -1);
+    assertInvalidBinaryBlock(createBinaryBlock(1, 0, 10, -1, 10), -1);
+    // invalid record counts
+    assertInvalidBinaryBlock(createBinaryBlock(0, 0, 10, 10, 10), -1);
+    assertInvalidBinaryBlock(createBinaryBlock(-1, 0, 10, 10, 10), -1);
+    // stored length not matching the length
+    assertInvalidBinaryBlock(createBinaryBlock(1, 0, 10, 5, 5), -1);
+    assertInvalidBinaryBlock(createBinaryBlock(1, 1, 10, 20, 20), -1);
+    // stored and inflated lengths over the max block length are rejected before reading the payload
+    assertInvalidBinaryBlock(createBinaryBlock(1, 0, 2 * 1024 * 1024, 2 * 1024 * 1024, 0), 1000);
+    assertInvalidBinaryBlock(createBinaryBlock(1, 1, 2 * 1024 * 1024, 10, 10), 1000);
+    assertInvalidBinaryBlock(createBinaryBlock(1, 1, Integer.MAX_VALUE + 1L, 10, 10), -1);
+  }
+
+  @Test
+  public void testBinaryMaxObjectLen() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    RecordWriter writer = RecordWriterReaderFactory.createRecordWriter(RecordEncoding.BINARY1, os);
+    RecordImpl record1 = new RecordImpl("stage", "source", null, null);
+    char[] value = new char[1100 * 1024];
+    Arrays.fill(value, 'a');
+    record1.set(Field.create(new String(value)));
+    writer.write(record1);
+    writer.close();
+    byte[] bytes = os.toByteArray();
+
+    // the block is longer than the max block size plus the max object length
+    assertInvalidBinaryBlock(bytes, 1000);
+
+    for (int maxObjectLen : new int[] { -1, 200 * 1024 }) {
+      RecordReader reader = RecordWriterReaderFactory.createRecordReader(
+          new ByteArrayInputStream(bytes),
+          0,
+          maxObjectLen
+      );
+      Assert.assertEquals(record1, reader.readRecord());
+      Assert.assertNull(reader.readRecord());
+      reader.close();
+    }
+  }
 }
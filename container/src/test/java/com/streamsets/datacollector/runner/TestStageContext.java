@@ -404,6 +404,8 @@ public class TestStageContext {
 
     Assert.assertNull(context.getConfig("jarcec"));
     Assert.assertEquals("is awesome", context.getConfig("girish"));
+    // the SDK has no data directory unless the test sets one
+    Assert.assertNull(context.getConfig(StageContext.DATA_DIR_CONFIG));
   }
 
   @Test
@@ -18,6 +18,8 @@ package com.streamsets.datacollector.runner;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import com.streamsets.datacollector.main.RuntimeInfo;
+import com.streamsets.datacollector.metrics.MetricsConfigurator;
+import com.streamsets.datacollector.util.Configuration;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.BatchMaker;
 import com.streamsets.pipeline.api.Executor;
@@ -38,6 +40,7 @@ public class TestStagePipe {
   private boolean produce;
   private boolean process;
   private boolean write;
+  private byte[][] allocated;
 
   @Before
   public void setUp() {
@@ -275,4 +278,96 @@ public class TestStagePipe {
     Mockito.verifyNoMoreInteractions(pipeBatch);
     Assert.assertTrue(write);
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testResourceUsageMetrics() throws Exception {
+    MockStages.setProcessorCapture(new Processor() {
+
+      @Override
+      public List<ConfigIssue> init(Info info, Context context) {
+        return Collections.emptyList();
+      }
+
+      @Override
+      public void process(Batch batch, BatchMaker batchMaker) throws StageException {
+        allocated = new byte[100][];
+        for (int i = 0; i < allocated.length; i++) {
+          allocated[i] = new byte[10000];
+        }
+      }
+
+      @Override
+      public void destroy() {
+      }
+    });
+    MetricRegistry metrics = new MetricRegistry();
+    PipelineRunner pipelineRunner = Mockito.mock(PipelineRunner.class);
+    Mockito.when(pipelineRunner.getMetrics()).thenReturn(metrics);
+    Mockito.when(pipelineRunner.getRuntimeInfo()).thenReturn(Mockito.mock(RuntimeInfo.class));
+    Configuration configuration = new Configuration();
+    configuration.set(StagePipe.MONITOR_STAGE_RESOURCES, true);
+    Pipeline pipeline = new MockPipelineBuilder()
+      .withConfiguration(configuration)
+      .withPipelineConf(MockStages.createPipelineConfigurationSourceProcessorTarget())
+      .build(pipelineRunner);
+    StagePipe pipe = (StagePipe) pipeline.getRunners().get(0).get(2);
+    BatchMakerImpl batchMaker = Mockito.mock(BatchMakerImpl.class);
+    Mockito.when(batchMaker.getLanes()).thenReturn(ImmutableList.of("p"));
+
+    BatchImpl batch = Mockito.mock(BatchImpl.class);
+    Mockito.when(batch.getSize()).thenReturn(1);
+
+    PipeBatch pipeBatch = Mockito.mock(FullPipeBatch.class);
+    Mockito.when(pipeBatch.startStage(Mockito.eq(pipe))).thenReturn(batchMaker);
+    Mockito.when(pipeBatch.getBatch(Mockito.eq(pipe))).thenReturn(batch);
+    Mockito.when(pipeBatch.getErrorSink()).thenReturn(new ErrorSink());
+
+    Assert.assertTrue(pipe.init(new PipeContext()).isEmpty());
+    pipe.process(pipeBatch);
+    pipe.destroy(pipeBatch);
+
+    String metricsKey = "stage." + pipe.getStage().getInfo().getInstanceName();
+    ThreadResourceUsage resourceUsage = new ThreadResourceUsage();
+    if (resourceUsage.isCpuTimeSupported()) {
+      Assert.assertEquals(1, MetricsConfigurator.getTimer(metrics, metricsKey + ".cpuTime").getCount());
+    }
+    if (resourceUsage.isAllocatedBytesSupported()) {
+      Assert.assertEquals(1, MetricsConfigurator.getHistogram(metrics, metricsKey + ".allocatedBytes").getCount());
+      Assert.assertTrue(MetricsConfigurator.getCounter(metrics, metricsKey + ".allocatedBytes").getCount() >= 1000000);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testResourceUsageMetricsDisabledByDefault() throws Exception {
+    MockStages.setProcessorCapture(new Processor() {
+
+      @Override
+      public List<ConfigIssue> init(Info info, Context context) {
+        return Collections.emptyList();
+      }
+
+      @Override
+      public void process(Batch batch, BatchMaker batchMaker) throws StageException {
+      }
+
+      @Override
+      public void destroy() {
+      }
+    });
+    MetricRegistry metrics = new MetricRegistry();
+    PipelineRunner pipelineRunner = Mockito.mock(PipelineRunner.class);
+    Mockito.when(pipelineRunner.getMetrics()).thenReturn(metrics);
+    Mockito.when(pipelineRunner.getRuntimeInfo()).thenReturn(Mockito.mock(RuntimeInfo.class));
+    Pipeline pipeline = new MockPipelineBuilder()
+      .withPipelineConf(MockStages.createPipelineConfigurationSourceProcessorTarget())
+      .build(pipelineRunner);
+    StagePipe pipe = (StagePipe) pipeline.getRunners().get(0).get(2);
+    Assert.assertTrue(pipe.init(new PipeContext()).isEmpty());
+
+    String metricsKey = "stage." + pipe.getStage().getInfo().getInstanceName();
+    Assert.assertNull(MetricsConfigurator.getTimer(metrics, metricsKey + ".cpuTime"));
+    Assert.assertNull(MetricsConfigurator.getHistogram(metrics, metricsKey + ".allocatedBytes"));
+  }
 }
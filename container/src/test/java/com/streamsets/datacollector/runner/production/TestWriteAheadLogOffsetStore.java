@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.runner.production;
+
+import com.codahale.metrics.MetricRegistry;
+import com.streamsets.datacollector.main.RuntimeInfo;
+import com.streamsets.datacollector.main.RuntimeModule;
+import com.streamsets.datacollector.main.StandaloneRuntimeInfo;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+public class TestWriteAheadLogOffsetStore {
+
+  private static final String PIPELINE_NAME = "walPipeline";
+  private static final String PIPELINE_REV = "1.0";
+
+  private RuntimeInfo info;
+
+  @BeforeClass
+  public static void beforeClass() throws IOException {
+    System.setProperty(RuntimeModule.SDC_PROPERTY_PREFIX + RuntimeInfo.DATA_DIR, "./target/var-wal");
+    FileUtils.deleteQuietly(new File(System.getProperty(RuntimeModule.SDC_PROPERTY_PREFIX + RuntimeInfo.DATA_DIR)));
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.getProperties().remove(RuntimeModule.SDC_PROPERTY_PREFIX + RuntimeInfo.DATA_DIR);
+  }
+
+  @Before
+  public void setUp() {
+    info = new StandaloneRuntimeInfo(
+        RuntimeModule.SDC_PROPERTY_PREFIX,
+        new MetricRegistry(),
+        Arrays.asList(TestWriteAheadLogOffsetStore.class.getClassLoader())
+    );
+    OffsetFileUtil.resetOffsets(info, PIPELINE_NAME, PIPELINE_REV);
+  }
+
+  private ProductionSourceOffsetTracker createTracker(int compactionThreshold) {
+    return new ProductionSourceOffsetTracker(
+        PIPELINE_NAME,
+        PIPELINE_REV,
+        info,
+        new WriteAheadLogOffsetStore(info, PIPELINE_NAME, PIPELINE_REV, true, compactionThreshold)
+    );
+  }
+
+  private File getLogFile() {
+    return OffsetFileUtil.getPipelineOffsetLogFile(info, PIPELINE_NAME, PIPELINE_REV);
+  }
+
+  @Test
+  public void testCommitAppendsToLog() {
+    ProductionSourceOffsetTracker tracker = createTracker(1000);
+    tracker.commitOffset("table1", "1");
+    tracker.commitOffset("table2", "2");
+    tracker.commitOffset("table1", "3");
+    tracker.commitOffset("table2", null);
+
+    // Offset file is not rewritten, readers still see the log changes
+    Assert.assertTrue(getLogFile().exists());
+    Assert.assertTrue(getLogFile().length() > 0);
+    Map<String, String> offsets = OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV);
+    Assert.assertEquals(1, offsets.size());
+    Assert.assertEquals("3", offsets.get("table1"));
+
+    tracker.close();
+    Assert.assertFalse(getLogFile().exists());
+    Assert.assertEquals(offsets, OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV));
+  }
+
+  @Test
+  public void testCompaction() {
+    ProductionSourceOffsetTracker tracker = createTracker(2);
+    tracker.commitOffset("table1", "1");
+    tracker.commitOffset("table2", "2");
+
+    // Threshold reached, log was compacted into the offset file
+    Assert.assertFalse(getLogFile().exists());
+    tracker.commitOffset("table1", "3");
+    Assert.assertTrue(getLogFile().length() > 0);
+
+    Map<String, String> offsets = OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV);
+    Assert.assertEquals("3", offsets.get("table1"));
+    Assert.assertEquals("2", offsets.get("table2"));
+    tracker.close();
+  }
+
+  @Test
+  public void testRecoveryAfterCompaction() {
+    ProductionSourceOffsetTracker tracker = createTracker(2);
+    tracker.commitOffset("table1", "1");
+    tracker.commitOffset("table2", "2");
+    tracker.commitOffset("table1", "3");
+    tracker.commitOffset("table3", "4");
+    tracker.commitOffset("table2", null);
+
+    // Simulate a crash, commits after the compactions must still be in the log
+    tracker = createTracker(2);
+    Assert.assertFalse(getLogFile().exists());
+    Assert.assertEquals(2, tracker.getOffsets().size());
+    Assert.assertEquals("3", tracker.getOffsets().get("table1"));
+    Assert.assertEquals("4", tracker.getOffsets().get("table3"));
+    Assert.assertEquals(tracker.getOffsets(), OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV));
+    tracker.close();
+  }
+
+  @Test
+  public void testRecoveryIgnoresIncompleteEntry() throws IOException {
+    ProductionSourceOffsetTracker tracker = createTracker(1000);
+    tracker.commitOffset("table1", "1");
+    tracker.commitOffset("table2", "2\n\"quoted\"");
+
+    // Simulate a crash in the middle of writing an entry, tracker is never closed
+    try (FileOutputStream os = new FileOutputStream(getLogFile(), true)) {
+      os.write("{\"entity\":\"table1\",\"off".getBytes(StandardCharsets.UTF_8));
+    }
+
+    tracker = createTracker(1000);
+    Assert.assertFalse(getLogFile().exists());
+    Assert.assertEquals(2, tracker.getOffsets().size());
+    Assert.assertEquals("1", tracker.getOffsets().get("table1"));
+    Assert.assertEquals("2\n\"quoted\"", tracker.getOffsets().get("table2"));
+    Assert.assertEquals(tracker.getOffsets(), OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV));
+    tracker.close();
+  }
+
+  @Test
+  public void testResetDeletesLog() {
+    ProductionSourceOffsetTracker tracker = createTracker(1000);
+    tracker.commitOffset("table1", "1");
+    Assert.assertTrue(getLogFile().exists());
+
+    OffsetFileUtil.resetOffsets(info, PIPELINE_NAME, PIPELINE_REV);
+    Assert.assertFalse(getLogFile().exists());
+    Assert.assertTrue(OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).isEmpty());
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.el;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.jsp.el.ELException;
+import javax.servlet.jsp.el.FunctionMapper;
+import javax.servlet.jsp.el.VariableResolver;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestExpressionCompiler {
+
+  private static final AtomicInteger CALLS = new AtomicInteger();
+
+  public static String upper(String s) {
+    CALLS.incrementAndGet();
+    return s.toUpperCase();
+  }
+
+  public static String uuid() {
+    return UUID.randomUUID().toString();
+  }
+
+  public static Map<String, String> splitKV(String s) {
+    Map<String, String> map = new HashMap<>();
+    String[] kv = s.split("=");
+    map.put(kv[0], kv[1]);
+    return map;
+  }
+
+  public static String fail() {
+    throw new IllegalStateException("fail");
+  }
+
+  private static final FunctionMapper FUNCTIONS = new FunctionMapper() {
+    @Override
+    public Method resolveFunction(String prefix, String name) {
+      try {
+        switch (prefix + ":" + name) {
+          case "str:toUpper":
+          case "other:toUpper":
+            return TestExpressionCompiler.class.getMethod("upper", String.class);
+          case "uuid:uuid":
+            return TestExpressionCompiler.class.getMethod("uuid");
+          case "str:splitKV":
+            return TestExpressionCompiler.class.getMethod("splitKV", String.class);
+          case "str:fail":
+            return TestExpressionCompiler.class.getMethod("fail");
+          default:
+            return null;
+        }
+      } catch (NoSuchMethodException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  };
+
+  private static final Map<String, Object> CONSTANTS = ImmutableMap.<String, Object>of("TEN", 10);
+
+  private static final VariableResolver VARIABLES = new VariableResolver() {
+    @Override
+    public Object resolveVariable(String name) throws ELException {
+      return "x".equals(name) ? "abc" : null;
+    }
+  };
+
+  private final ExpressionCompiler compiler =
+      new ExpressionCompiler(new LruExpressionEvaluatorImpl(), FUNCTIONS, CONSTANTS);
+
+  @Test
+  public void testConstantFolding() throws ELException {
+    Assert.assertTrue(compiler.compile("${TEN * 2 + 1}").isConstant());
+    Assert.assertEquals(21L, compiler.compile("${TEN * 2 + 1}").evaluate(VARIABLES, Long.class));
+
+    CALLS.set(0);
+    CompiledExpression expression = compiler.compile("a-${str:toUpper('b')}-c");
+    Assert.assertTrue(expression.isConstant());
+    Assert.assertEquals(1, CALLS.get());
+    Assert.assertEquals("a-B-c", expression.evaluate(VARIABLES, String.class));
+    Assert.assertEquals("a-B-c", expression.evaluate(VARIABLES, String.class));
+    Assert.assertEquals(1, CALLS.get());
+  }
+
+  @Test
+  public void testNoFolding() throws ELException {
+    // functions outside of the pure namespaces are not folded
+    Assert.assertFalse(compiler.compile("${other:toUpper('b')}").isConstant());
+    // impure functions are not folded
+    CompiledExpression uuid = compiler.compile("${uuid:uuid()}");
+    Assert.assertFalse(uuid.isConstant());
+    Assert.assertNotEquals(uuid.evaluate(VARIABLES, String.class), uuid.evaluate(VARIABLES, String.class));
+    // variables are not folded
+    CompiledExpression variable = compiler.compile("${str:toUpper(x)}");
+    Assert.assertFalse(variable.isConstant());
+    Assert.assertEquals("ABC", variable.evaluate(VARIABLES, String.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testMutableResultsAreNotFolded() throws ELException {
+    CompiledExpression expression = compiler.compile("${str:splitKV('a=b')}");
+    Assert.assertFalse(expression.isConstant());
+    Map<String, String> first = (Map<String, String>) expression.evaluate(VARIABLES, Map.class);
+    first.put("c", "d");
+    Map<String, String> second = (Map<String, String>) expression.evaluate(VARIABLES, Map.class);
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals(ImmutableMap.of("a", "b"), second);
+  }
+
+  @Test
+  public void testConditional() throws ELException {
+    CompiledExpression expression = compiler.compile("${TEN > 5 ? x : 'no'}");
+    Assert.assertFalse(expression.isConstant());
+    Assert.assertEquals("abc", expression.evaluate(VARIABLES, String.class));
+    Assert.assertEquals("yes", compiler.compile("${TEN > 5 ? 'yes' : x}").evaluate(VARIABLES, String.class));
+  }
+
+  @Test
+  public void testConditionalOnlyCompilesTakenBranch() throws ELException {
+    CompiledExpression expression = compiler.compile("${false ? str:fail() : 'x'}");
+    Assert.assertTrue(expression.isConstant());
+    Assert.assertEquals("x", expression.evaluate(VARIABLES, String.class));
+    Assert.assertEquals("x", compiler.compile("${true ? 'x' : str:fail()}").evaluate(VARIABLES, String.class));
+  }
+
+  @Test(expected = ELException.class)
+  public void testUnknownFunction() throws ELException {
+    compiler.compile("${foo:bar()}");
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.el;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.jsp.el.ELException;
+import java.util.UUID;
+
+public class TestLruExpressionEvaluatorImpl {
+
+  @Test
+  public void testParseIsCached() throws ELException {
+    LruExpressionEvaluatorImpl evaluator = new LruExpressionEvaluatorImpl();
+    String el = "${" + UUID.randomUUID().toString().replace("-", "").replaceAll("[0-9]", "x") + "}";
+    long hits = LruExpressionEvaluatorImpl.getExpressionCacheStats().hitCount();
+    Object parsed = evaluator.parseExpressionString(el);
+    Assert.assertSame(parsed, evaluator.parseExpressionString(el));
+    Assert.assertEquals(hits + 1, LruExpressionEvaluatorImpl.getExpressionCacheStats().hitCount());
+  }
+
+  @Test(expected = ELException.class)
+  public void testParseError() throws ELException {
+    new LruExpressionEvaluatorImpl().parseExpressionString("${a +}");
+  }
+
+  @Test
+  public void testCacheIsBounded() throws ELException {
+    LruExpressionEvaluatorImpl evaluator = new LruExpressionEvaluatorImpl();
+    for (int i = 0; i < 2 * LruExpressionEvaluatorImpl.MAX_CACHE_SIZE; i++) {
+      evaluator.parseExpressionString("${" + i + "}");
+    }
+    Assert.assertTrue(LruExpressionEvaluatorImpl.getExpressionCacheSize() <= LruExpressionEvaluatorImpl.MAX_CACHE_SIZE);
+    Assert.assertTrue(LruExpressionEvaluatorImpl.getExpressionCacheStats().evictionCount() > 0);
+  }
+
+  @Test
+  public void testStaticValueConversion() throws ELException {
+    LruExpressionEvaluatorImpl evaluator = new LruExpressionEvaluatorImpl();
+    Assert.assertEquals(10, evaluator.evaluate("10", Integer.class, null, null));
+    Assert.assertEquals(10, evaluator.evaluate("10", Integer.class, null, null));
+    Assert.assertEquals("10", evaluator.evaluate("10", String.class, null, null));
+    Assert.assertEquals(10L, evaluator.evaluate("10", Long.class, null, null));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testMetrics() throws ELException {
+    MetricRegistry metrics = new MetricRegistry();
+    LruExpressionEvaluatorImpl.registerCacheMetrics(metrics);
+    // registering again, as a second runtime module in the same JVM would, is a no-op
+    LruExpressionEvaluatorImpl.registerCacheMetrics(metrics);
+    new LruExpressionEvaluatorImpl().parseExpressionString("${1 + 1}");
+    Gauge<Long> size = metrics.getGauges().get("el.cache.expressions.size");
+    Assert.assertNotNull(size);
+    Assert.assertTrue(size.getValue() > 0);
+    Assert.assertNotNull(metrics.getGauges().get("el.cache.expressions.hits"));
+    Assert.assertNotNull(metrics.getGauges().get("el.cache.expressions.misses"));
+    Assert.assertNotNull(metrics.getGauges().get("el.cache.expressions.evictions"));
+    Assert.assertNotNull(metrics.getGauges().get("el.cache.literals.size"));
+  }
+
+}
@@ -151,4 +151,39 @@ public class ElasticsearchTargetConfig extends ElasticsearchConfig {
   )
   @ValueChooserModel(UnsupportedOperationActionChooserValues.class)
   public UnsupportedOperationAction unsupportedAction = UnsupportedOperationAction.DISCARD;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "10",
+      label = "Max Bulk Request Size (MB)",
+      description = "Batches larger than this are split into several bulk requests",
+      displayPosition = 120,
+      group = "ELASTIC_SEARCH",
+      min = 1
+  )
+  public int maxBulkSizeMB = 10;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1",
+      label = "Max Concurrent Bulk Requests",
+      description = "Maximum number of bulk requests of a batch sent to the cluster at the same time",
+      displayPosition = 130,
+      group = "ELASTIC_SEARCH",
+      min = 1
+  )
+  public int maxConcurrentBulkRequests = 1;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Compress Bulk Requests",
+      description = "Sends the bulk requests gzip compressed",
+      displayPosition = 140,
+      group = "ELASTIC_SEARCH"
+  )
+  public boolean compressBulkRequests = false;
 }
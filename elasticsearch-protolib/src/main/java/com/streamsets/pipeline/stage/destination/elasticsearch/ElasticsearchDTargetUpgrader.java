@@ -77,6 +77,12 @@ public class ElasticsearchDTargetUpgrader implements StageUpgrader {
         // fall through
       case 7:
         upgradeV7ToV8(configs);
+        if (toVersion == 8) {
+          break;
+        }
+        // fall through
+      case 8:
+        upgradeV8ToV9(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -271,4 +277,10 @@ public class ElasticsearchDTargetUpgrader implements StageUpgrader {
     configs.add(new Config(CURRENT_CONFIG_PREFIX + "routingTemplate", ""));
   }
 
+  private void upgradeV8ToV9(List<Config> configs) {
+    configs.add(new Config(CURRENT_CONFIG_PREFIX + "maxBulkSizeMB", 10));
+    configs.add(new Config(CURRENT_CONFIG_PREFIX + "maxConcurrentBulkRequests", 1));
+    configs.add(new Config(CURRENT_CONFIG_PREFIX + "compressBulkRequests", false));
+  }
+
 }
@@ -16,6 +16,7 @@
 package com.streamsets.pipeline.stage.destination.elasticsearch;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.CountingOutputStream;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
@@ -47,16 +48,17 @@ import com.streamsets.pipeline.stage.config.elasticsearch.Errors;
 import com.streamsets.pipeline.stage.config.elasticsearch.Groups;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -65,9 +67,16 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
 
 public class ElasticsearchTarget extends BaseTarget {
   private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchTarget.class);
+  private static final int NEW_LINE = '\n';
+  private static final int BUFFER_SIZE = 8 * 1024;
+  private static final long MB = 1024 * 1024;
   private final ElasticsearchTargetConfig conf;
   private ELEval timeDriverEval;
   private TimeZone timeZone;
@@ -80,6 +89,11 @@ public class ElasticsearchTarget extends BaseTarget {
   private DataGeneratorFactory generatorFactory;
   private ErrorRecordHandler errorRecordHandler;
   private ElasticsearchStageDelegate delegate;
+  private Charset charset;
+  private ContentType contentType;
+  private long maxBulkSize;
+  private Semaphore bulkPermits;
+  private final RecordBuffer recordBuffer = new RecordBuffer();
 
   public ElasticsearchTarget(ElasticsearchTargetConfig conf) {
     this.conf = conf;
@@ -193,11 +207,16 @@ public class ElasticsearchTarget extends BaseTarget {
 
     issues = delegate.init("elasticSearchConfig", issues);
 
+    charset = Charset.forName(conf.charset);
+    contentType = ContentType.create(ContentType.APPLICATION_JSON.getMimeType(), charset);
     generatorFactory = new DataGeneratorFactoryBuilder(getContext(), DataGeneratorFormat.JSON)
         .setMode(Mode.MULTIPLE_OBJECTS)
-        .setCharset(Charset.forName(conf.charset))
+        .setCharset(charset)
         .build();
 
+    maxBulkSize = conf.maxBulkSizeMB * MB;
+    bulkPermits = new Semaphore(conf.maxConcurrentBulkRequests);
+
     return issues;
   }
 
@@ -235,15 +254,12 @@ public class ElasticsearchTarget extends BaseTarget {
     TimeNowEL.setTimeNowInContext(elVars, getBatchTime());
     Iterator<Record> it = batch.getRecords();
 
-    StringBuilder bulkRequest = new StringBuilder();
-
-    //we need to keep the records in order of appearance in case we have indexing errors
-    //and error handling is TO_ERROR
-    List<Record> records = new ArrayList<>();
+    // bulk requests are sent as soon as they are full, responses are handled in order once all have been sent
+    List<BulkRequest> bulkRequests = new ArrayList<>();
+    BulkRequest bulkRequest = null;
 
     while (it.hasNext()) {
       Record record = it.next();
-      records.add(record);
 
       try {
         RecordEL.setRecordInContext(elVars, record);
@@ -261,14 +277,13 @@ public class ElasticsearchTarget extends BaseTarget {
         if (!StringUtils.isEmpty(conf.routingTemplate)) {
           routing = routingEval.eval(elVars, conf.routingTemplate, String.class);
         }
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        DataGenerator generator = generatorFactory.getGenerator(baos);
+        recordBuffer.reset();
+        DataGenerator generator = generatorFactory.getGenerator(recordBuffer);
         generator.write(record);
         generator.close();
 
         int opCode = -1;
         String opType = record.getHeader().getAttribute(OperationType.SDC_OPERATION_TYPE);
-        String recordJson = new String(baos.toByteArray(), StandardCharsets.UTF_8).replace("\n", "");
         // Check if the operation code from header attribute is valid
         if (!StringUtils.isEmpty(opType)) {
           try {
@@ -293,7 +308,20 @@ public class ElasticsearchTarget extends BaseTarget {
           // No header attribute set. Use default.
           opCode = conf.defaultOperation.code;
         }
-        bulkRequest.append(getOperation(index, type, id, parent, routing, recordJson, opCode));
+        if (opCode == -1) {
+          continue;
+        }
+        if (bulkRequest == null) {
+          bulkRequest = new BulkRequest();
+          bulkRequests.add(bulkRequest);
+        }
+        // we need to keep the records in order of appearance in case we have indexing errors
+        // and error handling is TO_ERROR
+        bulkRequest.add(record, index, type, id, parent, routing, opCode);
+        if (bulkRequest.size() >= maxBulkSize) {
+          send(bulkRequest);
+          bulkRequest = null;
+        }
       } catch (IOException ex) {
         errorRecordHandler.onError(
             new OnRecordErrorException(
@@ -307,48 +335,98 @@ public class ElasticsearchTarget extends BaseTarget {
       }
     }
 
-    if (!records.isEmpty()) {
-      try {
-        HttpEntity entity = new StringEntity(bulkRequest.toString(), ContentType.APPLICATION_JSON);
-        Response response;
-        response = delegate.performRequest(
-            "POST",
-            "/_bulk",
-            conf.params,
-            entity,
-            delegate.getAuthenticationHeader(conf.securityConfig.securityUser.get())
-        );
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        response.getEntity().writeTo(baos);
-        JsonObject json = new JsonParser().parse(baos.toString()).getAsJsonObject();
-        baos.close();
-
-        // Handle errors in bulk requests individually.
-        boolean errors = json.get("errors").getAsBoolean();
-        if (errors) {
-          List<ErrorItem> errorItems;
-          switch (getContext().getOnErrorRecord()) {
-            case DISCARD:
-              break;
-            case TO_ERROR:
-              errorItems = extractErrorItems(json);
-              for (ErrorItem item : errorItems) {
-                Record record = records.get(item.index);
-                getContext().toError(record, Errors.ELASTICSEARCH_16, record.getHeader().getSourceId(), item.reason);
-              }
-              break;
-            case STOP_PIPELINE:
-              errorItems = extractErrorItems(json);
-              throw new StageException(Errors.ELASTICSEARCH_17, errorItems.size(), "One or more operations failed");
-            default:
-              throw new IllegalStateException(
-                  Utils.format("Unknown OnError value '{}'", getContext().getOnErrorRecord())
-              );
+    if (bulkRequest != null) {
+      send(bulkRequest);
+    }
+    for (BulkRequest request : bulkRequests) {
+      handleResponse(request);
+    }
+  }
+
+  /**
+   * Sends the bulk request asynchronously, waiting first for a free permit if the maximum number of concurrent bulk
+   * requests are already in flight.
+   */
+  private void send(final BulkRequest bulkRequest) throws StageException {
+    HttpEntity entity;
+    try {
+      entity = bulkRequest.finish();
+    } catch (IOException ex) {
+      bulkRequest.response.completeExceptionally(ex);
+      return;
+    }
+    bulkPermits.acquireUninterruptibly();
+    delegate.performRequestAsync(
+        "POST",
+        "/_bulk",
+        conf.params,
+        entity,
+        new ResponseListener() {
+          @Override
+          public void onSuccess(Response response) {
+            bulkPermits.release();
+            bulkRequest.response.complete(response);
+          }
+
+          @Override
+          public void onFailure(Exception exception) {
+            bulkPermits.release();
+            bulkRequest.response.completeExceptionally(exception);
           }
+        },
+        delegate.getAuthenticationHeader(conf.securityConfig.securityUser.get())
+    );
+  }
+
+  private void handleResponse(BulkRequest bulkRequest) throws StageException {
+    List<Record> records = bulkRequest.records;
+    try {
+      Response response = getResponse(bulkRequest);
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      response.getEntity().writeTo(baos);
+      JsonObject json = new JsonParser().parse(baos.toString()).getAsJsonObject();
+      baos.close();
+
+      // Handle errors in bulk requests individually.
+      boolean errors = json.get("errors").getAsBoolean();
+      if (errors) {
+        List<ErrorItem> errorItems;
+        switch (getContext().getOnErrorRecord()) {
+          case DISCARD:
+            break;
+          case TO_ERROR:
+            errorItems = extractErrorItems(json);
+            for (ErrorItem item : errorItems) {
+              Record record = records.get(item.index);
+              getContext().toError(record, Errors.ELASTICSEARCH_16, record.getHeader().getSourceId(), item.reason);
+            }
+            break;
+          case STOP_PIPELINE:
+            errorItems = extractErrorItems(json);
+            throw new StageException(Errors.ELASTICSEARCH_17, errorItems.size(), "One or more operations failed");
+          default:
+            throw new IllegalStateException(
+                Utils.format("Unknown OnError value '{}'", getContext().getOnErrorRecord())
+            );
         }
-      } catch (IOException ex) {
-        errorRecordHandler.onError(records, new StageException(Errors.ELASTICSEARCH_17, records.size(), ex.toString(), ex));
       }
+    } catch (IOException ex) {
+      errorRecordHandler.onError(
+          records,
+          new StageException(Errors.ELASTICSEARCH_17, records.size(), ex.toString(), ex)
+      );
+    }
+  }
+
+  private static Response getResponse(BulkRequest bulkRequest) throws IOException {
+    try {
+      return bulkRequest.response.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
     }
   }
 
@@ -361,32 +439,52 @@ public class ElasticsearchTarget extends BaseTarget {
     return batchTime;
   }
 
-  private String getOperation(String index, String type, String id, String parent, String routing, String record, int opCode) {
-    StringBuilder op = new StringBuilder();
+  private void writeOperation(
+      OutputStream out,
+      String index,
+      String type,
+      String id,
+      String parent,
+      String routing,
+      int opCode
+  ) throws IOException {
     switch (opCode) {
       case OperationType.UPSERT_CODE:
-        getOperationMetadata("index", index, type, id, parent, routing, op);
-        op.append(String.format("%s%n", record));
+        writeOperationMetadata(out, "index", index, type, id, parent, routing);
+        recordBuffer.writeJsonTo(out);
+        out.write(NEW_LINE);
         break;
       case OperationType.INSERT_CODE:
-        getOperationMetadata("create", index, type, id, parent, routing, op);
-        op.append(String.format("%s%n", record));
+        writeOperationMetadata(out, "create", index, type, id, parent, routing);
+        recordBuffer.writeJsonTo(out);
+        out.write(NEW_LINE);
         break;
       case OperationType.UPDATE_CODE:
-        getOperationMetadata("update", index, type, id, parent, routing, op);
-        op.append(String.format("{\"doc\":%s}%n", record));
+        writeOperationMetadata(out, "update", index, type, id, parent, routing);
+        out.write("{\"doc\":".getBytes(charset));
+        recordBuffer.writeJsonTo(out);
+        out.write('}');
+        out.write(NEW_LINE);
         break;
       case OperationType.DELETE_CODE:
-        getOperationMetadata("delete", index, type, id, parent, routing, op);
+        writeOperationMetadata(out, "delete", index, type, id, parent, routing);
         break;
       default:
         LOG.error("Operation {} not supported", opCode);
         throw new UnsupportedOperationException(String.format("Unsupported Operation: %s", opCode));
     }
-    return op.toString();
   }
 
-  private void getOperationMetadata(String operation, String index, String type, String id, String parent, String routing, StringBuilder sb) {
+  private void writeOperationMetadata(
+      OutputStream out,
+      String operation,
+      String index,
+      String type,
+      String id,
+      String parent,
+      String routing
+  ) throws IOException {
+    StringBuilder sb = new StringBuilder();
     sb.append(String.format("{\"%s\":{\"_index\":\"%s\",\"_type\":\"%s\"", operation, index, type));
     if (!StringUtils.isEmpty(id)) {
       sb.append(String.format(",\"_id\":\"%s\"", id));
@@ -397,7 +495,9 @@ public class ElasticsearchTarget extends BaseTarget {
     if (!StringUtils.isEmpty(routing)) {
       sb.append(String.format(",\"routing\":\"%s\"", routing));
     }
-    sb.append(String.format("}}%n"));
+    sb.append("}}");
+    out.write(sb.toString().getBytes(charset));
+    out.write(NEW_LINE);
   }
 
   private List<ErrorItem> extractErrorItems(JsonObject json) {
@@ -422,6 +522,94 @@ public class ElasticsearchTarget extends BaseTarget {
     return errorItems;
   }
 
+  /**
+   * Bulk request of a batch. Operations are serialized as NDJSON straight into the request body (gzip compressed
+   * when enabled), which is handed to the HTTP client without further copies.
+   */
+  private class BulkRequest {
+    final List<Record> records = new ArrayList<>();
+    final CompletableFuture<Response> response = new CompletableFuture<>();
+    private BodyBuffer body;
+    private final CountingOutputStream out;
+
+    BulkRequest() throws IOException {
+      body = new BodyBuffer();
+      out = new CountingOutputStream(conf.compressBulkRequests ? new GZIPOutputStream(body, BUFFER_SIZE) : body);
+    }
+
+    /**
+     * Adds the operation for the record, whose JSON is expected in the record buffer.
+     */
+    void add(
+        Record record,
+        String index,
+        String type,
+        String id,
+        String parent,
+        String routing,
+        int opCode
+    ) throws IOException {
+      writeOperation(out, index, type, id, parent, routing, opCode);
+      records.add(record);
+    }
+
+    /**
+     * Returns the uncompressed size of the request body.
+     */
+    long size() {
+      return out.getCount();
+    }
+
+    HttpEntity finish() throws IOException {
+      out.close();
+      ByteArrayEntity entity = body.toEntity(contentType);
+      if (conf.compressBulkRequests) {
+        entity.setContentEncoding("gzip");
+      }
+      // the HTTP client keeps the body only until the request completes
+      body = null;
+      return entity;
+    }
+  }
+
+  private static class BodyBuffer extends ByteArrayOutputStream {
+    BodyBuffer() {
+      super(BUFFER_SIZE);
+    }
+
+    ByteArrayEntity toEntity(ContentType contentType) {
+      return new ByteArrayEntity(buf, 0, count, contentType);
+    }
+  }
+
+  /**
+   * Reusable buffer for the JSON of a single record.
+   */
+  private static class RecordBuffer extends ByteArrayOutputStream {
+    RecordBuffer() {
+      super(BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the record JSON without the line separators the generator adds around it.
+     */
+    void writeJsonTo(OutputStream out) throws IOException {
+      int start = 0;
+      int end = count;
+      while (start < end && isLineSeparator(buf[start])) {
+        start++;
+      }
+      while (end > start && isLineSeparator(buf[end - 1])) {
+        end--;
+      }
+      out.write(buf, start, end - start);
+    }
+
+    private static boolean isLineSeparator(byte b) {
+      return b == '\n' || b == '\r';
+    }
+  }
+
   private static class ErrorItem {
     int index;
     String reason;
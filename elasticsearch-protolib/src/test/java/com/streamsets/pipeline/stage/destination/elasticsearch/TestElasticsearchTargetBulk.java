@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.elasticsearch;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import com.streamsets.pipeline.sdk.TargetRunner;
+import com.streamsets.pipeline.stage.config.elasticsearch.ElasticsearchTargetConfig;
+import com.streamsets.pipeline.stage.config.elasticsearch.SecurityConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests the bulk requests of the destination against a stub HTTP server speaking the _bulk API.
+ */
+public class TestElasticsearchTargetBulk {
+  private HttpServer server;
+  private final AtomicInteger bulkRequests = new AtomicInteger();
+  private final List<String> documents = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> respond(exchange, "{}"));
+    server.createContext("/_bulk", this::handleBulk);
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private void handleBulk(HttpExchange exchange) throws IOException {
+    bulkRequests.incrementAndGet();
+    InputStream is = exchange.getRequestBody();
+    if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+      is = new GZIPInputStream(is);
+    }
+    String[] lines = new String(ByteStreams.toByteArray(is), StandardCharsets.UTF_8).split("\n");
+    StringBuilder items = new StringBuilder();
+    boolean errors = false;
+    // index operations, each one is a metadata line followed by the document
+    for (int i = 0; i < lines.length; i += 2) {
+      documents.add(lines[i + 1]);
+      items.append(items.length() == 0 ? "" : ",");
+      if (lines[i + 1].contains("fail")) {
+        errors = true;
+        items.append("{\"index\":{\"status\":400,\"error\":{\"reason\":\"rejected\"}}}");
+      } else {
+        items.append("{\"index\":{\"status\":201}}");
+      }
+    }
+    respond(exchange, "{\"took\":1,\"errors\":" + errors + ",\"items\":[" + items + "]}");
+  }
+
+  private static void respond(HttpExchange exchange, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(bytes);
+    }
+  }
+
+  private ElasticsearchTarget createTarget(boolean compress) {
+    ElasticsearchTargetConfig conf = new ElasticsearchTargetConfig();
+    conf.httpUris = Collections.singletonList("127.0.0.1:" + server.getAddress().getPort());
+    conf.timeDriver = "${time:now()}";
+    conf.timeZoneID = "UTC";
+    conf.indexTemplate = "i";
+    conf.typeTemplate = "t";
+    conf.docIdTemplate = "";
+    conf.parentIdTemplate = "";
+    conf.routingTemplate = "";
+    conf.charset = "UTF-8";
+    conf.defaultOperation = ElasticsearchOperationType.INDEX;
+    conf.useSecurity = false;
+    conf.securityConfig = new SecurityConfig();
+    conf.maxBulkSizeMB = 1;
+    conf.maxConcurrentBulkRequests = 2;
+    conf.compressBulkRequests = compress;
+    return new ElasticsearchTarget(conf);
+  }
+
+  private static List<Record> createRecords(String... values) {
+    // each record takes about half of the max bulk size
+    char[] padding = new char[512 * 1024];
+    Arrays.fill(padding, 'x');
+    List<Record> records = new ArrayList<>();
+    for (String value : values) {
+      Record record = RecordCreator.create();
+      record.set(Field.create(ImmutableMap.of(
+          "a", Field.create(value),
+          "padding", Field.create(new String(padding))
+      )));
+      records.add(record);
+    }
+    return records;
+  }
+
+  private void testSplitBatch(boolean compress) throws Exception {
+    TargetRunner runner = new TargetRunner.Builder(ElasticSearchDTarget.class, createTarget(compress)).build();
+    try {
+      runner.runInit();
+      runner.runWrite(createRecords("r1", "r2", "r3", "r4", "r5"));
+      Assert.assertTrue(runner.getErrorRecords().isEmpty());
+      Assert.assertTrue(runner.getErrors().isEmpty());
+      Assert.assertEquals(3, bulkRequests.get());
+      Assert.assertEquals(5, documents.size());
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testSplitBatch() throws Exception {
+    testSplitBatch(false);
+  }
+
+  @Test
+  public void testSplitBatchCompressed() throws Exception {
+    testSplitBatch(true);
+  }
+
+  @Test
+  public void testErrorItemsToError() throws Exception {
+    TargetRunner runner = new TargetRunner.Builder(ElasticSearchDTarget.class, createTarget(false))
+        .setOnRecordError(OnRecordError.TO_ERROR)
+        .build();
+    try {
+      runner.runInit();
+      runner.runWrite(createRecords("r1", "fail2", "r3", "fail4", "r5"));
+      Assert.assertEquals(3, bulkRequests.get());
+      List<Record> errorRecords = runner.getErrorRecords();
+      Assert.assertEquals(2, errorRecords.size());
+      List<String> failed = new ArrayList<>();
+      for (Record record : errorRecords) {
+        failed.add(record.get("/a").getValueAsString());
+      }
+      Collections.sort(failed);
+      Assert.assertEquals(ImmutableList.of("fail2", "fail4"), failed);
+    } finally {
+      runner.runDestroy();
+    }
+  }
+}
@@ -16,6 +16,7 @@
 package com.streamsets.pipeline.stage.destination.hdfs;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
@@ -32,6 +33,7 @@ import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
 import com.streamsets.pipeline.stage.destination.hdfs.writer.ActiveRecordWriters;
 import com.streamsets.pipeline.stage.destination.hdfs.writer.RecordWriter;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,9 +41,17 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class HdfsTarget extends BaseTarget {
   private static final Logger LOG = LoggerFactory.getLogger(HdfsTarget.class);
@@ -54,6 +64,7 @@ public class HdfsTarget extends BaseTarget {
   private final HdfsTargetConfigBean hdfsTargetConfigBean;
   private ErrorRecordHandler errorRecordHandler;
   private Date batchTime;
+  private ExecutorService writeExecutor;
 
   public HdfsTarget(HdfsTargetConfigBean hdfsTargetConfigBean) {
     this.hdfsTargetConfigBean = hdfsTargetConfigBean;
@@ -64,6 +75,14 @@ public class HdfsTarget extends BaseTarget {
     List<ConfigIssue> issues = super.init();
     errorRecordHandler = new DefaultErrorRecordHandler(getContext());
     hdfsTargetConfigBean.init(getContext(), issues);
+    if (issues.isEmpty()
+        && hdfsTargetConfigBean.maxConcurrentWrites > 1
+        && hdfsTargetConfigBean.dataFormat != DataFormat.WHOLE_FILE) {
+      writeExecutor = Executors.newFixedThreadPool(
+          hdfsTargetConfigBean.maxConcurrentWrites,
+          new ThreadFactoryBuilder().setNameFormat("HDFS Writer Thread %d").setDaemon(true).build()
+      );
+    }
     return issues;
   }
 
@@ -88,6 +107,9 @@ public class HdfsTarget extends BaseTarget {
 
   @Override
   public void destroy() {
+    if (writeExecutor != null) {
+      writeExecutor.shutdownNow();
+    }
     hdfsTargetConfigBean.destroy();
     super.destroy();
   }
@@ -104,7 +126,10 @@ public class HdfsTarget extends BaseTarget {
             hdfsTargetConfigBean.getLateWriters().purge();
           }
           Iterator<Record> it = batch.getRecords();
-          if (it.hasNext()) {
+          if (it.hasNext() && writeExecutor != null) {
+            writeConcurrently(it);
+            hdfsTargetConfigBean.getCurrentWriters().flushAll();
+          } else if (it.hasNext()) {
             while (it.hasNext()) {
               Record record = it.next();
               try {
@@ -176,77 +201,214 @@ public class HdfsTarget extends BaseTarget {
 
   private void write(Record record) throws StageException {
     try {
-      Date recordTime = getRecordTime(record);
-
-      // recordTime may not be null!
+      Date recordTime = getValidRecordTime(record);
       if (recordTime == null) {
-        throw new StageException(Errors.HADOOPFS_47, hdfsTargetConfigBean.getTimeDriver());
+        return;
       }
+      if (!writeToCurrentFile(record, recordTime, null)) {
+        writeToLateRecords(record);
+      }
+    } catch (IOException ex) {
+      throw new StageException(Errors.HADOOPFS_14, ex.toString(), ex);
+    } catch (StageException ex) {
+      throw new OnRecordErrorException(ex.getErrorCode(), ex.getParams()); // params includes exception
+    }
+  }
 
-      if(hdfsTargetConfigBean.dirPathTemplateInHeader
-          && !record.getHeader().getAttributeNames().contains(TARGET_DIRECTORY_HEADER)) {
-        getContext().toError(record, Errors.HADOOPFS_50);
-        return;
+  /**
+   * Returns the time of the record, <code>null</code> if the record has been sent to error.
+   */
+  private Date getValidRecordTime(Record record) throws StageException {
+    Date recordTime = getRecordTime(record);
+
+    // recordTime may not be null!
+    if (recordTime == null) {
+      throw new StageException(Errors.HADOOPFS_47, hdfsTargetConfigBean.getTimeDriver());
+    }
+
+    if(hdfsTargetConfigBean.dirPathTemplateInHeader
+        && !record.getHeader().getAttributeNames().contains(TARGET_DIRECTORY_HEADER)) {
+      getContext().toError(record, Errors.HADOOPFS_50);
+      return null;
+    }
+    return recordTime;
+  }
+
+  /**
+   * Writes the record to its current file, the temporary path of the file is resolved if not given.
+   *
+   * @return <code>false</code> if the record is late and has not been written
+   */
+  private boolean writeToCurrentFile(Record record, Date recordTime, Path tempPath)
+      throws StageException, IOException {
+    ActiveRecordWriters currentWriters = hdfsTargetConfigBean.getCurrentWriters();
+    while (true) {
+      RecordWriter writer = (tempPath == null)
+          ? currentWriters.get(getBatchTime(), recordTime, record)
+          : currentWriters.get(getBatchTime(), recordTime, record, tempPath);
+      if (writer == null) {
+        return false;
       }
+      try {
+        writer.write(record);
+        //close the file immediately if there are no errors/exceptions
+        if (hdfsTargetConfigBean.dataFormat == DataFormat.WHOLE_FILE) {
+          currentWriters.release(writer, false);
+        }
+        // To avoid double counting, in case of IdleClosedException
+        hdfsTargetConfigBean.getToHdfsRecordsCounter().inc();
+        hdfsTargetConfigBean.getToHdfsRecordsMeter().mark();
+        currentWriters.release(writer, false);
+        return true;
+      } catch (IdleClosedException ex) {
+        //For whole file we will not get here.
+        currentWriters.release(writer, false);
+        // Try to write again, this time with a new writer
+        // No use printing path, since it is a temp path - the real one is created later.
+        LOG.debug("Writer was idle closed. Retrying.. ");
+      }
+    }
+  }
 
-      boolean write = true;
-      while (write) {
-        write = false;
-        RecordWriter writer = hdfsTargetConfigBean.getCurrentWriters().get(getBatchTime(), recordTime, record);
-        if (writer != null) {
+  private void writeToLateRecords(Record record) throws StageException, IOException {
+    boolean write = true;
+    while (write) {
+      write = false;
+      switch (hdfsTargetConfigBean.lateRecordsAction) {
+        case SEND_TO_ERROR:
+          incrementAndMarkLateRecords();
+          getContext().toError(record, Errors.HADOOPFS_12, record.getHeader().getSourceId());
+          break;
+        case SEND_TO_LATE_RECORDS_FILE:
+          RecordWriter lateWriter =
+              hdfsTargetConfigBean.getLateWriters().get(getBatchTime(), getBatchTime(), record);
           try {
-            writer.write(record);
-            //close the file immediately if there are no errors/exceptions
-            if (hdfsTargetConfigBean.dataFormat == DataFormat.WHOLE_FILE) {
-              hdfsTargetConfigBean.getCurrentWriters().release(writer, false);
-            }
+            lateWriter.write(record);
             // To avoid double counting, in case of IdleClosedException
-            hdfsTargetConfigBean.getToHdfsRecordsCounter().inc();
-            hdfsTargetConfigBean.getToHdfsRecordsMeter().mark();
-            hdfsTargetConfigBean.getCurrentWriters().release(writer, false);
+            incrementAndMarkLateRecords();
+            //We anyway close the late record writers after writing,
+            //no need to handle specially for whole file
+            hdfsTargetConfigBean.getLateWriters().release(lateWriter, false);
           } catch (IdleClosedException ex) {
-            //For whole file we will not get here.
-            hdfsTargetConfigBean.getCurrentWriters().release(writer, false);
-            // Try to write again, this time with a new writer
+            // Try to write again, this time with a new lateWriter
+            hdfsTargetConfigBean.getCurrentWriters().release(lateWriter, false);
             write = true;
             // No use printing path, since it is a temp path - the real one is created later.
             LOG.debug("Writer was idle closed. Retrying.. ");
           }
-        } else {
-          switch (hdfsTargetConfigBean.lateRecordsAction) {
-            case SEND_TO_ERROR:
-              incrementAndMarkLateRecords();
-              getContext().toError(record, Errors.HADOOPFS_12, record.getHeader().getSourceId());
-              break;
-            case SEND_TO_LATE_RECORDS_FILE:
-              RecordWriter lateWriter =
-                  hdfsTargetConfigBean.getLateWriters().get(getBatchTime(), getBatchTime(), record);
-              try {
-                lateWriter.write(record);
-                // To avoid double counting, in case of IdleClosedException
-                incrementAndMarkLateRecords();
-                //We anyway close the late record writers after writing,
-                //no need to handle specially for whole file
-                hdfsTargetConfigBean.getLateWriters().release(lateWriter, false);
-              } catch (IdleClosedException ex) {
-                // Try to write again, this time with a new lateWriter
-                hdfsTargetConfigBean.getCurrentWriters().release(lateWriter, false);
-                write = true;
-                // No use printing path, since it is a temp path - the real one is created later.
-                LOG.debug("Writer was idle closed. Retrying.. ");
-              }
-              break;
-            default:
-              incrementAndMarkLateRecords();
-              throw new RuntimeException(Utils.format("Unknown late records action: {}",
-                  hdfsTargetConfigBean.lateRecordsAction));
+          break;
+        default:
+          incrementAndMarkLateRecords();
+          throw new RuntimeException(Utils.format("Unknown late records action: {}",
+              hdfsTargetConfigBean.lateRecordsAction));
+      }
+    }
+  }
+
+  /**
+   * Groups the records by file and writes the files concurrently, at most
+   * {@link HdfsTargetConfigBean#maxConcurrentWrites} at a time.
+   * <p/>
+   * Time and path resolution, errors and late records are handled in the pipeline runner thread, only the writes
+   * (and the rolls they trigger) to the current files happen in the writer threads. Each file is written by a
+   * single thread, in batch order.
+   */
+  private void writeConcurrently(Iterator<Record> records) throws Exception {
+    Map<Path, FileRecords> perFile = new LinkedHashMap<>();
+    while (records.hasNext()) {
+      Record record = records.next();
+      try {
+        Date recordTime = getValidRecordTime(record);
+        if (recordTime != null) {
+          Path tempPath = hdfsTargetConfigBean.getCurrentWriters().getWriterManager().getPath(recordTime, record);
+          FileRecords fileRecords = perFile.get(tempPath);
+          if (fileRecords == null) {
+            fileRecords = new FileRecords(tempPath);
+            perFile.put(tempPath, fileRecords);
           }
+          fileRecords.add(record, recordTime);
         }
+      } catch (IOException ex) {
+        throw new StageException(Errors.HADOOPFS_14, ex.toString(), ex);
+      } catch (StageException ex) {
+        errorRecordHandler.onError(new OnRecordErrorException(record, ex.getErrorCode(), ex.getParams()));
       }
-    } catch (IOException ex) {
-      throw new StageException(Errors.HADOOPFS_14, ex.toString(), ex);
-    } catch (StageException ex) {
-      throw new OnRecordErrorException(ex.getErrorCode(), ex.getParams()); // params includes exception
+    }
+
+    List<Future<Void>> futures;
+    hdfsTargetConfigBean.getCurrentWriters().setPurgeDeferred(true);
+    try {
+      futures = writeExecutor.invokeAll(new ArrayList<Callable<Void>>(perFile.values()));
+    } finally {
+      hdfsTargetConfigBean.getCurrentWriters().setPurgeDeferred(false);
+    }
+    hdfsTargetConfigBean.getCurrentWriters().purge();
+
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof IOException) {
+          throw new StageException(Errors.HADOOPFS_14, cause.toString(), cause);
+        }
+        throw (cause instanceof Exception) ? (Exception) cause : ex;
+      }
+    }
+
+    for (FileRecords fileRecords : perFile.values()) {
+      for (OnRecordErrorException error : fileRecords.errors) {
+        errorRecordHandler.onError(error);
+      }
+      for (Record record : fileRecords.lateRecords) {
+        try {
+          writeToLateRecords(record);
+        } catch (IOException ex) {
+          throw new StageException(Errors.HADOOPFS_14, ex.toString(), ex);
+        } catch (StageException ex) {
+          errorRecordHandler.onError(new OnRecordErrorException(record, ex.getErrorCode(), ex.getParams()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Records of a batch going to the same file, written by a writer thread.
+   */
+  private class FileRecords implements Callable<Void> {
+    private final Path tempPath;
+    private final List<Record> records = new ArrayList<>();
+    private final List<Date> recordTimes = new ArrayList<>();
+    private final List<OnRecordErrorException> errors = new ArrayList<>();
+    private final List<Record> lateRecords = new ArrayList<>();
+
+    FileRecords(Path tempPath) {
+      this.tempPath = tempPath;
+    }
+
+    void add(Record record, Date recordTime) {
+      records.add(record);
+      recordTimes.add(recordTime);
+    }
+
+    @Override
+    public Void call() throws Exception {
+      return hdfsTargetConfigBean.getUGI().doAs(new PrivilegedExceptionAction<Void>() {
+        @Override
+        public Void run() throws IOException {
+          for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            try {
+              if (!writeToCurrentFile(record, recordTimes.get(i), tempPath)) {
+                lateRecords.add(record);
+              }
+            } catch (StageException ex) {
+              errors.add(new OnRecordErrorException(record, ex.getErrorCode(), ex.getParams()));
+            }
+          }
+          return null;
+        }
+      });
     }
   }
 
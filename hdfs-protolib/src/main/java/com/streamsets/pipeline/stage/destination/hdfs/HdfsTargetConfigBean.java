@@ -414,6 +414,21 @@ public class HdfsTargetConfigBean {
   )
   public boolean hdfsPermissionCheck;
 
+  @ConfigDef(
+    required = true,
+    type = ConfigDef.Type.NUMBER,
+    defaultValue = "1",
+    label = "Max Concurrent Writes",
+    description = "Maximum number of files written at the same time. The records of a batch are grouped by file and" +
+      " the files are written (and compressed) concurrently. Use 1 to write the files one after the other.",
+    displayPosition = 235,
+    group = "OUTPUT_FILES",
+    min = 1,
+    dependsOn = "fileType",
+    triggeredByValue = {"TEXT", "SEQUENCE_FILE"}
+  )
+  public int maxConcurrentWrites = 1;
+
   //Optional if empty file is created with default umask.
   @ConfigDef(
       required = false,
@@ -22,13 +22,14 @@ import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.impl.Utils;
 import com.streamsets.pipeline.stage.destination.hdfs.Errors;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
@@ -75,9 +76,10 @@ public class ActiveRecordWriters {
   @VisibleForTesting
   Map<String, RecordWriter> writers;
   private DelayQueue<DelayedRecordWriter> cutOffQueue;
+  private volatile boolean purgeDeferred;
 
   public ActiveRecordWriters(RecordWriterManager manager) {
-    writers = new HashMap<>();
+    writers = new ConcurrentHashMap<>();
     cutOffQueue = new DelayQueue<>();
     this.manager = manager;
   }
@@ -97,9 +99,7 @@ public class ActiveRecordWriters {
           LOG.trace("Purging '{}'", delayedWriter.getWriter().getPath());
         }
         //We are fine no lock on writer needed.
-        synchronized (this) {
-          writers.remove(delayedWriter.getWriter().getPath().toString());
-        }
+        writers.remove(delayedWriter.getWriter().getPath().toString());
         manager.commitWriter(delayedWriter.getWriter());
       }
       delayedWriter = cutOffQueue.poll();
@@ -107,13 +107,21 @@ public class ActiveRecordWriters {
   }
 
   public RecordWriter get(Date now, Date recordDate, Record record) throws StageException, IOException {
-    String path = manager.getPath(recordDate, record).toString();
-    RecordWriter writer = null;
+    return get(now, recordDate, record, manager.getPath(recordDate, record));
+  }
+
+  /**
+   * Returns the writer for the given, already resolved, temporary file path.
+   * <p/>
+   * Writers of different paths can be used from different threads at the same time, but a path must not be
+   * written from more than one thread at a time.
+   */
+  public RecordWriter get(Date now, Date recordDate, Record record, Path tempPath)
+      throws StageException, IOException {
+    String path = tempPath.toString();
 
     //We are fine no lock on writer needed.
-    synchronized (this) {
-      writer = writers.get(path);
-    }
+    RecordWriter writer = writers.get(path);
 
     if(writer != null && manager.shouldRoll(writer, record)) {
       release(writer, true);
@@ -121,7 +129,7 @@ public class ActiveRecordWriters {
     }
 
     if (writer == null) {
-      writer = manager.getWriter(now, recordDate, record);
+      writer = manager.getWriter(now, recordDate, tempPath);
       if (writer != null) {
         if (IS_TRACE_ENABLED) {
           LOG.trace("Got '{}'", writer.getPath());
@@ -129,9 +137,7 @@ public class ActiveRecordWriters {
         writer.setActiveRecordWriters(this);
 
         //We are fine no lock on writer needed.
-        synchronized(this) {
-          writers.put(path, writer);
-        }
+        writers.put(path, writer);
         cutOffQueue.add(new DelayedRecordWriter(writer));
       }
     }
@@ -147,26 +153,36 @@ public class ActiveRecordWriters {
     return cutOffQueue.size();
   }
 
-  //The whole function is synchronized because
-  //the locks always have to taken in the following order
+  //Only the lock of the given writer is taken, so writers of different paths can be released concurrently.
+  //Locks always have to be taken in the following order
   //1. ActiveRecordWriters and 2. RecordWriter (if we need both of them)
-  //or else we will get into a deadlock
-  //For Ex: idle close thread calls this method
+  //or else we will get into a deadlock, this method never takes the ActiveRecordWriters lock.
+  //For Ex: idle close thread calls this method holding the ActiveRecordWriters lock
   //and the hdfsTarget (in the pipeline runnable thread), calls flushAll
-  public synchronized void release(RecordWriter writer, boolean roll) throws StageException, IOException {
+  public void release(RecordWriter writer, boolean roll) throws StageException, IOException {
     writer.closeLock();
     try {
       if (roll || writer.isIdleClosed() || manager.isOverThresholds(writer)) {
         if (IS_TRACE_ENABLED) {
           LOG.trace("Release '{}'", writer.getPath());
         }
-        writers.remove(writer.getPath().toString());
+        writers.remove(writer.getPath().toString(), writer);
         manager.commitWriter(writer);
       }
     } finally {
       writer.closeUnlock();
     }
-    purge();
+    if (!purgeDeferred) {
+      purge();
+    }
+  }
+
+  /**
+   * While a batch is written by several threads expired writers are not purged on release, as a writer could be
+   * committed while another thread writes to it. The caller purges them once all the threads are done.
+   */
+  public void setPurgeDeferred(boolean purgeDeferred) {
+    this.purgeDeferred = purgeDeferred;
   }
 
   public synchronized void flushAll() throws StageException {
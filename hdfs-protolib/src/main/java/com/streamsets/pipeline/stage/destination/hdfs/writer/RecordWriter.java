@@ -319,8 +319,8 @@ public class RecordWriter {
       try {
         if (writers != null) {
           //We are going to call close(true) which takes a lock on writers
-          //and then going to call writers.release() -> which will take a lock on
-          //ActiveRecordWriters
+          //and then going to call writers.release(), the lock on ActiveRecordWriters
+          //keeps it from running concurrently with flushAll() and closeAll()
           //The ordering for locking both ActiveRecordWriters and RecordWriter is
           //1.ActiveRecordWriters 2. RecordWriter
           synchronized (writers) {
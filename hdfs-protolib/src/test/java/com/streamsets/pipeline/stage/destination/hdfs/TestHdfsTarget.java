@@ -487,6 +487,55 @@ public class TestHdfsTarget {
   /**
    * Records without expected header needs to be propagated to error output.
    */
+  @Test
+  public void testConcurrentWrites() throws Exception {
+    DataGeneratorFormatConfig dataGeneratorFormatConfig = new DataGeneratorFormatConfig();
+    dataGeneratorFormatConfig.jsonMode = JsonMode.MULTIPLE_OBJECTS;
+
+    HdfsTarget hdfsTarget = HdfsTargetUtil.newBuilder()
+      .dataGeneratorFormatConfig(dataGeneratorFormatConfig)
+      .dirPathTemplate(getTestDir() + "/hdfs/${record:value('/a')}")
+      .dataForamt(DataFormat.JSON)
+      .maxRecordsPerFile(5)
+      .maxConcurrentWrites(4)
+      .build();
+
+    TargetRunner runner = new TargetRunner.Builder(HdfsDTarget.class, hdfsTarget)
+        .setOnRecordError(OnRecordError.STOP_PIPELINE)
+        .build();
+    runner.runInit();
+
+    // 10 partitions, 20 records each
+    List<Record> records = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      Record record = RecordCreator.create();
+      Map<String, Field> map = new LinkedHashMap<>();
+      map.put("a", Field.create("p" + (i % 10)));
+      map.put("i", Field.create(i));
+      record.set(Field.create(map));
+      records.add(record);
+    }
+
+    runner.runWrite(records);
+    runner.runDestroy();
+
+    Assert.assertTrue(runner.getErrorRecords().isEmpty());
+    // every file rolled after 5 records
+    Assert.assertEquals(40, runner.getEventRecords().size());
+    for (int partition = 0; partition < 10; partition++) {
+      File[] files = new File(getTestDir() + "/hdfs/p" + partition).listFiles();
+      Assert.assertNotNull(files);
+      Assert.assertEquals(4, files.length);
+      for (File file : files) {
+        List<String> lines = FileUtils.readLines(file, Charset.defaultCharset());
+        Assert.assertEquals(5, lines.size());
+        for (String line : lines) {
+          Assert.assertTrue(line.startsWith("{\"a\":\"p" + partition + "\""));
+        }
+      }
+    }
+  }
+
   @Test
   public void testDirectoryTemplateInHeaderMissingHeader() throws Exception {
     DataGeneratorFormatConfig dataGeneratorFormatConfig = new DataGeneratorFormatConfig();
@@ -210,4 +210,16 @@ public class TestHdfsTargetUpgrader {
     Assert.assertTrue(configValues.containsKey("hdfsTargetConfigBean.rollHeaderName"));
     Assert.assertEquals("roll", configValues.get("hdfsTargetConfigBean.rollHeaderName"));
   }
+
+  @Test
+  public void testUpgradeV4ToV5() throws StageException {
+    List<Config> configs = new ArrayList<>();
+
+    HdfsTargetUpgrader hdfsTargetUpgrader = new HdfsTargetUpgrader();
+    hdfsTargetUpgrader.upgrade("a", "b", "c", 4, 5, configs);
+
+    Assert.assertEquals(1, configs.size());
+    Assert.assertEquals("hdfsTargetConfigBean.maxConcurrentWrites", configs.get(0).getName());
+    Assert.assertEquals(1, configs.get(0).getValue());
+  }
 }
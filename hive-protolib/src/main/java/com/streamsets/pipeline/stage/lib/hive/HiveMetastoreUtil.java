@@ -567,7 +567,7 @@ public final class HiveMetastoreUtil {
   /**
    *  Evaluate precision or scale in context of record and given field path.
    */
-  private static int resolveScaleOrPrecisionExpression(
+  public static int resolveScaleOrPrecisionExpression(
       String type,
       ELEval elEval,
       ELVars variables,
@@ -593,7 +593,7 @@ public final class HiveMetastoreUtil {
     }
   }
 
-  private static void validateScaleAndPrecision(String fieldName, Field field, int precision, int scale) throws HiveStageCheckedException{
+  public static void validateScaleAndPrecision(String fieldName, Field field, int precision, int scale) throws HiveStageCheckedException{
     // Validate calculated precision/scale
     if (precision > 38) {
       throw new HiveStageCheckedException(com.streamsets.pipeline.stage.processor.hive.Errors.HIVE_METADATA_07, precision, "precision", fieldName, 1);
@@ -653,31 +653,13 @@ public final class HiveMetastoreUtil {
       if (StringUtils.isEmpty(pair.getKey())) {
         throw new HiveStageCheckedException(Errors.HIVE_01, "Field name is empty");
       }
-      Field currField = pair.getValue();
-      switch(currField.getType()) {
-        case SHORT:
-          currField = Field.create(Field.Type.INTEGER, currField.getValue());
-          break;
-        case CHAR:
-          currField = Field.create(currField.getValueAsString());
-          break;
-        case DATETIME:
-          currField = Field.create(Field.Type.STRING, currField.getValue() == null ? null : datetimeFormat.format(currField.getValueAsDate()));
-          break;
-        case TIME:
-          currField = Field.create(Field.Type.STRING, currField.getValue() == null ? null : timeFormat.format(currField.getValueAsTime()));
-          break;
-        default:
-          break;
-      }
+      Field currField = convertFieldToSupportedType(pair.getValue());
 
       // Set current field in the context - used by subsequent ELs (decimal resolution, comments, ...)
       FieldPathEL.setFieldInContext(variables, pair.getKey());
 
       String comment = commentEL.eval(variables, commentExpression, String.class);
-      if(!COMMENT_PATTERN.matcher(comment).matches()) {
-        throw new HiveStageCheckedException(com.streamsets.pipeline.stage.processor.hive.Errors.HIVE_METADATA_11, pair.getKey(), comment);
-      }
+      validateComment(pair.getKey(), comment);
 
       // Update the Field type and value in Record
       pair.setValue(currField);
@@ -701,6 +683,34 @@ public final class HiveMetastoreUtil {
     return columns;
   }
 
+  /**
+   * Convert the given field to the type Avro supports for it. Char, short, datetime and time fields are converted,
+   * any other field is returned as is.
+   */
+  public static Field convertFieldToSupportedType(Field field) {
+    switch(field.getType()) {
+      case SHORT:
+        return Field.create(Field.Type.INTEGER, field.getValue());
+      case CHAR:
+        return Field.create(field.getValueAsString());
+      case DATETIME:
+        return Field.create(Field.Type.STRING, field.getValue() == null ? null : datetimeFormat.format(field.getValueAsDate()));
+      case TIME:
+        return Field.create(Field.Type.STRING, field.getValue() == null ? null : timeFormat.format(field.getValueAsTime()));
+      default:
+        return field;
+    }
+  }
+
+  /**
+   * Validate that the resolved column comment can be used in Hive DDL.
+   */
+  public static void validateComment(String fieldName, String comment) throws HiveStageCheckedException {
+    if(!COMMENT_PATTERN.matcher(comment).matches()) {
+      throw new HiveStageCheckedException(com.streamsets.pipeline.stage.processor.hive.Errors.HIVE_METADATA_11, fieldName, comment);
+    }
+  }
+
   /**
    * Checks if partition value contains unsupported character.
    * @param value String to check
@@ -118,6 +118,9 @@ public class HiveMetadataProcessor extends RecordProcessor {
   // The HMS cache is holding all info about tables
   private HMSCache cache;
 
+  // Structures of already seen record shapes
+  private RecordStructureCache structureCache;
+
   private ErrorRecordHandler errorRecordHandler;
   private HiveMetadataProcessorELEvals elEvals = new HiveMetadataProcessorELEvals();
   private HiveQueryExecutor queryExecutor;
@@ -234,6 +237,14 @@ public class HiveMetadataProcessor extends RecordProcessor {
     if (issues.isEmpty()) {
       errorRecordHandler = new DefaultErrorRecordHandler(getContext());
       elEvals.init(getContext());
+      structureCache = new RecordStructureCache(
+          elEvals.scaleEL,
+          elEvals.precisionEL,
+          elEvals.commentEL,
+          decimalDefaultsConfig.scaleExpression,
+          decimalDefaultsConfig.precisionExpression,
+          commentExpression
+      );
       try {
         elEvals.timeDriverElEval.eval(getContext().createELVars(), timeDriver, Date.class);
       } catch (ELEvalException ex) {
@@ -415,21 +426,12 @@ public class HiveMetadataProcessor extends RecordProcessor {
         throw new HiveStageCheckedException(Errors.HIVE_METADATA_02, targetPath);
       }
 
-        // Obtain the record structure from current record
-      LinkedHashMap<String, HiveTypeInfo> recordStructure = HiveMetastoreUtil.convertRecordToHMSType(
-          record,
-          elEvals.scaleEL,
-          elEvals.precisionEL,
-          elEvals.commentEL,
-          decimalDefaultsConfig.scaleExpression,
-          decimalDefaultsConfig.precisionExpression,
-          commentExpression,
-          variables
-      );
-
-      if (recordStructure.isEmpty()) {  // If record has no data to process, No-op
+      // Obtain the record structure from current record, it's only inferred for record shapes not seen before
+      RecordStructureCache.Structure structure = structureCache.get(qualifiedName, record, variables);
+      if (structure.isEmpty()) {  // If record has no data to process, No-op
         return;
       }
+      LinkedHashMap<String, HiveTypeInfo> recordStructure = structure.getColumns();
 
       TBLPropertiesInfoCacheSupport.TBLPropertiesInfo tblPropertiesInfo = HiveMetastoreUtil.getCacheInfo(
           cache,
@@ -500,7 +502,10 @@ public class HiveMetadataProcessor extends RecordProcessor {
 
       // Build final structure of how the table should look like
       LinkedHashMap<String, HiveTypeInfo> finalStructure;
-      if(tableCache != null) {
+      if (tableCache != null && schemaCache != null && structure.isCheckedAgainst(schemaCache.getSchema())) {
+        // Records of this shape were already compared with the current table schema and had no new columns
+        finalStructure = tableCache.getColumnTypeInfo();
+      } else if(tableCache != null) {
         // Table already exists in Hive - so it's columns will be preserved and in their original order
         finalStructure = new LinkedHashMap<>();
         finalStructure.putAll(tableCache.getColumnTypeInfo());
@@ -538,6 +543,7 @@ public class HiveMetadataProcessor extends RecordProcessor {
           updateAvroCache(schemaCache, avroSchema, qualifiedName);
         } else  // No schema change, table already exists in Hive, and we have avro schema in cache.
           avroSchema = schemaCache.getSchema();
+        structure.setCheckedAgainst(avroSchema);
       }
 
       if (partitioned) {
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.hive;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.el.ELEval;
+import com.streamsets.pipeline.api.el.ELEvalException;
+import com.streamsets.pipeline.api.el.ELVars;
+import com.streamsets.pipeline.stage.lib.hive.FieldPathEL;
+import com.streamsets.pipeline.stage.lib.hive.HiveMetastoreUtil;
+import com.streamsets.pipeline.stage.lib.hive.exceptions.HiveStageCheckedException;
+import com.streamsets.pipeline.stage.lib.hive.typesupport.HiveTypeInfo;
+import org.apache.commons.lang.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the Hive structure of incoming records, keyed by table and by a fingerprint of the record shape.
+ * <p/>
+ * The fingerprint (name and type of all root fields, resolved precision and scale of decimal fields and resolved
+ * comments if the comment expression is not a constant) is built in the same walk that converts field values to the
+ * types supported by Avro. Records with an already known fingerprint reuse the structure computed for the first
+ * record of that shape instead of inferring it again. The cache also remembers the table schema the structure was
+ * last checked against, so that the schema diff can be skipped until the table schema changes.
+ * <p/>
+ * Instances are not thread safe, each processor instance has its own.
+ */
+class RecordStructureCache {
+
+  static final int MAX_CACHED_STRUCTURES = 1000;
+
+  private final ELEval scaleEL;
+  private final ELEval precisionEL;
+  private final ELEval commentEL;
+  private final String scaleExpression;
+  private final String precisionExpression;
+  private final String commentExpression;
+  private final boolean constantComment;
+  private final Cache<String, Structure> structures;
+  private final StringBuilder fingerprint = new StringBuilder();
+
+  RecordStructureCache(
+      ELEval scaleEL,
+      ELEval precisionEL,
+      ELEval commentEL,
+      String scaleExpression,
+      String precisionExpression,
+      String commentExpression
+  ) {
+    this.scaleEL = scaleEL;
+    this.precisionEL = precisionEL;
+    this.commentEL = commentEL;
+    this.scaleExpression = scaleExpression;
+    this.precisionExpression = precisionExpression;
+    this.commentExpression = commentExpression;
+    // Without any EL the comment is the same for all fields of all records
+    this.constantComment = commentExpression == null || !commentExpression.contains("${");
+    this.structures = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_STRUCTURES).build();
+  }
+
+  /**
+   * Converts the record fields to the types supported by Avro and returns the structure of the record for the
+   * given table.
+   */
+  Structure get(String qualifiedName, Record record, ELVars variables)
+      throws HiveStageCheckedException, ELEvalException {
+    if(!record.get().getType().isOneOf(Field.Type.MAP, Field.Type.LIST_MAP)) {
+      throw new HiveStageCheckedException(
+          com.streamsets.pipeline.stage.lib.hive.Errors.HIVE_33,
+          record.getHeader().getSourceId(),
+          record.get().getType().toString()
+      );
+    }
+
+    fingerprint.setLength(0);
+    fingerprint.append(qualifiedName);
+    for (Map.Entry<String, Field> entry : record.get().getValueAsMap().entrySet()) {
+      String name = entry.getKey();
+      if (StringUtils.isEmpty(name)) {
+        throw new HiveStageCheckedException(
+            com.streamsets.pipeline.stage.lib.hive.Errors.HIVE_01,
+            "Field name is empty"
+        );
+      }
+      Field field = HiveMetastoreUtil.convertFieldToSupportedType(entry.getValue());
+      // Field names can contain any character, their length keeps the fingerprint unambiguous
+      fingerprint.append('|').append(name.length()).append(':').append(name);
+      fingerprint.append(':').append(field.getType().ordinal());
+
+      if (!constantComment || field.getType() == Field.Type.DECIMAL) {
+        FieldPathEL.setFieldInContext(variables, name);
+      }
+      if (!constantComment) {
+        String comment = commentEL.eval(variables, commentExpression, String.class);
+        HiveMetastoreUtil.validateComment(name, comment);
+        fingerprint.append(':').append(comment.length()).append(':').append(comment);
+      }
+      if (field.getType() == Field.Type.DECIMAL) {
+        int precision = resolvePrecision(variables, name);
+        int scale = resolveScale(variables, name);
+        HiveMetastoreUtil.validateScaleAndPrecision(name, field, precision, scale);
+        fingerprint.append('(').append(precision).append(',').append(scale).append(')');
+        // We need to make sure that all java objects have the same scale
+        BigDecimal value = field.getValueAsDecimal();
+        if (value != null) {
+          field = Field.create(value.setScale(scale));
+        }
+      }
+
+      if (field != entry.getValue()) {
+        entry.setValue(field);
+      }
+    }
+
+    String key = fingerprint.toString();
+    Structure structure = structures.getIfPresent(key);
+    if (structure == null) {
+      structure = new Structure(inferStructure(record, variables));
+      structures.put(key, structure);
+    }
+    return structure;
+  }
+
+  /**
+   * Type inference for records of an unknown shape, fields have already been converted and validated so the
+   * conversion done again by {@link HiveMetastoreUtil#convertRecordToHMSType} leaves the record unchanged.
+   */
+  private LinkedHashMap<String, HiveTypeInfo> inferStructure(Record record, ELVars variables)
+      throws HiveStageCheckedException, ELEvalException {
+    return HiveMetastoreUtil.convertRecordToHMSType(
+        record,
+        scaleEL,
+        precisionEL,
+        commentEL,
+        scaleExpression,
+        precisionExpression,
+        commentExpression,
+        variables
+    );
+  }
+
+  private int resolvePrecision(ELVars variables, String fieldName) throws HiveStageCheckedException, ELEvalException {
+    return HiveMetastoreUtil.resolveScaleOrPrecisionExpression(
+        "precision",
+        precisionEL,
+        variables,
+        precisionExpression,
+        fieldName
+    );
+  }
+
+  private int resolveScale(ELVars variables, String fieldName) throws HiveStageCheckedException, ELEvalException {
+    return HiveMetastoreUtil.resolveScaleOrPrecisionExpression(
+        "scale",
+        scaleEL,
+        variables,
+        scaleExpression,
+        fieldName
+    );
+  }
+
+  long size() {
+    return structures.size();
+  }
+
+  /**
+   * Hive structure of records of the same shape.
+   */
+  static class Structure {
+    private final LinkedHashMap<String, HiveTypeInfo> columns;
+    private String checkedSchema;
+
+    private Structure(LinkedHashMap<String, HiveTypeInfo> columns) {
+      this.columns = columns;
+    }
+
+    /**
+     * Returns a copy of the structure, callers are free to modify it or to keep it in the HMS cache.
+     */
+    LinkedHashMap<String, HiveTypeInfo> getColumns() {
+      return new LinkedHashMap<>(columns);
+    }
+
+    boolean isEmpty() {
+      return columns.isEmpty();
+    }
+
+    /**
+     * Returns true if the structure was already checked against the given Avro schema of the table without
+     * finding any new column.
+     */
+    boolean isCheckedAgainst(String avroSchema) {
+      return checkedSchema != null && checkedSchema.equals(avroSchema);
+    }
+
+    void setCheckedAgainst(String avroSchema) {
+      this.checkedSchema = avroSchema;
+    }
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.hive;
+
+import com.google.common.collect.ImmutableMap;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.el.ELEval;
+import com.streamsets.pipeline.api.el.ELVars;
+import com.streamsets.pipeline.lib.el.RecordEL;
+import com.streamsets.pipeline.sdk.ElUtil;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import com.streamsets.pipeline.stage.lib.hive.FieldPathEL;
+import com.streamsets.pipeline.stage.lib.hive.typesupport.DecimalHiveTypeSupport;
+import com.streamsets.pipeline.stage.lib.hive.typesupport.HiveType;
+import com.streamsets.pipeline.stage.lib.hive.typesupport.HiveTypeInfo;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TestRecordStructureCache {
+
+  private static final String TABLE = "`default`.`tbl`";
+
+  private ELVars variables;
+  private ELEval eval;
+
+  @Before
+  public void setUpEls() {
+    this.variables = ElUtil.createELVars();
+    this.eval = ElUtil.createElEval("not-important", FieldPathEL.class, RecordEL.class);
+  }
+
+  private RecordStructureCache createCache(String scaleExpression, String commentExpression) {
+    return new RecordStructureCache(eval, eval, eval, scaleExpression, "10", commentExpression);
+  }
+
+  private Record createRecord(Map<String, Field> fields) {
+    Record record = RecordCreator.create();
+    record.set(Field.createListMap(new LinkedHashMap<>(fields)));
+    RecordEL.setRecordInContext(variables, record);
+    return record;
+  }
+
+  @Test
+  public void testSameShapeReusesStructure() throws Exception {
+    RecordStructureCache cache = createCache("2", "");
+
+    Record first = createRecord(ImmutableMap.of("id", Field.create(1), "Name", Field.create("a")));
+    RecordStructureCache.Structure structure = cache.get(TABLE, first, variables);
+    LinkedHashMap<String, HiveTypeInfo> columns = structure.getColumns();
+    Assert.assertEquals(2, columns.size());
+    Assert.assertEquals(HiveType.INT, columns.get("id").getHiveType());
+    Assert.assertEquals(HiveType.STRING, columns.get("name").getHiveType());
+
+    Record second = createRecord(ImmutableMap.of("id", Field.create(2), "Name", Field.create("b")));
+    Assert.assertSame(structure, cache.get(TABLE, second, variables));
+    Assert.assertEquals(1, cache.size());
+
+    // Callers get their own copy of the columns
+    columns.clear();
+    Assert.assertEquals(2, structure.getColumns().size());
+
+    // Different types, names or tables are different shapes
+    Assert.assertNotSame(
+        structure,
+        cache.get(TABLE, createRecord(ImmutableMap.of("id", Field.create(2L), "Name", Field.create("b"))), variables)
+    );
+    Assert.assertNotSame(
+        structure,
+        cache.get(TABLE, createRecord(ImmutableMap.of("id", Field.create(2), "name", Field.create("b"))), variables)
+    );
+    Assert.assertNotSame(structure, cache.get("`default`.`other`", second, variables));
+    Assert.assertEquals(4, cache.size());
+  }
+
+  @Test
+  public void testFieldsConvertedOnCacheHit() throws Exception {
+    RecordStructureCache cache = createCache("2", "");
+
+    Record first = createRecord(ImmutableMap.of(
+        "s", Field.create((short) 1),
+        "d", Field.create(new BigDecimal("1.5"))
+    ));
+    cache.get(TABLE, first, variables);
+
+    Record record = createRecord(ImmutableMap.of(
+        "s", Field.create((short) 2),
+        "d", Field.create(new BigDecimal("2.5"))
+    ));
+    RecordStructureCache.Structure structure = cache.get(TABLE, record, variables);
+    Assert.assertEquals(1, cache.size());
+
+    Assert.assertEquals(Field.Type.INTEGER, record.get("/s").getType());
+    Assert.assertEquals(2, record.get("/s").getValueAsInteger());
+    Assert.assertEquals(new BigDecimal("2.50"), record.get("/d").getValueAsDecimal());
+
+    DecimalHiveTypeSupport.DecimalTypeInfo decimal =
+        (DecimalHiveTypeSupport.DecimalTypeInfo) structure.getColumns().get("d");
+    Assert.assertEquals(10, decimal.getPrecision());
+    Assert.assertEquals(2, decimal.getScale());
+  }
+
+  @Test
+  public void testRecordDependentExpressions() throws Exception {
+    RecordStructureCache cache = createCache("${record:attribute('scale')}", "${record:attribute('comment')}");
+
+    Record first = createRecord(ImmutableMap.of("d", Field.create(new BigDecimal("1.5"))));
+    first.getHeader().setAttribute("scale", "1");
+    first.getHeader().setAttribute("comment", "first");
+    RecordStructureCache.Structure firstStructure = cache.get(TABLE, first, variables);
+
+    Record second = createRecord(ImmutableMap.of("d", Field.create(new BigDecimal("1.5"))));
+    second.getHeader().setAttribute("scale", "3");
+    second.getHeader().setAttribute("comment", "first");
+    RecordStructureCache.Structure secondStructure = cache.get(TABLE, second, variables);
+    Assert.assertNotSame(firstStructure, secondStructure);
+    Assert.assertEquals(3, ((DecimalHiveTypeSupport.DecimalTypeInfo) secondStructure.getColumns().get("d")).getScale());
+
+    Record third = createRecord(ImmutableMap.of("d", Field.create(new BigDecimal("1.5"))));
+    third.getHeader().setAttribute("scale", "3");
+    third.getHeader().setAttribute("comment", "third");
+    RecordStructureCache.Structure thirdStructure = cache.get(TABLE, third, variables);
+    Assert.assertNotSame(secondStructure, thirdStructure);
+    Assert.assertEquals("third", thirdStructure.getColumns().get("d").getComment());
+    Assert.assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void testCheckedAgainstSchema() throws Exception {
+    RecordStructureCache cache = createCache("2", "");
+    RecordStructureCache.Structure structure = cache.get(
+        TABLE,
+        createRecord(ImmutableMap.of("id", Field.create(1))),
+        variables
+    );
+    Assert.assertFalse(structure.isCheckedAgainst("schema1"));
+    structure.setCheckedAgainst("schema1");
+    Assert.assertTrue(structure.isCheckedAgainst("schema1"));
+    Assert.assertFalse(structure.isCheckedAgainst("schema2"));
+  }
+
+}
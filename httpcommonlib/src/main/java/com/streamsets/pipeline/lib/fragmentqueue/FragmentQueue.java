@@ -28,4 +28,10 @@ public interface FragmentQueue extends FragmentWriter {
 
   List<byte[]> poll(int maxFragments, long waitTimeMillis) throws IOException, InterruptedException;
 
+  /**
+   * Acknowledges the fragments returned by the previous polls, queues that consume fragments on poll do nothing.
+   */
+  default void commit() throws IOException {
+  }
+
   }
@@ -31,6 +31,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class MemoryBufferFragmentQueue implements FragmentQueue {
   private static final Logger LOG = LoggerFactory.getLogger(MemoryBufferFragmentQueue.class);
 
+  // max fragments moved from memory to the underlying queue with a single write
+  private static final int MAX_WRITE_BATCH = 100;
+
   private final int maxMemQueueFragments;
   private final BlockingQueue<byte[]> dataQueue;
   private final FragmentQueue fragmentQueue;
@@ -64,14 +67,15 @@ public class MemoryBufferFragmentQueue implements FragmentQueue {
     return new Runnable() {
       @Override
       public void run() {
-        List<byte[]> list = new ArrayList<>(1);
-        list.add(null);
         try {
           while (running) {
             try {
               byte[] fragment = dataQueue.poll(100, TimeUnit.MILLISECONDS);
               if (fragment != null) {
-                list.set(0, fragment);
+                // move everything already buffered with a single write
+                List<byte[]> list = new ArrayList<>();
+                list.add(fragment);
+                dataQueue.drainTo(list, MAX_WRITE_BATCH - 1);
                 fragmentQueue.write(list);
               }
             } catch (InterruptedException ex) {
@@ -94,7 +98,24 @@ public class MemoryBufferFragmentQueue implements FragmentQueue {
   @Override
   public void destroy() {
     running = false;
-    writerThread.interrupt();
+    if (writerThread != null) {
+      // not interrupted, an interrupt while writing to disk would close the underlying file channels
+      try {
+        writerThread.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    // hand over the fragments still in memory, if the underlying queue is persistent they are not lost
+    List<byte[]> pending = new ArrayList<>();
+    dataQueue.drainTo(pending);
+    if (!pending.isEmpty()) {
+      try {
+        fragmentQueue.write(pending);
+      } catch (IOException ex) {
+        LOG.warn("Lost '{}' fragments on destroy: {}", pending.size(), ex.toString(), ex);
+      }
+    }
     fragmentQueue.destroy();
   }
 
@@ -131,4 +152,9 @@ public class MemoryBufferFragmentQueue implements FragmentQueue {
     return fragmentQueue.poll(maxFragments, waitTimeMillis);
   }
 
+  @Override
+  public void commit() throws IOException {
+    fragmentQueue.commit();
+  }
+
 }
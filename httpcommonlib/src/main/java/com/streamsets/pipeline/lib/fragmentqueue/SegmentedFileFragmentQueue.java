@@ -0,0 +1,538 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.lib.fragmentqueue;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.streamsets.pipeline.api.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Disk fragment queue made of memory mapped segment files.
+ * <p/>
+ * Fragments are appended to the current write segment as {@code <length + 1><crc32><bytes>} entries (a zero header
+ * marks the end of the entries), a new segment is started when the current one is full. Polled fragments are
+ * consumed only when they are committed: the read position is then stored in a small mapped meta file and the
+ * segments of all committed fragments are deleted. When the queue is persistent the fragments not yet committed are
+ * recovered on the next init, torn entries at the end of the last segment are detected by their checksum and
+ * dropped. Preview always uses a temporary queue, so it never consumes the fragments of a persistent queue.
+ * <p/>
+ * Segments are flushed to disk every {@code syncEveryFragments} fragments and/or every {@code syncIntervalMillis}
+ * milliseconds, with both set to zero the OS decides when the data is written.
+ */
+public class SegmentedFileFragmentQueue implements FragmentQueue {
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentedFileFragmentQueue.class);
+
+  static final String QUEUE_DIR = "fragment-queue";
+  static final String META_FILE = "queue.meta";
+  static final String SEGMENT_PREFIX = "segment-";
+  static final String SEGMENT_SUFFIX = ".dat";
+
+  static final String GAUGE_NAME = "Disk Queue";
+  static final String QUEUED_FRAGMENTS = "Queued Fragments";
+  static final String QUEUED_BYTES = "Queued Bytes";
+  static final String SEGMENTS = "Segments";
+  static final String LOST_FRAGMENTS = "Lost Fragments";
+
+  private static final int META_MAGIC = 0x53514d31; // SQM1
+  private static final int META_SIZE = 16;
+  private static final int ENTRY_HEADER_SIZE = 8;
+  private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+  private static final long MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private final long maxQueueSize;
+  private final boolean persistent;
+  private final int syncEveryFragments;
+  private final long syncIntervalMillis;
+
+  private File dataDir;
+  private File dir;
+  private boolean temporary;
+  private MappedByteBuffer meta;
+  private long segmentSize;
+
+  private Segment readSegment;
+  private Segment writeSegment;
+  private long committedSeq;
+  private long queuedFragments;
+  private long queuedBytes;
+  private int unsyncedFragments;
+  private long lastSync;
+
+  private AtomicInteger lostFragments;
+  private long totalLostFragments;
+  private Map<String, Object> gaugeMap;
+
+  /**
+   * @param maxQueueSizeMB max size of the fragments in the queue, fragments written when it is full are lost.
+   * @param persistent if the queue is kept in the data directory across restarts or it is a temporary queue.
+   *     It is always temporary in preview.
+   * @param syncEveryFragments number of fragments written between flushes to disk, zero to disable.
+   * @param syncIntervalMillis max time between flushes to disk of written fragments, zero to disable.
+   */
+  public SegmentedFileFragmentQueue(
+      long maxQueueSizeMB,
+      boolean persistent,
+      int syncEveryFragments,
+      long syncIntervalMillis
+  ) {
+    Preconditions.checkArgument(maxQueueSizeMB > 0, "maxQueueSizeMB must be greater than zero");
+    this.maxQueueSize = maxQueueSizeMB * 1000 * 1000;
+    this.persistent = persistent;
+    this.syncEveryFragments = syncEveryFragments;
+    this.syncIntervalMillis = syncIntervalMillis;
+  }
+
+  /**
+   * Sets the directory a persistent queue is kept in, under its own subdirectory. It must be set before
+   * {@link #init(Stage.Context)} for a persistent queue.
+   */
+  public void setDataDirectory(File dataDir) {
+    this.dataDir = dataDir;
+  }
+
+  @VisibleForTesting
+  File getDirectory() {
+    return dir;
+  }
+
+  @VisibleForTesting
+  synchronized long getQueuedFragments() {
+    return queuedFragments;
+  }
+
+  @VisibleForTesting
+  synchronized long getQueuedBytes() {
+    return queuedBytes;
+  }
+
+  @Override
+  public synchronized List<Stage.ConfigIssue> init(Stage.Context context) {
+    List<Stage.ConfigIssue> issues = new ArrayList<>();
+    lostFragments = new AtomicInteger(0);
+    segmentSize = Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, maxQueueSize / 8));
+    try {
+      dir = createDirectory(context);
+      open();
+      gaugeMap = context.createGauge(GAUGE_NAME).getValue();
+      updateGauge();
+      if (queuedFragments > 0) {
+        LOG.info("Recovered '{}' fragments, '{}' bytes, from queue '{}'", queuedFragments, queuedBytes, dir);
+      }
+    } catch (IOException ex) {
+      LOG.error("Could not open queue in '{}': {}", dir, ex.toString(), ex);
+      issues.add(context.createConfigIssue("", "", Errors.FRAGMENT_CACHE_WRITER_01, ex.toString()));
+    }
+    return issues;
+  }
+
+  private File createDirectory(Stage.Context context) throws IOException {
+    File queueDir;
+    temporary = !persistent || context.isPreview();
+    if (!temporary) {
+      if (dataDir == null) {
+        throw new IOException("The data directory of the persistent queue is not set");
+      }
+      queueDir = new File(
+          new File(new File(dataDir, QUEUE_DIR), context.getPipelineId()),
+          context.getStageInfo().getInstanceName()
+      );
+      if (!queueDir.isDirectory() && !queueDir.mkdirs()) {
+        throw new IOException("Could not create directory '" + queueDir + "'");
+      }
+    } else {
+      queueDir = Files.createTempDirectory("sdc-fragments").toFile();
+    }
+    return queueDir;
+  }
+
+  private void open() throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(new File(dir, META_FILE), "rw")) {
+      meta = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, META_SIZE);
+    }
+    List<Long> segments = listSegments();
+    long readSeq;
+    int readPosition;
+    if (meta.getInt(0) == META_MAGIC && !segments.isEmpty()) {
+      readSeq = meta.getLong(4);
+      readPosition = meta.getInt(12);
+    } else {
+      readSeq = segments.isEmpty() ? 0 : segments.get(0);
+      readPosition = 0;
+    }
+
+    // delete leftovers of segments already polled
+    for (Long seq : segments) {
+      if (seq < readSeq) {
+        deleteSegmentFile(seq);
+      }
+    }
+    long lastSeq = segments.isEmpty() ? readSeq : Math.max(readSeq, segments.get(segments.size() - 1));
+
+    writeSegment = Segment.open(segmentFile(lastSeq), lastSeq, segmentSize);
+    readSegment = (readSeq == lastSeq) ? writeSegment : Segment.open(segmentFile(readSeq), readSeq, segmentSize);
+    readSegment.readPosition = readPosition;
+    committedSeq = readSeq;
+
+    // recount what is pending and find the write position, entries after the first invalid one are dropped
+    queuedFragments = 0;
+    queuedBytes = 0;
+    for (long seq = readSeq; seq <= lastSeq; seq++) {
+      Segment segment = (seq == readSeq) ? readSegment : (seq == lastSeq) ? writeSegment : null;
+      boolean temporary = segment == null;
+      if (temporary) {
+        if (!segmentFile(seq).exists()) {
+          continue;
+        }
+        segment = Segment.open(segmentFile(seq), seq, segmentSize);
+      }
+      int position = (seq == readSeq) ? readPosition : 0;
+      int length;
+      while ((length = segment.validEntryLength(position)) >= 0) {
+        queuedFragments++;
+        queuedBytes += ENTRY_HEADER_SIZE + length;
+        position += ENTRY_HEADER_SIZE + length;
+      }
+      if (seq == lastSeq) {
+        writeSegment.writePosition = position;
+        writeSegment.terminate();
+      }
+    }
+    storeReadPosition();
+    sync();
+  }
+
+  /**
+   * Number of segment files on disk, segments of polled fragments are kept until they are committed.
+   */
+  private long getSegments() {
+    return writeSegment.seq - committedSeq + 1;
+  }
+
+  private List<Long> listSegments() {
+    List<Long> segments = new ArrayList<>();
+    String[] names = dir.list();
+    if (names != null) {
+      for (String name : names) {
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+          try {
+            segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+          } catch (NumberFormatException ex) {
+            LOG.warn("Ignoring unexpected file '{}' in queue '{}'", name, dir);
+          }
+        }
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private File segmentFile(long seq) {
+    return new File(dir, String.format("%s%019d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+  }
+
+  private void deleteSegmentFile(long seq) {
+    File file = segmentFile(seq);
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Could not delete queue segment '{}'", file);
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (dir != null) {
+      if (writeSegment != null) {
+        sync();
+      }
+      meta = null;
+      readSegment = null;
+      writeSegment = null;
+      if (temporary) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+          for (File file : files) {
+            if (!file.delete()) {
+              LOG.warn("Could not delete queue file '{}' on destroy", file);
+            }
+          }
+        }
+        if (!dir.delete()) {
+          LOG.warn("Could not delete queue directory '{}' on destroy", dir);
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getMaxFragmentSizeKB() {
+    return (int) (maxQueueSize / 1000);
+  }
+
+  @Override
+  public synchronized void write(List<byte[]> fragments) throws IOException {
+    int lost = 0;
+    for (byte[] fragment : fragments) {
+      long entrySize = ENTRY_HEADER_SIZE + fragment.length;
+      if (queuedBytes + entrySize > maxQueueSize) {
+        lost++;
+        continue;
+      }
+      if (writeSegment.remaining() < entrySize) {
+        rollWriteSegment(entrySize);
+      }
+      writeSegment.append(fragment);
+      queuedFragments++;
+      queuedBytes += entrySize;
+      unsyncedFragments++;
+    }
+    if (lost > 0) {
+      lostFragments.addAndGet(lost);
+      totalLostFragments += lost;
+      LOG.warn("Lost '{}' fragments, file queue full at '{}MB'", lost, maxQueueSize / 1000 / 1000);
+    }
+    if (isSyncDue()) {
+      sync();
+    }
+    updateGauge();
+  }
+
+  private void rollWriteSegment(long entrySize) throws IOException {
+    // the rest of the segment is left zeroed, readers move to the next segment when they find a zero length
+    if (syncEveryFragments > 0 || syncIntervalMillis > 0) {
+      writeSegment.force();
+    }
+    long seq = writeSegment.seq + 1;
+    Segment segment = Segment.open(segmentFile(seq), seq, Math.max(segmentSize, entrySize));
+    if (writeSegment != readSegment) {
+      writeSegment.release();
+    }
+    writeSegment = segment;
+  }
+
+  private boolean isSyncDue() {
+    if (unsyncedFragments == 0) {
+      return false;
+    }
+    return (syncEveryFragments > 0 && unsyncedFragments >= syncEveryFragments) ||
+        (syncIntervalMillis > 0 && System.currentTimeMillis() - lastSync >= syncIntervalMillis);
+  }
+
+  private void sync() {
+    writeSegment.force();
+    meta.force();
+    unsyncedFragments = 0;
+    lastSync = System.currentTimeMillis();
+  }
+
+  @Override
+  public int getLostFragmentsCountAndReset() {
+    return lostFragments.getAndSet(0);
+  }
+
+  @Override
+  public synchronized List<byte[]> poll(int maxFragments) throws IOException {
+    List<byte[]> fragments = null;
+    while (queuedFragments > 0 && (fragments == null || fragments.size() < maxFragments)) {
+      byte[] fragment = readSegment.read();
+      if (fragment == null) {
+        if (readSegment == writeSegment) {
+          throw new IOException("Queue '" + dir + "' is corrupted, could not read fragment from write segment");
+        }
+        // end of segment, its file is deleted once the polled fragments are committed
+        long seq = readSegment.seq;
+        readSegment.release();
+        readSegment = (writeSegment.seq == seq + 1)
+            ? writeSegment
+            : Segment.open(segmentFile(seq + 1), seq + 1, segmentSize);
+        continue;
+      }
+      if (fragments == null) {
+        fragments = new ArrayList<>();
+      }
+      fragments.add(fragment);
+      queuedFragments--;
+      queuedBytes -= ENTRY_HEADER_SIZE + fragment.length;
+    }
+    if (fragments != null) {
+      updateGauge();
+    }
+    return fragments;
+  }
+
+  /**
+   * Consumes the fragments polled so far, until then they are returned again by a queue recovered after a restart.
+   */
+  @Override
+  public synchronized void commit() throws IOException {
+    if (readSegment == null) {
+      return;
+    }
+    storeReadPosition();
+    if (syncEveryFragments > 0 || syncIntervalMillis > 0) {
+      meta.force();
+    }
+    // the read position no longer points into these segments
+    for (long seq = committedSeq; seq < readSegment.seq; seq++) {
+      deleteSegmentFile(seq);
+    }
+    committedSeq = readSegment.seq;
+    updateGauge();
+  }
+
+  @Override
+  public List<byte[]> poll(int maxFragments, long waitTimeMillis) throws IOException, InterruptedException {
+    long start = System.currentTimeMillis();
+    List<byte[]> fragments = poll(maxFragments);
+    while (fragments == null && System.currentTimeMillis() - start <= waitTimeMillis) {
+      Thread.sleep(50);
+      fragments = poll(maxFragments);
+    }
+    return fragments;
+  }
+
+  private void storeReadPosition() {
+    meta.putLong(4, readSegment.seq);
+    meta.putInt(12, readSegment.readPosition);
+    meta.putInt(0, META_MAGIC);
+  }
+
+  private void updateGauge() {
+    if (gaugeMap != null) {
+      gaugeMap.put(QUEUED_FRAGMENTS, queuedFragments);
+      gaugeMap.put(QUEUED_BYTES, queuedBytes);
+      gaugeMap.put(SEGMENTS, getSegments());
+      gaugeMap.put(LOST_FRAGMENTS, totalLostFragments);
+    }
+  }
+
+  /**
+   * A mapped segment file, entries are always followed by a zero header (unless the segment is full) so stale data
+   * after the last entry, left by a crash, is never read. Lengths are stored plus one, so that empty fragments are
+   * not mistaken for the end of the entries.
+   */
+  private static class Segment {
+    private final long seq;
+    private final File file;
+    private MappedByteBuffer buffer;
+    private int readPosition;
+    private int writePosition;
+
+    private Segment(long seq, File file, MappedByteBuffer buffer) {
+      this.seq = seq;
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    static Segment open(File file, long seq, long minSize) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        long size = Math.max(raf.length(), minSize);
+        Preconditions.checkState(size <= Integer.MAX_VALUE, "Segment too large: " + size);
+        // mapping beyond the end of the file grows it, the new space is zero filled
+        return new Segment(seq, file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+      }
+    }
+
+    int remaining() {
+      return buffer.capacity() - writePosition;
+    }
+
+    /**
+     * Returns the length of the entry at the given position if it is complete and valid, -1 otherwise.
+     */
+    int validEntryLength(int at) {
+      if (buffer.capacity() - at < ENTRY_HEADER_SIZE) {
+        return -1;
+      }
+      int length = buffer.getInt(at) - 1;
+      if (length < 0 || length > buffer.capacity() - at - ENTRY_HEADER_SIZE) {
+        return -1;
+      }
+      int crc = buffer.getInt(at + 4);
+      ByteBuffer data = buffer.duplicate();
+      data.position(at + ENTRY_HEADER_SIZE);
+      data.limit(at + ENTRY_HEADER_SIZE + length);
+      CRC32 crc32 = new CRC32();
+      crc32.update(data);
+      return ((int) crc32.getValue() == crc) ? length : -1;
+    }
+
+    void append(byte[] fragment) {
+      CRC32 crc32 = new CRC32();
+      crc32.update(fragment);
+      int at = writePosition;
+      writePosition += ENTRY_HEADER_SIZE + fragment.length;
+      terminate();
+      ByteBuffer data = buffer.duplicate();
+      data.position(at + ENTRY_HEADER_SIZE);
+      data.put(fragment);
+      buffer.putInt(at + 4, (int) crc32.getValue());
+      // the length goes last, until then the entry reads as the end of the written entries
+      buffer.putInt(at, fragment.length + 1);
+    }
+
+    /**
+     * Marks the write position as the end of the written entries.
+     */
+    void terminate() {
+      if (remaining() >= ENTRY_HEADER_SIZE) {
+        buffer.putInt(writePosition, 0);
+      }
+    }
+
+    /**
+     * Returns the fragment at the read position and moves past it, or NULL if there are no more entries.
+     */
+    byte[] read() {
+      int length = validEntryLength(readPosition);
+      if (length < 0) {
+        return null;
+      }
+      byte[] fragment = new byte[length];
+      ByteBuffer data = buffer.duplicate();
+      data.position(readPosition + ENTRY_HEADER_SIZE);
+      data.get(fragment);
+      readPosition += ENTRY_HEADER_SIZE + length;
+      return fragment;
+    }
+
+    void force() {
+      if (buffer != null) {
+        buffer.force();
+      }
+    }
+
+    void release() {
+      buffer = null;
+      LOG.debug("Released queue segment '{}'", file);
+    }
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.lib.fragmentqueue;
+
+import com.google.common.collect.ImmutableList;
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Stage;
+import com.streamsets.pipeline.sdk.ContextInfoCreator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestSegmentedFileFragmentQueue {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File dataDir;
+
+  @Before
+  public void setUp() throws Exception {
+    dataDir = tempFolder.newFolder();
+  }
+
+  private SegmentedFileFragmentQueue createQueue(long maxQueueSizeMB, boolean persistent, int syncEveryFragments) {
+    SegmentedFileFragmentQueue queue =
+        new SegmentedFileFragmentQueue(maxQueueSizeMB, persistent, syncEveryFragments, 0);
+    queue.setDataDirectory(dataDir);
+    return queue;
+  }
+
+  private Stage.Context createContext() {
+    return createContext(false);
+  }
+
+  private Stage.Context createContext(boolean preview) {
+    return ContextInfoCreator.createSourceContext("i", preview, OnRecordError.TO_ERROR, ImmutableList.of("a"));
+  }
+
+  private byte[] fill(byte[] array, byte value) {
+    Arrays.fill(array, value);
+    return array;
+  }
+
+  @Test
+  public void testWriteAndPollAcrossSegments() throws Exception {
+    SegmentedFileFragmentQueue queue = createQueue(10, false, 10);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    try {
+      Assert.assertNull(queue.poll(4));
+
+      // 3MB of fragments with 1.25MB segments
+      int written = 0;
+      int read = 0;
+      for (int i = 0; i < 30; i++) {
+        List<byte[]> fragments = new ArrayList<>();
+        for (int j = 0; j < 100; j++) {
+          fragments.add(fill(new byte[1000], (byte) (written++ % 100)));
+        }
+        queue.write(fragments);
+        for (byte[] fragment : queue.poll(37)) {
+          Assert.assertArrayEquals(fill(new byte[1000], (byte) (read++ % 100)), fragment);
+        }
+        queue.commit();
+      }
+      Assert.assertEquals(written - read, queue.getQueuedFragments());
+      Assert.assertEquals((written - read) * 1008, queue.getQueuedBytes());
+
+      List<byte[]> fragments;
+      while ((fragments = queue.poll(100)) != null) {
+        for (byte[] fragment : fragments) {
+          Assert.assertArrayEquals(fill(new byte[1000], (byte) (read++ % 100)), fragment);
+        }
+      }
+      Assert.assertEquals(written, read);
+      Assert.assertEquals(0, queue.getQueuedBytes());
+      Assert.assertEquals(0, queue.getLostFragmentsCountAndReset());
+
+      // only the meta file and the write segment are left once everything is committed
+      Assert.assertTrue(queue.getDirectory().list().length > 2);
+      queue.commit();
+      Assert.assertEquals(2, queue.getDirectory().list().length);
+    } finally {
+      queue.destroy();
+    }
+    Assert.assertFalse(queue.getDirectory().exists());
+  }
+
+  @Test
+  public void testQueueFull() throws Exception {
+    SegmentedFileFragmentQueue queue = createQueue(1, false, 0);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    try {
+      List<byte[]> fragments = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        fragments.add(fill(new byte[100 * 1000], (byte) i));
+      }
+      queue.write(fragments);
+      Assert.assertEquals(11, queue.getLostFragmentsCountAndReset());
+      Assert.assertEquals(0, queue.getLostFragmentsCountAndReset());
+      Assert.assertEquals(9, queue.poll(100).size());
+
+      // fragments larger than a segment get their own segment
+      queue.write(ImmutableList.of(fill(new byte[900 * 1000], (byte) 1)));
+      Assert.assertArrayEquals(fill(new byte[900 * 1000], (byte) 1), queue.poll(1).get(0));
+
+      long start = System.currentTimeMillis();
+      Assert.assertNull(queue.poll(1, 100));
+      Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+    } finally {
+      queue.destroy();
+    }
+  }
+
+  @Test
+  public void testRecoveryAfterRestart() throws Exception {
+    SegmentedFileFragmentQueue queue = createQueue(10, true, 1);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    queue.write(ImmutableList.of(fill(new byte[10], (byte) 1), fill(new byte[20], (byte) 2)));
+    queue.write(ImmutableList.of(fill(new byte[30], (byte) 3)));
+    Assert.assertEquals(1, queue.poll(1).size());
+    queue.commit();
+    queue.destroy();
+    Assert.assertTrue(queue.getDirectory().exists());
+
+    queue = createQueue(10, true, 1);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    try {
+      Assert.assertEquals(2, queue.getQueuedFragments());
+      queue.write(ImmutableList.of(fill(new byte[40], (byte) 4)));
+      List<byte[]> fragments = queue.poll(10);
+      Assert.assertEquals(3, fragments.size());
+      Assert.assertArrayEquals(fill(new byte[20], (byte) 2), fragments.get(0));
+      Assert.assertArrayEquals(fill(new byte[30], (byte) 3), fragments.get(1));
+      Assert.assertArrayEquals(fill(new byte[40], (byte) 4), fragments.get(2));
+    } finally {
+      queue.destroy();
+    }
+  }
+
+  @Test
+  public void testUncommittedFragmentsAreRecovered() throws Exception {
+    SegmentedFileFragmentQueue queue = createQueue(10, true, 1);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    queue.write(ImmutableList.of(fill(new byte[10], (byte) 1), fill(new byte[20], (byte) 2)));
+    Assert.assertEquals(1, queue.poll(1).size());
+    queue.commit();
+    // polled but the batch never completed
+    Assert.assertEquals(1, queue.poll(1).size());
+    queue.destroy();
+
+    queue = createQueue(10, true, 1);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    try {
+      Assert.assertEquals(1, queue.getQueuedFragments());
+      Assert.assertArrayEquals(fill(new byte[20], (byte) 2), queue.poll(10).get(0));
+    } finally {
+      queue.destroy();
+    }
+  }
+
+  @Test
+  public void testEmptyFragments() throws Exception {
+    SegmentedFileFragmentQueue queue = createQueue(10, true, 1);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    queue.write(ImmutableList.of(new byte[0], fill(new byte[10], (byte) 1), new byte[0]));
+    queue.destroy();
+
+    queue = createQueue(10, true, 1);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    try {
+      Assert.assertEquals(3, queue.getQueuedFragments());
+      List<byte[]> fragments = queue.poll(10);
+      Assert.assertEquals(3, fragments.size());
+      Assert.assertEquals(0, fragments.get(0).length);
+      Assert.assertArrayEquals(fill(new byte[10], (byte) 1), fragments.get(1));
+      Assert.assertEquals(0, fragments.get(2).length);
+      Assert.assertNull(queue.poll(10));
+    } finally {
+      queue.destroy();
+    }
+  }
+
+  @Test
+  public void testPreviewDoesNotConsumeQueue() throws Exception {
+    SegmentedFileFragmentQueue queue = createQueue(10, true, 1);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    queue.write(ImmutableList.of(fill(new byte[10], (byte) 1)));
+    queue.destroy();
+    File dir = queue.getDirectory();
+
+    SegmentedFileFragmentQueue preview = createQueue(10, true, 1);
+    Assert.assertTrue(preview.init(createContext(true)).isEmpty());
+    try {
+      Assert.assertNotEquals(dir, preview.getDirectory());
+      Assert.assertNull(preview.poll(10));
+      preview.commit();
+    } finally {
+      preview.destroy();
+    }
+    Assert.assertFalse(preview.getDirectory().exists());
+
+    queue = createQueue(10, true, 1);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    try {
+      Assert.assertEquals(1, queue.getQueuedFragments());
+    } finally {
+      queue.destroy();
+    }
+  }
+
+  @Test
+  public void testRecoveryDropsTornFragment() throws Exception {
+    SegmentedFileFragmentQueue queue = createQueue(10, true, 0);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    queue.write(ImmutableList.of(fill(new byte[10], (byte) 1), fill(new byte[20], (byte) 2)));
+    queue.destroy();
+
+    // corrupt the data of the last fragment, as if the process died before it was flushed
+    File segment = new File(queue.getDirectory(), SegmentedFileFragmentQueue.SEGMENT_PREFIX +
+        String.format("%019d", 0) + SegmentedFileFragmentQueue.SEGMENT_SUFFIX);
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.seek(8 + 10 + 8 + 5);
+      file.write(9);
+    }
+
+    queue = createQueue(10, true, 0);
+    Assert.assertTrue(queue.init(createContext()).isEmpty());
+    try {
+      Assert.assertEquals(1, queue.getQueuedFragments());
+      queue.write(ImmutableList.of(fill(new byte[30], (byte) 3)));
+      List<byte[]> fragments = queue.poll(10);
+      Assert.assertEquals(2, fragments.size());
+      Assert.assertArrayEquals(fill(new byte[10], (byte) 1), fragments.get(0));
+      Assert.assertArrayEquals(fill(new byte[30], (byte) 3), fragments.get(1));
+    } finally {
+      queue.destroy();
+    }
+  }
+
+  @Test
+  public void testPersistentWithoutDataDir() throws Exception {
+    SegmentedFileFragmentQueue queue = new SegmentedFileFragmentQueue(10, true, 0, 0);
+    Assert.assertEquals(1, queue.init(createContext()).size());
+    queue.destroy();
+  }
+}
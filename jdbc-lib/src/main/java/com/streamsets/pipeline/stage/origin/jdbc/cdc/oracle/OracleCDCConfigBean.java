@@ -197,6 +197,18 @@ public class OracleCDCConfigBean {
   )
   public int jdbcFetchSize;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      label = "Parse Threads",
+      description = "Number of threads used to parse the redo SQL statements. Records are still produced in order.",
+      displayPosition = 147,
+      group = "CDC",
+      min = 1,
+      defaultValue = "1"
+  )
+  public int parseThreads;
+
   @ConfigDef(
       required = true,
       type = ConfigDef.Type.BOOLEAN,
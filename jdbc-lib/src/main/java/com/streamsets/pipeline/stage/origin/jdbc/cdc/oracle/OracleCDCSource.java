@@ -36,17 +36,11 @@ import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
 import com.streamsets.pipeline.stage.origin.jdbc.cdc.ChangeTypeValues;
 import com.zaxxer.hikari.HikariDataSource;
 import net.jcip.annotations.GuardedBy;
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.ParserRuleContext;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import plsql.plsqlLexer;
-import plsql.plsqlParser;
 
 import java.io.File;
 import java.io.IOException;
@@ -74,6 +68,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -277,8 +272,8 @@ public class OracleCDCSource extends BaseSource {
   private PreparedStatement getTimestampsFromLogMnrContents;
   private PreparedStatement tsTzStatement;
 
-  private final ParseTreeWalker parseTreeWalker = new ParseTreeWalker();
-  private final SQLListener sqlListener = new SQLListener();
+  // parses redo statements in parallel when there is more than one parse thread
+  private ExecutorService parseExecutor;
 
   public OracleCDCSource(HikariPoolConfigBean hikariConf, OracleCDCConfigBean oracleCDCConfigBean) {
     this.configBean = oracleCDCConfigBean;
@@ -512,6 +507,8 @@ public class OracleCDCSource extends BaseSource {
     ResultSet resultSet = null;
     int countToCheck = 0;
     boolean recordsProduced = false;
+    // statements being parsed, their records are generated in redo order
+    RedoStatementParser redoParser = new RedoStatementParser(parseExecutor);
     incompleteBatch = true;
     try {
       if (!currentResultSet.isPresent()) {
@@ -569,9 +566,9 @@ public class OracleCDCSource extends BaseSource {
             LOG.debug("Commit SCN = " + commitSCN + ", SCN = " + scn + ", Operation = " + op + ", Redo SQL = " + queryString);
           }
 
-          RuleContextAndOpCode ctxOp = null;
+          int operationCode;
           try {
-            ctxOp = getRuleContextAndCode(queryString, op);
+            operationCode = getOperationCode(queryString, op);
           } catch (UnparseableSQLException ex) {
             advanceResultSet(resultSet);
             errorRecordHandler.onError(JDBC_43, queryString);
@@ -597,11 +594,7 @@ public class OracleCDCSource extends BaseSource {
             attributes.put(RS_ID, rsId);
             attributes.put(SSN, ssn.toString());
             if (!configBean.bufferLocally || getContext().isPreview()) {
-              Record record = generateRecord(attributes, ctxOp.operationCode, ctxOp.context);
-              if (record != null && record.getEscapedFieldPaths().size() > 0) {
-                recordsProduced = true;
-                batchMaker.addRecord(record);
-              }
+              redoParser.add(attributes, operationCode, queryString, createListener(table));
             } else {
               bufferedRecordsLock.lock();
               try {
@@ -613,7 +606,7 @@ public class OracleCDCSource extends BaseSource {
                     );
 
                 int nextSeq = records.isEmpty() ? 1 : records.tail().seq + 1;
-                RecordSequence node = new RecordSequence(attributes, queryString, nextSeq, ctxOp.operationCode, rsId, ssn);
+                RecordSequence node = new RecordSequence(attributes, queryString, nextSeq, operationCode, rsId, ssn);
                 records.add(node);
               } finally {
                 bufferedRecordsLock.unlock();
@@ -670,6 +663,8 @@ public class OracleCDCSource extends BaseSource {
               }
             }
           } else {
+            // records before the DDL are generated with the schema they were written with
+            recordsProduced |= addPendingRecords(redoParser, batchMaker);
             offset = new Offset(VERSION_STR, null, scn, 0);
             boolean sendSchema = false;
             // Commit/rollback in Preview will also end up here, so don't really do any of the following in preview
@@ -728,25 +723,35 @@ public class OracleCDCSource extends BaseSource {
         lastSCN = null;
       }
     }
+    recordsProduced |= addPendingRecords(redoParser, batchMaker);
     return recordsProduced;
   }
 
-  private Record generateRecord(Map<String, String> attributes, int operationCode, ParserRuleContext ruleContext)
+  /**
+   * Generates the records of the parsed statements, in order, and adds them to the batch.
+   *
+   * @return true if any record was added to the batch
+   */
+  private boolean addPendingRecords(RedoStatementParser redoParser, BatchMaker batchMaker)
+      throws StageException, ParseException {
+    return redoParser.flush((attributes, operationCode, columns) -> {
+      Record record = generateRecord(attributes, operationCode, columns);
+      if (record != null && record.getEscapedFieldPaths().size() > 0) {
+        batchMaker.addRecord(record);
+        return true;
+      }
+      return false;
+    });
+  }
+
+  private Record generateRecord(Map<String, String> attributes, int operationCode, Map<String, String> columns)
       throws ParseException, StageException {
     String operation;
     String table = attributes.get(TABLE);
     operation = OperationType.getLabelFromIntCode(operationCode);
     attributes.put(OperationType.SDC_OPERATION_TYPE, String.valueOf(operationCode));
     attributes.put(OPERATION, operation);
-    // Walk it and attach our sqlListener
-    sqlListener.reset();
-    if (configBean.allowNulls && !StringUtils.isEmpty(table)) {
-      sqlListener.setColumns(tableSchemas.get(table).keySet());
-    }
 
-    parseTreeWalker.walk(sqlListener, ruleContext);
-
-    Map<String, String> columns = sqlListener.getColumns();
     String rowId = columns.get(ROWID);
     columns.remove(ROWID);
     if (rowId != null) {
@@ -838,23 +843,16 @@ public class OracleCDCSource extends BaseSource {
       HashQueue<RecordSequence> records = bufferedRecords.getOrDefault(key, EMPTY_LINKED_HASHSET);
       records.completeInserts();
       int lastSeq = 0; //implies nothing read.
+      RedoStatementParser redoParser = new RedoStatementParser(parseExecutor);
       for (int i = 0; i < batchSize && !records.isEmpty(); i++) {
         RecordSequence r = records.remove();
-        try {
-          if (configBean.keepOriginalQuery) {
-            r.headers.put(QUERY_KEY, r.sqlString);
-          }
-          RuleContextAndOpCode ctxOp = getRuleContextAndCode(r.sqlString, r.opCode);
-          Record record = generateRecord(r.headers, ctxOp.operationCode, ctxOp.context);
-          if (record != null && record.getEscapedFieldPaths().size() > 0) {
-            batchMaker.addRecord(record);
-          }
-        } catch (UnparseableSQLException ex) {
-          errorRecordHandler.onError(JDBC_43, r.sqlString);
-          continue;
+        if (configBean.keepOriginalQuery) {
+          r.headers.put(QUERY_KEY, r.sqlString);
         }
+        redoParser.add(r.headers, r.opCode, r.sqlString, createListener(r.headers.get(TABLE)));
         lastSeq = r.seq;
       }
+      addPendingRecords(redoParser, batchMaker);
       if (records.isEmpty()) {
         currentCommitTxn = Optional.empty();
         bufferedRecords.get(key).close();
@@ -1252,12 +1250,11 @@ public class OracleCDCSource extends BaseSource {
       }
     }
 
-    if (configBean.baseConfigBean.caseSensitive) {
-      sqlListener.setCaseSensitive();
-    }
-
-    if (configBean.allowNulls) {
-      sqlListener.allowNulls();
+    if (configBean.parseThreads > 1) {
+      parseExecutor = Executors.newFixedThreadPool(
+          configBean.parseThreads,
+          new ThreadFactoryBuilder().setNameFormat("Oracle CDC Redo SQL Parser-%d").setDaemon(true).build()
+      );
     }
 
     if (configBean.txnWindow >= configBean.logminerWindow) {
@@ -1479,6 +1476,9 @@ public class OracleCDCSource extends BaseSource {
       dataSource.close();
     }
     discardExecutor.shutdown();
+    if (parseExecutor != null) {
+      parseExecutor.shutdownNow();
+    }
 
     bufferedRecordsLock.lock();
     try {
@@ -1617,8 +1617,9 @@ public class OracleCDCSource extends BaseSource {
           if (!configBean.discardExpired) {
             for (RecordSequence x : entry.getValue()) {
               try {
-                RuleContextAndOpCode ctxOp = getRuleContextAndCode(x.sqlString, x.opCode);
-                Record record = generateRecord(x.headers, ctxOp.operationCode, ctxOp.context);
+                Map<String, String> columns =
+                    RedoStatementParser.parseColumns(x.sqlString, x.opCode, createListener(x.headers.get(TABLE)));
+                Record record = generateRecord(x.headers, x.opCode, columns);
                 if (record != null) {
                   getContext().toError(record, JDBC_84, entry.getKey().txnId, entry.getKey().txnStartTime);
                 }
@@ -1662,34 +1663,44 @@ public class OracleCDCSource extends BaseSource {
     this.dataSource = dataSource;
   }
 
-  private RuleContextAndOpCode getRuleContextAndCode (String queryString, int op) throws UnparseableSQLException {
-    plsqlLexer lexer = new plsqlLexer(new ANTLRInputStream(queryString));
-    CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-    plsqlParser parser = new plsqlParser(tokenStream);
-    RuleContextAndOpCode contextAndOpCode = new RuleContextAndOpCode();
+  /**
+   * Returns the SDC operation code for the LogMiner operation of the redo statement, 0 for DDL, commit and rollback.
+   */
+  private int getOperationCode(String queryString, int op) throws UnparseableSQLException {
     switch (op) {
       case UPDATE_CODE:
       case SELECT_FOR_UPDATE_CODE:
-        contextAndOpCode.context = parser.update_statement();;
-        contextAndOpCode.operationCode = OperationType.UPDATE_CODE;
-        break;
+        return OperationType.UPDATE_CODE;
       case INSERT_CODE:
-        contextAndOpCode.context = parser.insert_statement();
-        contextAndOpCode.operationCode = OperationType.INSERT_CODE;
-        break;
+        return OperationType.INSERT_CODE;
       case DELETE_CODE:
-        contextAndOpCode.context = parser.delete_statement();
-        contextAndOpCode.operationCode = OperationType.DELETE_CODE;
-        break;
+        return OperationType.DELETE_CODE;
       case DDL_CODE:
       case COMMIT_CODE:
       case ROLLBACK_CODE:
-        break;
+        return 0;
       default:
         throw new UnparseableSQLException(queryString);
     }
-    return contextAndOpCode;
   }
+
+  /**
+   * Creates the listener of a statement. It runs in the producing thread, the only one accessing the table schemas.
+   */
+  private SQLListener createListener(String table) {
+    SQLListener listener = new SQLListener();
+    if (configBean.baseConfigBean.caseSensitive) {
+      listener.setCaseSensitive();
+    }
+    if (configBean.allowNulls) {
+      listener.allowNulls();
+      if (!StringUtils.isEmpty(table)) {
+        listener.setColumns(tableSchemas.get(table).keySet());
+      }
+    }
+    return listener;
+  }
+
   private HashQueue<RecordSequence> createTransactionBuffer(String txnId) {
     try {
       return configBean.bufferLocation == BufferingValues.IN_MEMORY ? new InMemoryHashQueue<>() :
@@ -1769,11 +1780,6 @@ public class OracleCDCSource extends BaseSource {
     }
   }
 
-  private class RuleContextAndOpCode {
-    ParserRuleContext context;
-    int operationCode;
-  }
-
   private class UnsupportedFieldTypeException extends RuntimeException {
 
     final String column;
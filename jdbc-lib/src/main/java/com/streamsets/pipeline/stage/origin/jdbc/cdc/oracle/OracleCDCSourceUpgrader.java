@@ -42,7 +42,13 @@ public class OracleCDCSourceUpgrader implements StageUpgrader {
 
         // fall through
       case 3:
-        return upgradeV3ToV4(configs);
+        configs = upgradeV3ToV4(configs);
+        if (toVersion == 4) {
+          return configs;
+        }
+        // fall through
+      case 4:
+        return upgradeV4ToV5(configs);
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
     }
@@ -68,4 +74,9 @@ public class OracleCDCSourceUpgrader implements StageUpgrader {
     configs.add(new Config("oracleCDCConfigBean.jdbcFetchSize", 1));
     return configs;
   }
+
+  private static List<Config> upgradeV4ToV5(List<Config> configs) {
+    configs.add(new Config("oracleCDCConfigBean.parseThreads", 1));
+    return configs;
+  }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.jdbc.cdc.oracle;
+
+import com.google.common.base.Throwables;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.impl.Utils;
+import com.streamsets.pipeline.lib.operation.OperationType;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import plsql.plsqlLexer;
+import plsql.plsqlParser;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the redo statements of a batch, on the given executor if any, and hands their columns out in the order the
+ * statements were added, whatever the order their parsing completes in.
+ */
+class RedoStatementParser {
+
+  private static final ParseTreeWalker PARSE_TREE_WALKER = new ParseTreeWalker();
+
+  private final ExecutorService executor;
+  private final List<PendingStatement> pendingStatements = new ArrayList<>();
+
+  /**
+   * @param executor executor parsing the statements, null to parse them right away in the calling thread
+   */
+  RedoStatementParser(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Starts parsing an INSERT, UPDATE or DELETE statement into the given listener.
+   */
+  void add(Map<String, String> attributes, int operationCode, String queryString, SQLListener listener) {
+    Future<Map<String, String>> columns;
+    if (executor == null) {
+      columns = CompletableFuture.completedFuture(parseColumns(queryString, operationCode, listener));
+    } else {
+      columns = executor.submit(() -> parseColumns(queryString, operationCode, listener));
+    }
+    pendingStatements.add(new PendingStatement(attributes, operationCode, columns));
+  }
+
+  /**
+   * Hands the statements added since the last flush to the handler in order, waiting for each one to be parsed.
+   *
+   * @return true if the handler returned true for any statement
+   */
+  boolean flush(StatementHandler handler) throws StageException, ParseException {
+    boolean handled = false;
+    for (PendingStatement statement : pendingStatements) {
+      handled |= handler.handle(statement.attributes, statement.operationCode, getColumns(statement.columns));
+    }
+    pendingStatements.clear();
+    return handled;
+  }
+
+  /**
+   * Returns the columns of the redo statement. Simple statements are parsed by {@link SimpleSQLParser}, others by
+   * walking the ANTLR parse tree.
+   */
+  static Map<String, String> parseColumns(String queryString, int operationCode, SQLListener listener) {
+    if (!SimpleSQLParser.parse(queryString, operationCode, listener)) {
+      plsqlLexer lexer = new plsqlLexer(new ANTLRInputStream(queryString));
+      CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+      plsqlParser parser = new plsqlParser(tokenStream);
+      ParserRuleContext context;
+      switch (operationCode) {
+        case OperationType.UPDATE_CODE:
+          context = parser.update_statement();
+          break;
+        case OperationType.INSERT_CODE:
+          context = parser.insert_statement();
+          break;
+        case OperationType.DELETE_CODE:
+          context = parser.delete_statement();
+          break;
+        default:
+          throw new IllegalStateException(Utils.format("Unexpected operation code {}", operationCode));
+      }
+      PARSE_TREE_WALKER.walk(listener, context);
+    }
+    return listener.getColumns();
+  }
+
+  private static Map<String, String> getColumns(Future<Map<String, String>> columns) {
+    try {
+      return columns.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(ex);
+    } catch (ExecutionException ex) {
+      throw Throwables.propagate(ex.getCause());
+    }
+  }
+
+  /**
+   * Receives the parsed statements.
+   */
+  interface StatementHandler {
+    /**
+     * @return true if the statement produced something, for instance a record added to the batch
+     */
+    boolean handle(Map<String, String> attributes, int operationCode, Map<String, String> columns)
+        throws StageException, ParseException;
+  }
+
+  private static class PendingStatement {
+    final Map<String, String> attributes;
+    final int operationCode;
+    final Future<Map<String, String>> columns;
+
+    PendingStatement(Map<String, String> attributes, int operationCode, Future<Map<String, String>> columns) {
+      this.attributes = attributes;
+      this.operationCode = operationCode;
+      this.columns = columns;
+    }
+  }
+}
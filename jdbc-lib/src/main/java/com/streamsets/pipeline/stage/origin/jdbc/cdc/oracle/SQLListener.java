@@ -42,7 +42,7 @@ public class SQLListener extends plsqlBaseListener {
   @Override
   public void enterUpdate_set_clause(plsqlParser.Update_set_clauseContext ctx) {
     for(plsqlParser.Column_based_update_set_clauseContext x : ctx.column_based_update_set_clause()) {
-      columns.put(formatName(x.column_name(0).getText().trim()), formatValue(x.expression().getText().trim()));
+      addColumn(x.column_name(0).getText(), x.expression().getText());
     }
   }
 
@@ -55,7 +55,7 @@ public class SQLListener extends plsqlBaseListener {
   public void enterValues_clause(plsqlParser.Values_clauseContext ctx) {
     List<plsqlParser.ExpressionContext> expressions = ctx.expression_list().expression();
     for (int i = 0; i < expressions.size(); i++) {
-      columns.put(formatName(columnNames.get(i).getText().trim()), formatValue(expressions.get(i).getText().trim()));
+      addColumn(columnNames.get(i).getText(), expressions.get(i).getText());
     }
   }
 
@@ -84,7 +84,7 @@ public class SQLListener extends plsqlBaseListener {
         if (level1 != null) {
           ParseTree keyNode = level1.getChild(0);
           if (keyNode != null) {
-            key = formatName(keyNode.getText());
+            key = keyNode.getText();
           }
           ParseTree valNode = level1.getChild(2);
           if (valNode != null) {
@@ -92,14 +92,32 @@ public class SQLListener extends plsqlBaseListener {
           }
         }
       }
-      // Why check the table's column names? Because stuff like TO_DATE(<something>) will also come in here
-      // with each token as a key with null value.
-      if (key != null && (val != null || (allowNulls && columnsExpected.contains(key))) && !columns.containsKey(key)) {
-        columns.put(key, formatValue(val));
+      if (key != null) {
+        addCondition(key, val);
       }
     }
   }
 
+  /**
+   * Adds a column set by the statement (INSERT values or UPDATE set clause) from the text of its name and value.
+   */
+  void addColumn(String name, String value) {
+    columns.put(formatName(name.trim()), formatValue(value.trim()));
+  }
+
+  /**
+   * Adds a column from an equality or IS NULL condition of the WHERE clause, value is null for the latter.
+   * Columns already set by the statement are not overwritten.
+   */
+  void addCondition(String name, String value) {
+    String key = formatName(name);
+    // Why check the table's column names? Because stuff like TO_DATE(<something>) will also come in here
+    // with each token as a key with null value.
+    if ((value != null || (allowNulls && columnsExpected.contains(key))) && !columns.containsKey(key)) {
+      columns.put(key, formatValue(value));
+    }
+  }
+
   /**
    * Format column names based on whether they are case-sensitive
    */
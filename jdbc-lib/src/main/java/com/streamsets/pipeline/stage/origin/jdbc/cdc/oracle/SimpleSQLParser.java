@@ -0,0 +1,335 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.jdbc.cdc.oracle;
+
+import com.streamsets.pipeline.lib.operation.OperationType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand written parser for the simple INSERT, UPDATE and DELETE statements LogMiner generates for most redo entries.
+ * <p/>
+ * Values must be string or number literals, NULL or function calls over those (like TO_DATE), and the WHERE clause
+ * a conjunction of equality and IS NULL conditions. Columns are fed to the {@link SQLListener} exactly as walking the
+ * ANTLR parse tree would. Any other statement is rejected without touching the listener, so that the caller can fall
+ * back to the ANTLR parser.
+ */
+public final class SimpleSQLParser {
+
+  private final String sql;
+  private int pos;
+
+  // column names and values in the order the listener would see them, and whether they come from the WHERE clause
+  private final List<String> names = new ArrayList<>();
+  private final List<String> values = new ArrayList<>();
+  private final List<Boolean> conditions = new ArrayList<>();
+
+  private SimpleSQLParser(String sql) {
+    this.sql = sql;
+  }
+
+  /**
+   * Parses the statement of the given operation into the listener.
+   *
+   * @return false if the statement is not supported by this parser, the listener is then left untouched
+   */
+  public static boolean parse(String sql, int operationCode, SQLListener listener) {
+    SimpleSQLParser parser = new SimpleSQLParser(sql);
+    boolean parsed;
+    switch (operationCode) {
+      case OperationType.INSERT_CODE:
+        parsed = parser.insert();
+        break;
+      case OperationType.UPDATE_CODE:
+        parsed = parser.update();
+        break;
+      case OperationType.DELETE_CODE:
+        parsed = parser.delete();
+        break;
+      default:
+        parsed = false;
+    }
+    if (!parsed || !parser.end()) {
+      return false;
+    }
+    for (int i = 0; i < parser.names.size(); i++) {
+      if (parser.conditions.get(i)) {
+        listener.addCondition(parser.names.get(i), parser.values.get(i));
+      } else {
+        listener.addColumn(parser.names.get(i), parser.values.get(i));
+      }
+    }
+    return true;
+  }
+
+  // insert into <table>(<column>, ...) values (<value>, ...)
+  private boolean insert() {
+    if (!keyword("insert") || !keyword("into") || !table() || !symbol('(')) {
+      return false;
+    }
+    List<String> columns = new ArrayList<>();
+    do {
+      String column = identifier();
+      if (column == null) {
+        return false;
+      }
+      columns.add(column);
+    } while (symbol(','));
+    if (!symbol(')') || !keyword("values") || !symbol('(')) {
+      return false;
+    }
+    int i = 0;
+    do {
+      Value value = value();
+      if (value == null || i == columns.size()) {
+        return false;
+      }
+      addColumn(columns.get(i++), value.text);
+    } while (symbol(','));
+    return i == columns.size() && symbol(')');
+  }
+
+  // update <table> set <column> = <value>, ... [where <conditions>]
+  private boolean update() {
+    if (!keyword("update") || !table() || !keyword("set")) {
+      return false;
+    }
+    do {
+      String column = identifier();
+      Value value;
+      if (column == null || !symbol('=') || (value = value()) == null) {
+        return false;
+      }
+      addColumn(column, value.text);
+    } while (symbol(','));
+    return atEnd() || where();
+  }
+
+  // delete from <table> where <conditions>
+  private boolean delete() {
+    return keyword("delete") && keyword("from") && table() && where();
+  }
+
+  // where <column> = <value> and <column> IS NULL and ...
+  private boolean where() {
+    if (!keyword("where")) {
+      return false;
+    }
+    do {
+      String column = identifier();
+      if (column == null) {
+        return false;
+      }
+      if (symbol('=')) {
+        Value value = value();
+        if (value == null) {
+          return false;
+        }
+        addCondition(column, value.text);
+        // the parse tree has a condition with no value for each function argument
+        for (String argument : value.arguments) {
+          addCondition(argument, null);
+        }
+      } else if (keyword("is") && keyword("null")) {
+        addCondition(column, null);
+      } else {
+        return false;
+      }
+    } while (keyword("and"));
+    return true;
+  }
+
+  private void addColumn(String name, String value) {
+    names.add(name);
+    values.add(value);
+    conditions.add(false);
+  }
+
+  private void addCondition(String name, String value) {
+    names.add(name);
+    values.add(value);
+    conditions.add(true);
+  }
+
+  private boolean table() {
+    if (identifier() == null) {
+      return false;
+    }
+    while (symbol('.')) {
+      if (identifier() == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns a literal, or a function call over literals. The text is the one of the parse tree, tokens joined with no
+   * whitespace.
+   */
+  private Value value() {
+    String literal = literal();
+    if (literal != null) {
+      return new Value(literal, new ArrayList<>());
+    }
+    int start = pos;
+    String function = unquotedIdentifier();
+    if (function == null || !symbol('(')) {
+      pos = start;
+      return null;
+    }
+    List<String> arguments = new ArrayList<>();
+    StringBuilder text = new StringBuilder(function).append('(');
+    if (!symbol(')')) {
+      do {
+        String argument = literal();
+        if (argument == null) {
+          return null;
+        }
+        text.append(arguments.isEmpty() ? "" : ",").append(argument);
+        arguments.add(argument);
+      } while (symbol(','));
+      if (!symbol(')')) {
+        return null;
+      }
+    }
+    return new Value(text.append(')').toString(), arguments);
+  }
+
+  // 'string' (with '' escapes), -?digits[.digits] or NULL
+  private String literal() {
+    skipWhitespace();
+    int start = pos;
+    if (pos < sql.length() && sql.charAt(pos) == '\'') {
+      pos++;
+      while (pos < sql.length()) {
+        if (sql.charAt(pos++) == '\'') {
+          if (pos < sql.length() && sql.charAt(pos) == '\'') {
+            pos++;
+          } else {
+            return sql.substring(start, pos);
+          }
+        }
+      }
+      pos = start;
+      return null;
+    }
+    if (pos < sql.length() && sql.charAt(pos) == '-') {
+      pos++;
+    }
+    if (digits() > 0) {
+      if (pos < sql.length() && sql.charAt(pos) == '.' && (++pos == sql.length() || digits() == 0)) {
+        pos = start;
+        return null;
+      }
+      if (pos < sql.length() && isIdentifierPart(sql.charAt(pos))) {
+        pos = start;
+        return null;
+      }
+      return sql.substring(start, pos);
+    }
+    pos = start;
+    return keyword("null") ? sql.substring(start, pos) : null;
+  }
+
+  private int digits() {
+    int start = pos;
+    while (pos < sql.length() && Character.isDigit(sql.charAt(pos))) {
+      pos++;
+    }
+    return pos - start;
+  }
+
+  // "quoted" or unquoted identifier, returned as written
+  private String identifier() {
+    skipWhitespace();
+    if (pos < sql.length() && sql.charAt(pos) == '"') {
+      int end = sql.indexOf('"', pos + 1);
+      if (end <= pos + 1) {
+        return null;
+      }
+      String identifier = sql.substring(pos, end + 1);
+      pos = end + 1;
+      return identifier;
+    }
+    return unquotedIdentifier();
+  }
+
+  private String unquotedIdentifier() {
+    skipWhitespace();
+    int start = pos;
+    if (pos < sql.length() && Character.isLetter(sql.charAt(pos))) {
+      pos++;
+      while (pos < sql.length() && isIdentifierPart(sql.charAt(pos))) {
+        pos++;
+      }
+    }
+    return (pos > start) ? sql.substring(start, pos) : null;
+  }
+
+  private boolean keyword(String keyword) {
+    skipWhitespace();
+    int end = pos + keyword.length();
+    if (sql.regionMatches(true, pos, keyword, 0, keyword.length())
+        && (end == sql.length() || !isIdentifierPart(sql.charAt(end)))) {
+      pos = end;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean symbol(char symbol) {
+    skipWhitespace();
+    if (pos < sql.length() && sql.charAt(pos) == symbol) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean atEnd() {
+    skipWhitespace();
+    return pos == sql.length() || sql.charAt(pos) == ';';
+  }
+
+  // only an optional semicolon can follow the statement
+  private boolean end() {
+    symbol(';');
+    skipWhitespace();
+    return pos == sql.length();
+  }
+
+  private void skipWhitespace() {
+    while (pos < sql.length() && Character.isWhitespace(sql.charAt(pos))) {
+      pos++;
+    }
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+  }
+
+  private static class Value {
+    final String text;
+    final List<String> arguments;
+
+    Value(String text, List<String> arguments) {
+      this.text = text;
+      this.arguments = arguments;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.jdbclookup;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.streamsets.pipeline.api.Field;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Loads lookup items by key column values. Keys missing in the cache are looked up together, with a query per
+ * max keys per query chunk.
+ */
+public class JdbcBatchLookupLoader extends CacheLoader<JdbcBatchLookupLoader.LookupKey, List<Map<String, Field>>> {
+  private final JdbcLookupLoader loader;
+  private final List<String> keyColumns;
+  private final int maxKeysPerQuery;
+
+  public JdbcBatchLookupLoader(JdbcLookupLoader loader, List<String> keyColumns, int maxKeysPerQuery) {
+    this.loader = loader;
+    this.keyColumns = keyColumns;
+    this.maxKeysPerQuery = maxKeysPerQuery;
+  }
+
+  @Override
+  public List<Map<String, Field>> load(LookupKey key) throws Exception {
+    return loader.lookupValuesForKeys(key.query, keyColumns, ImmutableList.of(key.values)).get(key.values);
+  }
+
+  @Override
+  public Map<LookupKey, List<Map<String, Field>>> loadAll(Iterable<? extends LookupKey> keys) throws Exception {
+    // Keys of different queries can't be looked up together
+    Map<String, List<LookupKey>> keysByQuery = new LinkedHashMap<>();
+    for (LookupKey key : keys) {
+      keysByQuery.computeIfAbsent(key.query, query -> new ArrayList<>()).add(key);
+    }
+
+    Map<LookupKey, List<Map<String, Field>>> values = new HashMap<>();
+    for (Map.Entry<String, List<LookupKey>> entry : keysByQuery.entrySet()) {
+      for (List<LookupKey> chunk : Iterables.partition(entry.getValue(), maxKeysPerQuery)) {
+        List<List<Object>> chunkValues = new ArrayList<>(chunk.size());
+        for (LookupKey key : chunk) {
+          chunkValues.add(key.values);
+        }
+        Map<List<Object>, List<Map<String, Field>>> items =
+            loader.lookupValuesForKeys(entry.getKey(), keyColumns, chunkValues);
+        for (LookupKey key : chunk) {
+          values.put(key, items.get(key.values));
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Cache key, the values of the key columns in the result of the evaluated query.
+   */
+  public static final class LookupKey {
+    private final String query;
+    private final List<Object> values;
+
+    public LookupKey(String query, List<Object> values) {
+      this.query = query;
+      this.values = values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      LookupKey that = (LookupKey) o;
+      return query.equals(that.query) && values.equals(that.values);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(query, values);
+    }
+
+    @Override
+    public String toString() {
+      return values.toString();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.jdbclookup;
+
+import com.streamsets.pipeline.api.ConfigDef;
+import com.streamsets.pipeline.api.ListBeanModel;
+import com.streamsets.pipeline.api.ValueChooserModel;
+import com.streamsets.pipeline.stage.processor.kv.LookupMode;
+import com.streamsets.pipeline.stage.processor.kv.LookupModeChooserValues;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class JdbcLookupBatchConfig {
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.MODEL,
+      label = "Mode",
+      description = "Whether to run the query for each record, or to look up the keys of all records in the batch " +
+          "with a few queries. In batch mode the query must not reference the record, it is filtered by the key columns.",
+      defaultValue = "RECORD",
+      displayPosition = 150,
+      group = "#0"
+  )
+  @ValueChooserModel(LookupModeChooserValues.class)
+  public LookupMode mode = LookupMode.RECORD;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.MODEL,
+      label = "Key Columns",
+      defaultValue = "",
+      description = "Columns returned by the query that identify the looked up rows and the record values to match " +
+          "them with",
+      dependsOn = "mode",
+      triggeredByValue = "BATCH",
+      displayPosition = 160,
+      group = "#0"
+  )
+  @ListBeanModel
+  public List<JdbcLookupKeyMapping> keyColumns = new ArrayList<>();
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      label = "Max Keys per Query",
+      description = "Maximum number of keys looked up by a single query, larger batches are split into several queries",
+      defaultValue = "500",
+      min = 1,
+      dependsOn = "mode",
+      triggeredByValue = "BATCH",
+      displayPosition = 170,
+      group = "#0"
+  )
+  public int maxKeysPerQuery = 500;
+}
@@ -35,7 +35,7 @@ import com.streamsets.pipeline.stage.processor.kv.CacheConfig;
 import java.util.List;
 
 @StageDef(
-    version = 2,
+    version = 3,
     label = "JDBC Lookup",
     description = "Lookup values via JDBC to enrich records.",
     icon = "rdbms.png",
@@ -109,6 +109,9 @@ public class JdbcLookupDProcessor extends DProcessor {
   @ConfigDefBean(groups = "JDBC")
   public CacheConfig cacheConfig = new CacheConfig();
 
+  @ConfigDefBean(groups = "JDBC")
+  public JdbcLookupBatchConfig batchConfig = new JdbcLookupBatchConfig();
+
   @Override
   protected Processor createProcessor() {
     return new JdbcLookupProcessor(
@@ -118,7 +121,8 @@ public class JdbcLookupDProcessor extends DProcessor {
       maxClobSize,
       maxBlobSize,
       hikariConfigBean,
-      cacheConfig
+      cacheConfig,
+      batchConfig
     );
   }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.jdbclookup;
+
+import com.streamsets.pipeline.api.ConfigDef;
+import com.streamsets.pipeline.lib.el.RecordEL;
+import com.streamsets.pipeline.lib.el.StringEL;
+
+public class JdbcLookupKeyMapping {
+
+  /**
+   * Constructor used for unit testing purposes
+   * @param columnName
+   * @param keyExpression
+   */
+  public JdbcLookupKeyMapping(final String columnName, final String keyExpression) {
+    this.columnName = columnName;
+    this.keyExpression = keyExpression;
+  }
+
+  /**
+   * Parameter-less constructor required.
+   */
+  public JdbcLookupKeyMapping() {}
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.STRING,
+      defaultValue = "",
+      label = "Column Name",
+      description = "Key column returned by the query.",
+      displayPosition = 10
+  )
+  public String columnName;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.STRING,
+      defaultValue = "${record:value('/')}",
+      label = "Key Expression",
+      description = "Expression evaluating to the value of the key column for the record.",
+      elDefs = {StringEL.class, RecordEL.class},
+      evaluation = ConfigDef.Evaluation.EXPLICIT,
+      displayPosition = 20
+  )
+  public String keyExpression;
+
+}
@@ -27,18 +27,26 @@ import com.streamsets.pipeline.lib.jdbc.JdbcErrors;
 import com.streamsets.pipeline.lib.jdbc.JdbcUtil;
 import com.streamsets.pipeline.lib.jdbc.UnknownTypeAction;
 import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
+import org.apache.commons.lang3.StringUtils;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -103,52 +111,12 @@ public class JdbcLookupLoader extends CacheLoader<String, List<Map<String, Field
 
       // Process whole result set and load it to the memory
       while(resultSet.next()) {
-        ResultSetMetaData md = resultSet.getMetaData();
-
-        LinkedHashMap<String, Field> fields = JdbcUtil.resultSetToFields(resultSet,
-          maxClobSize,
-          maxBlobSize,
-          columnsToTypes,
-          errorRecordHandler,
-          UnknownTypeAction.STOP_PIPELINE
-        );
-
-        int numColumns = md.getColumnCount();
-        if (fields.size() != numColumns) {
-          throw new OnRecordErrorException(JdbcErrors.JDBC_35, fields.size(), numColumns);
-        }
-
-        lookupItems.add(fields);
+        lookupItems.add(toLookupItem(resultSet));
       }
 
       // If no lookup items were found, use defaults
       if(lookupItems.isEmpty()) {
-        Map<String, Field> defaultValues = new HashMap<>();
-
-        // Database returns no row. Use default values.
-        for (String column : columnsToFields.keySet()) {
-          String defaultValue = columnsToDefaults.get(column);
-          DataType dataType = columnsToTypes.get(column);
-          if (dataType != DataType.USE_COLUMN_TYPE) {
-            Field field;
-            try {
-              if (dataType == DataType.DATE) {
-                field = Field.createDate(DATE_FORMATTER.parseDateTime(defaultValue).toDate());
-              } else if (dataType == DataType.DATETIME) {
-                field = Field.createDatetime(DATETIME_FORMATTER.parseDateTime(defaultValue).toDate());
-              } else {
-                field = Field.create(Field.Type.valueOf(columnsToTypes.get(column).getLabel()), defaultValue);
-              }
-              defaultValues.put(column, field);
-            } catch (IllegalArgumentException e) {
-              throw new OnRecordErrorException(JdbcErrors.JDBC_03, column, defaultValue, e);
-            }
-          }
-
-          if(!defaultValues.isEmpty()) {
-            lookupItems.add(defaultValues);
-          }
-        }
+        addDefaultValues(lookupItems);
       }
     } catch (SQLException e) {
       // Exception executing query
@@ -164,4 +132,264 @@ public class JdbcLookupLoader extends CacheLoader<String, List<Map<String, Field
 
     return lookupItems;
   }
+
+  /**
+   * Looks up the rows of all the given keys with a single query.
+   *
+   * @param preparedQuery query returning the key columns, it is filtered by the keys
+   * @param keyColumns names of the key columns
+   * @param keys values of the key columns
+   * @return lookup items for each of the keys, keys without rows get the default values
+   */
+  Map<List<Object>, List<Map<String, Field>>> lookupValuesForKeys(
+      String preparedQuery,
+      List<String> keyColumns,
+      Collection<List<Object>> keys
+  ) throws StageException {
+    Map<List<Object>, List<Map<String, Field>>> lookupItems = new HashMap<>();
+    List<List<Object>> lookupKeys = new ArrayList<>(keys.size());
+    for (List<Object> key : keys) {
+      lookupItems.put(key, new ArrayList<>());
+      if (!key.contains(null)) {
+        // null never matches any row
+        lookupKeys.add(key);
+      }
+    }
+
+    if (!lookupKeys.isEmpty()) {
+      String batchQuery = getBatchQuery(preparedQuery, keyColumns, lookupKeys.size());
+      LOG.debug("Executing SQL:  {} for {} keys", batchQuery, lookupKeys.size());
+
+      Timer.Context t = selectTimer.time();
+      try (
+        Connection connection = dataSource.getConnection();
+        PreparedStatement stmt = connection.prepareStatement(batchQuery)
+      ) {
+        int index = 1;
+        for (List<Object> key : lookupKeys) {
+          for (Object value : key) {
+            stmt.setObject(index++, value);
+          }
+        }
+
+        try (ResultSet resultSet = stmt.executeQuery()) {
+          // Stop timer immediately so that we're calculating only query execution time and not the processing time
+          t.stop();
+          t = null;
+
+          // Rows are matched with the keys by value, compared as the JDBC type of the key column
+          int[] keyColumnTypes = getColumnTypes(resultSet.getMetaData(), keyColumns);
+          Map<List<Object>, List<List<Object>>> keysByValue = new HashMap<>();
+          for (List<Object> key : lookupKeys) {
+            keysByValue.computeIfAbsent(toKeyValue(key, keyColumnTypes), value -> new ArrayList<>()).add(key);
+          }
+
+          while (resultSet.next()) {
+            LinkedHashMap<String, Field> fields = toLookupItem(resultSet);
+            List<Object> keyValue = new ArrayList<>(keyColumns.size());
+            for (int i = 0; i < keyColumns.size(); i++) {
+              Field field = getColumn(fields, keyColumns.get(i));
+              keyValue.add(normalizeKeyValue(field, keyColumnTypes[i]));
+            }
+            List<List<Object>> matchingKeys = keysByValue.get(keyValue);
+            if (matchingKeys != null) {
+              for (List<Object> key : matchingKeys) {
+                lookupItems.get(key).add(fields);
+              }
+            } else {
+              LOG.debug("Ignoring row with key {} that does not match any looked up key", keyValue);
+            }
+          }
+        }
+      } catch (SQLException e) {
+        // Exception executing query
+        LOG.error(JdbcErrors.JDBC_02.getMessage(), batchQuery, e);
+        throw new OnRecordErrorException(JdbcErrors.JDBC_02, batchQuery, e.getMessage());
+      } finally {
+        // If the timer wasn't stopped due to exception yet, stop it now
+        if(t != null) {
+          t.stop();
+        }
+        selectMeter.mark();
+      }
+    }
+
+    for (List<Map<String, Field>> items : lookupItems.values()) {
+      if (items.isEmpty()) {
+        addDefaultValues(items);
+      }
+    }
+    return lookupItems;
+  }
+
+  /**
+   * Filters the query by the key columns, for example
+   * SELECT * FROM (query) sdc_lookup WHERE (A = ? AND B = ?) OR (A = ? AND B = ?) or, for a single key column,
+   * SELECT * FROM (query) sdc_lookup WHERE A IN (?, ?).
+   */
+  static String getBatchQuery(String query, List<String> keyColumns, int numKeys) {
+    String trimmed = query.trim();
+    if (trimmed.endsWith(";")) {
+      trimmed = trimmed.substring(0, trimmed.length() - 1);
+    }
+    StringBuilder sb = new StringBuilder("SELECT * FROM (").append(trimmed).append(") sdc_lookup WHERE ");
+    if (keyColumns.size() == 1) {
+      sb.append(keyColumns.get(0)).append(" IN (");
+      for (int i = 0; i < numKeys; i++) {
+        sb.append(i == 0 ? "?" : ", ?");
+      }
+      sb.append(")");
+    } else {
+      for (int i = 0; i < numKeys; i++) {
+        sb.append(i == 0 ? "(" : " OR (");
+        for (int j = 0; j < keyColumns.size(); j++) {
+          sb.append(j == 0 ? "" : " AND ").append(keyColumns.get(j)).append(" = ?");
+        }
+        sb.append(")");
+      }
+    }
+    return sb.toString();
+  }
+
+  private static int[] getColumnTypes(ResultSetMetaData md, List<String> columns) throws SQLException {
+    int[] types = new int[columns.size()];
+    for (int i = 0; i < columns.size(); i++) {
+      types[i] = Types.OTHER;
+      for (int column = 1; column <= md.getColumnCount(); column++) {
+        // Databases differ in the case of unquoted identifiers
+        if (md.getColumnLabel(column).equalsIgnoreCase(columns.get(i))) {
+          types[i] = md.getColumnType(column);
+          break;
+        }
+      }
+    }
+    return types;
+  }
+
+  private static List<Object> toKeyValue(List<Object> key, int[] types) {
+    List<Object> keyValue = new ArrayList<>(key.size());
+    for (int i = 0; i < key.size(); i++) {
+      keyValue.add(normalizeKeyValue(key.get(i), types[i]));
+    }
+    return keyValue;
+  }
+
+  /**
+   * Converts a key value, either from a record or from a row, to a value that is equal for all the representations
+   * the database considers equal for the given column type, for example 1 and 1.0 for numbers or 'a' and 'a  ' for
+   * CHAR columns. Values of other types are compared through their string representation.
+   */
+  static Object normalizeKeyValue(Object value, int sqlType) {
+    if (value instanceof Field) {
+      value = ((Field) value).getValue();
+    }
+    if (value == null) {
+      return null;
+    }
+    switch (sqlType) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+      case Types.REAL:
+      case Types.FLOAT:
+      case Types.DOUBLE:
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+        BigDecimal number = toBigDecimal(value);
+        if (number != null) {
+          return (number.signum() == 0) ? BigDecimal.ZERO : number.stripTrailingZeros();
+        }
+        return value.toString();
+      case Types.CHAR:
+      case Types.NCHAR:
+        // CHAR values are padded with spaces
+        return StringUtils.stripEnd(value.toString(), " ");
+      case Types.DATE:
+      case Types.TIME:
+      case Types.TIMESTAMP:
+        return (value instanceof Date) ? (Object) ((Date) value).getTime() : value.toString();
+      default:
+        return (value instanceof byte[]) ? ByteBuffer.wrap((byte[]) value) : value.toString();
+    }
+  }
+
+  private static BigDecimal toBigDecimal(Object value) {
+    try {
+      if (value instanceof BigDecimal) {
+        return (BigDecimal) value;
+      } else if (value instanceof BigInteger) {
+        return new BigDecimal((BigInteger) value);
+      } else if (value instanceof Double || value instanceof Float) {
+        return new BigDecimal(value.toString());
+      } else if (value instanceof Number) {
+        return BigDecimal.valueOf(((Number) value).longValue());
+      } else if (value instanceof String) {
+        return new BigDecimal(((String) value).trim());
+      }
+    } catch (NumberFormatException e) { // NOSONAR
+      // NaN, infinity or not a number at all, compared as a string
+    }
+    return null;
+  }
+
+  private static Field getColumn(Map<String, Field> fields, String column) {
+    Field field = fields.get(column);
+    if (field == null) {
+      // Databases differ in the case of unquoted identifiers
+      for (Map.Entry<String, Field> entry : fields.entrySet()) {
+        if (entry.getKey().equalsIgnoreCase(column)) {
+          return entry.getValue();
+        }
+      }
+    }
+    return field;
+  }
+
+  private LinkedHashMap<String, Field> toLookupItem(ResultSet resultSet) throws SQLException, StageException {
+    ResultSetMetaData md = resultSet.getMetaData();
+
+    LinkedHashMap<String, Field> fields = JdbcUtil.resultSetToFields(resultSet,
+      maxClobSize,
+      maxBlobSize,
+      columnsToTypes,
+      errorRecordHandler,
+      UnknownTypeAction.STOP_PIPELINE
+    );
+
+    int numColumns = md.getColumnCount();
+    if (fields.size() != numColumns) {
+      throw new OnRecordErrorException(JdbcErrors.JDBC_35, fields.size(), numColumns);
+    }
+    return fields;
+  }
+
+  private void addDefaultValues(List<Map<String, Field>> lookupItems) throws OnRecordErrorException {
+    Map<String, Field> defaultValues = new HashMap<>();
+
+    // Database returns no row. Use default values.
+    for (String column : columnsToFields.keySet()) {
+      String defaultValue = columnsToDefaults.get(column);
+      DataType dataType = columnsToTypes.get(column);
+      if (dataType != DataType.USE_COLUMN_TYPE) {
+        Field field;
+        try {
+          if (dataType == DataType.DATE) {
+            field = Field.createDate(DATE_FORMATTER.parseDateTime(defaultValue).toDate());
+          } else if (dataType == DataType.DATETIME) {
+            field = Field.createDatetime(DATETIME_FORMATTER.parseDateTime(defaultValue).toDate());
+          } else {
+            field = Field.create(Field.Type.valueOf(columnsToTypes.get(column).getLabel()), defaultValue);
+          }
+          defaultValues.put(column, field);
+        } catch (IllegalArgumentException e) {
+          throw new OnRecordErrorException(JdbcErrors.JDBC_03, column, defaultValue, e);
+        }
+      }
+    }
+
+    if(!defaultValues.isEmpty()) {
+      lookupItems.add(defaultValues);
+    }
+  }
 }
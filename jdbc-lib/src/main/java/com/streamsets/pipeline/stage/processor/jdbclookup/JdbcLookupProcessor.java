@@ -17,6 +17,7 @@ package com.streamsets.pipeline.stage.processor.jdbclookup;
 
 import com.google.common.base.Throwables;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Processor;
@@ -39,15 +40,20 @@ import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
 import com.streamsets.pipeline.stage.common.MultipleValuesBehavior;
 import com.streamsets.pipeline.stage.destination.jdbc.Groups;
 import com.streamsets.pipeline.stage.processor.kv.CacheConfig;
+import com.streamsets.pipeline.stage.processor.kv.LookupMode;
 import com.streamsets.pipeline.stage.processor.kv.LookupUtils;
 import com.zaxxer.hikari.HikariDataSource;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 import static com.streamsets.pipeline.lib.jdbc.JdbcUtil.closeQuietly;
@@ -58,9 +64,12 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
   private static final String HIKARI_CONFIG_PREFIX = "hikariConfigBean.";
   private static final String CONNECTION_STRING = HIKARI_CONFIG_PREFIX + "connectionString";
   private static final String COLUMN_MAPPINGS = "columnMappings";
+  private static final String KEY_COLUMNS = "batchConfig.keyColumns";
   private final CacheConfig cacheConfig;
+  private final JdbcLookupBatchConfig batchConfig;
 
   private ELEval queryEval;
+  private ELEval keyExpressionEval;
 
   private final String query;
   private final List<JdbcFieldColumnMapping> columnMappings;
@@ -76,6 +85,7 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
   private Map<String, DataType> columnsToTypes = new HashMap<>();
 
   private LoadingCache<String, List<Map<String, Field>>> cache;
+  private LoadingCache<JdbcBatchLookupLoader.LookupKey, List<Map<String, Field>>> batchCache;
   private CacheCleaner cacheCleaner;
 
   public JdbcLookupProcessor(
@@ -86,6 +96,28 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
       int maxBlobSize,
       HikariPoolConfigBean hikariConfigBean,
       CacheConfig cacheConfig
+  ) {
+    this(
+        query,
+        columnMappings,
+        multipleValuesBehavior,
+        maxClobSize,
+        maxBlobSize,
+        hikariConfigBean,
+        cacheConfig,
+        new JdbcLookupBatchConfig()
+    );
+  }
+
+  public JdbcLookupProcessor(
+      String query,
+      List<JdbcFieldColumnMapping> columnMappings,
+      MultipleValuesBehavior multipleValuesBehavior,
+      int maxClobSize,
+      int maxBlobSize,
+      HikariPoolConfigBean hikariConfigBean,
+      CacheConfig cacheConfig,
+      JdbcLookupBatchConfig batchConfig
   ) {
     this.query = query;
     this.columnMappings = columnMappings;
@@ -94,6 +126,7 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
     this.maxBlobSize = maxBlobSize;
     this.hikariConfigBean = hikariConfigBean;
     this.cacheConfig = cacheConfig;
+    this.batchConfig = batchConfig;
   }
 
   /** {@inheritDoc} */
@@ -106,6 +139,11 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
     Processor.Context context = getContext();
 
     queryEval = getContext().createELEval("query");
+    keyExpressionEval = getContext().createELEval("keyExpression");
+
+    if (batchConfig.mode == LookupMode.BATCH && batchConfig.keyColumns.isEmpty()) {
+      issues.add(context.createConfigIssue(Groups.JDBC.name(), KEY_COLUMNS, JdbcErrors.JDBC_58));
+    }
 
     issues = hikariConfigBean.validateConfigs(context, issues);
 
@@ -153,9 +191,13 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
     }
 
     if (issues.isEmpty()) {
-      cache = buildCache();
-
-      cacheCleaner = new CacheCleaner(cache, "JdbcLookupProcessor", 10 * 60 * 1000);
+      if (batchConfig.mode == LookupMode.BATCH) {
+        batchCache = buildBatchCache();
+        cacheCleaner = new CacheCleaner(batchCache, "JdbcLookupProcessor", 10 * 60 * 1000);
+      } else {
+        cache = buildCache();
+        cacheCleaner = new CacheCleaner(cache, "JdbcLookupProcessor", 10 * 60 * 1000);
+      }
     }
     // If issues is not empty, the UI will inform the user of each configuration issue in the list.
     return issues;
@@ -174,41 +216,89 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
       // No records - take the opportunity to clean up the cache so that we don't hold on to memory indefinitely
       cacheCleaner.periodicCleanUp();
     }
-    super.process(batch, batchMaker);
+    if (batchConfig.mode == LookupMode.BATCH) {
+      doBatchLookup(batch, batchMaker);
+    } else {
+      super.process(batch, batchMaker);
+    }
   }
 
-  /** {@inheritDoc} */
-  @Override
-  protected void process(Record record, SingleLaneBatchMaker batchMaker) throws StageException {
+  private void doBatchLookup(Batch batch, SingleLaneBatchMaker batchMaker) throws StageException {
+    Iterator<Record> records = batch.getRecords();
+    // The query is evaluated once per batch, cached lookup items are only valid for the same query
+    String preparedQuery;
     try {
+      preparedQuery = queryEval.eval(getContext().createELVars(), query, String.class);
+    } catch (ELEvalException e) {
+      LOG.error(JdbcErrors.JDBC_01.getMessage(), query, e);
+      while (records.hasNext()) {
+        errorRecordHandler.onError(new OnRecordErrorException(records.next(), JdbcErrors.JDBC_01, query));
+      }
+      return;
+    }
+
+    // Evaluate keys of all records first, so that all the keys missing in the cache are looked up together
+    List<Record> lookupRecords = new ArrayList<>();
+    List<JdbcBatchLookupLoader.LookupKey> recordKeys = new ArrayList<>();
+    Set<JdbcBatchLookupLoader.LookupKey> keys = new LinkedHashSet<>();
+    while (records.hasNext()) {
+      Record record = records.next();
       ELVars elVars = getContext().createELVars();
       RecordEL.setRecordInContext(elVars, record);
-      String preparedQuery = queryEval.eval(elVars, query, String.class);
-      List<Map<String, Field>> values = cache.get(preparedQuery);
+      List<Object> values = new ArrayList<>(batchConfig.keyColumns.size());
+      try {
+        for (JdbcLookupKeyMapping keyColumn : batchConfig.keyColumns) {
+          values.add(keyExpressionEval.eval(elVars, keyColumn.keyExpression, Object.class));
+        }
+        JdbcBatchLookupLoader.LookupKey key = new JdbcBatchLookupLoader.LookupKey(preparedQuery, values);
+        lookupRecords.add(record);
+        recordKeys.add(key);
+        keys.add(key);
+      } catch (ELEvalException e) {
+        LOG.error(JdbcErrors.JDBC_01.getMessage(), e.toString(), e);
+        errorRecordHandler.onError(new OnRecordErrorException(record, JdbcErrors.JDBC_01, e.toString()));
+      }
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
 
-      if (values.isEmpty()) {
-        // No results
-        LOG.error(JdbcErrors.JDBC_04.getMessage(), preparedQuery);
-        errorRecordHandler.onError(new OnRecordErrorException(record, JdbcErrors.JDBC_04, preparedQuery));
-      } else {
-        switch (multipleValuesBehavior) {
-          case FIRST_ONLY:
-            setFieldsInRecord(record, values.get(0));
-            batchMaker.addRecord(record);
-            break;
-          case SPLIT_INTO_MULTIPLE_RECORDS:
-            for(Map<String, Field> lookupItem : values) {
-              Record newRecord = getContext().cloneRecord(record);
-              setFieldsInRecord(newRecord, lookupItem);
-              batchMaker.addRecord(newRecord);
-            }
-            break;
-          default:
-            throw new IllegalStateException("Unknown multiple value behavior: " + multipleValuesBehavior);
+    Map<JdbcBatchLookupLoader.LookupKey, List<Map<String, Field>>> values;
+    try {
+      values = batchCache.getAll(keys);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof OnRecordErrorException) {
+        // Failed lookup query, send all the records it was looking up for to error
+        OnRecordErrorException error = (OnRecordErrorException) e.getCause();
+        for (Record record : lookupRecords) {
+          errorRecordHandler.onError(new OnRecordErrorException(record, error.getErrorCode(), error.getParams()));
         }
+        return;
+      }
+      Throwables.propagateIfPossible(e.getCause(), StageException.class);
+      throw new IllegalStateException(e); // The cache loader shouldn't throw anything that isn't a StageException.
+    }
 
+    for (int i = 0; i < lookupRecords.size(); i++) {
+      Record record = lookupRecords.get(i);
+      JdbcBatchLookupLoader.LookupKey key = recordKeys.get(i);
+      try {
+        addLookupValues(record, values.get(key), key.toString(), batchMaker);
+      } catch (OnRecordErrorException error) { // NOSONAR
+        errorRecordHandler.onError(new OnRecordErrorException(record, error.getErrorCode(), error.getParams()));
       }
+    }
+  }
 
+  /** {@inheritDoc} */
+  @Override
+  protected void process(Record record, SingleLaneBatchMaker batchMaker) throws StageException {
+    try {
+      ELVars elVars = getContext().createELVars();
+      RecordEL.setRecordInContext(elVars, record);
+      String preparedQuery = queryEval.eval(elVars, query, String.class);
+      List<Map<String, Field>> values = cache.get(preparedQuery);
+      addLookupValues(record, values, preparedQuery, batchMaker);
     } catch (ELEvalException e) {
       LOG.error(JdbcErrors.JDBC_01.getMessage(), query, e);
       throw new OnRecordErrorException(record, JdbcErrors.JDBC_01, query);
@@ -220,6 +310,35 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
     }
   }
 
+  private void addLookupValues(
+      Record record,
+      List<Map<String, Field>> values,
+      String lookup,
+      SingleLaneBatchMaker batchMaker
+  ) throws StageException {
+    if (values.isEmpty()) {
+      // No results
+      LOG.error(JdbcErrors.JDBC_04.getMessage(), lookup);
+      errorRecordHandler.onError(new OnRecordErrorException(record, JdbcErrors.JDBC_04, lookup));
+    } else {
+      switch (multipleValuesBehavior) {
+        case FIRST_ONLY:
+          setFieldsInRecord(record, values.get(0));
+          batchMaker.addRecord(record);
+          break;
+        case SPLIT_INTO_MULTIPLE_RECORDS:
+          for(Map<String, Field> lookupItem : values) {
+            Record newRecord = getContext().cloneRecord(record);
+            setFieldsInRecord(newRecord, lookupItem);
+            batchMaker.addRecord(newRecord);
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown multiple value behavior: " + multipleValuesBehavior);
+      }
+    }
+  }
+
   private void setFieldsInRecord(Record record, Map<String, Field>fields) {
     for (Map.Entry<String, Field> entry : fields.entrySet()) {
       String columnName = entry.getKey();
@@ -252,7 +371,23 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
 
   @SuppressWarnings("unchecked")
   private LoadingCache<String, List<Map<String, Field>>> buildCache() {
-    JdbcLookupLoader loader = new JdbcLookupLoader(
+    return LookupUtils.buildCache(createLoader(), cacheConfig);
+  }
+
+  @SuppressWarnings("unchecked")
+  private LoadingCache<JdbcBatchLookupLoader.LookupKey, List<Map<String, Field>>> buildBatchCache() {
+    List<String> keyColumns = new ArrayList<>(batchConfig.keyColumns.size());
+    for (JdbcLookupKeyMapping keyColumn : batchConfig.keyColumns) {
+      keyColumns.add(keyColumn.columnName);
+    }
+    return LookupUtils.buildCache(
+        new JdbcBatchLookupLoader(createLoader(), keyColumns, batchConfig.maxKeysPerQuery),
+        cacheConfig
+    );
+  }
+
+  private JdbcLookupLoader createLoader() {
+    return new JdbcLookupLoader(
       getContext(),
       dataSource,
       columnsToFields,
@@ -262,6 +397,5 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
       maxBlobSize,
       errorRecordHandler
     );
-    return LookupUtils.buildCache(loader, cacheConfig);
   }
 }
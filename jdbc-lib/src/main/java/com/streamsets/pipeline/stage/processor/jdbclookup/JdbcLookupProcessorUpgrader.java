@@ -20,12 +20,15 @@ import com.streamsets.pipeline.api.Config;
 import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.StageUpgrader;
 import com.streamsets.pipeline.api.impl.Utils;
+import com.streamsets.pipeline.stage.processor.kv.LookupMode;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class JdbcLookupProcessorUpgrader implements StageUpgrader {
   private static final String CACHE_CONFIG = "cacheConfig";
+  private static final String BATCH_CONFIG = "batchConfig";
 
   @Override
   public List<Config> upgrade(
@@ -39,6 +42,9 @@ public class JdbcLookupProcessorUpgrader implements StageUpgrader {
     switch (fromVersion) {
       case 1:
         upgradeV1ToV2(configs);
+        // fall through
+      case 2:
+        upgradeV2ToV3(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -54,4 +60,11 @@ public class JdbcLookupProcessorUpgrader implements StageUpgrader {
     configs.add(new Config(p.join(CACHE_CONFIG, "expirationTime"), 1));
     configs.add(new Config(p.join(CACHE_CONFIG, "timeUnit"), TimeUnit.SECONDS));
   }
+
+  private static void upgradeV2ToV3(List<Config> configs) {
+    Joiner p = Joiner.on(".");
+    configs.add(new Config(p.join(BATCH_CONFIG, "mode"), LookupMode.RECORD));
+    configs.add(new Config(p.join(BATCH_CONFIG, "keyColumns"), new ArrayList<>()));
+    configs.add(new Config(p.join(BATCH_CONFIG, "maxKeysPerQuery"), 500));
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.jdbc.cdc.oracle;
+
+import com.google.common.collect.ImmutableList;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.lib.operation.OperationType;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import plsql.plsqlLexer;
+import plsql.plsqlParser;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing a batch of 10,000 redo statements by walking the ANTLR parse tree, as the origin used to, with
+ * the {@link RedoStatementParser} using 1 to 4 parse threads.
+ *
+ * Not run as part of the unit tests, run it with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RedoParsingBenchmark {
+
+  private static final int BATCH_SIZE = 10000;
+
+  // redo statements captured from LogMiner, the last two are only supported by the ANTLR parser
+  private static final List<String> REDO_SQL = ImmutableList.of(
+      "insert into \"SYS\".\"MANYCOLS\"(\"ID\",\"NAME\",\"HIREDATE\",\"SALARY\",\"LASTLOGIN\") " +
+          "values ('1','sdc', TO_DATE('21-11-2016 11:34:09', 'DD-MM-YYYY HH24:MI:SS')," +
+          "'1332.332',TO_TIMESTAMP('2016-11-21 11:34:09.982753'))",
+      "update \"SYS\".\"MANYCOLS\" set \"SALARY\" = '1998.483' where \"ID\" = '1' and \"NAME\" = 'sdc' and " +
+          "\"HIREDATE\" = TO_DATE('21-11-2016 11:34:09', 'DD-MM-YYYY HH24:MI:SS') and \"SALARY\" = '1332.322' and " +
+          "\"LASTLOGIN\" = TO_TIMESTAMP('2016-11-21 11:34:09.982753') and ROWID = 'AAAWk1AAEAAAAFdAAA'",
+      "delete from \"SYS\".\"MANYCOLS\" where \"ID\" = '10' and \"NAME\" = 'stream' and " +
+          "\"HIREDATE\" = TO_DATE('19-11-2016 11:35:16', 'DD-MM-YYYY HH24:MI:SS') and " +
+          "\"SALARY\" = '10000.1' and \"LASTLOGIN\" IS NULL",
+      "update \"SYS\".\"MANYCOLS\" set \"NAME\" = 'a' || 'b' where \"ID\" = '1'",
+      "insert into \"SYS\".\"MANYCOLS\"(\"ID\",\"NAME\") values (HEXTORAW(SUBSTR('1', 1)),'sdc')"
+  );
+
+  private static final ParseTreeWalker PARSE_TREE_WALKER = new ParseTreeWalker();
+
+  @Param({"1", "2", "4"})
+  public int parseThreads;
+
+  private List<String> statements;
+  private ExecutorService executor;
+
+  @Setup
+  public void setup() {
+    statements = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      statements.add(REDO_SQL.get(i % REDO_SQL.size()));
+    }
+    executor = parseThreads > 1 ? Executors.newFixedThreadPool(parseThreads) : null;
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private static int getOperationCode(String statement) {
+    if (statement.startsWith("insert")) {
+      return OperationType.INSERT_CODE;
+    }
+    return statement.startsWith("update") ? OperationType.UPDATE_CODE : OperationType.DELETE_CODE;
+  }
+
+  @Benchmark
+  public void parseTree(Blackhole blackhole) {
+    for (String statement : statements) {
+      plsqlParser parser = new plsqlParser(new CommonTokenStream(new plsqlLexer(new ANTLRInputStream(statement))));
+      ParserRuleContext context;
+      switch (getOperationCode(statement)) {
+        case OperationType.INSERT_CODE:
+          context = parser.insert_statement();
+          break;
+        case OperationType.UPDATE_CODE:
+          context = parser.update_statement();
+          break;
+        default:
+          context = parser.delete_statement();
+      }
+      SQLListener listener = new SQLListener();
+      PARSE_TREE_WALKER.walk(listener, context);
+      blackhole.consume(listener.getColumns());
+    }
+  }
+
+  @Benchmark
+  public void redoStatementParser(Blackhole blackhole) throws StageException, ParseException {
+    RedoStatementParser parser = new RedoStatementParser(executor);
+    for (String statement : statements) {
+      parser.add(Collections.emptyMap(), getOperationCode(statement), statement, new SQLListener());
+    }
+    parser.flush((attributes, operationCode, columns) -> {
+      blackhole.consume(columns);
+      return true;
+    });
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RedoParsingBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.jdbc.cdc.oracle;
+
+import com.google.common.collect.ImmutableList;
+import com.streamsets.pipeline.lib.operation.OperationType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TestRedoStatementParser {
+
+  private static final String DDL = "ALTER TABLE \"SYS\".\"MANYCOLS\" ADD (\"AGE\" NUMBER)";
+  private static final String COMMIT = "commit";
+
+  // redo statements as LogMiner returns them, some of them are only supported by the ANTLR parser
+  private static final List<String> STATEMENTS = ImmutableList.of(
+      "insert into \"SYS\".\"MANYCOLS\"(\"ID\",\"NAME\") values ('1','a')",
+      "update \"SYS\".\"MANYCOLS\" set \"NAME\" = 'b' where \"ID\" = '2'",
+      "update \"SYS\".\"MANYCOLS\" set \"NAME\" = 'a' || 'b' where \"ID\" = '3'",
+      "delete from \"SYS\".\"MANYCOLS\" where \"ID\" = '4' and \"NAME\" IS NULL",
+      DDL,
+      "insert into \"SYS\".\"MANYCOLS\"(\"ID\",\"NAME\") values ('5',HEXTORAW(SUBSTR('1', 1)))",
+      "delete from \"SYS\".\"MANYCOLS\" where \"ID\" = '6' or \"ID\" = '6'",
+      COMMIT,
+      "insert into \"SYS\".\"MANYCOLS\"(\"ID\",\"NAME\") values ('7','c')"
+  );
+
+  private static final List<String> EXPECTED = ImmutableList.of("1", "2", "3", "4", DDL, "5", "6", COMMIT, "7");
+
+  private static int getOperationCode(String statement) {
+    if (statement.startsWith("insert")) {
+      return OperationType.INSERT_CODE;
+    } else if (statement.startsWith("update")) {
+      return OperationType.UPDATE_CODE;
+    } else if (statement.startsWith("delete")) {
+      return OperationType.DELETE_CODE;
+    }
+    return 0;
+  }
+
+  /**
+   * Feeds the statements the way OracleCDCSource does: DML statements are added to the parser, the pending ones are
+   * flushed before any other statement is handled. Returns the IDs of the records and the other statements, in the
+   * order they were handled.
+   */
+  private static List<String> parse(RedoStatementParser parser, Map<String, SQLListener> listeners) throws Exception {
+    List<String> handled = new ArrayList<>();
+    int records = 0;
+    for (String statement : STATEMENTS) {
+      int operationCode = getOperationCode(statement);
+      if (operationCode == 0) {
+        parser.flush((attributes, code, columns) -> {
+          Assert.assertEquals(attributes.get("ID"), columns.get("ID"));
+          return handled.add(columns.get("ID"));
+        });
+        handled.add(statement);
+      } else {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("ID", String.valueOf(++records));
+        SQLListener listener = listeners.containsKey(statement) ? listeners.get(statement) : new SQLListener();
+        parser.add(attributes, operationCode, statement, listener);
+      }
+    }
+    parser.flush((attributes, code, columns) -> handled.add(columns.get("ID")));
+    return handled;
+  }
+
+  @Test
+  public void testSequentialParsing() throws Exception {
+    Assert.assertEquals(EXPECTED, parse(new RedoStatementParser(null), new HashMap<>()));
+  }
+
+  @Test
+  public void testParallelParsingKeepsRedoOrder() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      // the first statement is only done parsing once the third one is, so they complete out of redo order
+      CountDownLatch thirdParsed = new CountDownLatch(1);
+      AtomicBoolean outOfOrder = new AtomicBoolean();
+      Map<String, SQLListener> listeners = new HashMap<>();
+      listeners.put(STATEMENTS.get(0), new SQLListener() {
+        @Override
+        public Map<String, String> getColumns() {
+          try {
+            outOfOrder.set(thirdParsed.await(10, TimeUnit.SECONDS));
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+          return super.getColumns();
+        }
+      });
+      listeners.put(STATEMENTS.get(2), new SQLListener() {
+        @Override
+        public Map<String, String> getColumns() {
+          thirdParsed.countDown();
+          return super.getColumns();
+        }
+      });
+
+      Assert.assertEquals(EXPECTED, parse(new RedoStatementParser(executor), listeners));
+      Assert.assertTrue(outOfOrder.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.jdbc.cdc.oracle;
+
+import com.google.common.collect.ImmutableSet;
+import com.streamsets.pipeline.lib.operation.OperationType;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import plsql.plsqlLexer;
+import plsql.plsqlParser;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+@RunWith(Parameterized.class)
+public class TestSimpleSQLParser {
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() throws Exception {
+    return Arrays.asList(new Object[][]{
+        {
+            "insert into \"SYS\".\"MANYCOLS\"(\"ID\",\"NAME\",\"HIREDATE\",\"SALARY\",\"LASTLOGIN\") " +
+                "values ('1','sdc', TO_DATE('21-11-2016 11:34:09', 'DD-MM-YYYY HH24:MI:SS')," +
+                "'1332.332',TO_TIMESTAMP('2016-11-21 11:34:09.982753'))",
+            OperationType.INSERT_CODE,
+            true
+        },
+        {
+            "insert into \"SYS\".\"MANYCOLS\"(\"ID\",\"NAME\",\"HIREDATE\",\"SALARY\",\"LASTLOGIN\") " +
+                "values ('10','it''s',TO_DATE('19-11-2016 11:35:16', 'DD-MM-YYYY HH24:MI:SS'),10000.1,NULL);",
+            OperationType.INSERT_CODE,
+            true
+        },
+        {
+            " update \"SYS\".\"MANYCOLS\" set \"SALARY\" = '1998.483' " +
+                "where \"ID\" = '1' and \"NAME\" IS NULL and" +
+                " \"HIREDATE\" = TO_DATE('21-11-2016 11:34:09', 'DD-MM-YYYY HH24:MI:SS') and " +
+                "\"SALARY\" = '1332.322' and \"LASTLOGIN\" = TO_TIMESTAMP('2016-11-21 11:34:09.982753') and " +
+                "ROWID = 'AAAWk1AAEAAAAFdAAA'",
+            OperationType.UPDATE_CODE,
+            true
+        },
+        {
+            " update \"SYS\".\"MANYCOLS\" set \"SALARY=\" = '1998.483' " +
+                "where \"ID\" = '1' and \"NAME\" = '=sdc' and \"SALARY=\" = '1332.322'",
+            OperationType.UPDATE_CODE,
+            true
+        },
+        {
+            "delete from \"SYS\".\"MANYCOLS\" where \"ID\" = '10' and \"NAME\" = 'stream' and " +
+                "\"HIREDATE\" = TO_DATE('19-11-2016 11:35:16', 'DD-MM-YYYY HH24:MI:SS') and " +
+                "\"SALARY\" = '10000.1' and \"LASTLOGIN\" IS NULL\n",
+            OperationType.DELETE_CODE,
+            true
+        },
+        {
+            "update \"SYS\".\"MANYCOLS\" set \"NAME\" = 'a' || 'b' where \"ID\" = '1'",
+            OperationType.UPDATE_CODE,
+            false
+        },
+        {
+            "delete from \"SYS\".\"MANYCOLS\" where \"ID\" = '1' or \"ID\" = '2'",
+            OperationType.DELETE_CODE,
+            false
+        },
+        {
+            "delete from \"SYS\".\"MANYCOLS\" where \"NAME\" IS NOT NULL",
+            OperationType.DELETE_CODE,
+            false
+        },
+        {
+            "insert into \"SYS\".\"MANYCOLS\"(\"ID\",\"NAME\") values (HEXTORAW(SUBSTR('1', 1)),'sdc')",
+            OperationType.INSERT_CODE,
+            false
+        },
+    });
+  }
+
+  private final String sql;
+  private final int operationCode;
+  private final boolean supported;
+
+  public TestSimpleSQLParser(String sql, int operationCode, boolean supported) {
+    this.sql = sql;
+    this.operationCode = operationCode;
+    this.supported = supported;
+  }
+
+  private static SQLListener createListener() {
+    SQLListener listener = new SQLListener();
+    listener.allowNulls();
+    listener.setColumns(ImmutableSet.of("ID", "NAME", "HIREDATE", "SALARY", "LASTLOGIN"));
+    return listener;
+  }
+
+  @Test
+  public void testSameColumnsAsParseTree() {
+    SQLListener listener = createListener();
+    Assert.assertEquals(supported, SimpleSQLParser.parse(sql, operationCode, listener));
+    if (!supported) {
+      Assert.assertTrue(listener.getColumns().isEmpty());
+      return;
+    }
+
+    plsqlParser parser = new plsqlParser(new CommonTokenStream(new plsqlLexer(new ANTLRInputStream(sql))));
+    ParserRuleContext context;
+    if (operationCode == OperationType.INSERT_CODE) {
+      context = parser.insert_statement();
+    } else if (operationCode == OperationType.DELETE_CODE) {
+      context = parser.delete_statement();
+    } else {
+      context = parser.update_statement();
+    }
+    SQLListener expected = createListener();
+    new ParseTreeWalker().walk(expected, context);
+    Assert.assertEquals(expected.getColumns(), listener.getColumns());
+  }
+}
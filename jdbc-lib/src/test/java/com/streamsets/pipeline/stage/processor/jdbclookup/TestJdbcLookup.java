@@ -15,19 +15,28 @@
  */
 package com.streamsets.pipeline.stage.processor.jdbclookup;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Processor;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.Stage;
 import com.streamsets.pipeline.api.base.OnRecordErrorException;
 import com.streamsets.pipeline.lib.jdbc.DataType;
 import com.streamsets.pipeline.lib.jdbc.HikariPoolConfigBean;
 import com.streamsets.pipeline.lib.jdbc.JdbcFieldColumnMapping;
+import com.streamsets.pipeline.lib.jdbc.JdbcUtil;
+import com.streamsets.pipeline.sdk.ContextInfoCreator;
 import com.streamsets.pipeline.sdk.ProcessorRunner;
 import com.streamsets.pipeline.sdk.RecordCreator;
 import com.streamsets.pipeline.sdk.StageRunner;
+import com.streamsets.pipeline.stage.common.DefaultErrorRecordHandler;
 import com.streamsets.pipeline.stage.common.MultipleValuesBehavior;
+import com.streamsets.pipeline.stage.processor.kv.LookupMode;
+import com.zaxxer.hikari.HikariDataSource;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -35,15 +44,20 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 
@@ -61,6 +75,7 @@ public class TestJdbcLookup {
       "   AND LAST_NAME = '${record:value(\"[1]\")}'";
   private final String queryReturnsNoRow = "SELECT P_ID FROM TEST.TEST_TABLE" +
       " WHERE false";
+  private final String batchQuery = "SELECT P_ID, FIRST_NAME, LAST_NAME FROM TEST.TEST_TABLE";
   private final String h2ConnectionString = "jdbc:h2:mem:" + database;
 
   private Connection connection = null;
@@ -628,4 +643,254 @@ public class TestJdbcLookup {
       processorRunner.runDestroy();
     }
   }
+
+  private Record createIdRecord(int id) {
+    Record record = RecordCreator.create();
+    Map<String, Field> fields = new LinkedHashMap<>();
+    fields.put("id", Field.create(id));
+    record.set(Field.create(fields));
+    return record;
+  }
+
+  private ProcessorRunner createBatchRunner(
+      List<JdbcLookupKeyMapping> keyColumns,
+      List<JdbcFieldColumnMapping> columnMappings,
+      int maxKeysPerQuery
+  ) {
+    JdbcLookupDProcessor processor = new JdbcLookupDProcessor();
+    processor.hikariConfigBean = createConfigBean(h2ConnectionString, username, password);
+    processor.batchConfig.mode = LookupMode.BATCH;
+    processor.batchConfig.keyColumns = keyColumns;
+    processor.batchConfig.maxKeysPerQuery = maxKeysPerQuery;
+
+    return new ProcessorRunner.Builder(JdbcLookupDProcessor.class, processor)
+        .addConfiguration("query", batchQuery)
+        .addConfiguration("columnMappings", columnMappings)
+        .addConfiguration("multipleValuesBehavior", MultipleValuesBehavior.FIRST_ONLY)
+        .addConfiguration("maxClobSize", 1000)
+        .addConfiguration("maxBlobSize", 1000)
+        .setOnRecordError(OnRecordError.TO_ERROR)
+        .addOutputLane("lane")
+        .build();
+  }
+
+  @Test
+  public void testBatchLookup() throws Exception {
+    ProcessorRunner processorRunner = createBatchRunner(
+        ImmutableList.of(new JdbcLookupKeyMapping("P_ID", "${record:value('/id')}")),
+        ImmutableList.of(new JdbcFieldColumnMapping("FIRST_NAME", "/first_name")),
+        2
+    );
+
+    // 4 distinct keys, looked up in 2 queries
+    List<Record> records = ImmutableList.of(
+        createIdRecord(1),
+        createIdRecord(2),
+        createIdRecord(3),
+        createIdRecord(1),
+        createIdRecord(4)
+    );
+    processorRunner.runInit();
+    try {
+      StageRunner.Output output = processorRunner.runProcess(records);
+      List<Record> outputRecords = output.getRecords().get("lane");
+      Assert.assertEquals(5, outputRecords.size());
+      Assert.assertEquals("Adam", outputRecords.get(0).get("/first_name").getValueAsString());
+      Assert.assertEquals("Jon", outputRecords.get(1).get("/first_name").getValueAsString());
+      Assert.assertEquals("Jon", outputRecords.get(2).get("/first_name").getValueAsString());
+      Assert.assertEquals("Adam", outputRecords.get(3).get("/first_name").getValueAsString());
+      Assert.assertEquals("Girish", outputRecords.get(4).get("/first_name").getValueAsString());
+      Assert.assertEquals(0, processorRunner.getErrorRecords().size());
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testBatchLookupMultipleKeyColumns() throws Exception {
+    ProcessorRunner processorRunner = createBatchRunner(
+        ImmutableList.of(
+            new JdbcLookupKeyMapping("FIRST_NAME", "${record:value('[0]')}"),
+            new JdbcLookupKeyMapping("LAST_NAME", "${record:value('[1]')}")
+        ),
+        ImmutableList.of(new JdbcFieldColumnMapping("P_ID", "[2]")),
+        500
+    );
+
+    Record record1 = RecordCreator.create();
+    record1.set(Field.create(ImmutableList.of(Field.create("Jon"), Field.create("Natkins"))));
+    Record record2 = RecordCreator.create();
+    record2.set(Field.create(ImmutableList.of(Field.create("Jon"), Field.create("Daulton"))));
+
+    processorRunner.runInit();
+    try {
+      List<Record> outputRecords = processorRunner.runProcess(ImmutableList.of(record1, record2))
+          .getRecords().get("lane");
+      Assert.assertEquals(2, outputRecords.size());
+      Assert.assertEquals(2, outputRecords.get(0).get("[2]").getValueAsInteger());
+      Assert.assertEquals(3, outputRecords.get(1).get("[2]").getValueAsInteger());
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testBatchLookupMissingRow() throws Exception {
+    ProcessorRunner processorRunner = createBatchRunner(
+        ImmutableList.of(new JdbcLookupKeyMapping("P_ID", "${record:value('/id')}")),
+        ImmutableList.of(new JdbcFieldColumnMapping("FIRST_NAME", "/first_name")),
+        500
+    );
+
+    processorRunner.runInit();
+    try {
+      StageRunner.Output output = processorRunner.runProcess(ImmutableList.of(createIdRecord(1), createIdRecord(42)));
+      Assert.assertEquals(1, output.getRecords().get("lane").size());
+      Assert.assertEquals("Adam", output.getRecords().get("lane").get(0).get("/first_name").getValueAsString());
+      Assert.assertEquals(1, processorRunner.getErrorRecords().size());
+      Assert.assertEquals(42, processorRunner.getErrorRecords().get(0).get("/id").getValueAsInteger());
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testBatchLookupDefaultValue() throws Exception {
+    ProcessorRunner processorRunner = createBatchRunner(
+        ImmutableList.of(new JdbcLookupKeyMapping("P_ID", "${record:value('/id')}")),
+        ImmutableList.of(new JdbcFieldColumnMapping("FIRST_NAME", "/first_name", "Unknown", DataType.STRING)),
+        500
+    );
+
+    processorRunner.runInit();
+    try {
+      StageRunner.Output output = processorRunner.runProcess(ImmutableList.of(createIdRecord(42), createIdRecord(4)));
+      List<Record> outputRecords = output.getRecords().get("lane");
+      Assert.assertEquals(2, outputRecords.size());
+      Assert.assertEquals("Unknown", outputRecords.get(0).get("/first_name").getValueAsString());
+      Assert.assertEquals("Girish", outputRecords.get(1).get("/first_name").getValueAsString());
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testBatchLookupKeyOfDifferentType() throws Exception {
+    ProcessorRunner processorRunner = createBatchRunner(
+        ImmutableList.of(new JdbcLookupKeyMapping("P_ID", "${record:value('/id')}")),
+        ImmutableList.of(new JdbcFieldColumnMapping("FIRST_NAME", "/first_name")),
+        500
+    );
+
+    // Keys are matched by value, not by their string form
+    Record decimalRecord = RecordCreator.create();
+    decimalRecord.set(Field.create(ImmutableMap.of("id", Field.create(1.0))));
+    Record stringRecord = RecordCreator.create();
+    stringRecord.set(Field.create(ImmutableMap.of("id", Field.create("2"))));
+
+    processorRunner.runInit();
+    try {
+      List<Record> outputRecords = processorRunner.runProcess(ImmutableList.of(decimalRecord, stringRecord))
+          .getRecords().get("lane");
+      Assert.assertEquals(2, outputRecords.size());
+      Assert.assertEquals("Adam", outputRecords.get(0).get("/first_name").getValueAsString());
+      Assert.assertEquals("Jon", outputRecords.get(1).get("/first_name").getValueAsString());
+      Assert.assertEquals(0, processorRunner.getErrorRecords().size());
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testBatchLookupCacheKeyIncludesQuery() throws Exception {
+    HikariDataSource dataSource = JdbcUtil.createDataSourceForRead(
+        createConfigBean(h2ConnectionString, username, password)
+    );
+    try {
+      Processor.Context context = ContextInfoCreator.createProcessorContext("n", false, OnRecordError.TO_ERROR);
+      JdbcLookupLoader loader = new JdbcLookupLoader(
+          context,
+          dataSource,
+          ImmutableMap.of("NAME", "/name"),
+          new HashMap<String, String>(),
+          new HashMap<String, DataType>(),
+          1000,
+          1000,
+          new DefaultErrorRecordHandler(context)
+      );
+      LoadingCache<JdbcBatchLookupLoader.LookupKey, List<Map<String, Field>>> cache =
+          CacheBuilder.newBuilder().build(new JdbcBatchLookupLoader(loader, ImmutableList.of("P_ID"), 500));
+
+      // Same key values, different queries
+      List<Object> values = ImmutableList.<Object>of(1);
+      List<Map<String, Field>> firstNames = cache.get(new JdbcBatchLookupLoader.LookupKey(
+          "SELECT P_ID, FIRST_NAME AS NAME FROM TEST.TEST_TABLE",
+          values
+      ));
+      List<Map<String, Field>> lastNames = cache.get(new JdbcBatchLookupLoader.LookupKey(
+          "SELECT P_ID, LAST_NAME AS NAME FROM TEST.TEST_TABLE",
+          values
+      ));
+      Assert.assertEquals("Adam", firstNames.get(0).get("NAME").getValueAsString());
+      Assert.assertEquals("Kunicki", lastNames.get(0).get("NAME").getValueAsString());
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  @Test
+  public void testNormalizeKeyValue() throws Exception {
+    Assert.assertEquals(
+        JdbcLookupLoader.normalizeKeyValue(1, Types.INTEGER),
+        JdbcLookupLoader.normalizeKeyValue(Field.create(new BigDecimal("1.00")), Types.INTEGER)
+    );
+    Assert.assertEquals(
+        JdbcLookupLoader.normalizeKeyValue(1.0, Types.DECIMAL),
+        JdbcLookupLoader.normalizeKeyValue(1L, Types.DECIMAL)
+    );
+    Assert.assertNotEquals(
+        JdbcLookupLoader.normalizeKeyValue(1.5, Types.DECIMAL),
+        JdbcLookupLoader.normalizeKeyValue(1L, Types.DECIMAL)
+    );
+    // CHAR values are padded, VARCHAR values are not
+    Assert.assertEquals(
+        JdbcLookupLoader.normalizeKeyValue("Jon", Types.CHAR),
+        JdbcLookupLoader.normalizeKeyValue(Field.create("Jon   "), Types.CHAR)
+    );
+    Assert.assertNotEquals(
+        JdbcLookupLoader.normalizeKeyValue("Jon", Types.VARCHAR),
+        JdbcLookupLoader.normalizeKeyValue("Jon   ", Types.VARCHAR)
+    );
+    // Dates are compared by their instant, not by their string form
+    Date date = new Date(1500000000000L);
+    Assert.assertEquals(
+        JdbcLookupLoader.normalizeKeyValue(date, Types.TIMESTAMP),
+        JdbcLookupLoader.normalizeKeyValue(Field.createDatetime(new Timestamp(date.getTime())), Types.TIMESTAMP)
+    );
+  }
+
+  @Test
+  public void testBatchLookupWithoutKeyColumns() throws Exception {
+    ProcessorRunner processorRunner = createBatchRunner(
+        new ArrayList<JdbcLookupKeyMapping>(),
+        ImmutableList.of(new JdbcFieldColumnMapping("FIRST_NAME", "/first_name")),
+        500
+    );
+
+    List<Stage.ConfigIssue> issues = processorRunner.runValidateConfigs();
+    assertEquals(1, issues.size());
+    Assert.assertTrue(issues.get(0).toString().contains("JDBC_58"));
+  }
+
+  @Test
+  public void testGetBatchQuery() throws Exception {
+    Assert.assertEquals(
+        "SELECT * FROM (SELECT * FROM T) sdc_lookup WHERE A IN (?, ?, ?)",
+        JdbcLookupLoader.getBatchQuery("SELECT * FROM T;", ImmutableList.of("A"), 3)
+    );
+    Assert.assertEquals(
+        "SELECT * FROM (SELECT * FROM T) sdc_lookup WHERE (A = ? AND B = ?) OR (A = ? AND B = ?)",
+        JdbcLookupLoader.getBatchQuery("SELECT * FROM T", ImmutableList.of("A", "B"), 2)
+    );
+  }
 }
@@ -19,8 +19,12 @@ import com.streamsets.pipeline.stage.origin.multikafka.MultiSdcKafkaConsumer;
 import com.streamsets.pipeline.stage.origin.multikafka.loader.KafkaConsumerLoader;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 public class Kafka0_10ConsumerLoader extends KafkaConsumerLoader {
@@ -51,11 +55,26 @@ public class Kafka0_10ConsumerLoader extends KafkaConsumerLoader {
       return delegate.poll(timeout);
     }
 
+    @Override
+    public void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
+      delegate.commitAsync(offsets, callback);
+    }
+
+    @Override
+    public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+      delegate.commitSync(offsets);
+    }
+
     @Override
     public void unsubscribe() {
       delegate.unsubscribe();
     }
 
+    @Override
+    public void wakeup() {
+      delegate.wakeup();
+    }
+
     @Override
     public void close() {
       delegate.close();
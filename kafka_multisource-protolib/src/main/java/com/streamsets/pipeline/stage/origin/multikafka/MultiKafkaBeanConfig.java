@@ -118,6 +118,33 @@ public class MultiKafkaBeanConfig {
   )
   public int batchWaitTime;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Prefetch Messages",
+      description = "Polls the next messages while the current batch is processed. Offsets are committed only " +
+          "after the batch is processed.",
+      displayPosition = 73,
+      group = "KAFKA"
+  )
+  public boolean prefetch;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1",
+      label = "Max Prefetched Batches",
+      description = "Maximum number of polled batches waiting to be processed, per thread",
+      dependsOn = "prefetch",
+      triggeredByValue = "true",
+      min = 1,
+      max = 10,
+      displayPosition = 76,
+      group = "KAFKA"
+  )
+  public int maxPrefetchedBatches = 1;
+
   @ConfigDef(
       required = false,
       type = ConfigDef.Type.MAP,
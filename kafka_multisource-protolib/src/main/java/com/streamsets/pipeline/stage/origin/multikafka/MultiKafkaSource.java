@@ -16,7 +16,9 @@
 package com.streamsets.pipeline.stage.origin.multikafka;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.streamsets.pipeline.api.BatchContext;
+import com.streamsets.pipeline.api.BatchMaker;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
@@ -35,16 +37,23 @@ import com.streamsets.pipeline.stage.common.HeaderAttributeConstants;
 import com.streamsets.pipeline.stage.origin.multikafka.loader.KafkaConsumerLoader;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -57,6 +66,7 @@ public class MultiKafkaSource extends BasePushSource {
   private static final Logger LOG = LoggerFactory.getLogger(MultiKafkaSource.class);
 
   private static final String MULTI_KAFKA_DATA_FORMAT_CONFIG_PREFIX = "dataFormatConfig.";
+  private static final long PREFETCH_OFFER_WAIT_MS = 100;
 
   private final MultiKafkaBeanConfig conf;
   private AtomicBoolean shutdownCalled = new AtomicBoolean(false);
@@ -75,6 +85,8 @@ public class MultiKafkaSource extends BasePushSource {
     private final long threadID;
     private final List<String> topicList;
     private final CountDownLatch startProcessingGate;
+    // reused across messages, only needed to produce a single record per message
+    private final List<Record> records = new ArrayList<>();
 
     public MultiTopicCallable(
         long threadID,
@@ -98,28 +110,39 @@ public class MultiKafkaSource extends BasePushSource {
       //wait until all threads are spun up before processing
       startProcessingGate.await();
 
+      Prefetcher prefetcher = null;
       try {
         consumer.subscribe(topicList);
+        if (conf.prefetch) {
+          // from now on only the prefetcher uses the consumer, until it is stopped
+          prefetcher = new Prefetcher(consumer, threadID);
+          executor.submit(prefetcher);
+        }
 
         // protected loop. want it to finish completely, or not start at all.
         // only 2 conditions that we want to halt execution. must handle gracefully
         while(!getContext().isStopped() && !Thread.interrupted()) {
-          BatchContext batchContext = getContext().startBatch();
-          ErrorRecordHandler errorRecordHandler = new DefaultErrorRecordHandler(getContext(), batchContext);
-
-          ConsumerRecords<String, byte[]> messages = consumer.poll(conf.batchWaitTime);
-          if(!messages.isEmpty()) {
+          ConsumerRecords<String, byte[]> messages = (prefetcher != null)
+              ? prefetcher.take(conf.batchWaitTime)
+              : consumer.poll(conf.batchWaitTime);
+          if(messages != null && !messages.isEmpty()) {
+            BatchContext batchContext = getContext().startBatch();
+            ErrorRecordHandler errorRecordHandler = new DefaultErrorRecordHandler(getContext(), batchContext);
             for(ConsumerRecord<String, byte[]> message : messages) {
               createRecord(
                   errorRecordHandler,
+                  batchContext.getBatchMaker(),
                   message.topic(),
                   message.partition(),
                   message.offset(),
                   message.value()
-              ).forEach(batchContext.getBatchMaker()::addRecord);
+              );
             }
 
-            getContext().processBatch(batchContext);
+            boolean processed = getContext().processBatch(batchContext);
+            if (processed && prefetcher != null) {
+              prefetcher.commit(getOffsetsToCommit(messages));
+            }
             messagesProcessed += messages.count();
             LOG.trace("Kafka thread {} finished processing {} messages", this.threadID, messages.count());
           }
@@ -128,6 +151,11 @@ public class MultiKafkaSource extends BasePushSource {
         LOG.error("Encountered error in multi kafka thread {} during read {}", threadID, e);
         handleException(KafkaErrors.KAFKA_29, e);
       } finally {
+        if (prefetcher != null) {
+          // prefetched messages are not committed, they will be consumed again
+          prefetcher.stop();
+          prefetcher.commitPendingSync();
+        }
         consumer.unsubscribe();
         consumer.close();
       }
@@ -136,15 +164,17 @@ public class MultiKafkaSource extends BasePushSource {
       return messagesProcessed;
     }
 
-    private List<Record> createRecord(
+    private void createRecord(
       ErrorRecordHandler errorRecordHandler,
+      BatchMaker batchMaker,
       String topic,
       int partition,
       long offset,
       byte[] payload
     ) throws StageException {
       String messageId = getMessageId(topic, partition, offset);
-      List<Record> records = new ArrayList<>();
+      List<Record> records = this.records;
+      records.clear();
       try(DataParser parser = Utils.checkNotNull(parserFactory, "Initialization failed").getParser(messageId, payload)) {
         Record record = parser.parse();
         while (record != null) {
@@ -152,7 +182,11 @@ public class MultiKafkaSource extends BasePushSource {
           record.getHeader().setAttribute(HeaderAttributeConstants.PARTITION, String.valueOf(partition));
           record.getHeader().setAttribute(HeaderAttributeConstants.OFFSET, String.valueOf(offset));
 
-          records.add(record);
+          if (conf.produceSingleRecordPerMessage) {
+            records.add(record);
+          } else {
+            batchMaker.addRecord(record);
+          }
           record = parser.parse();
         }
       } catch (DataParserException | IOException e) {
@@ -168,18 +202,15 @@ public class MultiKafkaSource extends BasePushSource {
             )
         );
       }
-      if(conf.produceSingleRecordPerMessage) {
-        List<Field> list = new ArrayList<>();
+      if(conf.produceSingleRecordPerMessage && !records.isEmpty()) {
+        List<Field> list = new ArrayList<>(records.size());
         for (Record record : records) {
           list.add(record.get());
         }
         Record record = records.get(0);
         record.set(Field.create(list));
-        records.clear();
-        records.add(record);
+        batchMaker.addRecord(record);
       }
-
-      return records;
     }
 
     private void handleException(KafkaErrors error, Object... args) throws StageException {
@@ -189,6 +220,127 @@ public class MultiKafkaSource extends BasePushSource {
     }
   }
 
+  /**
+   * Polls messages ahead of their processing and commits the offsets of the processed ones.
+   * <p/>
+   * Kafka consumers must not be used concurrently, so while a prefetcher is running it is the only user of the
+   * consumer: the processing thread hands over the offsets to commit and the prefetcher commits them between polls.
+   */
+  private class Prefetcher implements Runnable {
+    private final MultiSdcKafkaConsumer<String, byte[]> consumer;
+    private final long threadID;
+    private final BlockingQueue<ConsumerRecords<String, byte[]>> prefetched;
+    private final Queue<Map<TopicPartition, OffsetAndMetadata>> pendingCommits;
+    private final CountDownLatch stopped;
+    private volatile boolean running;
+    private volatile Exception failure;
+
+    Prefetcher(MultiSdcKafkaConsumer<String, byte[]> consumer, long threadID) {
+      this.consumer = consumer;
+      this.threadID = threadID;
+      prefetched = new ArrayBlockingQueue<>(conf.maxPrefetchedBatches);
+      pendingCommits = new ConcurrentLinkedQueue<>();
+      stopped = new CountDownLatch(1);
+      running = true;
+    }
+
+    @Override
+    public void run() {
+      Thread.currentThread().setName("kafkaPrefetchThread-" + threadID);
+      try {
+        while (running) {
+          commitPendingAsync();
+          ConsumerRecords<String, byte[]> messages = consumer.poll(conf.batchWaitTime);
+          if (!messages.isEmpty()) {
+            // keep committing while waiting for room in the buffer
+            while (running && !prefetched.offer(messages, PREFETCH_OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+              commitPendingAsync();
+            }
+          }
+        }
+      } catch (WakeupException e) {
+        // stop() wakes up the consumer, nothing else does
+        if (running) {
+          LOG.error("Multi kafka prefetch thread {} woken up while running", threadID, e);
+          failure = e;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        LOG.error("Encountered error in multi kafka prefetch thread {}: {}", threadID, e.toString(), e);
+        failure = e;
+      } finally {
+        stopped.countDown();
+      }
+    }
+
+    /**
+     * Returns the next prefetched messages, <code>null</code> if there are none after the given wait.
+     */
+    ConsumerRecords<String, byte[]> take(long waitMillis) throws Exception {
+      ConsumerRecords<String, byte[]> messages = prefetched.poll(waitMillis, TimeUnit.MILLISECONDS);
+      if (messages == null && failure != null) {
+        throw failure;
+      }
+      return messages;
+    }
+
+    void commit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+      pendingCommits.add(offsets);
+    }
+
+    /**
+     * Stops polling, aborting the current poll, and waits for the prefetch thread to end. The consumer can be used by
+     * the caller afterwards.
+     */
+    void stop() {
+      running = false;
+      consumer.wakeup();
+      // the consumer must not be used before the prefetch thread ends, whatever it takes
+      Uninterruptibles.awaitUninterruptibly(stopped);
+    }
+
+    /**
+     * Commits the offsets not committed yet, it must be called once the prefetcher is stopped.
+     */
+    void commitPendingSync() {
+      Map<TopicPartition, OffsetAndMetadata> offsets = drainPendingCommits();
+      if (!offsets.isEmpty()) {
+        try {
+          try {
+            consumer.commitSync(offsets);
+          } catch (WakeupException e) {
+            // the wakeup from stop() is still pending when it did not abort a poll, it is raised once
+            consumer.commitSync(offsets);
+          }
+        } catch (Exception e) {
+          LOG.warn("Could not commit offsets {} in multi kafka thread {}: {}", offsets, threadID, e.toString(), e);
+        }
+      }
+    }
+
+    private void commitPendingAsync() {
+      Map<TopicPartition, OffsetAndMetadata> offsets = drainPendingCommits();
+      if (!offsets.isEmpty()) {
+        consumer.commitAsync(offsets, (committed, e) -> {
+          if (e != null) {
+            // the messages will be consumed again, a later commit can still cover them
+            LOG.warn("Could not commit offsets {} in multi kafka thread {}: {}", committed, threadID, e.toString(), e);
+          }
+        });
+      }
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> drainPendingCommits() {
+      Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+      Map<TopicPartition, OffsetAndMetadata> pending;
+      while ((pending = pendingCommits.poll()) != null) {
+        offsets.putAll(pending);
+      }
+      return offsets;
+    }
+  }
+
   @Override
   public List<ConfigIssue> init() {
     List<ConfigIssue> issues = super.init();
@@ -219,7 +371,8 @@ public class MultiKafkaSource extends BasePushSource {
       );
     }
 
-    executor = Executors.newFixedThreadPool(getNumberOfThreads());
+    // with prefetch every consumer thread has a prefetch thread
+    executor = Executors.newFixedThreadPool(getNumberOfThreads() * (conf.prefetch ? 2 : 1));
 
     return issues;
   }
@@ -282,14 +435,30 @@ public class MultiKafkaSource extends BasePushSource {
     props.setProperty("bootstrap.servers", conf.brokerURI);
     props.setProperty("group.id", conf.consumerGroup);
     props.setProperty("max.poll.records", String.valueOf(batchSize));
-    props.setProperty("enable.auto.commit", "true");
-    props.setProperty("auto.commit.interval.ms", "1000");
+    if (conf.prefetch) {
+      // offsets are committed once their batch is processed
+      props.setProperty("enable.auto.commit", "false");
+    } else {
+      props.setProperty("enable.auto.commit", "true");
+      props.setProperty("auto.commit.interval.ms", "1000");
+    }
     props.setProperty(KafkaConstants.KEY_DESERIALIZER_CLASS_CONFIG, conf.keyDeserializer.getKeyClass());
     props.setProperty(KafkaConstants.VALUE_DESERIALIZER_CLASS_CONFIG, conf.valueDeserializer.getValueClass());
 
     return props;
   }
 
+  // the committed offset is the offset of the next message to consume
+  private static Map<TopicPartition, OffsetAndMetadata> getOffsetsToCommit(ConsumerRecords<String, byte[]> messages) {
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    for (TopicPartition partition : messages.partitions()) {
+      List<ConsumerRecord<String, byte[]>> partitionMessages = messages.records(partition);
+      long lastOffset = partitionMessages.get(partitionMessages.size() - 1).offset();
+      offsets.put(partition, new OffsetAndMetadata(lastOffset + 1));
+    }
+    return offsets;
+  }
+
   private String getMessageId(String topic, int partition, long offset) {
     return topic + "::" + partition + "::" + offset;
   }
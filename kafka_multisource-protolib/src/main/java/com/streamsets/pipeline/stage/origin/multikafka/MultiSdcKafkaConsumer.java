@@ -16,8 +16,12 @@
 package com.streamsets.pipeline.stage.origin.multikafka;
 
 import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is very thin wrapper on top of KafkaConsumer (Kafka native class) that is abstracting method calls that
@@ -30,7 +34,17 @@ public interface MultiSdcKafkaConsumer<K, V> {
 
   public ConsumerRecords<K, V> poll(long timeout);
 
+  public void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback);
+
+  public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets);
+
   public void unsubscribe();
 
+  /**
+   * Aborts a blocking poll or commit from another thread, the aborted call throws WakeupException. If no call is
+   * blocking, the next one throws it.
+   */
+  public void wakeup();
+
   public void close();
 }
@@ -26,10 +26,13 @@ import com.streamsets.pipeline.stage.origin.multikafka.loader.MockKafkaConsumerL
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
@@ -40,7 +43,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestMultiKafkaSource {
@@ -233,6 +239,163 @@ public class TestMultiKafkaSource {
     Assert.fail();
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPrefetchCommitsProcessedOffsets() throws StageException, InterruptedException {
+    MultiKafkaBeanConfig conf = getConfig();
+    conf.topicList = Collections.singletonList("topic");
+    conf.numberOfThreads = 1;
+    conf.prefetch = true;
+    conf.maxPrefetchedBatches = 2;
+
+    ConsumerRecords<String, byte[]> consumerRecords1 = generateConsumerRecords(5, "topic", 0);
+    ConsumerRecords<String, byte[]> consumerRecords2 = generateConsumerRecords(3, "topic", 1);
+    ConsumerRecords<String, byte[]> emptyRecords = generateConsumerRecords(0, "topic", 0);
+
+    KafkaConsumer mockConsumer = Mockito.mock(KafkaConsumer.class);
+    List<KafkaConsumer> consumerList = Collections.singletonList(mockConsumer);
+    Mockito
+        .when(mockConsumer.poll(conf.batchWaitTime))
+        .thenReturn(consumerRecords1)
+        .thenReturn(consumerRecords2)
+        .thenReturn(emptyRecords);
+
+    MockKafkaConsumerLoader.consumers = consumerList.iterator();
+    MultiKafkaSource source = new MultiKafkaSource(conf);
+    PushSourceRunner sourceRunner = new PushSourceRunner.Builder(MultiKafkaSource.class, source)
+        .addOutputLane("lane")
+        .build();
+    sourceRunner.runInit();
+
+    MultiKafkaPushSourceTestCallback callback = new MultiKafkaPushSourceTestCallback(sourceRunner, 2);
+    try {
+      sourceRunner.runProduce(new HashMap<>(), 5, callback);
+      int records = callback.waitForAllBatches();
+
+      source.await();
+      Assert.assertEquals(8, records);
+      Assert.assertFalse(source.isRunning());
+    } finally {
+      sourceRunner.runDestroy();
+    }
+
+    // processed offsets are committed either between polls or when the thread stops
+    ArgumentCaptor<Map> asyncCommits = ArgumentCaptor.forClass(Map.class);
+    ArgumentCaptor<Map> syncCommits = ArgumentCaptor.forClass(Map.class);
+    Mockito.verify(mockConsumer, Mockito.atLeast(0)).commitAsync(asyncCommits.capture(), Mockito.any());
+    Mockito.verify(mockConsumer, Mockito.atLeast(0)).commitSync(syncCommits.capture());
+    Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+    for (Map offsets : asyncCommits.getAllValues()) {
+      committed.putAll(offsets);
+    }
+    for (Map offsets : syncCommits.getAllValues()) {
+      committed.putAll(offsets);
+    }
+    Assert.assertEquals(new OffsetAndMetadata(5), committed.get(new TopicPartition("topic", 0)));
+    Assert.assertEquals(new OffsetAndMetadata(3), committed.get(new TopicPartition("topic", 1)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPrefetchStopWakesUpPoll() throws StageException, InterruptedException {
+    MultiKafkaBeanConfig conf = getConfig();
+    conf.topicList = Collections.singletonList("topic");
+    conf.numberOfThreads = 1;
+    conf.prefetch = true;
+    conf.batchWaitTime = 1000;
+
+    CountDownLatch wokenUp = new CountDownLatch(1);
+    AtomicBoolean polling = new AtomicBoolean(false);
+    AtomicBoolean usedWhilePolling = new AtomicBoolean(false);
+    KafkaConsumer mockConsumer = Mockito.mock(KafkaConsumer.class);
+    List<KafkaConsumer> consumerList = Collections.singletonList(mockConsumer);
+    Mockito
+        .when(mockConsumer.poll(conf.batchWaitTime))
+        .thenReturn(generateConsumerRecords(5, "topic", 0))
+        .thenAnswer(invocation -> {
+          // a poll that gets no messages for longer than the stop takes, only a wakeup ends it
+          polling.set(true);
+          try {
+            if (wokenUp.await(30, TimeUnit.SECONDS)) {
+              throw new WakeupException();
+            }
+            return generateConsumerRecords(0, "topic", 0);
+          } finally {
+            polling.set(false);
+          }
+        });
+    Mockito.doAnswer(invocation -> {
+      wokenUp.countDown();
+      return null;
+    }).when(mockConsumer).wakeup();
+    Mockito.doAnswer(invocation -> {
+      usedWhilePolling.compareAndSet(false, polling.get());
+      return null;
+    }).when(mockConsumer).commitSync(Mockito.anyMap());
+    Mockito.doAnswer(invocation -> {
+      usedWhilePolling.compareAndSet(false, polling.get());
+      return null;
+    }).when(mockConsumer).close();
+
+    MockKafkaConsumerLoader.consumers = consumerList.iterator();
+    MultiKafkaSource source = new MultiKafkaSource(conf);
+    PushSourceRunner sourceRunner = new PushSourceRunner.Builder(MultiKafkaSource.class, source)
+        .addOutputLane("lane")
+        .build();
+    sourceRunner.runInit();
+
+    MultiKafkaPushSourceTestCallback callback = new MultiKafkaPushSourceTestCallback(sourceRunner, 1);
+    try {
+      sourceRunner.runProduce(new HashMap<>(), 5, callback);
+      Assert.assertEquals(5, callback.waitForAllBatches());
+      source.await();
+    } finally {
+      sourceRunner.runDestroy();
+    }
+
+    // stopping aborts the poll and waits for it before committing and closing the consumer
+    Mockito.verify(mockConsumer).wakeup();
+    Mockito.verify(mockConsumer).close();
+    Assert.assertFalse(usedWhilePolling.get());
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void testPrefetchPollFail() throws StageException, InterruptedException, ExecutionException {
+    MultiKafkaBeanConfig conf = getConfig();
+    conf.topicList = Collections.singletonList("topic");
+    conf.numberOfThreads = 1;
+    conf.prefetch = true;
+
+    KafkaConsumer mockConsumer = Mockito.mock(KafkaConsumer.class);
+    List<KafkaConsumer> consumerList = Collections.singletonList(mockConsumer);
+    Mockito
+        .when(mockConsumer.poll(conf.batchWaitTime))
+        .thenThrow(new IllegalStateException());
+
+    MockKafkaConsumerLoader.consumers = consumerList.iterator();
+    MultiKafkaSource source = new MultiKafkaSource(conf);
+    PushSourceRunner sourceRunner = new PushSourceRunner.Builder(MultiKafkaSource.class, source)
+        .addOutputLane("lane")
+        .build();
+    sourceRunner.runInit();
+
+    MultiKafkaPushSourceTestCallback callback = new MultiKafkaPushSourceTestCallback(sourceRunner, conf.numberOfThreads);
+    sourceRunner.runProduce(new HashMap<>(), 5, callback);
+
+    // the failure of the prefetch thread is surfaced by the consumer thread
+    try {
+      sourceRunner.waitOnProduce();
+    } catch (ExecutionException e) {
+      Throwable except = e.getCause().getCause();
+      Assert.assertEquals(StageException.class, except.getClass());
+      Assert.assertEquals(KafkaErrors.KAFKA_29, ((StageException) except).getErrorCode());
+      throw e;
+    } finally {
+      sourceRunner.runDestroy();
+    }
+    Assert.fail();
+  }
+
   // If the main thread gets interrupted, then the origin (rightfully so) won't wait on all the
   // other threads that might be running. Which will subsequently intefere with other tests.
 //  @Test(expected = InterruptedException.class)
@@ -283,7 +446,7 @@ public class TestMultiKafkaSource {
   private ConsumerRecords<String, byte[]> generateConsumerRecords(int count, String topic, int partition) {
     List<ConsumerRecord<String, byte[]>> consumerRecordsList = new ArrayList<>();
     for(int i=0; i<count; i++) {
-      consumerRecordsList.add(new ConsumerRecord<>(topic, partition, 0, "key" + i, ("value" + i).getBytes()));
+      consumerRecordsList.add(new ConsumerRecord<>(topic, partition, i, "key" + i, ("value" + i).getBytes()));
     }
 
     Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> recordsMap = new HashMap<>();
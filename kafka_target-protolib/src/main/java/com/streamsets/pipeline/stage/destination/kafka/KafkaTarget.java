@@ -15,13 +15,14 @@
  */
 package com.streamsets.pipeline.stage.destination.kafka;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.base.BaseTarget;
 import com.streamsets.pipeline.api.base.OnRecordErrorException;
 import com.streamsets.pipeline.kafka.api.SdcKafkaProducer;
-import com.streamsets.pipeline.lib.generator.DataGenerator;
 import com.streamsets.pipeline.lib.kafka.KafkaErrors;
 import com.streamsets.pipeline.lib.kafka.exception.KafkaConnectionException;
 import com.streamsets.pipeline.stage.common.DefaultErrorRecordHandler;
@@ -29,13 +30,13 @@ import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class KafkaTarget extends BaseTarget {
 
@@ -46,6 +47,9 @@ public class KafkaTarget extends BaseTarget {
   private long recordCounter = 0;
   private SdcKafkaProducer kafkaProducer;
   private ErrorRecordHandler errorRecordHandler;
+  private MessageSerializer serializer;
+  private Timer serializationTimer;
+  private Meter serializedBytesMeter;
 
   public KafkaTarget(KafkaTargetConfig conf) {
     this.conf = conf;
@@ -57,15 +61,26 @@ public class KafkaTarget extends BaseTarget {
     conf.init(getContext(), issues);
     kafkaProducer = conf.getKafkaProducer();
     errorRecordHandler = new DefaultErrorRecordHandler(getContext());
+    if (issues.isEmpty()) {
+      serializer = new MessageSerializer(conf.dataGeneratorFormatConfig.getDataGeneratorFactory());
+      serializationTimer = getContext().createTimer("serialization");
+      serializedBytesMeter = getContext().createMeter("serializedBytes");
+    }
     return issues;
   }
 
   @Override
   public void write(Batch batch) throws StageException {
-    if (conf.singleMessagePerBatch) {
-      writeOneMessagePerBatch(batch);
-    } else {
-      writeOneMessagePerRecord(batch);
+    serializer.resetStats();
+    try {
+      if (conf.singleMessagePerBatch) {
+        writeOneMessagePerBatch(batch);
+      } else {
+        writeOneMessagePerRecord(batch);
+      }
+    } finally {
+      serializationTimer.update(serializer.getSerializationNanos(), TimeUnit.NANOSECONDS);
+      serializedBytesMeter.mark(serializer.getSerializedBytes());
     }
   }
 
@@ -121,19 +136,16 @@ public class KafkaTarget extends BaseTarget {
           for (Map.Entry<Object, List<Record>> entry : perPartition.entrySet()) {
             Object partition = entry.getKey();
             List<Record> list = entry.getValue();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream(1024 * list.size());
             Record currentRecord = null;
             try {
-              DataGenerator generator = conf.dataGeneratorFormatConfig.getDataGeneratorFactory()
-                .getGenerator(baos);
+              serializer.begin();
               for (Record record : list) {
                 currentRecord = record;
-                generator.write(record);
+                serializer.write(record);
                 count++;
               }
               currentRecord = null;
-              generator.close();
-              byte[] bytes = baos.toByteArray();
+              byte[] bytes = serializer.end();
               kafkaProducer.enqueueMessage(entryTopic, bytes, partition);
             } catch (StageException ex) {
               errorRecordHandler.onError(
@@ -201,7 +213,7 @@ public class KafkaTarget extends BaseTarget {
       try {
         String topic = conf.getTopic(record);
         Object partitionKey = conf.getPartitionKey(record, topic);
-        kafkaProducer.enqueueMessage(topic, serializeRecord(record), partitionKey);
+        kafkaProducer.enqueueMessage(topic, serializer.serialize(record), partitionKey);
         count++;
       } catch (KafkaConnectionException ex) {
         // Kafka connection exception is thrown when the client cannot connect to the list of brokers
@@ -255,17 +267,12 @@ public class KafkaTarget extends BaseTarget {
     LOG.debug("Wrote {} records in this batch.", count);
   }
 
-  private Object serializeRecord(Record record) throws StageException, IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
-    DataGenerator generator = conf.dataGeneratorFormatConfig.getDataGeneratorFactory().getGenerator(baos);
-    generator.write(record);
-    generator.close();
-    return baos.toByteArray();
-  }
-
   @Override
   public void destroy() {
     LOG.info("Wrote {} number of records to Kafka Broker", recordCounter);
+    if (serializer != null) {
+      serializer.close();
+    }
     conf.destroy();
   }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.kafka;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.lib.data.DataFactory;
+import com.streamsets.pipeline.lib.generator.DataGenerator;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactory;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFormat;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Set;
+
+/**
+ * Serializes records into Kafka message payloads.
+ * <p/>
+ * The output buffer is reused across messages and every payload is copied out of it into an exactly sized byte
+ * array. For data formats whose generators write each record independently of the previous ones (no header,
+ * footer, separator or byte order mark), the generator is reused as well and flushed after every message instead
+ * of being created and closed for each one.
+ * <p/>
+ * Instances are not thread safe, every target instance (so every pipeline runner) has its own.
+ */
+class MessageSerializer {
+
+  private static final Set<DataGeneratorFormat> REUSABLE_GENERATOR_FORMATS = ImmutableSet.of(
+      DataGeneratorFormat.TEXT,
+      DataGeneratorFormat.BINARY
+  );
+
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+
+  // buffers that grew bigger than this for a large message are not kept around
+  @VisibleForTesting
+  static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+  private final DataGeneratorFactory generatorFactory;
+  private final boolean reuseGenerator;
+  private Buffer buffer;
+  private DataGenerator generator;
+  private long startNanos;
+
+  private long serializedBytes;
+  private long serializationNanos;
+
+  MessageSerializer(DataGeneratorFactory generatorFactory) {
+    this.generatorFactory = generatorFactory;
+    reuseGenerator = isGeneratorReusable(generatorFactory.getSettings());
+    buffer = new Buffer(INITIAL_BUFFER_SIZE);
+  }
+
+  private static boolean isGeneratorReusable(DataFactory.Settings settings) {
+    if (!REUSABLE_GENERATOR_FORMATS.contains(settings.getFormat())) {
+      return false;
+    }
+    // charsets like UTF-16 write a byte order mark at the beginning of the stream only
+    Charset charset = settings.getCharset();
+    return charset == null || charset.encode("a").remaining() * 2 == charset.encode("aa").remaining();
+  }
+
+  @VisibleForTesting
+  boolean isReusingGenerator() {
+    return reuseGenerator;
+  }
+
+  /**
+   * Returns the payload of a message with the given record.
+   */
+  byte[] serialize(Record record) throws IOException, StageException {
+    begin();
+    write(record);
+    return end();
+  }
+
+  /**
+   * Starts a new message, the records of the message are written with {@link #write(Record)} and its payload is
+   * returned by {@link #end()}.
+   */
+  void begin() throws IOException {
+    startNanos = System.nanoTime();
+    buffer.reset();
+    if (generator == null) {
+      generator = generatorFactory.getGenerator(buffer);
+    }
+  }
+
+  void write(Record record) throws IOException, StageException {
+    boolean written = false;
+    try {
+      generator.write(record);
+      written = true;
+    } finally {
+      if (!written) {
+        // the generator state is unknown after a failure, the next message gets a new one
+        discardGenerator();
+      }
+    }
+  }
+
+  byte[] end() throws IOException {
+    try {
+      if (reuseGenerator) {
+        generator.flush();
+      } else {
+        generator.close();
+        generator = null;
+      }
+    } catch (IOException ex) {
+      discardGenerator();
+      throw ex;
+    }
+    byte[] bytes = buffer.toByteArray();
+    if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+      buffer = new Buffer(INITIAL_BUFFER_SIZE);
+      discardGenerator();
+    }
+    serializedBytes += bytes.length;
+    serializationNanos += System.nanoTime() - startNanos;
+    return bytes;
+  }
+
+  private void discardGenerator() {
+    if (generator != null) {
+      IOUtils.closeQuietly(generator);
+      generator = null;
+    }
+  }
+
+  /**
+   * Returns the number of bytes serialized since the last {@link #resetStats()}.
+   */
+  long getSerializedBytes() {
+    return serializedBytes;
+  }
+
+  /**
+   * Returns the time spent serializing messages since the last {@link #resetStats()}, in nanoseconds.
+   */
+  long getSerializationNanos() {
+    return serializationNanos;
+  }
+
+  void resetStats() {
+    serializedBytes = 0;
+    serializationNanos = 0;
+  }
+
+  void close() {
+    discardGenerator();
+  }
+
+  private static class Buffer extends ByteArrayOutputStream {
+    Buffer(int size) {
+      super(size);
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+  }
+
+}
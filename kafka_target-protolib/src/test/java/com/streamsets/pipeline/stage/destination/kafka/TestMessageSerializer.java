@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.kafka;
+
+import com.google.common.collect.ImmutableMap;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.Stage;
+import com.streamsets.pipeline.api.ext.json.Mode;
+import com.streamsets.pipeline.lib.generator.DataGeneratorException;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactory;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactoryBuilder;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFormat;
+import com.streamsets.pipeline.lib.generator.text.TextDataGeneratorFactory;
+import com.streamsets.pipeline.sdk.ContextInfoCreator;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TestMessageSerializer {
+
+  private static Stage.Context getContext() {
+    return ContextInfoCreator.createTargetContext("i", false, OnRecordError.TO_ERROR);
+  }
+
+  private static DataGeneratorFactory getTextFactory(Charset charset) {
+    return new DataGeneratorFactoryBuilder(getContext(), DataGeneratorFormat.TEXT)
+        .setConfig(TextDataGeneratorFactory.FIELD_PATH_KEY, "/text")
+        .setCharset(charset)
+        .build();
+  }
+
+  private static Record createRecord(String text) {
+    Record record = RecordCreator.create();
+    record.set(Field.create(ImmutableMap.of("text", Field.create(text))));
+    return record;
+  }
+
+  @Test
+  public void testReusedGenerator() throws Exception {
+    MessageSerializer serializer = new MessageSerializer(getTextFactory(StandardCharsets.UTF_8));
+    Assert.assertTrue(serializer.isReusingGenerator());
+
+    Assert.assertEquals("a\n", new String(serializer.serialize(createRecord("a")), StandardCharsets.UTF_8));
+    Assert.assertEquals("bb\n", new String(serializer.serialize(createRecord("bb")), StandardCharsets.UTF_8));
+
+    serializer.begin();
+    serializer.write(createRecord("c"));
+    serializer.write(createRecord("d"));
+    Assert.assertEquals("c\nd\n", new String(serializer.end(), StandardCharsets.UTF_8));
+
+    Assert.assertEquals(9, serializer.getSerializedBytes());
+    Assert.assertTrue(serializer.getSerializationNanos() > 0);
+    serializer.resetStats();
+    Assert.assertEquals(0, serializer.getSerializedBytes());
+    Assert.assertEquals(0, serializer.getSerializationNanos());
+    serializer.close();
+  }
+
+  @Test
+  public void testByteOrderMarkCharset() throws Exception {
+    Charset charset = Charset.forName("UTF-16");
+    MessageSerializer serializer = new MessageSerializer(getTextFactory(charset));
+    Assert.assertFalse(serializer.isReusingGenerator());
+
+    // every message starts with its own byte order mark
+    byte[] expected = "a\n".getBytes(charset);
+    Assert.assertArrayEquals(expected, serializer.serialize(createRecord("a")));
+    Assert.assertArrayEquals(expected, serializer.serialize(createRecord("a")));
+
+    Assert.assertTrue(new MessageSerializer(getTextFactory(StandardCharsets.UTF_16BE)).isReusingGenerator());
+  }
+
+  @Test
+  public void testNotReusableFormat() throws Exception {
+    DataGeneratorFactory factory = new DataGeneratorFactoryBuilder(getContext(), DataGeneratorFormat.JSON)
+        .setMode(Mode.MULTIPLE_OBJECTS)
+        .setCharset(StandardCharsets.UTF_8)
+        .build();
+    MessageSerializer serializer = new MessageSerializer(factory);
+    Assert.assertFalse(serializer.isReusingGenerator());
+
+    // no separator from the previous message
+    String expected = "{\"text\":\"a\"}";
+    Assert.assertEquals(expected, new String(serializer.serialize(createRecord("a")), StandardCharsets.UTF_8));
+    Assert.assertEquals(expected, new String(serializer.serialize(createRecord("a")), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testFailedWrite() throws Exception {
+    MessageSerializer serializer = new MessageSerializer(getTextFactory(StandardCharsets.UTF_8));
+
+    serializer.begin();
+    serializer.write(createRecord("a"));
+    try {
+      serializer.write(RecordCreator.create());
+      Assert.fail();
+    } catch (DataGeneratorException ex) {
+      // missing field
+    }
+
+    // nothing of the failed message is left behind
+    Assert.assertEquals("b\n", new String(serializer.serialize(createRecord("b")), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testLargeMessage() throws Exception {
+    MessageSerializer serializer = new MessageSerializer(getTextFactory(StandardCharsets.UTF_8));
+
+    char[] chars = new char[MessageSerializer.MAX_RETAINED_BUFFER_SIZE + 1];
+    Arrays.fill(chars, 'x');
+    String text = new String(chars);
+    Assert.assertEquals(text.length() + 1, serializer.serialize(createRecord(text)).length);
+    Assert.assertEquals("a\n", new String(serializer.serialize(createRecord("a")), StandardCharsets.UTF_8));
+  }
+
+}
@@ -22,7 +22,9 @@ import com.streamsets.pipeline.api.GenerateResourceBundle;
 public enum Errors implements ErrorCode {
   LOOKUP_01("Failed to evaluate expression: '{}'"),
   LOOKUP_02("Failed to fetch values for batch: '{}'"),
-  LOOKUP_03("Empty static store values")
+  LOOKUP_03("Empty static store values"),
+  LOOKUP_04("Static store file '{}' does not exist or is not readable"),
+  LOOKUP_05("Failed to load static store file '{}': {}"),
   ;
 
   private final String msg;
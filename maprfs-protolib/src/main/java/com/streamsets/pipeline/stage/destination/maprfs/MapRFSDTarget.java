@@ -22,7 +22,7 @@ import com.streamsets.pipeline.api.Target;
 import com.streamsets.pipeline.stage.destination.hdfs.HdfsDTarget;
 
 @StageDef(
-    version = 2,
+    version = 3,
     label = "MapR FS",
     description = "Writes to a MapR filesystem",
     icon = "mapr.png",
@@ -29,6 +29,7 @@ import com.streamsets.pipeline.api.impl.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -109,7 +110,7 @@ public class PushSourceRunner extends StageRunner<PushSource>  implements PushSo
   }
 
   /**
-   * Offsets as they are committed by the origin.
+   * Offsets as they are committed by the origin, possibly from several threads.
    */
   private Map<String, String> offsets;
 
@@ -132,7 +133,7 @@ public class PushSourceRunner extends StageRunner<PushSource>  implements PushSo
     Preconditions.checkNotNull(lastOffsets, "Last offsets can't be null");
     Preconditions.checkNotNull(callback, "Callback object can't be null");
 
-    this.offsets = new HashMap<>(lastOffsets);
+    this.offsets = Collections.synchronizedMap(new HashMap<>(lastOffsets));
     this.callback = callback;
     executor = Executors.newSingleThreadExecutor();
 